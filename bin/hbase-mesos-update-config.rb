@@ -0,0 +1,45 @@
+# Asks the HBase server(s) of the given role on the given host to reload their configuration from
+# conf/hbase-site.xml, like the shell's update_config command.
+#
+# Usage: hbase org.jruby.Main hbase-mesos-update-config.rb <master|regionserver> <hostname>
+
+include Java
+java_import org.apache.hadoop.hbase.HBaseConfiguration
+java_import org.apache.hadoop.hbase.client.ConnectionFactory
+
+role, hostname = ARGV
+if hostname.nil? || !%w(master regionserver).include?(role)
+  $stderr.puts 'Usage: hbase org.jruby.Main hbase-mesos-update-config.rb ' \
+    '<master|regionserver> <hostname>'
+  exit 2
+end
+
+def same_host?(server_name, hostname)
+  host = server_name.getHostname.downcase
+  host == hostname.downcase || host.split('.').first == hostname.downcase.split('.').first
+end
+
+connection = ConnectionFactory.createConnection(HBaseConfiguration.create)
+admin = connection.getAdmin
+updated = 0
+begin
+  status = admin.getClusterStatus
+  servers = if role == 'master'
+              [status.getMaster] + status.getBackupMasters.to_a
+            else
+              status.getServers.to_a
+            end
+  servers.compact.select { |server| same_host?(server, hostname) }.each do |server|
+    admin.updateConfiguration(server)
+    puts "Updated configuration of #{server}"
+    updated += 1
+  end
+ensure
+  admin.close
+  connection.close
+end
+
+if updated == 0
+  $stderr.puts "No #{role} found on #{hostname}"
+  exit 1
+end
@@ -0,0 +1,106 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.IHBaseStore;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Fixtures shared by the benchmarks: a framework config without a mesos-site.xml, a persistent
+ * store that does not need ZooKeeper and a driver that drops every call.
+ */
+final class BenchmarkSupport {
+
+  // the template the scheduler serves, when the benchmarks run from the project directory
+  private static final File HBASE_SITE_TEMPLATE =
+      new File("conf", HBaseConstants.HBASE_CONFIG_FILE_NAME);
+
+  private BenchmarkSupport() {
+  }
+
+  static HBaseFrameworkConfig createConfig() throws IOException {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    File workDir = Files.createTempDirectory("hbase-benchmarks").toFile();
+    workDir.deleteOnExit();
+    File template = new File(workDir, HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    if (HBASE_SITE_TEMPLATE.isFile()) {
+      Files.copy(HBASE_SITE_TEMPLATE.toPath(), template.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.write(template.toPath(), ("<configuration>"
+          + "<property><name>hbase.master</name><value>${primary1Hostname}:60000</value>"
+          + "</property>"
+          + "<property><name>hbase.rootdir</name><value>${hbaseRootDir}</value></property>"
+          + "<property><name>hbase.zookeeper.quorum</name><value>${haZookeeperQuorum}</value>"
+          + "</property></configuration>").getBytes(Charset.forName("UTF-8")));
+    }
+    template.deleteOnExit();
+
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.executor.path", workDir.getAbsolutePath());
+    conf.set("mesos.hbase.config.path", template.getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    conf.set("mesos.hbase.config.server.port", "0");
+    return new HBaseFrameworkConfig(conf);
+  }
+
+  static PersistentStateStore createStore(HBaseFrameworkConfig config, IHBaseStore hbaseStore) {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    return new PersistentStateStore(config, hbaseStore, new DeadNodeTracker(config, new Clock()));
+  }
+
+  /**
+   * A driver accepting every call, as if the master was infinitely fast.
+   */
+  static SchedulerDriver createDriver() {
+    return (SchedulerDriver) Proxy.newProxyInstance(SchedulerDriver.class.getClassLoader(),
+        new Class<?>[]{SchedulerDriver.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return method.getReturnType() == Protos.Status.class
+                ? Protos.Status.DRIVER_RUNNING : null;
+          }
+        });
+  }
+
+  static Protos.Offer createOffer(int i, double cpus, double mem) {
+    return Protos.Offer.newBuilder()
+        .setId(Protos.OfferID.newBuilder().setValue("offer" + i))
+        .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave" + i))
+        .setHostname(hostname(i))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("cpus")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(cpus)))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("mem")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(mem)))
+        .build();
+  }
+
+  static Protos.TaskID taskId(String taskType, int i) {
+    return Protos.TaskID.newBuilder()
+        .setValue(String.format("task.%s.%s.NodeExecutor.%d", taskType, taskType, i))
+        .build();
+  }
+
+  static String hostname(int i) {
+    return "host" + i + ".example.com";
+  }
+}
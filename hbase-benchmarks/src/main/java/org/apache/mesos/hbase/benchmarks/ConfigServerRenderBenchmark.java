@@ -0,0 +1,70 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.ConfigServer;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering hbase-site.xml as the ConfigServer does for every executor fetching it: reading the
+ * template, looking up the primary nodes and running the template engine. Uses conf/hbase-site.xml
+ * when run from the project directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+public class ConfigServerRenderBenchmark {
+
+  private ConfigServer server;
+
+  @Setup
+  public void setup() throws IOException {
+    HBaseFrameworkConfig config = BenchmarkSupport.createConfig();
+    PersistentStateStore store = BenchmarkSupport.createStore(config, new HBaseDevelopmentStore());
+    for (int i = 0; i < HBaseConstants.TOTAL_MASTER_NODES; i++) {
+      store.addHBaseNode(BenchmarkSupport.taskId(HBaseConstants.MASTER_NODE_ID, i),
+          BenchmarkSupport.hostname(i), HBaseConstants.MASTER_NODE_ID,
+          HBaseConstants.MASTER_NODE_ID + (i + 1));
+    }
+    Clock clock = new Clock();
+    server = new ConfigServer(config, store, new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(config, store, new LiveState(clock), clock),
+        new ClusterTelemetry(config, clock), new MetricsRegistry(),
+        new DataNodeLocator(config, clock));
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Benchmark
+  public String renderHbaseSite() throws IOException {
+    return server.renderHbaseSite(BenchmarkSupport.hostname(0));
+  }
+}
@@ -0,0 +1,64 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.HBaseZkStore;
+import org.apache.mesos.hbase.state.IHBaseStore;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The in-memory development store behaving more like ZooKeeper: every call waits for a round trip
+ * and objects are serialized, so callers cannot mutate what is stored.
+ */
+class LatencyInjectingStore implements IHBaseStore {
+
+  private final HBaseDevelopmentStore delegate = new HBaseDevelopmentStore();
+  private final long latencyNanos;
+
+  LatencyInjectingStore(long latencyMicros) {
+    this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+  }
+
+  @Override
+  public byte[] getRawValueForId(String id) throws ExecutionException, InterruptedException {
+    roundTrip();
+    return delegate.getRawValueForId(id);
+  }
+
+  @Override
+  public void setRawValueForId(String id, byte[] value) throws ExecutionException,
+      InterruptedException {
+    roundTrip();
+    delegate.setRawValueForId(id, value);
+  }
+
+  @Override
+  public <T> T get(String key) throws InterruptedException, ExecutionException, IOException,
+      ClassNotFoundException {
+    roundTrip();
+    byte[] value = delegate.get(key);
+    return value == null ? null : HBaseZkStore.<T>deserialize(value);
+  }
+
+  @Override
+  public <T> void set(String key, T object) throws InterruptedException, ExecutionException,
+      IOException {
+    roundTrip();
+    delegate.set(key, HBaseZkStore.serialize(object));
+  }
+
+  private void roundTrip() {
+    if (latencyNanos == 0) {
+      return;
+    }
+    // parkNanos may return early, a round trip must not
+    long deadline = System.nanoTime() + latencyNanos;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LiveState bookkeeping done on every status update and offer, over clusters of runningTasks
+ * tasks whose health reports alternate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LiveStateBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  int runningTasks;
+
+  private LiveState liveState;
+  private Protos.TaskStatus[] statuses;
+  private int next;
+
+  @Setup
+  public void setup() {
+    liveState = new LiveState(new Clock());
+    statuses = new Protos.TaskStatus[runningTasks * 2];
+    for (int i = 0; i < runningTasks; i++) {
+      String taskType = i < HBaseConstants.TOTAL_MASTER_NODES
+          ? HBaseConstants.MASTER_NODE_ID : HBaseConstants.SLAVE_NODE_ID;
+      Protos.TaskStatus.Builder status = Protos.TaskStatus.newBuilder()
+          .setTaskId(BenchmarkSupport.taskId(taskType, i))
+          .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave" + i))
+          .setState(Protos.TaskState.TASK_RUNNING);
+      statuses[i * 2] = status.setHealthy(true).build();
+      statuses[i * 2 + 1] = status.setHealthy(i % 10 != 0).build();
+      liveState.updateTaskForStatus(statuses[i * 2]);
+    }
+  }
+
+  @Benchmark
+  public void stagingToRunning() {
+    Protos.TaskStatus status = statuses[next];
+    next = (next + 1) % statuses.length;
+    liveState.addStagingTask(status.getTaskId());
+    liveState.removeStagingTask(status.getTaskId());
+    liveState.updateTaskForStatus(status);
+  }
+
+  @Benchmark
+  public int getMasterNodeSize() {
+    return liveState.getMasterNodeSize();
+  }
+
+  @Benchmark
+  public List<String> getTasksUnhealthyFor() {
+    return liveState.getTasksUnhealthyFor(0);
+  }
+}
@@ -0,0 +1,81 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersistentStateStore operations of the offer and status paths with a store round trip of
+ * latencyMicros, 0 for the serialization cost alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+public class PersistentStateStoreBenchmark {
+
+  @Param({"100", "1000"})
+  int nodes;
+
+  @Param({"0", "500"})
+  long latencyMicros;
+
+  private PersistentStateStore store;
+  private Protos.TaskID newTaskId;
+  private String newHostname;
+  private String lastHostname;
+
+  @Setup
+  public void setup() throws IOException {
+    store = BenchmarkSupport.createStore(BenchmarkSupport.createConfig(),
+        new LatencyInjectingStore(latencyMicros));
+    for (int i = 0; i < nodes; i++) {
+      store.addHBaseNode(BenchmarkSupport.taskId(HBaseConstants.SLAVE_NODE_ID, i),
+          BenchmarkSupport.hostname(i), HBaseConstants.SLAVE_NODE_ID,
+          HBaseConstants.SLAVE_NODE_ID);
+    }
+    newTaskId = BenchmarkSupport.taskId(HBaseConstants.SLAVE_NODE_ID, nodes);
+    newHostname = BenchmarkSupport.hostname(nodes);
+    lastHostname = BenchmarkSupport.hostname(nodes - 1);
+  }
+
+  @Benchmark
+  public void addAndRemoveRegionServer() {
+    store.addHBaseNode(newTaskId, newHostname, HBaseConstants.SLAVE_NODE_ID,
+        HBaseConstants.SLAVE_NODE_ID);
+    store.removeTaskId(newTaskId.getValue());
+  }
+
+  @Benchmark
+  public boolean slaveNodeRunningOnSlave() {
+    return store.slaveNodeRunningOnSlave(lastHostname);
+  }
+
+  @Benchmark
+  public List<String> getDeadDataNodes() {
+    return store.getDeadDataNodes();
+  }
+
+  @Benchmark
+  public Map<String, String> getRegionNodes() {
+    return store.getRegionNodes();
+  }
+}
@@ -0,0 +1,89 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.HBaseScheduler;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.AcquisitionPhase;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One resourceOffers callback with thousands of offers none of which is used, the common case
+ * once the cluster is complete: "small" offers fail the resource check, "occupied" offers come
+ * from hosts already running a region server and go through the persistent state lookups.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=benchmark-logback.xml")
+public class ResourceOffersBenchmark {
+
+  @Param({"1000", "5000"})
+  int offers;
+
+  @Param({"small", "occupied"})
+  String kind;
+
+  private HBaseScheduler scheduler;
+  private SchedulerDriver driver;
+  private List<Protos.Offer> offerList;
+
+  @Setup
+  public void setup() throws IOException {
+    HBaseFrameworkConfig config = BenchmarkSupport.createConfig();
+    PersistentStateStore store = BenchmarkSupport.createStore(config, new HBaseDevelopmentStore());
+    Clock clock = new Clock();
+    LiveState liveState = new LiveState(clock);
+    liveState.transitionTo(AcquisitionPhase.SLAVE_NODES);
+    scheduler = new HBaseScheduler(config, liveState, store, new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(config, store, liveState, clock),
+        new ClusterTelemetry(config, clock), new MetricsRegistry(),
+        new DataNodeLocator(config, clock), clock);
+    driver = BenchmarkSupport.createDriver();
+
+    boolean small = "small".equals(kind);
+    offerList = new ArrayList<>(offers);
+    for (int i = 0; i < offers; i++) {
+      offerList.add(small
+          ? BenchmarkSupport.createOffer(i, 0.1, 64)
+          : BenchmarkSupport.createOffer(i, 32, 256 * 1024));
+      if (!small) {
+        store.addHBaseNode(BenchmarkSupport.taskId(HBaseConstants.SLAVE_NODE_ID, i),
+            BenchmarkSupport.hostname(i), HBaseConstants.SLAVE_NODE_ID,
+            HBaseConstants.SLAVE_NODE_ID);
+      }
+    }
+  }
+
+  @Benchmark
+  public void resourceOffers() {
+    scheduler.resourceOffers(driver, offerList);
+  }
+}
@@ -0,0 +1,59 @@
+package org.apache.mesos.hbase.benchmarks;
+
+import org.apache.mesos.hbase.state.HBaseZkStore;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Java serialization HBaseZkStore applies to every value, for host to task id maps the size
+ * of the region server map of large clusters. The ZooKeeper round trip itself is not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZkSerializationBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  int entries;
+
+  private HashMap<String, String> map;
+  private byte[] serialized;
+
+  @Setup
+  public void setup() throws IOException {
+    map = new HashMap<>();
+    for (int i = 0; i < entries; i++) {
+      map.put(BenchmarkSupport.hostname(i),
+          BenchmarkSupport.taskId(HBaseConstants.SLAVE_NODE_ID, i).getValue());
+    }
+    serialized = HBaseZkStore.serialize(map);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return HBaseZkStore.serialize(map);
+  }
+
+  @Benchmark
+  public Map<String, String> deserialize() throws IOException, ClassNotFoundException {
+    return HBaseZkStore.deserialize(serialized);
+  }
+}
@@ -5,10 +5,16 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.mesos.hbase.util.HBaseConstants;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Provides executor configurations for launching processes at the slave leveraging hadoop
@@ -23,17 +29,89 @@ public class HBaseFrameworkConfig {
   private static final int DEFAULT_EXECUTOR_HEAP_SIZE = 256;
   private static final int DEFAULT_SLAVENODE_HEAP_SIZE = 1024;
   private static final int DEFAULT_MASTERNODE_HEAP_SIZE = 4096;
+  private static final int DEFAULT_RESTNODE_HEAP_SIZE = 1024;
+  private static final int DEFAULT_THRIFTNODE_HEAP_SIZE = 1024;
 
   private static final double DEFAULT_CPUS = 0.5;
   private static final double DEFAULT_EXECUTOR_CPUS = DEFAULT_CPUS;
   private static final double DEFAULT_PRIMARYNODE_CPUS = 1;
   private static final double DEFAULT_DATANODE_CPUS = 1;
+  private static final double DEFAULT_RESTNODE_CPUS = 1;
+  private static final int DEFAULT_REST_PORT = 8080;
+  private static final double DEFAULT_THRIFTNODE_CPUS = 1;
+  private static final int DEFAULT_THRIFT_PORT = 9090;
+  private static final int DEFAULT_THRIFT_WORKERS_PER_CPU = 8;
+  private static final int DEFAULT_THRIFT_MAX_WORKERS = 256;
 
   private static final double DEFAULT_JVM_OVERHEAD = 1.15;
   private static final int DEFAULT_FAILOVER_TIMEOUT = 31449600;
   private static final int DEFAULT_ZK_TIME_MS = 20000;
   private static final int DEFAULT_RECONCILIATION_TIMEOUT = 30;
   private static final int DEFAULT_DEADNODE_TIMEOUT = 90;
+  private static final int DEFAULT_PEER_FANOUT = 4;
+  private static final int DEFAULT_CONFIG_LONGPOLL_TIMEOUT_MS = 30000;
+  private static final int DEFAULT_CONFIG_SERVER_MIN_THREADS = 8;
+  private static final int DEFAULT_CONFIG_SERVER_MAX_THREADS = 200;
+  private static final int DEFAULT_CONFIG_SERVER_MAX_CONNECTIONS = 5000;
+  private static final int DEFAULT_CONFIG_SERVER_ACCEPT_QUEUE = 1024;
+  private static final int DEFAULT_CONFIG_SERVER_IDLE_TIMEOUT_MS = 60000;
+  private static final int DEFAULT_CONFIG_FETCH_THREADS = 3;
+  private static final int DEFAULT_CONFIG_FETCH_RETRIES = 4;
+  private static final int DEFAULT_CONFIG_FETCH_BACKOFF_MS = 250;
+  private static final int DEFAULT_CONFIG_FETCH_TIMEOUT_MS = 10000;
+  private static final int DEFAULT_LOG_PUMP_BUFFER_KB = 64;
+  private static final int DEFAULT_LOG_PUMP_BUFFERS = 32;
+  private static final int DEFAULT_LOG_MAX_FILE_MB = 64;
+  private static final int DEFAULT_LOG_MAX_BACKUPS = 4;
+  private static final int DEFAULT_GRACEFUL_STOP_TIMEOUT = 300;
+  private static final int DEFAULT_ROLLING_SETTLE_SECONDS = 30;
+  private static final int DEFAULT_ROLLING_BATCH_TIMEOUT_SECONDS = 900;
+  private static final int DEFAULT_ROLLING_RIT_POLL_SECONDS = 5;
+  private static final int DEFAULT_MASTER_INFO_PORT = 16010;
+  private static final int DEFAULT_RESTART_BACKOFF_MS = 1000;
+  private static final int DEFAULT_RESTART_MAX_BACKOFF_MS = 60000;
+  private static final int DEFAULT_CRASH_LOOP_RESTARTS = 5;
+  private static final int DEFAULT_CRASH_LOOP_WINDOW_SECONDS = 600;
+  private static final int DEFAULT_STABLE_UPTIME_SECONDS = 300;
+  private static final int DEFAULT_HEALTH_INTERVAL_SECONDS = 15;
+  private static final int DEFAULT_HEALTH_STARTUP_GRACE_SECONDS = 180;
+  private static final int DEFAULT_HEALTH_FAILURES = 3;
+  private static final int DEFAULT_HEALTH_REPORT_SECONDS = 300;
+  private static final int DEFAULT_UNHEALTHY_KILL_SECONDS = 60;
+  private static final int DEFAULT_WARMUP_TIMEOUT_SECONDS = 600;
+  private static final int DEFAULT_TELEMETRY_SAMPLE_SECONDS = 5;
+  private static final int DEFAULT_TELEMETRY_REPORT_SECONDS = 60;
+  private static final int DEFAULT_HDFS_LOCALITY_REFRESH_SECONDS = 60;
+  private static final int DEFAULT_HDFS_LOCALITY_WAIT_SECONDS = 60;
+  private static final int DEFAULT_VOLUME_SIZE_MB = 10240;
+  // largest heap with compressed oops
+  private static final int DEFAULT_SLAVE_MAX_HEAP_MB = 31744;
+  private static final int DEFAULT_DIRECT_MEMORY_RESERVE_MB = 1024;
+  private static final int DEFAULT_HANDLERS_PER_CPU = 10;
+  private static final int DEFAULT_BUCKETCACHE_SIZE_MB = 4096;
+  private static final int DEFAULT_G1_MIN_HEAP_MB = 8192;
+  private static final int DEFAULT_G1_PAUSE_MS = 100;
+  private static final int DEFAULT_GC_LOG_FILES = 5;
+  private static final int DEFAULT_GC_LOG_FILE_MB = 64;
+  // Keys HBase 1.x applies on update_config, the compaction and split settings
+  private static final String[] DEFAULT_ONLINE_RELOADABLE_KEYS = {
+      "hbase.hstore.compaction.min",
+      "hbase.hstore.compaction.max",
+      "hbase.hstore.compaction.min.size",
+      "hbase.hstore.compaction.max.size",
+      "hbase.hstore.compaction.max.size.offpeak",
+      "hbase.hstore.compaction.ratio",
+      "hbase.hstore.compaction.ratio.offpeak",
+      "hbase.hstore.min.locality.to.skip.major.compact",
+      "hbase.hregion.majorcompaction",
+      "hbase.hregion.majorcompaction.jitter",
+      "hbase.offpeak.start.hour",
+      "hbase.offpeak.end.hour",
+      "hbase.regionserver.thread.compaction.large",
+      "hbase.regionserver.thread.compaction.small",
+      "hbase.regionserver.thread.compaction.throttle",
+      "hbase.regionserver.thread.split"
+  };
 
   private final Log log = LogFactory.getLog(HBaseFrameworkConfig.class);
 
@@ -59,6 +137,18 @@ public class HBaseFrameworkConfig {
     setConf(configuration);
   }
 
+  /**
+   * @return a copy of this configuration with the given properties overridden, e.g. for tools
+   * running the scheduler offline
+   */
+  public HBaseFrameworkConfig withProperties(Map<String, String> properties) {
+    Configuration configuration = new Configuration(getConf());
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      configuration.set(property.getKey(), property.getValue());
+    }
+    return new HBaseFrameworkConfig(configuration);
+  }
+
   public String getPrincipal() {
     return getConf().get("mesos.hbase.principal", "");
   }
@@ -108,6 +198,14 @@ public class HBaseFrameworkConfig {
     return getConf().getInt("mesos.hbase.master.heap.size", DEFAULT_MASTERNODE_HEAP_SIZE);
   }
 
+  public int getRestNodeHeapSize() {
+    return getConf().getInt("mesos.hbase.rest.heap.size", DEFAULT_RESTNODE_HEAP_SIZE);
+  }
+
+  public int getThriftNodeHeapSize() {
+    return getConf().getInt("mesos.hbase.thrift.heap.size", DEFAULT_THRIFTNODE_HEAP_SIZE);
+  }
+
   public int getExecutorHeap() {
     return getConf().getInt("mesos.hbase.executor.heap.size", DEFAULT_EXECUTOR_HEAP_SIZE);
   }
@@ -121,6 +219,12 @@ public class HBaseFrameworkConfig {
       case "slavenode":
         size = getSlaveNodeHeapSize();
         break;
+      case "restnode":
+        size = getRestNodeHeapSize();
+        break;
+      case "thriftnode":
+        size = getThriftNodeHeapSize();
+        break;
       default:
         final String msg = "Invalid request for heapsize for taskName = " + taskName;
         log.error(msg);
@@ -133,22 +237,73 @@ public class HBaseFrameworkConfig {
     return getConf().getDouble("mesos.hbase.jvm.overhead", DEFAULT_JVM_OVERHEAD);
   }
 
+  // Options of every HBase process, the collector comes from the GC profile of the role
   public String getJvmOpts() {
     return getConf().get(
         "mesos.hbase.jvm.opts", ""
-            + "-XX:+UseConcMarkSweepGC "
-            + "-XX:+CMSClassUnloadingEnabled "
-            + "-XX:+UseTLAB "
-            + "-XX:+AggressiveOpts "
-            + "-XX:+UseCompressedOops "
-            + "-XX:+UseFastEmptyMethods "
-            + "-XX:+UseFastAccessorMethods "
             + "-Xss256k "
             + "-XX:+AlwaysPreTouch "
-            + "-XX:+UseParNewGC "
             + "-Djava.library.path=/usr/lib:/usr/local/lib:lib/native");
   }
 
+  // GC profile of the masters, a small heap with little garbage
+  public String getMasterGcOpts() {
+    return getConf().get(
+        "mesos.hbase.master.gc.opts", ""
+            + "-XX:+UseConcMarkSweepGC "
+            + "-XX:+UseParNewGC "
+            + "-XX:CMSInitiatingOccupancyFraction=70 "
+            + "-XX:+UseCMSInitiatingOccupancyOnly "
+            + "-XX:+CMSClassUnloadingEnabled "
+            + "-XX:ParallelGCThreads=4");
+  }
+
+  // GC profile of region servers with a heap below the G1 threshold
+  public String getSlaveCmsGcOpts() {
+    return getConf().get(
+        "mesos.hbase.slave.cms.gc.opts", ""
+            + "-XX:+UseConcMarkSweepGC "
+            + "-XX:+UseParNewGC "
+            + "-XX:CMSInitiatingOccupancyFraction=70 "
+            + "-XX:+UseCMSInitiatingOccupancyOnly "
+            + "-XX:+CMSParallelRemarkEnabled "
+            + "-XX:+CMSClassUnloadingEnabled");
+  }
+
+  // GC profile of region servers with a large heap, the pause target and region size are added
+  public String getSlaveG1GcOpts() {
+    return getConf().get(
+        "mesos.hbase.slave.g1.gc.opts", ""
+            + "-XX:+UseG1GC "
+            + "-XX:InitiatingHeapOccupancyPercent=65 "
+            + "-XX:+ParallelRefProcEnabled "
+            + "-XX:-ResizePLAB");
+  }
+
+  // Smallest region server heap which gets the G1 profile
+  public int getSlaveG1MinHeapSize() {
+    return getConf().getInt("mesos.hbase.slave.g1.min.heap.mb", DEFAULT_G1_MIN_HEAP_MB);
+  }
+
+  // -XX:MaxGCPauseMillis of the G1 profile
+  public int getSlaveG1PauseMillis() {
+    return getConf().getInt("mesos.hbase.slave.g1.pause.ms", DEFAULT_G1_PAUSE_MS);
+  }
+
+  // -XX:G1HeapRegionSize of the G1 profile, 0 derives it from the heap
+  public int getSlaveG1RegionSize() {
+    return getConf().getInt("mesos.hbase.slave.g1.region.size.mb", 0);
+  }
+
+  // GC logs kept by the rotation of each HBase process
+  public int getGcLogFiles() {
+    return getConf().getInt("mesos.hbase.gc.log.files", DEFAULT_GC_LOG_FILES);
+  }
+
+  public int getGcLogFileSize() {
+    return getConf().getInt("mesos.hbase.gc.log.file.size.mb", DEFAULT_GC_LOG_FILE_MB);
+  }
+
   public double getExecutorCpus() {
     return getConf().getDouble("mesos.hbase.executor.cpus", DEFAULT_EXECUTOR_CPUS);
   }
@@ -161,6 +316,14 @@ public class HBaseFrameworkConfig {
     return getConf().getDouble("mesos.hbase.slave.cpus", DEFAULT_DATANODE_CPUS);
   }
 
+  public double getRestNodeCpus() {
+    return getConf().getDouble("mesos.hbase.rest.cpus", DEFAULT_RESTNODE_CPUS);
+  }
+
+  public double getThriftNodeCpus() {
+    return getConf().getDouble("mesos.hbase.thrift.cpus", DEFAULT_THRIFTNODE_CPUS);
+  }
+
   public double getTaskCpus(String taskName) {
     double cpus = DEFAULT_CPUS;
     switch (taskName) {
@@ -170,6 +333,12 @@ public class HBaseFrameworkConfig {
       case "slavenode":
         cpus = getSlaveNodeCpus();
         break;
+      case "restnode":
+        cpus = getRestNodeCpus();
+        break;
+      case "thriftnode":
+        cpus = getThriftNodeCpus();
+        break;
       default:
         final String msg = "Invalid request for CPUs for taskName= " + taskName;
         log.error(msg);
@@ -206,6 +375,103 @@ public class HBaseFrameworkConfig {
     return getConf().get("mesos.hbase.secondary.data.dir", "/var/run/hadoop-hbase");
   }
 
+  // Region servers reserve their resources and keep the data dir on a persistent volume, so they
+  // are relaunched onto the same host and local state; needs a role and a principal
+  public boolean usingPersistentVolumes() {
+    return getConf().getBoolean("mesos.hbase.slave.persistent.volume", false);
+  }
+
+  public int getPersistentVolumeSize() {
+    return getConf().getInt("mesos.hbase.slave.volume.size.mb", DEFAULT_VOLUME_SIZE_MB);
+  }
+
+  // Path of the volume in the sandbox, the data dir is linked to it
+  public String getPersistentVolumePath() {
+    return getConf().get("mesos.hbase.slave.volume.path", "hbase-data");
+  }
+
+  // HDFS storage policy of the WALs, e.g. ONE_SSD or ALL_SSD for the SSD volumes of the DataNodes
+  public String getWalStoragePolicy() {
+    return getConf().get("mesos.hbase.wal.storage.policy", "");
+  }
+
+  // WAL groups per region server, more than one spreads the WAL writes over several disks
+  public int getWalGroups() {
+    return getConf().getInt("mesos.hbase.wal.groups", 1);
+  }
+
+  // Directory on a local SSD of the region server hosts for the bucket cache file
+  public String getBucketCacheDir() {
+    return getConf().get("mesos.hbase.bucketcache.dir", "");
+  }
+
+  // Region server BucketCache: none, offheap or file. Without a setting the cache is a file in
+  // mesos.hbase.bucketcache.dir if set, off-heap for region servers sized to their offer
+  public String getBucketCacheMode() {
+    String mode = getConf().getTrimmed("mesos.hbase.bucketcache.mode");
+    if (mode != null && !mode.isEmpty()) {
+      return mode;
+    } else if (!getBucketCacheDir().isEmpty()) {
+      return HBaseConstants.BUCKETCACHE_FILE;
+    }
+    return getSlaveResourceFraction() > 0 ? HBaseConstants.BUCKETCACHE_OFFHEAP
+        : HBaseConstants.BUCKETCACHE_NONE;
+  }
+
+  // Cache size of region servers with fixed sizes and of file caches
+  public int getBucketCacheSize() {
+    return getConf().getInt("mesos.hbase.bucketcache.size.mb", DEFAULT_BUCKETCACHE_SIZE_MB);
+  }
+
+  // The file cache goes to mesos.hbase.bucketcache.dir, or next to the data on the data dir
+  public String getBucketCacheFile() {
+    String dir = getBucketCacheDir().isEmpty()
+        ? new File(getDataDir(), "bucketcache").getPath() : getBucketCacheDir();
+    return new File(dir, HBaseConstants.BUCKETCACHE_FILE_NAME).getPath();
+  }
+
+  // Direct memory of a region server with fixed sizes, the off-heap cache and a reserve
+  public int getSlaveNodeDirectMemory() {
+    if (HBaseConstants.BUCKETCACHE_OFFHEAP.equals(getBucketCacheMode())) {
+      return getBucketCacheSize() + getDirectMemoryReserve();
+    }
+    return 0;
+  }
+
+  // Share of the offered cpus and memory a region server takes, 0 for the fixed slave sizes
+  public double getSlaveResourceFraction() {
+    return getConf().getDouble("mesos.hbase.slave.resource.fraction", 0);
+  }
+
+  // Share of a sized region server's memory for the heap, the rest is direct memory
+  public double getSlaveHeapFraction() {
+    return getConf().getDouble("mesos.hbase.slave.heap.fraction", 0.5);
+  }
+
+  public int getSlaveMaxHeapSize() {
+    return getConf().getInt("mesos.hbase.slave.heap.max.mb", DEFAULT_SLAVE_MAX_HEAP_MB);
+  }
+
+  // Direct memory of a sized region server kept for HDFS and RPC buffers, not for the cache
+  public int getDirectMemoryReserve() {
+    return getConf().getInt("mesos.hbase.slave.direct.reserve.mb",
+        DEFAULT_DIRECT_MEMORY_RESERVE_MB);
+  }
+
+  // hfile.block.cache.size of a sized region server, the on-heap L1 cache
+  public double getSlaveBlockCacheFraction() {
+    return getConf().getDouble("mesos.hbase.slave.blockcache.fraction", 0.25);
+  }
+
+  // hbase.regionserver.global.memstore.size of a sized region server
+  public double getSlaveMemstoreFraction() {
+    return getConf().getDouble("mesos.hbase.slave.memstore.fraction", 0.4);
+  }
+
+  public int getSlaveHandlersPerCpu() {
+    return getConf().getInt("mesos.hbase.slave.handlers.per.cpu", DEFAULT_HANDLERS_PER_CPU);
+  }
+
   public String getHaZookeeperQuorum() {
     return getConf().get("mesos.hbase.zkfc.ha.zookeeper.quorum", "localhost:2181");
   }
@@ -222,6 +488,128 @@ public class HBaseFrameworkConfig {
     return getConf().get("dfs.nameservices", "hdfs");
   }
 
+  // Region servers prefer hosts running an HDFS DataNode, so they can read blocks locally
+  public boolean usingHdfsLocality() {
+    return getConf().getBoolean("mesos.hbase.hdfs.locality", true);
+  }
+
+  // Name of the mesos-hdfs framework whose DataNode tasks are looked up in the master state
+  public String getHdfsFrameworkName() {
+    return getConf().get("mesos.hbase.hdfs.framework.name", "hdfs");
+  }
+
+  // DataNode hosts of an HDFS cluster running outside of Mesos
+  public Set<String> getHdfsDataNodeHosts() {
+    return new HashSet<>(Arrays.asList(getConf().getTrimmedStrings(
+        "mesos.hbase.hdfs.datanode.hosts")));
+  }
+
+  // How often the DataNode hosts are looked up again in the master state
+  public int getHdfsLocalityRefreshInterval() {
+    return getConf().getInt("mesos.hbase.hdfs.locality.refresh.seconds",
+        DEFAULT_HDFS_LOCALITY_REFRESH_SECONDS);
+  }
+
+  // How long offers of other hosts are declined while DataNode hosts are still free
+  public int getHdfsLocalityWait() {
+    return getConf().getInt("mesos.hbase.hdfs.locality.wait.seconds",
+        DEFAULT_HDFS_LOCALITY_WAIT_SECONDS);
+  }
+
+  // Nodes on a DataNode host read local blocks through the DataNode's domain socket
+  public boolean usingShortCircuitReads() {
+    return getConf().getBoolean("mesos.hbase.hdfs.shortcircuit", true);
+  }
+
+  // Must match dfs.domain.socket.path of the DataNodes
+  public String getDfsDomainSocketPath() {
+    return getConf().get("mesos.hbase.hdfs.domain.socket.path",
+        "/var/lib/hadoop-hdfs/dn_socket");
+  }
+
+  // Placement constraints on offer attributes for masters, e.g. "rack:UNIQUE;hwclass:LIKE:ssd.*"
+  public String getMasterNodeConstraints() {
+    return getConf().get("mesos.hbase.master.constraints", "");
+  }
+
+  // Placement constraints on offer attributes for region servers, e.g. "rack:GROUP_BY"
+  public String getSlaveNodeConstraints() {
+    return getConf().get("mesos.hbase.slave.constraints", "");
+  }
+
+  // Region servers the framework runs, one per host, a negative count runs one on every host
+  public int getSlaveNodeCount() {
+    return getConf().getInt("mesos.hbase.slave.count", -1);
+  }
+
+  // REST gateways the framework runs, one per host
+  public int getRestNodeCount() {
+    return getConf().getInt("mesos.hbase.rest.count", 0);
+  }
+
+  // hbase.rest.port of the REST gateways
+  public int getRestPort() {
+    return getConf().getInt("mesos.hbase.rest.port", DEFAULT_REST_PORT);
+  }
+
+  // REST gateways only run on hosts of region servers, next to the regions they serve
+  public boolean usingRestNodesOnRegionServerHosts() {
+    return getConf().getBoolean("mesos.hbase.rest.colocate", true);
+  }
+
+  // Placement constraints on offer attributes for REST gateways
+  public String getRestNodeConstraints() {
+    return getConf().get("mesos.hbase.rest.constraints", "");
+  }
+
+  // Thrift gateways the framework runs, one per host
+  public int getThriftNodeCount() {
+    return getConf().getInt("mesos.hbase.thrift.count", 0);
+  }
+
+  // Configured count of a node type the scale API can change
+  public int getNodeCount(String taskName) {
+    switch (taskName) {
+      case "slavenode":
+        return getSlaveNodeCount();
+      case "restnode":
+        return getRestNodeCount();
+      case "thriftnode":
+        return getThriftNodeCount();
+      default:
+        throw new ConfigurationException("Node type " + taskName + " has no count");
+    }
+  }
+
+  // hbase.regionserver.thrift.port of the Thrift gateways
+  public int getThriftPort() {
+    return getConf().getInt("mesos.hbase.thrift.port", DEFAULT_THRIFT_PORT);
+  }
+
+  // Server type of the Thrift gateways, threadedselector or hsha
+  public String getThriftServerType() {
+    return getConf().get("mesos.hbase.thrift.server.type", "threadedselector");
+  }
+
+  // Worker threads of a Thrift gateway per cpu offered on its host
+  public int getThriftWorkersPerCpu() {
+    return getConf().getInt("mesos.hbase.thrift.workers.per.cpu", DEFAULT_THRIFT_WORKERS_PER_CPU);
+  }
+
+  public int getThriftMaxWorkers() {
+    return getConf().getInt("mesos.hbase.thrift.max.workers", DEFAULT_THRIFT_MAX_WORKERS);
+  }
+
+  // Thrift gateways only run on hosts of region servers, next to the regions they serve
+  public boolean usingThriftNodesOnRegionServerHosts() {
+    return getConf().getBoolean("mesos.hbase.thrift.colocate", true);
+  }
+
+  // Placement constraints on offer attributes for Thrift gateways
+  public String getThriftNodeConstraints() {
+    return getConf().get("mesos.hbase.thrift.constraints", "");
+  }
+
   public String getStateZkServers() {
     return getConf().get("mesos.hbase.state.zk", "localhost:2181");
   }
@@ -260,6 +648,247 @@ public class HBaseFrameworkConfig {
     return Integer.parseInt(configServerPortString);
   }
 
+  // -1 lets jetty size acceptors and selectors from the number of cores
+  public int getConfigServerAcceptors() {
+    return getConf().getInt("mesos.hbase.config.server.acceptors", -1);
+  }
+
+  public int getConfigServerSelectors() {
+    return getConf().getInt("mesos.hbase.config.server.selectors", -1);
+  }
+
+  public int getConfigServerMinThreads() {
+    return getConf().getInt("mesos.hbase.config.server.min.threads",
+        DEFAULT_CONFIG_SERVER_MIN_THREADS);
+  }
+
+  public int getConfigServerMaxThreads() {
+    return getConf().getInt("mesos.hbase.config.server.max.threads",
+        DEFAULT_CONFIG_SERVER_MAX_THREADS);
+  }
+
+  // Clients past this wait in the accept queue, every executor holds one long-poll connection
+  public int getConfigServerMaxConnections() {
+    return getConf().getInt("mesos.hbase.config.server.max.connections",
+        DEFAULT_CONFIG_SERVER_MAX_CONNECTIONS);
+  }
+
+  public int getConfigServerAcceptQueueSize() {
+    return getConf().getInt("mesos.hbase.config.server.accept.queue",
+        DEFAULT_CONFIG_SERVER_ACCEPT_QUEUE);
+  }
+
+  // Must stay above the long-poll timeout, otherwise parked config watches are cut off
+  public int getConfigServerIdleTimeout() {
+    return getConf().getInt("mesos.hbase.config.server.idle.timeout.ms",
+        DEFAULT_CONFIG_SERVER_IDLE_TIMEOUT_MS);
+  }
+
+  // Bearer token of the ConfigServer's admin requests, empty refuses them all
+  public String getAdminSecret() {
+    return getConf().getTrimmed("mesos.hbase.admin.secret", "");
+  }
+
+  public boolean usingConfigLongPoll() {
+    return Boolean.valueOf(getConf().get("mesos.hbase.config.longpoll", "true"));
+  }
+
+  public int getConfigLongPollTimeout() {
+    return getConf().getInt("mesos.hbase.config.longpoll.timeout.ms",
+        DEFAULT_CONFIG_LONGPOLL_TIMEOUT_MS);
+  }
+
+  public int getConfigFetchThreads() {
+    return getConf().getInt("mesos.hbase.config.fetch.threads", DEFAULT_CONFIG_FETCH_THREADS);
+  }
+
+  public int getConfigFetchRetries() {
+    return getConf().getInt("mesos.hbase.config.fetch.retries", DEFAULT_CONFIG_FETCH_RETRIES);
+  }
+
+  // Doubled after every failed attempt
+  public int getConfigFetchBackoff() {
+    return getConf().getInt("mesos.hbase.config.fetch.backoff.ms",
+        DEFAULT_CONFIG_FETCH_BACKOFF_MS);
+  }
+
+  public int getConfigFetchTimeout() {
+    return getConf().getInt("mesos.hbase.config.fetch.timeout.ms",
+        DEFAULT_CONFIG_FETCH_TIMEOUT_MS);
+  }
+
+  public boolean usingOnlineConfigReload() {
+    return Boolean.valueOf(getConf().get("mesos.hbase.online.reload", "true"));
+  }
+
+  public Set<String> getOnlineReloadableKeys() {
+    return new HashSet<>(Arrays.asList(getConf().getTrimmedStrings(
+        "mesos.hbase.online.reload.keys", DEFAULT_ONLINE_RELOADABLE_KEYS)));
+  }
+
+  public int getLogPumpBufferSize() {
+    return getConf().getInt("mesos.hbase.log.pump.buffer.kb", DEFAULT_LOG_PUMP_BUFFER_KB) * 1024;
+  }
+
+  // Output beyond buffers * buffer size waiting for the disk is dropped and counted
+  public int getLogPumpBuffers() {
+    return getConf().getInt("mesos.hbase.log.pump.buffers", DEFAULT_LOG_PUMP_BUFFERS);
+  }
+
+  public long getLogMaxFileSize() {
+    return getConf().getLong("mesos.hbase.log.max.file.mb", DEFAULT_LOG_MAX_FILE_MB) * 1024 * 1024;
+  }
+
+  public int getLogMaxBackups() {
+    return getConf().getInt("mesos.hbase.log.max.backups", DEFAULT_LOG_MAX_BACKUPS);
+  }
+
+  public boolean usingGracefulStop() {
+    return Boolean.valueOf(getConf().get("mesos.hbase.graceful.stop", "true"));
+  }
+
+  // Deadline for unloading regions and stopping HBase before the process is killed, keep the
+  // slave's --executor_shutdown_grace_period above it
+  public int getGracefulStopTimeout() {
+    return getConf().getInt("mesos.hbase.graceful.stop.timeout.seconds",
+        DEFAULT_GRACEFUL_STOP_TIMEOUT);
+  }
+
+  // Passed to region_mover.rb as --maxthreads when above 1
+  public int getRegionMoverThreads() {
+    return getConf().getInt("mesos.hbase.region.mover.threads", 1);
+  }
+
+  public int getRollingRestartBatchSize() {
+    return getConf().getInt("mesos.hbase.rolling.batch.size", 1);
+  }
+
+  // How long a restarted batch has to stay up without regions in transition before the next one
+  public int getRollingRestartSettleTime() {
+    return getConf().getInt("mesos.hbase.rolling.settle.seconds", DEFAULT_ROLLING_SETTLE_SECONDS);
+  }
+
+  // How often the masters are asked for regions in transition while a batch settles
+  public int getRollingRestartRitPollInterval() {
+    return getConf().getInt("mesos.hbase.rolling.rit.poll.seconds",
+        DEFAULT_ROLLING_RIT_POLL_SECONDS);
+  }
+
+  // A batch not back and settled within this time pauses the rolling restart
+  public int getRollingRestartBatchTimeout() {
+    return getConf().getInt("mesos.hbase.rolling.batch.timeout.seconds",
+        DEFAULT_ROLLING_BATCH_TIMEOUT_SECONDS);
+  }
+
+  // Failed or lost tasks tolerated before the rolling restart pauses
+  public int getRollingRestartMaxFailures() {
+    return getConf().getInt("mesos.hbase.rolling.max.failures", 0);
+  }
+
+  public int getMasterInfoPort() {
+    return getConf().getInt("mesos.hbase.master.info.port", DEFAULT_MASTER_INFO_PORT);
+  }
+
+  // Delay before the executor restarts an exited HBase process, doubled on every quick exit
+  public int getProcessRestartBackoff() {
+    return getConf().getInt("mesos.hbase.process.restart.backoff.ms", DEFAULT_RESTART_BACKOFF_MS);
+  }
+
+  public int getProcessRestartMaxBackoff() {
+    return getConf().getInt("mesos.hbase.process.restart.max.backoff.ms",
+        DEFAULT_RESTART_MAX_BACKOFF_MS);
+  }
+
+  // More restarts than this within the crash loop window fail the task
+  public int getCrashLoopRestarts() {
+    return getConf().getInt("mesos.hbase.process.crashloop.restarts",
+        DEFAULT_CRASH_LOOP_RESTARTS);
+  }
+
+  public int getCrashLoopWindow() {
+    return getConf().getInt("mesos.hbase.process.crashloop.window.seconds",
+        DEFAULT_CRASH_LOOP_WINDOW_SECONDS);
+  }
+
+  // A process running at least this long resets the restart backoff
+  public int getProcessStableUptime() {
+    return getConf().getInt("mesos.hbase.process.stable.uptime.seconds",
+        DEFAULT_STABLE_UPTIME_SECONDS);
+  }
+
+  public boolean usingHealthChecks() {
+    return getConf().getBoolean("mesos.hbase.health.enabled", true);
+  }
+
+  public int getHealthCheckInterval() {
+    return getConf().getInt("mesos.hbase.health.interval.seconds",
+        DEFAULT_HEALTH_INTERVAL_SECONDS);
+  }
+
+  // Failed health checks after a (re)start of HBase are ignored for this long
+  public int getHealthStartupGrace() {
+    return getConf().getInt("mesos.hbase.health.startup.grace.seconds",
+        DEFAULT_HEALTH_STARTUP_GRACE_SECONDS);
+  }
+
+  // Consecutive failed health checks before a task is reported unhealthy
+  public int getHealthFailureThreshold() {
+    return getConf().getInt("mesos.hbase.health.failures", DEFAULT_HEALTH_FAILURES);
+  }
+
+  // Healthy tasks report their metrics at least this often
+  public int getHealthReportInterval() {
+    return getConf().getInt("mesos.hbase.health.report.seconds",
+        DEFAULT_HEALTH_REPORT_SECONDS);
+  }
+
+  // The scheduler kills a task reported unhealthy for this long so it is replaced
+  public int getUnhealthyKillTimeout() {
+    return getConf().getInt("mesos.hbase.health.unhealthy.kill.seconds",
+        DEFAULT_UNHEALTHY_KILL_SECONDS);
+  }
+
+  // Region servers report healthy only once they warmed up, needs the health checks
+  public boolean usingWarmUp() {
+    return getConf().getBoolean("mesos.hbase.slave.warmup.enabled", false);
+  }
+
+  // A region server which did not warm up in time reports healthy anyway
+  public int getWarmUpTimeout() {
+    return getConf().getInt("mesos.hbase.slave.warmup.timeout.seconds",
+        DEFAULT_WARMUP_TIMEOUT_SECONDS);
+  }
+
+  // Block cache hit percentage of a warm region server, 0 to not wait for it
+  public double getWarmUpCacheHitPercent() {
+    return getConf().getDouble("mesos.hbase.slave.warmup.cache.hit.percent", 0);
+  }
+
+  // 99th percentile Get latency of a warm region server, 0 to not wait for it
+  public int getWarmUpGetLatency() {
+    return getConf().getInt("mesos.hbase.slave.warmup.get.p99.ms", 0);
+  }
+
+  // Run in the HBase dir once the region server opened regions, e.g. replaying sampled reads
+  public String getWarmUpCommand() {
+    return getConf().getTrimmed("mesos.hbase.slave.warmup.command", "");
+  }
+
+  public boolean usingTelemetry() {
+    return getConf().getBoolean("mesos.hbase.telemetry.enabled", true);
+  }
+
+  public int getTelemetrySampleInterval() {
+    return getConf().getInt("mesos.hbase.telemetry.sample.seconds",
+        DEFAULT_TELEMETRY_SAMPLE_SECONDS);
+  }
+
+  // Executors send a summary of their samples to the scheduler this often
+  public int getTelemetryReportInterval() {
+    return getConf().getInt("mesos.hbase.telemetry.report.seconds",
+        DEFAULT_TELEMETRY_REPORT_SECONDS);
+  }
+
   public int getReconciliationTimeout() {
     return getConf().getInt("mesos.reconciliation.timeout.seconds", DEFAULT_RECONCILIATION_TIMEOUT);
   }
@@ -280,4 +909,26 @@ public class HBaseFrameworkConfig {
   public String getJreVersion() {
     return getConf().get("mesos.hbase.jre-version", "jre1.7.0_76");
   }
+
+  public String getJreChecksum() {
+    return getConf().get("mesos.hbase.jre-md5", "");
+  }
+
+  public boolean usingPeerArtifactDistribution() {
+    return Boolean.valueOf(getConf().get("mesos.hbase.peer.distribution", "false"));
+  }
+
+  public int getPeerFanout() {
+    return getConf().getInt("mesos.hbase.peer.fanout", DEFAULT_PEER_FANOUT);
+  }
+
+  // 0 binds an ephemeral port, so several executors can serve peers from the same host
+  public int getPeerServerPort() {
+    return getConf().getInt("mesos.hbase.peer.server.port", 0);
+  }
+
+  // Directory the scheduler records its Mesos callbacks to for offline replay, empty disables it
+  public String getCallbackLogDir() {
+    return getConf().get("mesos.hbase.callback.log.dir", "");
+  }
 }
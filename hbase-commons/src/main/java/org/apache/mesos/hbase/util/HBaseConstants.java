@@ -12,10 +12,28 @@ public final class HBaseConstants {
 
   // Messages
   public static final String RELOAD_CONFIG = "reload config";
+  public static final String ARTIFACT_PEER_READY = "artifact peer ready ";
+  // TaskStatus message prefix of a running task whose configuration change needs a restart
+  public static final String RESTART_REQUIRED = "restart required ";
+  // TaskStatus message prefix of a running task whose HBase process the executor restarted
+  public static final String PROCESS_RESTARTED = "process restarted ";
+  // TaskStatus message prefix of a health report, the data carries the server metrics as JSON
+  public static final String HEALTH_CHECK = "health ";
+  // TaskStatus message prefix of a region server which is up but still warming up
+  public static final String WARMING_UP = "warming up ";
+
+  // Environment variable carrying "name=md5,..." of artifacts executors may serve to peers
+  public static final String ARTIFACT_CHECKSUMS_ENV = "HBASE_ARTIFACT_CHECKSUMS";
+  // Environment variable carrying the sandbox path of the persistent volume for the data dir
+  public static final String DATA_VOLUME_ENV = "HBASE_DATA_VOLUME";
+  // Environment variable carrying the server type option of a Thrift gateway
+  public static final String THRIFT_SERVER_TYPE_ENV = "HBASE_THRIFT_SERVER_TYPE";
 
   // NodeIds
   public static final String MASTER_NODE_ID = "masternode";
   public static final String SLAVE_NODE_ID = "slavenode";
+  public static final String REST_NODE_ID = "restnode";
+  public static final String THRIFT_NODE_ID = "thriftnode";
 
   // MASTER node TaskId
   public static final String MASTER_NODE_TASKID = ".masternode.masternode.";
@@ -34,9 +52,56 @@ public final class HBaseConstants {
   // HDFS Config File Name
   public static final String HDFS_CONFIG_FILE_NAME = "hdfs-site.xml";
 
+  // JRuby script asking the local master/regionserver to reload conf/hbase-site.xml
+  public static final String UPDATE_CONFIG_SCRIPT = "bin/hbase-mesos-update-config.rb";
+
   // region servers file name
   public static final String REGION_SERVERS_FILENAME = "regionservers";
 
+  // Region server BucketCache modes, mesos.hbase.bucketcache.mode
+  public static final String BUCKETCACHE_NONE = "none";
+  public static final String BUCKETCACHE_OFFHEAP = "offheap";
+  public static final String BUCKETCACHE_FILE = "file";
+  public static final String BUCKETCACHE_FILE_NAME = "bucketcache.data";
+
+  // Thrift gateway server types, mesos.hbase.thrift.server.type
+  public static final String THRIFT_THREADED_SELECTOR = "threadedselector";
+  public static final String THRIFT_HSHA = "hsha";
+
+  // GC profiles of the HBase processes, reported in the task label GC_PROFILE_LABEL
+  public static final String GC_PROFILE_MASTER = "master";
+  public static final String GC_PROFILE_CMS = "cms";
+  public static final String GC_PROFILE_G1 = "g1";
+  public static final String GC_PROFILE_LABEL = "gc_profile";
+
+  // ConfigServer path prefix of the configuration rendered for one host, node/<hostname>/<file>
+  public static final String NODE_CONFIG_PATH = "node";
+
+  // ConfigServer path executors long-poll for configuration changes
+  public static final String CONFIG_WATCH_PATH = "config-watch";
+  public static final String CONFIG_VERSION_PARAM = "version";
+
+  // ConfigServer path reporting request and connection statistics
+  public static final String SERVER_STATS_PATH = "server-stats";
+
+  // ConfigServer path controlling rolling restarts
+  public static final String ROLLING_RESTART_PATH = "rolling-restart";
+
+  // ConfigServer path reporting the resource usage executors sampled
+  public static final String TELEMETRY_PATH = "telemetry";
+
+  // ConfigServer path listing the host:port endpoints of the gateways by type, as JSON
+  public static final String ENDPOINTS_PATH = "endpoints";
+
+  // ConfigServer path showing and setting the node counts of the scalable node types
+  public static final String SCALE_PATH = "scale";
+  public static final String SCALE_TYPE_PARAM = "type";
+  public static final String SCALE_COUNT_PARAM = "count";
+
+  // ConfigServer path serving the scheduler metrics, as JSON or in the Prometheus text format
+  public static final String METRICS_PATH = "metrics";
+  public static final String METRICS_FORMAT_PARAM = "format";
+
   private HBaseConstants() {
   }
 
@@ -0,0 +1,57 @@
+package org.apache.mesos.hbase.util;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Reads MBeans from the /jmx servlet of an HBase info server, e.g. "java.lang:type=Memory" or
+ * patterns like "java.lang:type=GarbageCollector,*".
+ */
+public class JmxReader {
+
+  private final int timeoutMs;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  /**
+   * @param timeoutMs the connect and the read timeout of a request
+   */
+  public JmxReader(int timeoutMs) {
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * @return the array of the beans matching the query, empty if none does
+   * @throws IOException if the server can't be reached or doesn't answer with HTTP 200
+   */
+  public JsonNode readBeans(String host, int infoPort, String query) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(String.format(
+        "http://%s:%d/jmx?qry=%s", host, infoPort, query)).openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException("HTTP " + connection.getResponseCode());
+    }
+    InputStream in = null;
+    try {
+      in = connection.getInputStream();
+      return mapper.readTree(in).path("beans");
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * @return the first bean matching the query or null if none does
+   * @throws IOException if the server can't be reached or doesn't answer with HTTP 200
+   */
+  public JsonNode readBean(String host, int infoPort, String query) throws IOException {
+    JsonNode beans = readBeans(host, infoPort, query);
+    return beans.size() == 0 ? null : beans.get(0);
+  }
+}
@@ -0,0 +1,240 @@
+package org.apache.mesos.hbase.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies the output of child processes into rotating log files. Streams are read in chunks into
+ * a fixed set of reusable buffers by pooled reader threads and written through a FileChannel by a
+ * single writer thread, so a slow disk never blocks a child on a full pipe for long: when no buffer
+ * frees up in time, the pump keeps draining the pipe and counts what it had to drop. A marker line
+ * in the log records every gap.
+ */
+public class LogPump {
+  private final Log log = LogFactory.getLog(LogPump.class);
+
+  // How long a reader waits for a free buffer before it starts dropping output
+  private static final long OVERLOAD_WAIT_MS = 100;
+
+  private final BlockingQueue<Chunk> free;
+  private final BlockingQueue<Chunk> filled;
+  private final int bufferSize;
+  private final ExecutorService readers;
+  private final Thread writer;
+  private final Set<RotatingLogFile> sinks = new HashSet<>();
+  private final AtomicLong pumpedBytes = new AtomicLong();
+  private final AtomicLong droppedBytes = new AtomicLong();
+  private final AtomicLong droppedChunks = new AtomicLong();
+  private volatile boolean closed;
+
+  /**
+   * A buffer with the sink its content belongs to, recycled through the free queue.
+   */
+  private static class Chunk {
+    final ByteBuffer buffer;
+    RotatingLogFile sink;
+    long droppedBefore;
+
+    Chunk(int size) {
+      this.buffer = ByteBuffer.allocate(size);
+    }
+  }
+
+  public LogPump(int bufferSize, int bufferCount) {
+    this.bufferSize = bufferSize;
+    this.free = new ArrayBlockingQueue<>(bufferCount);
+    // one extra slot for the poison chunk which stops the writer
+    this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    for (int i = 0; i < bufferCount; i++) {
+      free.add(new Chunk(bufferSize));
+    }
+    this.readers = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "LogPump-reader-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeChunks();
+      }
+    }, "LogPump-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Copies the stream into the sink until it ends, on a pooled reader thread.
+   *
+   * @return completes once the stream ended, its content may still be queued for writing
+   */
+  public Future<?> pump(final InputStream stream, final RotatingLogFile sink) {
+    synchronized (sinks) {
+      sinks.add(sink);
+    }
+    return readers.submit(new Runnable() {
+      @Override
+      public void run() {
+        readChunks(stream, sink);
+      }
+    });
+  }
+
+  public long getPumpedBytes() {
+    return pumpedBytes.get();
+  }
+
+  public long getDroppedBytes() {
+    return droppedBytes.get();
+  }
+
+  public long getDroppedChunks() {
+    return droppedChunks.get();
+  }
+
+  /**
+   * Stops the readers, writes everything already read and closes the sinks.
+   */
+  public void close() throws InterruptedException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    readers.shutdownNow();
+    filled.put(new Chunk(0));
+    writer.join();
+    synchronized (sinks) {
+      for (RotatingLogFile sink : sinks) {
+        try {
+          sink.close();
+        } catch (IOException e) {
+          log.warn("Unable to close " + sink.getFile(), e);
+        }
+      }
+    }
+    log.info(String.format("LogPump closed, pumped %d bytes, dropped %d bytes in %d chunks",
+        pumpedBytes.get(), droppedBytes.get(), droppedChunks.get()));
+  }
+
+  private void readChunks(InputStream stream, RotatingLogFile sink) {
+    // drains the pipe while every pooled buffer waits for the writer, allocated on first overload
+    ByteBuffer overflow = null;
+    long dropped = 0;
+    try {
+      while (true) {
+        Chunk chunk = free.poll(OVERLOAD_WAIT_MS, TimeUnit.MILLISECONDS);
+        ByteBuffer buffer;
+        if (chunk == null) {
+          if (overflow == null) {
+            overflow = ByteBuffer.allocate(bufferSize);
+          }
+          buffer = overflow;
+        } else {
+          buffer = chunk.buffer;
+        }
+        buffer.clear();
+        int read = fill(stream, buffer);
+        if (read < 0) {
+          if (chunk != null) {
+            free.add(chunk);
+          }
+          break;
+        }
+        if (chunk == null) {
+          dropped += read;
+          droppedBytes.addAndGet(read);
+          droppedChunks.incrementAndGet();
+          continue;
+        }
+        buffer.flip();
+        chunk.sink = sink;
+        chunk.droppedBefore = dropped;
+        dropped = 0;
+        pumpedBytes.addAndGet(read);
+        filled.add(chunk);
+      }
+    } catch (IOException e) {
+      // the stream is closed once the process exits or is destroyed
+      log.debug("Stopped pumping into " + sink.getFile() + ": " + e.getMessage());
+    } catch (InterruptedException e) {
+      log.debug("Stopped pumping into " + sink.getFile());
+    } finally {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        log.debug("Unable to close the pumped stream", e);
+      }
+    }
+  }
+
+  /**
+   * Blocks for the first bytes, then adds whatever the pipe already holds without blocking
+   * again, so busy streams are written in full buffers.
+   *
+   * @return the bytes read or -1 at the end of the stream
+   */
+  private static int fill(InputStream stream, ByteBuffer buffer) throws IOException {
+    byte[] array = buffer.array();
+    int read = stream.read(array, 0, array.length);
+    if (read < 0) {
+      return read;
+    }
+    int available;
+    while (read < array.length && (available = stream.available()) > 0) {
+      int more = stream.read(array, read, Math.min(available, array.length - read));
+      if (more < 0) {
+        break;
+      }
+      read += more;
+    }
+    buffer.position(read);
+    return read;
+  }
+
+  private void writeChunks() {
+    while (true) {
+      Chunk chunk;
+      try {
+        chunk = filled.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (chunk.sink == null) {
+        return;
+      }
+      try {
+        if (chunk.droppedBefore > 0) {
+          chunk.sink.write(ByteBuffer.wrap(String.format("%n[LogPump dropped %d bytes]%n",
+              chunk.droppedBefore).getBytes(Charset.defaultCharset())));
+        }
+        chunk.sink.write(chunk.buffer);
+      } catch (IOException e) {
+        log.error("Unable to write to " + chunk.sink.getFile(), e);
+      } finally {
+        chunk.sink = null;
+        free.add(chunk);
+      }
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package org.apache.mesos.hbase.util;
+
+/**
+ * Resource usage of one HBase process over a sampling window, aggregated by its executor and
+ * shipped to the scheduler with the TelemetryCodec.
+ */
+public class NodeTelemetry {
+
+  private String hostname;
+  private String role;
+  private long windowStart;
+  private long windowEnd;
+  private int samples;
+  // cores busy on average and in the busiest sample interval
+  private float cpuAvg;
+  private float cpuMax;
+  private long rssAvg;
+  private long rssMax;
+  // bytes read and written by the process within the window
+  private long readBytes;
+  private long writeBytes;
+  // collections and time spent in them within the window
+  private long gcCount;
+  private long gcTimeMs;
+  // file system holding the data dir
+  private long diskUsedBytes;
+  private long diskFreeBytes;
+  // the -Xmx the process was started with, 0 if unknown
+  private int heapMb;
+
+  public String getHostname() {
+    return hostname;
+  }
+
+  public void setHostname(String hostname) {
+    this.hostname = hostname;
+  }
+
+  public String getRole() {
+    return role;
+  }
+
+  public void setRole(String role) {
+    this.role = role;
+  }
+
+  public long getWindowStart() {
+    return windowStart;
+  }
+
+  public void setWindowStart(long windowStart) {
+    this.windowStart = windowStart;
+  }
+
+  public long getWindowEnd() {
+    return windowEnd;
+  }
+
+  public void setWindowEnd(long windowEnd) {
+    this.windowEnd = windowEnd;
+  }
+
+  public int getSamples() {
+    return samples;
+  }
+
+  public void setSamples(int samples) {
+    this.samples = samples;
+  }
+
+  public float getCpuAvg() {
+    return cpuAvg;
+  }
+
+  public void setCpuAvg(float cpuAvg) {
+    this.cpuAvg = cpuAvg;
+  }
+
+  public float getCpuMax() {
+    return cpuMax;
+  }
+
+  public void setCpuMax(float cpuMax) {
+    this.cpuMax = cpuMax;
+  }
+
+  public long getRssAvg() {
+    return rssAvg;
+  }
+
+  public void setRssAvg(long rssAvg) {
+    this.rssAvg = rssAvg;
+  }
+
+  public long getRssMax() {
+    return rssMax;
+  }
+
+  public void setRssMax(long rssMax) {
+    this.rssMax = rssMax;
+  }
+
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  public void setReadBytes(long readBytes) {
+    this.readBytes = readBytes;
+  }
+
+  public long getWriteBytes() {
+    return writeBytes;
+  }
+
+  public void setWriteBytes(long writeBytes) {
+    this.writeBytes = writeBytes;
+  }
+
+  public long getGcCount() {
+    return gcCount;
+  }
+
+  public void setGcCount(long gcCount) {
+    this.gcCount = gcCount;
+  }
+
+  public long getGcTimeMs() {
+    return gcTimeMs;
+  }
+
+  public void setGcTimeMs(long gcTimeMs) {
+    this.gcTimeMs = gcTimeMs;
+  }
+
+  public long getDiskUsedBytes() {
+    return diskUsedBytes;
+  }
+
+  public void setDiskUsedBytes(long diskUsedBytes) {
+    this.diskUsedBytes = diskUsedBytes;
+  }
+
+  public long getDiskFreeBytes() {
+    return diskFreeBytes;
+  }
+
+  public void setDiskFreeBytes(long diskFreeBytes) {
+    this.diskFreeBytes = diskFreeBytes;
+  }
+
+  public int getHeapMb() {
+    return heapMb;
+  }
+
+  public void setHeapMb(int heapMb) {
+    this.heapMb = heapMb;
+  }
+}
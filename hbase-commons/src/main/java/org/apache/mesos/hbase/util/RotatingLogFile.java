@@ -0,0 +1,86 @@
+package org.apache.mesos.hbase.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A log file which is rotated once it reaches a maximum size, keeping name.1 .. name.maxBackups as
+ * older generations. Not thread safe, it is written by the LogPump writer thread only.
+ */
+public class RotatingLogFile {
+  private final Log log = LogFactory.getLog(RotatingLogFile.class);
+
+  private final File file;
+  private final long maxBytes;
+  private final int maxBackups;
+  private FileChannel channel;
+  private long size;
+
+  public RotatingLogFile(File file, long maxBytes, int maxBackups) {
+    this.file = file;
+    this.maxBytes = maxBytes;
+    this.maxBackups = maxBackups;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Writes the remaining bytes of the buffer, rotating first if they would not fit.
+   */
+  public void write(ByteBuffer buffer) throws IOException {
+    if (channel == null) {
+      open();
+    }
+    if (size > 0 && size + buffer.remaining() > maxBytes) {
+      rotate();
+    }
+    while (buffer.hasRemaining()) {
+      size += channel.write(buffer);
+    }
+  }
+
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    size = channel.size();
+  }
+
+  private void rotate() throws IOException {
+    close();
+    for (int generation = maxBackups - 1; generation >= 1; generation--) {
+      File older = generationFile(generation);
+      if (older.exists()) {
+        Files.move(older.toPath(), generationFile(generation + 1).toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    if (maxBackups > 0) {
+      Files.move(file.toPath(), generationFile(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(file.toPath());
+    }
+    log.debug("Rotated " + file);
+    open();
+  }
+
+  private File generationFile(int generation) {
+    return new File(file.getPath() + "." + generation);
+  }
+}
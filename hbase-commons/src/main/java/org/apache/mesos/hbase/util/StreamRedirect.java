@@ -11,8 +11,11 @@ import java.io.PrintStream;
 import java.nio.charset.Charset;
 
 /**
- * Can be used to redirect the STDOUT and STDERR of a started process. Used for the executors.
+ * Can be used to redirect the STDOUT and STDERR of a started process.
+ *
+ * @deprecated one thread and a String per line, use {@link LogPump}
  */
+@Deprecated
 public class StreamRedirect extends Thread {
   private final Log log = LogFactory.getLog(StreamRedirect.class);
 
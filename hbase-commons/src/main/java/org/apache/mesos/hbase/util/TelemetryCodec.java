@@ -0,0 +1,96 @@
+package org.apache.mesos.hbase.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of NodeTelemetry for framework messages, about 100 bytes per summary. The
+ * leading magic bytes tell it apart from the text messages executors send, the version byte
+ * after them allows adding fields later.
+ */
+public final class TelemetryCodec {
+
+  private static final byte[] MAGIC = "HBT".getBytes(StandardCharsets.US_ASCII);
+  // 2 added the heap, summaries of version 1 executors still decode
+  private static final byte VERSION = 2;
+  private static final int MAX_HEAP_MB = 0xffff;
+
+  private TelemetryCodec() {
+  }
+
+  public static boolean isTelemetry(byte[] message) {
+    return message.length > MAGIC.length
+        && Arrays.equals(MAGIC, Arrays.copyOf(message, MAGIC.length));
+  }
+
+  public static byte[] encode(NodeTelemetry telemetry) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.write(MAGIC);
+      out.writeByte(VERSION);
+      out.writeUTF(telemetry.getHostname());
+      out.writeUTF(telemetry.getRole());
+      out.writeLong(telemetry.getWindowStart());
+      out.writeInt((int) (telemetry.getWindowEnd() - telemetry.getWindowStart()));
+      out.writeInt(telemetry.getSamples());
+      out.writeFloat(telemetry.getCpuAvg());
+      out.writeFloat(telemetry.getCpuMax());
+      out.writeLong(telemetry.getRssAvg());
+      out.writeLong(telemetry.getRssMax());
+      out.writeLong(telemetry.getReadBytes());
+      out.writeLong(telemetry.getWriteBytes());
+      out.writeLong(telemetry.getGcCount());
+      out.writeLong(telemetry.getGcTimeMs());
+      out.writeLong(telemetry.getDiskUsedBytes());
+      out.writeLong(telemetry.getDiskFreeBytes());
+      // an unsigned short holds heaps up to 64 GB, far beyond the compressed oops limit
+      out.writeShort(Math.min(telemetry.getHeapMb(), MAX_HEAP_MB));
+      out.flush();
+    } catch (IOException e) {
+      // a ByteArrayOutputStream does not throw
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @throws IOException if the message is no telemetry of a known version or truncated
+   */
+  public static NodeTelemetry decode(byte[] message) throws IOException {
+    if (!isTelemetry(message)) {
+      throw new IOException("Not a telemetry message");
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(message, MAGIC.length,
+        message.length - MAGIC.length));
+    byte version = in.readByte();
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Unknown telemetry version " + version);
+    }
+    NodeTelemetry telemetry = new NodeTelemetry();
+    telemetry.setHostname(in.readUTF());
+    telemetry.setRole(in.readUTF());
+    telemetry.setWindowStart(in.readLong());
+    telemetry.setWindowEnd(telemetry.getWindowStart() + in.readInt());
+    telemetry.setSamples(in.readInt());
+    telemetry.setCpuAvg(in.readFloat());
+    telemetry.setCpuMax(in.readFloat());
+    telemetry.setRssAvg(in.readLong());
+    telemetry.setRssMax(in.readLong());
+    telemetry.setReadBytes(in.readLong());
+    telemetry.setWriteBytes(in.readLong());
+    telemetry.setGcCount(in.readLong());
+    telemetry.setGcTimeMs(in.readLong());
+    telemetry.setDiskUsedBytes(in.readLong());
+    telemetry.setDiskFreeBytes(in.readLong());
+    if (version >= 2) {
+      telemetry.setHeapMb(in.readUnsignedShort());
+    }
+    return telemetry;
+  }
+}
@@ -3,6 +3,7 @@ package org.apache.mesos.hbase.executor;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.protobuf.ByteString;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -19,7 +20,8 @@ import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.hbase.file.FileUtils;
 import org.apache.mesos.hbase.util.HBaseConstants;
-import org.apache.mesos.hbase.util.StreamRedirect;
+import org.apache.mesos.hbase.util.LogPump;
+import org.apache.mesos.hbase.util.RotatingLogFile;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -27,10 +29,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 
 /**
@@ -41,6 +51,18 @@ public abstract class AbstractNodeExecutor implements Executor {
   private final Log log = LogFactory.getLog(AbstractNodeExecutor.class);
   protected ExecutorInfo executorInfo;
   protected HBaseFrameworkConfig hbaseFrameworkConfig;
+  private ArtifactPeerServer artifactPeerServer;
+  private ConfigWatcher configWatcher;
+  private ConfigFetcher configFetcher;
+  private HealthProbe healthProbe;
+  private WarmUp warmUp;
+  // last health the probe found, the report of a healthy server waits for its warm-up
+  private volatile Boolean probedHealthy;
+  private ResourceSampler resourceSampler;
+  private String hostname;
+  private LogPump logPump;
+  private RotatingLogFile stdoutLog;
+  private RotatingLogFile stderrLog;
 
   /**
    * Constructor which takes in configuration.
@@ -71,20 +93,112 @@ public abstract class AbstractNodeExecutor implements Executor {
     if (!hbaseFrameworkConfig.usingNativeHadoopBinaries()) {
       createSymbolicLink();
     }
+    hostname = slaveInfo.getHostname();
+    startArtifactPeerServer(driver, hostname);
     log.info("Executor registered with the slave");
   }
 
+  /**
+   * Offers the artifacts fetched into the sandbox to executors launched after this one.
+   */
+  private void startArtifactPeerServer(ExecutorDriver driver, String hostname) {
+    Map<String, String> checksums = ArtifactPeerServer.parseChecksums(
+        System.getenv(HBaseConstants.ARTIFACT_CHECKSUMS_ENV));
+    if (checksums.isEmpty()) {
+      return;
+    }
+    artifactPeerServer = new ArtifactPeerServer(getSandboxDir(), checksums);
+    try {
+      int port = artifactPeerServer.start(hbaseFrameworkConfig.getPeerServerPort());
+      if (port > 0) {
+        String url = String.format("http://%s:%d/", hostname, port);
+        driver.sendFrameworkMessage((HBaseConstants.ARTIFACT_PEER_READY + url)
+            .getBytes(Charset.defaultCharset()));
+      }
+    } catch (IOException e) {
+      log.error("Unable to serve artifacts to peers", e);
+    }
+  }
+
+  protected synchronized void stopArtifactPeerServer() {
+    if (artifactPeerServer != null) {
+      artifactPeerServer.stop();
+    }
+  }
+
+  /**
+   * The Mesos sandbox, which holds the fetched artifacts. The executor itself runs in the
+   * extracted hbase-mesos-* directory below it.
+   */
+  protected File getSandboxDir() {
+    String sandbox = System.getenv("MESOS_DIRECTORY");
+    if (StringUtils.isNotBlank(sandbox)) {
+      return new File(sandbox);
+    }
+    return new File(System.getProperty("user.dir")).getAbsoluteFile().getParentFile();
+  }
+
   /**
    * Delete and recreate the data directory.
    */
   private void setUpDataDir() {
-    // Create primary data dir if it does not exist
+    // Create primary data dir if it does not exist, or link it to the persistent volume
     File dataDir = new File(hbaseFrameworkConfig.getDataDir());
-    FileUtils.createDir(dataDir);
+    String volume = System.getenv(HBaseConstants.DATA_VOLUME_ENV);
+    if (StringUtils.isNotBlank(volume)) {
+      linkDataDir(dataDir, new File(getSandboxDir(), volume));
+    } else {
+      FileUtils.createDir(dataDir);
+    }
 
     // Create secondary data dir if it does not exist
     File secondaryDataDir = new File(hbaseFrameworkConfig.getSecondaryDataDir());
     FileUtils.createDir(secondaryDataDir);
+
+    // Create the dir of the bucket cache file, on its SSD or under the data dir
+    if (HBaseConstants.BUCKETCACHE_FILE.equals(hbaseFrameworkConfig.getBucketCacheMode())) {
+      FileUtils.createDir(new File(hbaseFrameworkConfig.getBucketCacheFile()).getParentFile());
+    }
+  }
+
+  /**
+   * Deletes the file of a file BucketCache once the regionserver is down, so a host does not
+   * keep the space of a cache no node uses. A cache on the persistent volume is kept for the
+   * relaunch onto it.
+   */
+  protected void removeBucketCacheFile() {
+    if (!HBaseConstants.BUCKETCACHE_FILE.equals(hbaseFrameworkConfig.getBucketCacheMode())
+        || (StringUtils.isNotBlank(System.getenv(HBaseConstants.DATA_VOLUME_ENV))
+        && hbaseFrameworkConfig.getBucketCacheDir().isEmpty())) {
+      return;
+    }
+    File cacheFile = new File(hbaseFrameworkConfig.getBucketCacheFile());
+    if (cacheFile.exists() && !cacheFile.delete()) {
+      log.warn("Unable to delete the bucket cache file " + cacheFile);
+    }
+  }
+
+  /**
+   * Points the data dir at the persistent volume Mesos mounts into the sandbox, which outlives
+   * the sandbox. A plain directory left from before volumes were used is kept aside.
+   */
+  private void linkDataDir(File dataDir, File volumeDir) {
+    Path link = dataDir.toPath();
+    try {
+      if (Files.isSymbolicLink(link)) {
+        Files.delete(link);
+      } else if (dataDir.exists()) {
+        File aside = new File(dataDir.getPath() + ".pre-volume");
+        log.warn(String.format("Moving %s to %s to use the persistent volume", dataDir, aside));
+        Files.move(link, aside.toPath());
+      }
+      FileUtils.createDir(dataDir.getAbsoluteFile().getParentFile());
+      Files.createSymbolicLink(link, volumeDir.toPath());
+      log.info(String.format("Data dir %s is on the persistent volume %s", dataDir, volumeDir));
+    } catch (IOException e) {
+      String msg = "Error linking the data dir to the persistent volume";
+      shutdownExecutor(1, msg, e);
+    }
   }
 
   /**
@@ -179,9 +293,11 @@ public abstract class AbstractNodeExecutor implements Executor {
   }
 
   /**
-   * Starts a task's process so it goes into running state.
+   * Starts a task's process under a ProcessSupervisor so it goes into running state. Restarts
+   * are reported to the scheduler in the message of a TASK_RUNNING update, a crash loop fails
+   * the task.
    */
-  protected void startProcess(ExecutorDriver driver, Task task) {
+  protected void startProcess(final ExecutorDriver driver, final Task task) {
     reloadConfig();
 
     File sandboxHbaseBinary = new File(System.getProperty("user.dir"));
@@ -189,19 +305,51 @@ public abstract class AbstractNodeExecutor implements Executor {
 
     log.info("The startProcess path is: " + sandboxHbaseBinaryPath);
 
-    if (task.getProcess() == null) {
+    if (task.getSupervisor() == null) {
+      task.setSupervisor(new ProcessSupervisor(Arrays.asList("sh", "-c", task.getCmd()),
+          hbaseFrameworkConfig.getProcessRestartBackoff(),
+          hbaseFrameworkConfig.getProcessRestartMaxBackoff(),
+          hbaseFrameworkConfig.getCrashLoopRestarts(),
+          hbaseFrameworkConfig.getCrashLoopWindow() * 1000L,
+          hbaseFrameworkConfig.getProcessStableUptime() * 1000L,
+          new ProcessSupervisor.Listener() {
+            @Override
+            public void started(Process process, int restarts, int lastExitCode) {
+              task.setProcess(process);
+              redirectProcess(process);
+              HealthProbe probe = healthProbe;
+              if (probe != null) {
+                probe.restarted();
+              }
+              WarmUp currentWarmUp = warmUp;
+              if (currentWarmUp != null) {
+                currentWarmUp.restarted();
+              }
+              if (restarts > 0) {
+                sendProcessRestarted(driver, task, restarts, lastExitCode);
+              }
+            }
+
+            @Override
+            public void crashLoop(String reason) {
+              task.setProcess(null);
+              // nothing left to probe, sample or reconfigure
+              stopHealthProbe();
+              stopResourceSampler();
+              stopConfigWatcher();
+              sendTaskFailed(driver, task, reason);
+            }
+          }));
       try {
-        ProcessBuilder processBuilder = new ProcessBuilder("sh", "-c", task.getCmd());
-        task.setProcess(processBuilder.start());
-        redirectProcess(task.getProcess());
+        task.getSupervisor().start();
         // send task success
         driver.sendStatusUpdate(TaskStatus.newBuilder()
             .setTaskId(task.getTaskInfo().getTaskId())
             .setState(TaskState.TASK_RUNNING)
             .setData(task.getTaskInfo().getData()).build());
+        startConfigWatcher();
       } catch (IOException e) {
         log.error("Unable to start process:", e);
-        task.getProcess().destroy();
         // send task failed
         sendTaskFailed(driver, task);
       }
@@ -210,58 +358,342 @@ public abstract class AbstractNodeExecutor implements Executor {
     }
   }
 
+  /**
+   * Probes the started HBase server on a schedule and reports its health and metrics to the
+   * scheduler. A regionserver which warms up reports that it is warming up instead of healthy
+   * until it is warm.
+   *
+   * @param role master or regionserver
+   */
+  protected synchronized void startHealthProbe(final ExecutorDriver driver, final Task task,
+      String role) {
+    if (healthProbe != null || !hbaseFrameworkConfig.usingHealthChecks()) {
+      return;
+    }
+    File hbaseSite = new File(getConfDir(), HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    if ("regionserver".equals(role) && hbaseFrameworkConfig.usingWarmUp()) {
+      warmUp = new WarmUp(hostname, hbaseSite,
+          hbaseFrameworkConfig.getHealthCheckInterval() * 1000L,
+          hbaseFrameworkConfig.getWarmUpTimeout() * 1000L,
+          hbaseFrameworkConfig.getWarmUpCacheHitPercent(),
+          hbaseFrameworkConfig.getWarmUpGetLatency(),
+          hbaseFrameworkConfig.getWarmUpCommand(),
+          new WarmUp.Listener() {
+            @Override
+            public void warm(String message) {
+              // otherwise the next report of the probe is the first healthy one
+              if (Boolean.TRUE.equals(probedHealthy)) {
+                sendHealth(driver, task, true, "ok, " + message, new byte[0]);
+              }
+            }
+          });
+      warmUp.start();
+    }
+    healthProbe = new HealthProbe(role, hostname, hbaseSite,
+        hbaseFrameworkConfig.getHealthCheckInterval() * 1000L,
+        hbaseFrameworkConfig.getHealthStartupGrace() * 1000L,
+        hbaseFrameworkConfig.getHealthFailureThreshold(),
+        hbaseFrameworkConfig.getHealthReportInterval() * 1000L,
+        new HealthProbe.Listener() {
+          @Override
+          public void report(boolean healthy, String message, byte[] metrics) {
+            probedHealthy = healthy;
+            WarmUp currentWarmUp = warmUp;
+            if (healthy && currentWarmUp != null && !currentWarmUp.isWarm()) {
+              driver.sendStatusUpdate(TaskStatus.newBuilder()
+                  .setTaskId(task.getTaskInfo().getTaskId())
+                  .setState(TaskState.TASK_RUNNING)
+                  .setMessage(HBaseConstants.WARMING_UP + currentWarmUp.getProgress())
+                  .setData(ByteString.copyFrom(metrics)).build());
+              return;
+            }
+            sendHealth(driver, task, healthy, message, metrics);
+          }
+        });
+    healthProbe.start();
+  }
+
+  private void sendHealth(ExecutorDriver driver, Task task, boolean healthy, String message,
+      byte[] metrics) {
+    driver.sendStatusUpdate(TaskStatus.newBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_RUNNING)
+        .setHealthy(healthy)
+        .setMessage(HBaseConstants.HEALTH_CHECK + message)
+        .setData(ByteString.copyFrom(metrics)).build());
+  }
+
+  protected synchronized void stopHealthProbe() {
+    if (healthProbe != null) {
+      healthProbe.stop();
+    }
+    if (warmUp != null) {
+      warmUp.stop();
+    }
+  }
+
+  /**
+   * Samples the resource usage of the started HBase server and sends summaries to the scheduler
+   * as framework messages.
+   *
+   * @param role master or regionserver
+   */
+  protected synchronized void startResourceSampler(final ExecutorDriver driver, String role) {
+    if (resourceSampler != null || !hbaseFrameworkConfig.usingTelemetry()) {
+      return;
+    }
+    resourceSampler = new ResourceSampler(role, getHeapSize(), hostname, getPidFile(role),
+        new File(hbaseFrameworkConfig.getDataDir()),
+        new File(getConfDir(), HBaseConstants.HBASE_CONFIG_FILE_NAME),
+        hbaseFrameworkConfig.getTelemetrySampleInterval() * 1000L,
+        hbaseFrameworkConfig.getTelemetryReportInterval() * 1000L,
+        new ResourceSampler.Sender() {
+          @Override
+          public void send(byte[] message) {
+            driver.sendFrameworkMessage(message);
+          }
+        });
+    resourceSampler.start();
+  }
+
+  protected synchronized void stopResourceSampler() {
+    if (resourceSampler != null) {
+      resourceSampler.stop();
+    }
+  }
+
+  /**
+   * The pid file hbase-daemon.sh writes for the server of the given role.
+   */
+  private File getPidFile(String role) {
+    String pidDir = System.getenv("HBASE_PID_DIR");
+    String ident = System.getenv("HBASE_IDENT_STRING");
+    return new File(StringUtils.isNotBlank(pidDir) ? pidDir : "/tmp", String.format(
+        "hbase-%s-%s.pid", StringUtils.isNotBlank(ident) ? ident : System.getProperty("user.name"),
+        role));
+  }
+
+  /**
+   * The HBASE_HEAPSIZE the scheduler sized the server with, in MB, 0 if unknown.
+   */
+  private int getHeapSize() {
+    String heapSize = StringUtils.removeEndIgnoreCase(System.getenv("HBASE_HEAPSIZE"), "m");
+    try {
+      return StringUtils.isNotBlank(heapSize) ? Integer.parseInt(heapSize.trim()) : 0;
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring the heap size " + heapSize);
+      return 0;
+    }
+  }
+
+  private void sendProcessRestarted(ExecutorDriver driver, Task task, int restarts,
+      int lastExitCode) {
+    driver.sendStatusUpdate(TaskStatus.newBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_RUNNING)
+        .setMessage(String.format("%son %s: restarts=%d lastExitCode=%d",
+            HBaseConstants.PROCESS_RESTARTED, hostname, restarts, lastExitCode))
+        .setData(task.getTaskInfo().getData()).build());
+  }
+
   /**
    * Reloads the cluster configuration so the executor has the correct configuration info.
    */
   protected void reloadConfig() {
-    reloadConfig(HBaseConstants.HDFS_CONFIG_FILE_NAME);
-    reloadConfig(HBaseConstants.HBASE_CONFIG_FILE_NAME);
-    reloadConfig(HBaseConstants.REGION_SERVERS_FILENAME);
+    Set<String> changedKeys = fetchConfig();
+    if (!changedKeys.isEmpty()) {
+      // outside the lock, applying the change to the running server takes a while
+      hbaseSiteChanged(changedKeys);
+    }
   }
 
-  protected void reloadConfig(String filename) 
-  {
+  /**
+   * @return the keys of hbase-site.xml the fetched configuration changed
+   */
+  private synchronized Set<String> fetchConfig() {
     if (hbaseFrameworkConfig.usingNativeHadoopBinaries()) {
-      return;
+      return Collections.emptySet();
+    }
+    File hbaseSite = new File(getConfDir(), HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    Map<String, String> before = ConfigDiff.readProperties(hbaseSite);
+    Map<String, String> uris = new LinkedHashMap<>();
+    for (String filename : Arrays.asList(HBaseConstants.HDFS_CONFIG_FILE_NAME,
+        HBaseConstants.HBASE_CONFIG_FILE_NAME, HBaseConstants.REGION_SERVERS_FILENAME)) {
+      String configUri = getConfigUri(filename);
+      if (configUri.isEmpty()) {
+        log.error("Couldn't find " + filename + " URI");
+      } else {
+        uris.put(filename, configUri);
+      }
+    }
+    if (!getConfigFetcher().fetchAll(uris)) {
+      log.error("Error reloading the configuration");
+    }
+    Set<String> changedKeys = ConfigDiff.changedKeys(before,
+        ConfigDiff.readProperties(hbaseSite));
+    if (!changedKeys.isEmpty()) {
+      log.info("Changed " + HBaseConstants.HBASE_CONFIG_FILE_NAME + " keys: " + changedKeys);
+    }
+    return changedKeys;
+  }
+
+  /**
+   * Called after a reload changed hbase-site.xml, before the HBase process was started as well
+   * as while it is running. Reloads may call it concurrently, it runs without the executor's
+   * lock.
+   */
+  protected void hbaseSiteChanged(Set<String> changedKeys) {
+  }
+
+  /**
+   * Asks the local HBase server of the given role to reload its configuration, without
+   * restarting it.
+   *
+   * @param role master or regionserver
+   * @return true if the server applied the configuration
+   */
+  protected boolean updateConfigOnline(String role) {
+    try {
+      log.info(String.format("Updating the configuration of the %s on %s online", role,
+          hostname));
+      ProcessBuilder processBuilder = new ProcessBuilder("bin/hbase", "org.jruby.Main",
+          HBaseConstants.UPDATE_CONFIG_SCRIPT, role, hostname);
+      Process process = processBuilder.start();
+      redirectProcess(process);
+      int exitCode = process.waitFor();
+      if (exitCode == 0) {
+        return true;
+      }
+      log.error("Online configuration update failed with exit code " + exitCode);
+    } catch (InterruptedException | IOException e) {
+      log.error("Unable to update the configuration online", e);
     }
-    // Find config URI
+    return false;
+  }
+
+  private File getConfDir() {
+    return new File(System.getProperty("user.dir"), "conf");
+  }
+
+  private synchronized ConfigFetcher getConfigFetcher() {
+    if (configFetcher == null) {
+      configFetcher = new ConfigFetcher(getConfDir(),
+          hbaseFrameworkConfig.getConfigFetchThreads(),
+          hbaseFrameworkConfig.getConfigFetchRetries(),
+          hbaseFrameworkConfig.getConfigFetchBackoff(),
+          hbaseFrameworkConfig.getConfigFetchTimeout());
+    }
+    return configFetcher;
+  }
+
+  private String getConfigUri(String filename) {
     String configUri = "";
     for (CommandInfo.URI uri : executorInfo.getCommand().getUrisList()) {
       if (uri.getValue().contains(filename)) {
         configUri = uri.getValue();
       }
     }
-    if (configUri.isEmpty()) {
-      log.error("Couldn't find hbase-site.xml URI");
+    return configUri;
+  }
+
+  /**
+   * Starts long-polling the ConfigServer so configuration changes are fetched as soon as the
+   * scheduler publishes them.
+   */
+  private synchronized void startConfigWatcher() {
+    if (configWatcher != null || hbaseFrameworkConfig.usingNativeHadoopBinaries()
+        || !hbaseFrameworkConfig.usingConfigLongPoll()) {
       return;
     }
-    
+    String configUri = getConfigUri(HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    try {
+      configWatcher = new ConfigWatcher(new URL(configUri),
+          hbaseFrameworkConfig.getConfigLongPollTimeout(), new Runnable() {
+            @Override
+            public void run() {
+              reloadConfig();
+            }
+          });
+    } catch (MalformedURLException e) {
+      log.error("Unable to watch configuration at '" + configUri + "'", e);
+      return;
+    }
+    Thread watcherThread = new Thread(configWatcher, "ConfigWatcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  protected synchronized void stopConfigWatcher() {
+    if (configWatcher != null) {
+      configWatcher.stop();
+    }
+  }
+
+  /**
+   * Pumps the STDOUT and STDERR of a process into rotating log files in the sandbox for logging
+   * and debugging purposes.
+   */
+  protected synchronized void redirectProcess(Process process) {
+    if (logPump == null) {
+      long maxFileSize = hbaseFrameworkConfig.getLogMaxFileSize();
+      int maxBackups = hbaseFrameworkConfig.getLogMaxBackups();
+      logPump = new LogPump(hbaseFrameworkConfig.getLogPumpBufferSize(),
+          hbaseFrameworkConfig.getLogPumpBuffers());
+      stdoutLog = new RotatingLogFile(new File(getSandboxDir(), "hbase.stdout"), maxFileSize,
+          maxBackups);
+      stderrLog = new RotatingLogFile(new File(getSandboxDir(), "hbase.stderr"), maxFileSize,
+          maxBackups);
+    }
+    logPump.pump(process.getInputStream(), stdoutLog);
+    logPump.pump(process.getErrorStream(), stderrLog);
+  }
+
+  /**
+   * Runs a command and waits for it until the deadline, then destroys it.
+   *
+   * @return the exit code or -1 if the command could not be run or did not finish in time
+   */
+  protected int runUntil(List<String> command, Map<String, String> environment, long deadline) {
     try {
-      log.info(String.format("Reloading "+filename+" from %s", configUri));
-      ProcessBuilder processBuilder = new ProcessBuilder("sh", "-c",
-        String.format("curl -o "+filename+" %s && mv "+filename+" conf/", configUri));
+      log.info(String.format("About to run command: %s", command));
+      ProcessBuilder processBuilder = new ProcessBuilder(command);
+      processBuilder.environment().putAll(environment);
       Process process = processBuilder.start();
-      //TODO(nicgrayson) check if the config has changed
       redirectProcess(process);
-      int exitCode = process.waitFor();
-      if (exitCode == 0) {
-        log.info("Finished reloading hbase-site.xml, exited with status " + exitCode);
-      } else {
-        log.error("Error reloading hbase-site.xml.");
+      if (waitFor(process, deadline)) {
+        return process.exitValue();
       }
-    } catch (InterruptedException | IOException e) {
-      log.error("Caught exception", e);
+      log.warn("Deadline passed, destroying " + command);
+      process.destroy();
+    } catch (IOException e) {
+      log.error("Unable to run command: " + command, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    return -1;
   }
 
   /**
-   * Redirects a process to STDERR and STDOUT for logging and debugging purposes.
+   * Waits for the process to exit until the deadline, Process.waitFor(timeout) needs Java 8.
+   *
+   * @return true if the process exited
    */
-  protected void redirectProcess(Process process) {
-    StreamRedirect stdoutRedirect = new StreamRedirect(process.getInputStream(), System.out);
-    stdoutRedirect.start();
-    StreamRedirect stderrRedirect = new StreamRedirect(process.getErrorStream(), System.err);
-    stderrRedirect.start();
+  protected static boolean waitFor(Process process, long deadline) throws InterruptedException {
+    while (true) {
+      try {
+        process.exitValue();
+        return true;
+      } catch (IllegalThreadStateException e) {
+        if (System.currentTimeMillis() >= deadline) {
+          return false;
+        }
+        Thread.sleep(Math.min(100, Math.max(1, deadline - System.currentTimeMillis())));
+      }
+    }
+  }
+
+  protected String getHostname() {
+    return hostname;
   }
 
   /**
@@ -279,15 +711,15 @@ public abstract class AbstractNodeExecutor implements Executor {
         log.info("Finished running command, exited with status " + exitCode);
       } else {
         log.error("Unable to run command: " + command);
-        if (task.getProcess() != null) {
-          task.getProcess().destroy();
+        if (task.getSupervisor() != null) {
+          task.getSupervisor().destroy();
         }
         sendTaskFailed(driver, task);
       }
     } catch (InterruptedException | IOException e) {
       log.error("Unable to run command:", e);
-      if (task.getProcess() != null) {
-        task.getProcess().destroy();
+      if (task.getSupervisor() != null) {
+        task.getSupervisor().destroy();
       }
       sendTaskFailed(driver, task);
     }
@@ -308,6 +740,14 @@ public abstract class AbstractNodeExecutor implements Executor {
         .build());
   }
 
+  private void sendTaskFailed(ExecutorDriver driver, Task task, String message) {
+    driver.sendStatusUpdate(TaskStatus.newBuilder()
+        .setTaskId(task.getTaskInfo().getTaskId())
+        .setState(TaskState.TASK_FAILED)
+        .setMessage(message)
+        .build());
+  }
+
   @Override
   public void reregistered(ExecutorDriver driver, SlaveInfo slaveInfo) {
     log.info("Executor reregistered with the slave");
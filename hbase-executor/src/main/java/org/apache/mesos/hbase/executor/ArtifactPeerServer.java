@@ -0,0 +1,144 @@
+package org.apache.mesos.hbase.executor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the artifacts this executor was launched with to executors on other slaves, so the
+ * scheduler host does not have to serve every copy itself. Only artifacts whose checksum matches
+ * the one handed out by the scheduler are served.
+ */
+public class ArtifactPeerServer {
+  private final Log log = LogFactory.getLog(ArtifactPeerServer.class);
+
+  private static final int TRANSFER_THREADS = 4;
+
+  private final File sandboxDir;
+  private final Map<String, String> expectedChecksums;
+  private final Map<String, File> verifiedArtifacts = new HashMap<>();
+  private HttpServer server;
+  private ExecutorService transferPool;
+
+  public ArtifactPeerServer(File sandboxDir, Map<String, String> expectedChecksums) {
+    this.sandboxDir = sandboxDir;
+    this.expectedChecksums = expectedChecksums;
+  }
+
+  /**
+   * Parses the "name=md5,name=md5" form the scheduler passes through the environment.
+   */
+  public static Map<String, String> parseChecksums(String value) {
+    Map<String, String> checksums = new HashMap<>();
+    if (value == null) {
+      return checksums;
+    }
+    for (String entry : value.split(",")) {
+      int separator = entry.indexOf('=');
+      if (separator > 0) {
+        checksums.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+      }
+    }
+    return checksums;
+  }
+
+  /**
+   * Verifies the artifacts in the sandbox and starts serving the ones that match.
+   *
+   * @return the port the server listens on or -1 if there is nothing to serve
+   */
+  public synchronized int start(int port) throws IOException {
+    verifyArtifacts();
+    if (verifiedArtifacts.isEmpty()) {
+      log.warn("No verified artifacts in " + sandboxDir + ", not serving peers");
+      return -1;
+    }
+    transferPool = Executors.newFixedThreadPool(TRANSFER_THREADS);
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/", new ArtifactHandler());
+    server.setExecutor(transferPool);
+    server.start();
+    int boundPort = server.getAddress().getPort();
+    log.info("Serving " + verifiedArtifacts.keySet() + " to peers on port " + boundPort);
+    return boundPort;
+  }
+
+  /**
+   * Stops serving peers, transfers in progress are aborted.
+   */
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(0);
+      transferPool.shutdownNow();
+      server = null;
+    }
+  }
+
+  private void verifyArtifacts() {
+    for (Map.Entry<String, String> expected : expectedChecksums.entrySet()) {
+      File artifact = new File(sandboxDir, expected.getKey());
+      if (!artifact.isFile()) {
+        continue;
+      }
+      InputStream in = null;
+      try {
+        in = new FileInputStream(artifact);
+        String checksum = DigestUtils.md5Hex(in);
+        if (checksum.equalsIgnoreCase(expected.getValue())) {
+          verifiedArtifacts.put(expected.getKey(), artifact);
+        } else {
+          log.warn(String.format("Checksum mismatch for %s: expected %s, got %s",
+              artifact, expected.getValue(), checksum));
+        }
+      } catch (IOException e) {
+        log.warn("Unable to verify " + artifact, e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+  }
+
+  private class ArtifactHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        String name = exchange.getRequestURI().getPath().replace("/", "");
+        File artifact = verifiedArtifacts.get(name);
+        if (artifact == null || !"GET".equals(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+          return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, artifact.length());
+        InputStream in = new FileInputStream(artifact);
+        OutputStream out = exchange.getResponseBody();
+        try {
+          IOUtils.copyLarge(in, out);
+        } finally {
+          IOUtils.closeQuietly(in);
+          IOUtils.closeQuietly(out);
+        }
+        log.info("Served " + name + " to " + exchange.getRemoteAddress());
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+}
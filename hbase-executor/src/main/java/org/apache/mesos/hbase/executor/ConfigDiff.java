@@ -0,0 +1,66 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares two versions of a hadoop style configuration file, e.g. hbase-site.xml before and after
+ * the ConfigServer served a new one.
+ */
+public final class ConfigDiff {
+  private static final Log log = LogFactory.getLog(ConfigDiff.class);
+
+  private ConfigDiff() {
+  }
+
+  /**
+   * Reads the raw properties of a configuration file, the file is parsed right away so it may be
+   * replaced afterwards.
+   *
+   * @return the properties or an empty map if the file does not exist or can't be parsed
+   */
+  public static Map<String, String> readProperties(File file) {
+    Map<String, String> properties = new HashMap<>();
+    if (!file.isFile()) {
+      return properties;
+    }
+    try {
+      Configuration conf = new Configuration(false);
+      conf.addResource(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+      for (Map.Entry<String, String> property : conf) {
+        properties.put(property.getKey(), property.getValue());
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Unable to read " + file, e);
+    }
+    return properties;
+  }
+
+  /**
+   * @return the keys added, removed or changed between both versions, sorted
+   */
+  public static Set<String> changedKeys(Map<String, String> before, Map<String, String> after) {
+    Set<String> keys = new HashSet<>(before.keySet());
+    keys.addAll(after.keySet());
+    Set<String> changed = new TreeSet<>();
+    for (String key : keys) {
+      String oldValue = before.get(key);
+      String newValue = after.get(key);
+      if (oldValue == null ? newValue != null : !oldValue.equals(newValue)) {
+        changed.add(key);
+      }
+    }
+    return changed;
+  }
+}
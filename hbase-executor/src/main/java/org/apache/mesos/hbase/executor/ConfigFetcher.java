@@ -0,0 +1,157 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches configuration files from the ConfigServer concurrently, without forking a process per
+ * file. Every file is downloaded to a temp file next to its destination and renamed over it, so
+ * the HBase process never reads a partially written file.
+ */
+public class ConfigFetcher {
+  private final Log log = LogFactory.getLog(ConfigFetcher.class);
+
+  private final File confDir;
+  private final int retries;
+  private final long initialBackoffMs;
+  private final int timeoutMs;
+  private final ExecutorService fetchPool;
+
+  public ConfigFetcher(File confDir, int threads, int retries, long initialBackoffMs,
+      int timeoutMs) {
+    this.confDir = confDir;
+    this.retries = retries;
+    this.initialBackoffMs = initialBackoffMs;
+    this.timeoutMs = timeoutMs;
+    this.fetchPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "ConfigFetcher-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Fetches every file in parallel and waits for all of them, calls from several threads are
+   * serialized so an older fetch never overwrites a newer one.
+   *
+   * @param uris file name -> ConfigServer uri
+   * @return true if every file was replaced
+   */
+  public synchronized boolean fetchAll(Map<String, String> uris) {
+    long start = System.nanoTime();
+    List<Future<Boolean>> fetches = new ArrayList<>();
+    for (final Map.Entry<String, String> uri : uris.entrySet()) {
+      fetches.add(fetchPool.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return fetchWithRetries(uri.getKey(), uri.getValue());
+        }
+      }));
+    }
+    boolean success = true;
+    for (Future<Boolean> fetch : fetches) {
+      try {
+        success &= fetch.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        log.error("Config fetch failed", e.getCause());
+        success = false;
+      }
+    }
+    log.info(String.format("Fetched %d config files in %d ms%s", uris.size(),
+        elapsedMillis(start), success ? "" : " with errors"));
+    return success;
+  }
+
+  public void stop() {
+    fetchPool.shutdownNow();
+  }
+
+  private boolean fetchWithRetries(String filename, String uri) {
+    long backoff = initialBackoffMs;
+    for (int attempt = 1;; attempt++) {
+      long start = System.nanoTime();
+      try {
+        fetch(filename, uri);
+        log.info(String.format("Fetched %s from %s in %d ms (attempt %d)", filename, uri,
+            elapsedMillis(start), attempt));
+        return true;
+      } catch (IOException e) {
+        if (attempt > retries) {
+          log.error(String.format("Giving up fetching %s from %s after %d attempts", filename,
+              uri, attempt), e);
+          return false;
+        }
+        log.warn(String.format("Fetching %s failed, retrying in %d ms: %s", filename, backoff,
+            e.getMessage()));
+      }
+      try {
+        Thread.sleep(backoff);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      backoff *= 2;
+    }
+  }
+
+  private void fetch(String filename, String uri) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    connection.setUseCaches(false);
+    Path temp = Files.createTempFile(confDir.toPath(), filename, ".tmp");
+    try {
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Unexpected status " + status);
+      }
+      InputStream in = connection.getInputStream();
+      OutputStream out = new FileOutputStream(temp.toFile());
+      try {
+        IOUtils.copy(in, out);
+      } finally {
+        IOUtils.closeQuietly(in);
+        out.close();
+      }
+      Files.move(temp, new File(confDir, filename).toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+      connection.disconnect();
+    }
+  }
+
+  private static long elapsedMillis(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1000000;
+  }
+}
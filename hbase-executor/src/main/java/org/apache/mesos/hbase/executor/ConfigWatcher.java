@@ -0,0 +1,104 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * Long-polls the scheduler's ConfigServer for configuration changes, so executors pick up new
+ * configuration without relying on framework message delivery.
+ */
+public class ConfigWatcher implements Runnable {
+  private final Log log = LogFactory.getLog(ConfigWatcher.class);
+
+  private static final long UNKNOWN_VERSION = -1;
+  private static final int CONNECT_TIMEOUT_MS = 5000;
+  // Added to the poll timeout so the server always answers before the client gives up
+  private static final int READ_TIMEOUT_SLACK_MS = 15000;
+  private static final long MIN_BACKOFF_MS = 1000;
+  private static final long MAX_BACKOFF_MS = 30000;
+
+  private final String watchUrl;
+  private final int pollTimeoutMs;
+  private final Runnable onChange;
+  private volatile boolean running = true;
+
+  /**
+   * @param configServerUrl any URL served by the ConfigServer, only scheme, host and port are used
+   * @param onChange called on this watcher's thread whenever the configuration version changes
+   */
+  public ConfigWatcher(URL configServerUrl, int pollTimeoutMs, Runnable onChange) {
+    this.watchUrl = String.format("%s://%s:%d/%s?%s=", configServerUrl.getProtocol(),
+        configServerUrl.getHost(), configServerUrl.getPort(), HBaseConstants.CONFIG_WATCH_PATH,
+        HBaseConstants.CONFIG_VERSION_PARAM);
+    this.pollTimeoutMs = pollTimeoutMs;
+    this.onChange = onChange;
+  }
+
+  public void stop() {
+    running = false;
+  }
+
+  @Override
+  public void run() {
+    long version = UNKNOWN_VERSION;
+    long backoff = MIN_BACKOFF_MS;
+    while (running) {
+      try {
+        long newVersion = poll(version);
+        backoff = MIN_BACKOFF_MS;
+        if (newVersion == version) {
+          continue;
+        }
+        // the first answer only establishes the baseline, the task fetched its config on start
+        if (version != UNKNOWN_VERSION) {
+          log.info(String.format("Configuration changed from version %d to %d", version,
+              newVersion));
+          onChange.run();
+        }
+        version = newVersion;
+      } catch (IOException | NumberFormatException e) {
+        log.warn("Config watch failed, retrying in " + backoff + "ms: " + e.getMessage());
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+      }
+    }
+  }
+
+  private long poll(long version) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(watchUrl + version)
+        .openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+    connection.setReadTimeout(pollTimeoutMs + READ_TIMEOUT_SLACK_MS);
+    connection.setUseCaches(false);
+    try {
+      int status = connection.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return version;
+      }
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Unexpected status " + status + " from " + watchUrl);
+      }
+      InputStream in = connection.getInputStream();
+      try {
+        return Long.parseLong(IOUtils.toString(in, Charset.defaultCharset().name()).trim());
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
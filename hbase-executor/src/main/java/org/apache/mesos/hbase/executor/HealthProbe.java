@@ -0,0 +1,305 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.mesos.hbase.util.JmxReader;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes the local master or regionserver: its info server has to answer /jmx, its RPC port has
+ * to accept connections and it has to be registered in ZooKeeper, looked up in one session kept
+ * across probes. Gateways only have to accept connections on their port. The HealthTracker
+ * decides which results are passed on to the listener, along with the latest metrics.
+ */
+public class HealthProbe extends PeriodicTask {
+
+  private static final int TIMEOUT_MS = 5000;
+  private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+  private static final List<String> MASTER_METRICS = Arrays.asList("numRegionServers",
+      "numDeadRegionServers", "averageLoad", "clusterRequests");
+  private static final List<String> REGIONSERVER_METRICS = Arrays.asList("regionCount",
+      "storeFileCount", "storeFileSize", "memStoreSize", "totalRequestCount",
+      "readRequestCount", "writeRequestCount", "compactionQueueLength", "flushQueueLength",
+      "blockCacheCountHitPercent");
+
+  /**
+   * Receives the health reports on the probe thread.
+   */
+  public interface Listener {
+    /**
+     * @param message "ok" or the failed checks
+     * @param metrics JSON object of selected server metrics
+     */
+    void report(boolean healthy, String message, byte[] metrics);
+  }
+
+  private final boolean master;
+  // the hbase-daemon.sh command of a gateway, null for masters and regionservers
+  private final String gateway;
+  private final String hostname;
+  private final File hbaseSite;
+  private final HealthTracker health;
+  private final Listener listener;
+  private final JmxReader jmx = new JmxReader(TIMEOUT_MS);
+  private final ObjectMapper mapper = new ObjectMapper();
+  private volatile ZooKeeper zooKeeper;
+  private String zooKeeperQuorum;
+  // guarded by this, a probe still running at stop() must not keep a new session
+  private boolean stopped;
+
+  public HealthProbe(String role, String hostname, File hbaseSite, long intervalMs,
+      long startupGraceMs, int failureThreshold, long reportIntervalMs, Listener listener) {
+    super("HealthProbe", intervalMs, false);
+    this.master = "master".equals(role);
+    this.gateway = master || "regionserver".equals(role) ? null : role;
+    this.hostname = hostname;
+    this.hbaseSite = hbaseSite;
+    this.health = new HealthTracker(startupGraceMs, failureThreshold, reportIntervalMs,
+        System.currentTimeMillis());
+    this.listener = listener;
+  }
+
+  @Override
+  public synchronized void stop() {
+    stopped = true;
+    super.stop();
+    closeZooKeeper();
+  }
+
+  /**
+   * The process was restarted, it gets the startup grace period again.
+   */
+  public void restarted() {
+    health.restarted(System.currentTimeMillis());
+  }
+
+  @Override
+  protected void runOnce() {
+    long start = System.currentTimeMillis();
+    Map<String, String> conf = ConfigDiff.readProperties(hbaseSite);
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    List<String> failures = new ArrayList<>();
+
+    if (gateway != null) {
+      String failure = checkRpc(getGatewayPort(conf, gateway));
+      if (failure != null) {
+        failures.add(gateway + ": " + failure);
+      }
+      report(failures, metrics, start);
+      return;
+    }
+    String failure = checkJmx(conf, metrics);
+    if (failure != null) {
+      failures.add("jmx: " + failure);
+    }
+    int rpcPort = getInt(conf, master ? "hbase.master.port" : "hbase.regionserver.port",
+        master ? 16000 : 16020);
+    failure = checkRpc(rpcPort);
+    if (failure != null) {
+      failures.add("rpc: " + failure);
+    }
+    failure = checkZooKeeper(conf, rpcPort);
+    if (failure != null) {
+      failures.add("zookeeper: " + failure);
+    }
+    report(failures, metrics, start);
+  }
+
+  private void report(List<String> failures, Map<String, Object> metrics, long start) {
+    long now = System.currentTimeMillis();
+    metrics.put("probeMs", now - start);
+
+    Boolean healthy = health.update(failures, now);
+    if (healthy != null) {
+      byte[] payload;
+      try {
+        payload = mapper.writeValueAsBytes(metrics);
+      } catch (IOException e) {
+        payload = new byte[0];
+      }
+      listener.report(healthy, failures.isEmpty() ? "ok" : failures.toString(), payload);
+    }
+  }
+
+  private String checkJmx(Map<String, String> conf, Map<String, Object> metrics) {
+    int infoPort = getInfoPort(conf, master ? "master" : "regionserver");
+    String bean = master ? "Hadoop:service=HBase,name=Master,sub=Server"
+        : "Hadoop:service=HBase,name=RegionServer,sub=Server";
+    try {
+      JsonNode server = jmx.readBean(hostname, infoPort, bean);
+      if (server == null) {
+        return "no " + bean;
+      }
+      for (String name : master ? MASTER_METRICS : REGIONSERVER_METRICS) {
+        JsonNode value = server.get(name);
+        if (value != null && value.isNumber()) {
+          metrics.put(name, value.getNumberValue());
+        }
+      }
+      return null;
+    } catch (IOException e) {
+      return e.toString();
+    }
+  }
+
+  private String checkRpc(int port) {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(hostname, port), TIMEOUT_MS);
+      return null;
+    } catch (IOException e) {
+      return e.toString();
+    } finally {
+      IOUtils.closeQuietly(socket);
+    }
+  }
+
+  /**
+   * Looks for the server name "host,port,startcode" among the registered region servers, or
+   * backup masters and the active master.
+   */
+  private String checkZooKeeper(Map<String, String> conf, int rpcPort) {
+    String quorum = conf.get("hbase.zookeeper.quorum");
+    if (quorum == null) {
+      return "no hbase.zookeeper.quorum";
+    }
+    String clientPort = conf.get("hbase.zookeeper.property.clientPort");
+    if (clientPort != null && !quorum.contains(":")) {
+      quorum = quorum.replace(",", ":" + clientPort + ",") + ":" + clientPort;
+    }
+    String parent = conf.containsKey("zookeeper.znode.parent")
+        ? conf.get("zookeeper.znode.parent") : "/hbase";
+    String serverPrefix = hostname + "," + rpcPort + ",";
+    try {
+      ZooKeeper zk = connectZooKeeper(quorum);
+      if (!zk.getState().isConnected()) {
+        return "not connected to " + quorum;
+      }
+      List<String> servers = new ArrayList<>();
+      if (master) {
+        if (zk.exists(parent + "/backup-masters", false) != null) {
+          servers.addAll(zk.getChildren(parent + "/backup-masters", false));
+        }
+        if (zk.exists(parent + "/master", false) != null) {
+          // the protobuf encoded server name holds it as plain string
+          String active = new String(zk.getData(parent + "/master", false, null), LATIN_1);
+          if (active.contains(hostname)) {
+            return null;
+          }
+        }
+      } else {
+        servers.addAll(zk.getChildren(parent + "/rs", false));
+      }
+      for (String server : servers) {
+        if (server.startsWith(serverPrefix)) {
+          return null;
+        }
+      }
+      return "not registered";
+    } catch (IOException | KeeperException e) {
+      return e.toString();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return "interrupted";
+    }
+  }
+
+  /**
+   * The session of the earlier probes, a new one once it expired or the quorum changed. A new
+   * session gets the probe timeout to connect, an existing one reconnects on its own.
+   */
+  private ZooKeeper connectZooKeeper(String quorum) throws IOException, InterruptedException {
+    ZooKeeper zk = zooKeeper;
+    if (zk != null && (!zk.getState().isAlive() || !quorum.equals(zooKeeperQuorum))) {
+      closeZooKeeper();
+      zk = null;
+    }
+    if (zk == null) {
+      final CountDownLatch connected = new CountDownLatch(1);
+      zk = new ZooKeeper(quorum, TIMEOUT_MS, new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+          if (event.getState() == Event.KeeperState.SyncConnected) {
+            connected.countDown();
+          }
+        }
+      });
+      boolean kept;
+      synchronized (this) {
+        kept = !stopped;
+        if (kept) {
+          zooKeeper = zk;
+          zooKeeperQuorum = quorum;
+        }
+      }
+      if (!kept) {
+        zk.close();
+        throw new IOException("Probe stopped");
+      }
+      connected.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    return zk;
+  }
+
+  private void closeZooKeeper() {
+    ZooKeeper zk = zooKeeper;
+    zooKeeper = null;
+    if (zk != null) {
+      try {
+        zk.close();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  static int getGatewayPort(Map<String, String> conf, String gateway) {
+    if ("thrift".equals(gateway)) {
+      return getInt(conf, "hbase.regionserver.thrift.port", 9090);
+    }
+    return getInt(conf, "hbase." + gateway + ".port", 8080);
+  }
+
+  /**
+   * The port of the info server serving /jmx, the gateways run one of their own.
+   */
+  static int getInfoPort(Map<String, String> conf, String role) {
+    if ("master".equals(role)) {
+      return getInt(conf, "hbase.master.info.port", 16010);
+    } else if ("rest".equals(role)) {
+      return getInt(conf, "hbase.rest.info.port", 8085);
+    } else if ("thrift".equals(role)) {
+      return getInt(conf, "hbase.thrift.info.port", 9095);
+    }
+    return getInt(conf, "hbase.regionserver.info.port", 16030);
+  }
+
+  static int getInt(Map<String, String> conf, String key, int defaultValue) {
+    String value = conf.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.List;
+
+/**
+ * Turns the results of consecutive health probes into health reports. Failures during the
+ * startup grace period after a (re)start don't count, a reported health only turns unhealthy
+ * after several failed probes in a row. Changes are reported at once, the unchanged health every
+ * report interval.
+ */
+class HealthTracker {
+  private final Log log = LogFactory.getLog(HealthTracker.class);
+
+  private final long startupGraceMs;
+  private final int failureThreshold;
+  private final long reportIntervalMs;
+  private volatile long startedAt;
+  private int consecutiveFailures;
+  private Boolean reportedHealthy;
+  private long reportedAt;
+
+  HealthTracker(long startupGraceMs, int failureThreshold, long reportIntervalMs,
+      long startedAt) {
+    this.startupGraceMs = startupGraceMs;
+    this.failureThreshold = failureThreshold;
+    this.reportIntervalMs = reportIntervalMs;
+    this.startedAt = startedAt;
+  }
+
+  /**
+   * The process was restarted, it gets the startup grace period again.
+   */
+  void restarted(long now) {
+    startedAt = now;
+  }
+
+  /**
+   * @param failures the failed checks of the probe, empty if it passed
+   * @return the health to report now or null if there is nothing to report
+   */
+  Boolean update(List<String> failures, long now) {
+    boolean healthy;
+    if (failures.isEmpty()) {
+      consecutiveFailures = 0;
+      healthy = true;
+    } else if (now - startedAt < startupGraceMs) {
+      log.debug("Ignoring failed health checks while starting: " + failures);
+      return null;
+    } else {
+      consecutiveFailures++;
+      log.warn(String.format("Health check %d/%d failed: %s", consecutiveFailures,
+          failureThreshold, failures));
+      if (consecutiveFailures < failureThreshold) {
+        // the last reported health stands until the failures persist
+        if (reportedHealthy == null) {
+          return null;
+        }
+        healthy = reportedHealthy;
+      } else {
+        healthy = false;
+      }
+    }
+    if (reportedHealthy == null || reportedHealthy != healthy
+        || now - reportedAt >= reportIntervalMs) {
+      reportedHealthy = healthy;
+      reportedAt = now;
+      return healthy;
+    }
+    return null;
+  }
+}
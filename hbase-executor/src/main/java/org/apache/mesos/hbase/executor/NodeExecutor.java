@@ -13,6 +13,15 @@ import org.apache.mesos.Protos.TaskInfo;
 import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * The executor for a Basic Node (either a Journal Node or Data Node).
@@ -20,6 +29,8 @@ import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 public class NodeExecutor extends AbstractNodeExecutor {
   private final Log log = LogFactory.getLog(NodeExecutor.class);
   private Task task;
+  private ExecutorDriver driver;
+  private Thread stopper;
 
   /**
    * The constructor for the node which saves the configuration.
@@ -44,30 +55,171 @@ public class NodeExecutor extends AbstractNodeExecutor {
    */
   @Override
   public void launchTask(final ExecutorDriver driver, final TaskInfo taskInfo) {
+    this.driver = driver;
     executorInfo = taskInfo.getExecutor();
     task = new Task(taskInfo);
     startProcess(driver, task);
+    if (task.getSupervisor() != null) {
+      startHealthProbe(driver, task, getRole());
+      startResourceSampler(driver, getRole());
+    }
+  }
+
+  /**
+   * Applies reloadable keys to the running HBase process online and reports keys which only take
+   * effect after a restart to the scheduler.
+   */
+  @Override
+  protected void hbaseSiteChanged(Set<String> changedKeys) {
+    if (task == null || task.getProcess() == null
+        || !hbaseFrameworkConfig.usingOnlineConfigReload()) {
+      return;
+    }
+    Set<String> restartKeys = new TreeSet<>(changedKeys);
+    restartKeys.removeAll(hbaseFrameworkConfig.getOnlineReloadableKeys());
+    if (restartKeys.size() < changedKeys.size()) {
+      if (!updateConfigOnline(getRole())) {
+        restartKeys = new TreeSet<>(changedKeys);
+      }
+    }
+    if (!restartKeys.isEmpty()) {
+      log.warn("Restart required to apply " + restartKeys);
+      driver.sendStatusUpdate(TaskStatus.newBuilder()
+          .setTaskId(task.getTaskInfo().getTaskId())
+          .setState(TaskState.TASK_RUNNING)
+          .setMessage(HBaseConstants.RESTART_REQUIRED + restartKeys)
+          .setData(task.getTaskInfo().getData()).build());
+    }
   }
 
+  /**
+   * Stops the task in the background, TASK_KILLED is sent once HBase is down.
+   */
   @Override
   public void killTask(ExecutorDriver driver, TaskID taskId) {
     log.info("Killing task : " + taskId.getValue());
-    if (task.getProcess() != null && taskId.equals(task.getTaskInfo().getTaskId())) {
-      task.getProcess().destroy();
-      task.setProcess(null);
+    if (task == null || task.getSupervisor() == null
+        || !taskId.equals(task.getTaskInfo().getTaskId())) {
+      stopArtifactPeerServer();
+      sendTaskKilled(driver, taskId);
+      return;
     }
-    driver.sendStatusUpdate(TaskStatus.newBuilder()
-        .setTaskId(taskId)
-        .setState(TaskState.TASK_KILLED)
-        .build());
+    startStop(driver);
   }
 
   @Override
   public void shutdown(ExecutorDriver d) {
-    // TODO(elingg) let's shut down the driver more gracefully
     log.info("Executor asked to shutdown");
-    if (task != null) {
-      killTask(d, task.getTaskInfo().getTaskId());
+    if (task != null && task.getSupervisor() != null) {
+      try {
+        startStop(d).join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else if (task != null) {
+      sendTaskKilled(d, task.getTaskInfo().getTaskId());
     }
+    stopArtifactPeerServer();
+  }
+
+  private synchronized Thread startStop(final ExecutorDriver driver) {
+    if (stopper == null) {
+      stopper = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          stopTask();
+          if ("regionserver".equals(getRole())) {
+            removeBucketCacheFile();
+          }
+          sendTaskKilled(driver, task.getTaskInfo().getTaskId());
+        }
+      }, "TaskStopper");
+      stopper.start();
+    }
+    return stopper;
+  }
+
+  /**
+   * Moves the regions of a regionserver to other servers, then stops HBase so it flushes its
+   * memstores instead of leaving the WALs to be replayed. Whatever is still running at the
+   * deadline is killed.
+   */
+  private void stopTask() {
+    ProcessSupervisor supervisor = task.getSupervisor();
+    // no more restarts, whatever way HBase goes down from here
+    supervisor.stop();
+    stopHealthProbe();
+    stopResourceSampler();
+    stopConfigWatcher();
+    stopArtifactPeerServer();
+    if (!hbaseFrameworkConfig.usingGracefulStop()) {
+      supervisor.destroy();
+      task.setProcess(null);
+      return;
+    }
+    long start = System.currentTimeMillis();
+    long timeout = hbaseFrameworkConfig.getGracefulStopTimeout() * 1000L;
+    long deadline = start + timeout;
+    String role = getRole();
+
+    if ("regionserver".equals(role)) {
+      // leave a quarter of the time for the stop itself
+      unloadRegions(deadline - timeout / 4);
+    }
+    long secondsLeft = Math.max(1, (deadline - System.currentTimeMillis()) / 1000);
+    int exitCode = runUntil(Arrays.asList("bin/hbase-daemon.sh", "stop", role),
+        Collections.singletonMap("HBASE_STOP_TIMEOUT", String.valueOf(secondsLeft)), deadline);
+    if (exitCode != 0) {
+      log.warn(String.format("The %s did not stop cleanly, exit code %d", role, exitCode));
+    }
+    try {
+      Process process = supervisor.getProcess();
+      if (process != null && !waitFor(process, deadline)) {
+        log.warn(String.format("The %s is still running, killing it", role));
+        supervisor.destroy();
+      }
+    } catch (InterruptedException e) {
+      supervisor.destroy();
+      Thread.currentThread().interrupt();
+    }
+    task.setProcess(null);
+    log.info(String.format("Stopped the %s in %d ms", role, System.currentTimeMillis() - start));
+  }
+
+  private void unloadRegions(long deadline) {
+    List<String> command = new ArrayList<>(Arrays.asList("bin/hbase", "org.jruby.Main",
+        "bin/region_mover.rb", "--filename=" + new File(getSandboxDir(), "regions").getPath()));
+    int threads = hbaseFrameworkConfig.getRegionMoverThreads();
+    if (threads > 1) {
+      command.add("--maxthreads=" + threads);
+    }
+    command.add("unload");
+    command.add(getHostname());
+    int exitCode = runUntil(command, Collections.<String, String>emptyMap(), deadline);
+    if (exitCode != 0) {
+      log.warn("Unable to unload all regions, exit code " + exitCode);
+    }
+  }
+
+  /**
+   * @return the hbase-daemon.sh command of the task
+   */
+  private String getRole() {
+    String taskId = task.getTaskInfo().getTaskId().getValue();
+    if (taskId.startsWith("task." + HBaseConstants.MASTER_NODE_ID)) {
+      return "master";
+    } else if (taskId.startsWith("task." + HBaseConstants.REST_NODE_ID)) {
+      return "rest";
+    } else if (taskId.startsWith("task." + HBaseConstants.THRIFT_NODE_ID)) {
+      return "thrift";
+    }
+    return "regionserver";
+  }
+
+  private void sendTaskKilled(ExecutorDriver driver, TaskID taskId) {
+    driver.sendStatusUpdate(TaskStatus.newBuilder()
+        .setTaskId(taskId)
+        .setState(TaskState.TASK_KILLED)
+        .build());
   }
 }
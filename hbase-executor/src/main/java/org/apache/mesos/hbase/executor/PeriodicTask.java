@@ -0,0 +1,92 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task running every interval from start() until stop(). The tasks of an executor share a few
+ * daemon threads, a task never runs on two of them at once.
+ */
+public abstract class PeriodicTask implements Runnable {
+  private final Log log = LogFactory.getLog(PeriodicTask.class);
+
+  // one per kind of task, so a long warm-up command doesn't hold up the health probe
+  private static final int THREADS = 3;
+  private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+  private final String name;
+  private final long intervalMs;
+  private final boolean fixedRate;
+  private ScheduledFuture<?> scheduled;
+
+  /**
+   * @param name the name of the thread while the task runs and of the task in the log
+   * @param fixedRate whether runs are spaced from their starts instead of their ends
+   */
+  protected PeriodicTask(String name, long intervalMs, boolean fixedRate) {
+    this.name = name;
+    this.intervalMs = intervalMs;
+    this.fixedRate = fixedRate;
+  }
+
+  private static ScheduledThreadPoolExecutor createScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(THREADS,
+        new ThreadFactory() {
+          private final AtomicInteger threads = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PeriodicTask-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  public synchronized void start() {
+    if (scheduled != null) {
+      return;
+    }
+    if (fixedRate) {
+      scheduled = SCHEDULER.scheduleAtFixedRate(this, intervalMs, intervalMs,
+          TimeUnit.MILLISECONDS);
+    } else {
+      scheduled = SCHEDULER.scheduleWithFixedDelay(this, intervalMs, intervalMs,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public synchronized void stop() {
+    if (scheduled != null) {
+      scheduled.cancel(true);
+    }
+  }
+
+  @Override
+  public final void run() {
+    Thread thread = Thread.currentThread();
+    String threadName = thread.getName();
+    thread.setName(name);
+    try {
+      runOnce();
+    } catch (RuntimeException e) {
+      // an exception would cancel the scheduled runs
+      log.error(name + " failed", e);
+    } finally {
+      thread.setName(threadName);
+    }
+  }
+
+  /**
+   * One run of the task, on one of the shared threads.
+   */
+  protected abstract void runOnce();
+}
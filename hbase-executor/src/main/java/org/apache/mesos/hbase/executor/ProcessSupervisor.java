@@ -0,0 +1,192 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Runs the HBase process in the foreground and restarts it when it exits. Quick exits double the
+ * delay before the next start up to a maximum, a process which stayed up for the stable uptime
+ * resets it. Too many restarts within the crash loop window give up on the process, so the
+ * scheduler can place the task elsewhere instead of the host burning CPU on restarts.
+ */
+public class ProcessSupervisor {
+  private final Log log = LogFactory.getLog(ProcessSupervisor.class);
+
+  /**
+   * Callbacks from the supervisor thread, except for the first start which happens in start().
+   * They are called without holding the supervisor's lock, so they may call back into it.
+   */
+  public interface Listener {
+    /**
+     * @param restarts how often the process was restarted before
+     * @param lastExitCode exit code of the previous process, -1 if it could not be started
+     */
+    void started(Process process, int restarts, int lastExitCode);
+
+    void crashLoop(String reason);
+  }
+
+  private final List<String> command;
+  private final long backoffMs;
+  private final long maxBackoffMs;
+  private final int crashLoopRestarts;
+  private final long crashLoopWindowMs;
+  private final long stableUptimeMs;
+  private final Listener listener;
+  private final Deque<Long> restartTimes = new ArrayDeque<>();
+  private volatile Process process;
+  private boolean stopped;
+  private int restarts;
+  private int lastExitCode = -1;
+
+  public ProcessSupervisor(List<String> command, long backoffMs, long maxBackoffMs,
+      int crashLoopRestarts, long crashLoopWindowMs, long stableUptimeMs, Listener listener) {
+    this.command = command;
+    this.backoffMs = backoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.crashLoopRestarts = crashLoopRestarts;
+    this.crashLoopWindowMs = crashLoopWindowMs;
+    this.stableUptimeMs = stableUptimeMs;
+    this.listener = listener;
+  }
+
+  /**
+   * Starts the process and supervises it on a daemon thread.
+   *
+   * @throws IOException if the process could not be started the first time
+   */
+  public void start() throws IOException {
+    final Process first = launch();
+    Thread supervisor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        supervise(first);
+      }
+    }, "ProcessSupervisor");
+    supervisor.setDaemon(true);
+    supervisor.start();
+  }
+
+  /**
+   * The current process, which may already have exited while a restart is pending.
+   */
+  public Process getProcess() {
+    return process;
+  }
+
+  public synchronized int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * Stops restarting the process but leaves the running one alone, so it can be stopped
+   * gracefully.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    notifyAll();
+  }
+
+  /**
+   * Stops restarting the process and kills the running one.
+   */
+  public void destroy() {
+    stop();
+    Process current = process;
+    if (current != null) {
+      current.destroy();
+    }
+  }
+
+  /**
+   * @return the started process, null if the supervisor was stopped
+   */
+  private Process launch() throws IOException {
+    Process started;
+    int restartsBefore;
+    int exitCode;
+    synchronized (this) {
+      if (stopped) {
+        return null;
+      }
+      log.info(String.format("Starting %s, %d restarts so far", command, restarts));
+      started = new ProcessBuilder(command).start();
+      process = started;
+      restartsBefore = restarts;
+      exitCode = lastExitCode;
+    }
+    listener.started(started, restartsBefore, exitCode);
+    return started;
+  }
+
+  private void supervise(Process first) {
+    Process current = first;
+    long startedAt = System.currentTimeMillis();
+    long backoff = backoffMs;
+    while (true) {
+      int exitCode = -1;
+      try {
+        if (current != null) {
+          exitCode = current.waitFor();
+        }
+      } catch (InterruptedException e) {
+        return;
+      }
+      long now = System.currentTimeMillis();
+      String crashLoop = null;
+      synchronized (this) {
+        lastExitCode = exitCode;
+        if (stopped) {
+          log.info("Supervised process exited with code " + exitCode);
+          return;
+        }
+        if (now - startedAt >= stableUptimeMs) {
+          backoff = backoffMs;
+        }
+        restartTimes.addLast(now);
+        while (now - restartTimes.peekFirst() > crashLoopWindowMs) {
+          restartTimes.removeFirst();
+        }
+        if (restartTimes.size() > crashLoopRestarts) {
+          stopped = true;
+          String reason = String.format("Crash loop, %d exits within %d s, last exit code %d",
+              restartTimes.size(), crashLoopWindowMs / 1000, exitCode);
+          log.error(reason);
+          crashLoop = reason;
+        } else {
+          log.warn(String.format("Supervised process exited with code %d after %d ms, "
+              + "restarting in %d ms", exitCode, now - startedAt, backoff));
+          try {
+            long restartAt = now + backoff;
+            while (!stopped && System.currentTimeMillis() < restartAt) {
+              wait(Math.max(1, restartAt - System.currentTimeMillis()));
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (stopped) {
+            return;
+          }
+          backoff = Math.min(backoff * 2, maxBackoffMs);
+          restarts++;
+          startedAt = System.currentTimeMillis();
+        }
+      }
+      if (crashLoop != null) {
+        listener.crashLoop(crashLoop);
+        return;
+      }
+      try {
+        current = launch();
+      } catch (IOException e) {
+        log.error("Unable to restart " + command, e);
+        current = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hbase.util.JmxReader;
+import org.apache.mesos.hbase.util.NodeTelemetry;
+import org.apache.mesos.hbase.util.TelemetryCodec;
+import org.codehaus.jackson.JsonNode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Samples CPU, RSS and I/O of the HBase process from /proc, found through the pid file written by
+ * hbase-daemon.sh, and aggregates them into a NodeTelemetry per report interval. GC totals are
+ * read from the info server's /jmx and the disk usage of the data dir's file system once per
+ * report. A sample reads three small files into a reused buffer.
+ */
+public class ResourceSampler extends PeriodicTask {
+  private final Log log = LogFactory.getLog(ResourceSampler.class);
+
+  // USER_HZ, the unit of utime and stime in /proc/<pid>/stat on Linux
+  private static final int CLOCK_TICKS_PER_SECOND = 100;
+  private static final int TIMEOUT_MS = 5000;
+  private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+  /**
+   * Ships an encoded summary, e.g. as a framework message.
+   */
+  public interface Sender {
+    void send(byte[] message);
+  }
+
+  private final String role;
+  private final int heapMb;
+  private final String hostname;
+  private final File pidFile;
+  private final File dataDir;
+  private final File hbaseSite;
+  private final long reportIntervalMs;
+  private final Sender sender;
+  private final byte[] buffer = new byte[4096];
+  private final JmxReader jmx = new JmxReader(TIMEOUT_MS);
+
+  private int pid = -1;
+  private long lastSampleAt;
+  private long lastTicks;
+  private long lastReadBytes;
+  private long lastWriteBytes;
+  private long lastGcCount = -1;
+  private long lastGcTime;
+
+  private long windowStart = System.currentTimeMillis();
+  private int samples;
+  private double cpuSum;
+  private float cpuMax;
+  private long rssSum;
+  private long rssMax;
+  private long readBytes;
+  private long writeBytes;
+
+  /**
+   * @param heapMb the heap the server was started with, reported along, 0 if unknown
+   */
+  public ResourceSampler(String role, int heapMb, String hostname, File pidFile, File dataDir,
+      File hbaseSite, long sampleIntervalMs, long reportIntervalMs, Sender sender) {
+    super("ResourceSampler", sampleIntervalMs, true);
+    this.role = role;
+    this.heapMb = heapMb;
+    this.hostname = hostname;
+    this.pidFile = pidFile;
+    this.dataDir = dataDir;
+    this.hbaseSite = hbaseSite;
+    this.reportIntervalMs = reportIntervalMs;
+    this.sender = sender;
+  }
+
+  @Override
+  protected void runOnce() {
+    sample();
+    if (System.currentTimeMillis() - windowStart >= reportIntervalMs) {
+      report();
+    }
+  }
+
+  private void sample() {
+    int currentPid = readPid();
+    if (currentPid < 0) {
+      pid = -1;
+      return;
+    }
+    long now = System.currentTimeMillis();
+    String stat = readProc(currentPid, "stat");
+    if (stat == null) {
+      pid = -1;
+      return;
+    }
+    // the command in parentheses may contain spaces, utime and stime are fields 14 and 15
+    String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+    long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    long rss = parseKiloBytes(readProc(currentPid, "status"), "VmRSS:");
+    String io = readProc(currentPid, "io");
+    long read = parseField(io, "read_bytes:");
+    long written = parseField(io, "write_bytes:");
+
+    if (currentPid == pid) {
+      float cpu = (float) ((ticks - lastTicks) / (double) CLOCK_TICKS_PER_SECOND
+          / Math.max(0.001, (now - lastSampleAt) / 1000.0));
+      samples++;
+      cpuSum += cpu;
+      cpuMax = Math.max(cpuMax, cpu);
+      rssSum += rss;
+      rssMax = Math.max(rssMax, rss);
+      readBytes += Math.max(0, read - lastReadBytes);
+      writeBytes += Math.max(0, written - lastWriteBytes);
+    } else {
+      // first sample of a (re)started process only sets the baselines
+      pid = currentPid;
+    }
+    lastSampleAt = now;
+    lastTicks = ticks;
+    lastReadBytes = read;
+    lastWriteBytes = written;
+  }
+
+  private void report() {
+    long now = System.currentTimeMillis();
+    NodeTelemetry telemetry = new NodeTelemetry();
+    telemetry.setHostname(hostname);
+    telemetry.setRole(role);
+    telemetry.setHeapMb(heapMb);
+    telemetry.setWindowStart(windowStart);
+    telemetry.setWindowEnd(now);
+    telemetry.setSamples(samples);
+    if (samples > 0) {
+      telemetry.setCpuAvg((float) (cpuSum / samples));
+      telemetry.setRssAvg(rssSum / samples);
+    }
+    telemetry.setCpuMax(cpuMax);
+    telemetry.setRssMax(rssMax);
+    telemetry.setReadBytes(readBytes);
+    telemetry.setWriteBytes(writeBytes);
+    addGcDelta(telemetry);
+    telemetry.setDiskUsedBytes(dataDir.getTotalSpace() - dataDir.getFreeSpace());
+    telemetry.setDiskFreeBytes(dataDir.getUsableSpace());
+
+    sender.send(TelemetryCodec.encode(telemetry));
+
+    windowStart = now;
+    samples = 0;
+    cpuSum = 0;
+    cpuMax = 0;
+    rssSum = 0;
+    rssMax = 0;
+    readBytes = 0;
+    writeBytes = 0;
+  }
+
+  /**
+   * Collections since the last report, summed over all collectors of the HBase JVM.
+   */
+  private void addGcDelta(NodeTelemetry telemetry) {
+    int infoPort = HealthProbe.getInfoPort(ConfigDiff.readProperties(hbaseSite), role);
+    try {
+      long count = 0;
+      long time = 0;
+      for (JsonNode bean : jmx.readBeans(hostname, infoPort,
+          "java.lang:type=GarbageCollector,*")) {
+        count += bean.path("CollectionCount").getLongValue();
+        time += bean.path("CollectionTime").getLongValue();
+      }
+      // totals going down mean the JVM was restarted
+      if (lastGcCount >= 0 && count >= lastGcCount) {
+        telemetry.setGcCount(count - lastGcCount);
+        telemetry.setGcTimeMs(time - lastGcTime);
+      } else if (lastGcCount >= 0) {
+        telemetry.setGcCount(count);
+        telemetry.setGcTimeMs(time);
+      }
+      lastGcCount = count;
+      lastGcTime = time;
+    } catch (IOException e) {
+      log.debug("Unable to read GC totals: " + e.getMessage());
+    }
+  }
+
+  private int readPid() {
+    if (!pidFile.isFile()) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(read(pidFile).trim());
+    } catch (IOException | NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private String readProc(int processId, String name) {
+    try {
+      return read(new File("/proc/" + processId + "/" + name));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private String read(File file) throws IOException {
+    try (FileInputStream in = new FileInputStream(file)) {
+      int length = 0;
+      int read;
+      while (length < buffer.length
+          && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+        length += read;
+      }
+      return new String(buffer, 0, length, LATIN_1);
+    }
+  }
+
+  private static long parseKiloBytes(String content, String field) {
+    return parseField(content, field) * 1024;
+  }
+
+  /**
+   * @return the number following the field name at the start of a line, 0 if there is none
+   */
+  private static long parseField(String content, String field) {
+    if (content == null) {
+      return 0;
+    }
+    int start = content.indexOf(field);
+    if (start < 0) {
+      return 0;
+    }
+    start += field.length();
+    while (start < content.length() && Character.isWhitespace(content.charAt(start))) {
+      start++;
+    }
+    int end = start;
+    while (end < content.length() && Character.isDigit(content.charAt(end))) {
+      end++;
+    }
+    return end > start ? Long.parseLong(content.substring(start, end)) : 0;
+  }
+}
@@ -10,6 +10,7 @@ public class Task {
   private Protos.TaskInfo taskInfo;
   private String cmd;
   private Process process;
+  private ProcessSupervisor supervisor;
 
   public Task(Protos.TaskInfo taskInfo) {
     this.taskInfo = taskInfo;
@@ -32,6 +33,14 @@ public class Task {
     this.process = process;
   }
 
+  public ProcessSupervisor getSupervisor() {
+    return supervisor;
+  }
+
+  public void setSupervisor(ProcessSupervisor supervisor) {
+    this.supervisor = supervisor;
+  }
+
   public Protos.TaskInfo getTaskInfo() {
     return taskInfo;
   }
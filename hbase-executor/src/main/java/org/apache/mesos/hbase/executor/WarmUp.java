@@ -0,0 +1,175 @@
+package org.apache.mesos.hbase.executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hbase.util.JmxReader;
+import org.codehaus.jackson.JsonNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Warm-up of a started regionserver before it reports healthy. Once it opened regions, which
+ * prefetch their blocks into the cache on open, the warm-up command runs, e.g. to replay a sample
+ * of recent reads. The server is warm when its block cache hit percentage or its 99th percentile
+ * Get latency reaches the threshold, or without thresholds once the command is done. A server
+ * which does not get there before the timeout is taken as warm, its regions have to be served
+ * either way.
+ */
+public class WarmUp extends PeriodicTask {
+  private final Log log = LogFactory.getLog(WarmUp.class);
+
+  private static final int TIMEOUT_MS = 5000;
+  private static final String BEAN = "Hadoop:service=HBase,name=RegionServer,sub=Server";
+
+  /**
+   * Receives the end of the warm-up on the warm-up thread.
+   */
+  public interface Listener {
+    /**
+     * @param message why the server is taken as warm
+     */
+    void warm(String message);
+  }
+
+  private final String hostname;
+  private final File hbaseSite;
+  private final long timeoutMs;
+  private final double hitPercent;
+  private final int getLatencyMs;
+  private final String command;
+  private final Listener listener;
+  private final JmxReader jmx = new JmxReader(TIMEOUT_MS);
+  private volatile long startedAt = System.currentTimeMillis();
+  private volatile boolean commandDone;
+  private volatile boolean warm;
+  private volatile String progress = "waiting for regions";
+
+  public WarmUp(String hostname, File hbaseSite, long intervalMs, long timeoutMs,
+      double hitPercent, int getLatencyMs, String command, Listener listener) {
+    super("WarmUp", intervalMs, false);
+    this.hostname = hostname;
+    this.hbaseSite = hbaseSite;
+    this.timeoutMs = timeoutMs;
+    this.hitPercent = hitPercent;
+    this.getLatencyMs = getLatencyMs;
+    this.command = command;
+    this.listener = listener;
+  }
+
+  /**
+   * The process was restarted with cold caches, it warms up again.
+   */
+  public void restarted() {
+    restarted(System.currentTimeMillis());
+  }
+
+  void restarted(long now) {
+    startedAt = now;
+    commandDone = false;
+    progress = "waiting for regions";
+    warm = false;
+  }
+
+  public boolean isWarm() {
+    return warm;
+  }
+
+  /**
+   * @return what the warm-up waits for
+   */
+  public String getProgress() {
+    return progress;
+  }
+
+  @Override
+  protected void runOnce() {
+    if (!warm) {
+      check(System.currentTimeMillis());
+    }
+  }
+
+  void check(long now) {
+    long elapsed = now - startedAt;
+    if (elapsed >= timeoutMs) {
+      finish(String.format("not warm after %d s, %s", elapsed / 1000, progress));
+      return;
+    }
+    JsonNode server = readServerBean();
+    if (server == null || server.path("regionCount").getLongValue() == 0) {
+      progress = "waiting for regions";
+      return;
+    }
+    if (!commandDone) {
+      progress = "running the warm-up command";
+      runCommand(startedAt + timeoutMs);
+      commandDone = true;
+      server = readServerBean();
+      if (server == null) {
+        return;
+      }
+    }
+    if (hitPercent <= 0 && getLatencyMs <= 0) {
+      finish("regions open");
+      return;
+    }
+    double hits = server.path("blockCacheCountHitPercent").getDoubleValue();
+    if (hitPercent > 0 && hits >= hitPercent) {
+      finish(String.format("block cache hit percentage %.1f", hits));
+      return;
+    }
+    long gets = server.path("Get_num_ops").getLongValue();
+    double getLatency = server.path("Get_99th_percentile").getDoubleValue();
+    if (getLatencyMs > 0 && gets > 0 && getLatency <= getLatencyMs) {
+      finish(String.format("Get p99 latency %.0f ms", getLatency));
+      return;
+    }
+    progress = String.format("block cache hit percentage %.1f, Get p99 latency %.0f ms of %d",
+        hits, getLatency, gets);
+  }
+
+  private void finish(String message) {
+    log.info("Regionserver warmed up: " + message);
+    progress = message;
+    warm = true;
+    listener.warm(message);
+  }
+
+  private void runCommand(long deadline) {
+    if (command.isEmpty()) {
+      return;
+    }
+    log.info("Running the warm-up command: " + command);
+    try {
+      Process process = new ProcessBuilder(Arrays.asList("sh", "-c", command))
+          .redirectErrorStream(true)
+          .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+          .start();
+      if (!AbstractNodeExecutor.waitFor(process, deadline)) {
+        log.warn("The warm-up command did not finish in time, killing it");
+        process.destroy();
+      } else if (process.exitValue() != 0) {
+        log.warn("The warm-up command failed with exit code " + process.exitValue());
+      }
+    } catch (IOException e) {
+      log.warn("Unable to run the warm-up command", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the regionserver's server bean or null if it can't be read
+   */
+  JsonNode readServerBean() {
+    Map<String, String> conf = ConfigDiff.readProperties(hbaseSite);
+    try {
+      return jmx.readBean(hostname, HealthProbe.getInfoPort(conf, "regionserver"), BEAN);
+    } catch (IOException e) {
+      log.debug("Unable to read the regionserver metrics", e);
+      return null;
+    }
+  }
+}
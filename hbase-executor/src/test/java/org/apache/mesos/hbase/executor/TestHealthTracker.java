@@ -0,0 +1,65 @@
+package org.apache.mesos.hbase.executor;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestHealthTracker {
+
+  private static final List<String> PASSED = Collections.emptyList();
+  private static final List<String> FAILED = Collections.singletonList("rpc: refused");
+
+  // 60 s grace, unhealthy after 3 failures, reported at least every 30 s
+  private final HealthTracker health = new HealthTracker(60000, 3, 30000, 0);
+
+  @Test
+  public void ignoresFailuresWhileStarting() {
+    assertNull(health.update(FAILED, 10000));
+    assertNull(health.update(FAILED, 59999));
+    assertEquals(Boolean.TRUE, health.update(PASSED, 60000));
+  }
+
+  @Test
+  public void turnsUnhealthyAfterTheThreshold() {
+    assertEquals(Boolean.TRUE, health.update(PASSED, 60000));
+    assertNull(health.update(FAILED, 61000));
+    assertNull(health.update(FAILED, 62000));
+    assertEquals(Boolean.FALSE, health.update(FAILED, 63000));
+    // a passed probe reports healthy at once and starts counting over
+    assertEquals(Boolean.TRUE, health.update(PASSED, 64000));
+    assertNull(health.update(FAILED, 65000));
+  }
+
+  @Test
+  public void reportsNothingUntilTheFirstHealthIsKnown() {
+    assertNull(health.update(FAILED, 70000));
+    assertNull(health.update(FAILED, 71000));
+    assertEquals(Boolean.FALSE, health.update(FAILED, 72000));
+  }
+
+  @Test
+  public void repeatsAnUnchangedHealthEveryReportInterval() {
+    assertEquals(Boolean.TRUE, health.update(PASSED, 60000));
+    assertNull(health.update(PASSED, 89999));
+    assertEquals(Boolean.TRUE, health.update(PASSED, 90000));
+    // the last reported health stands below the threshold
+    assertEquals(Boolean.TRUE, health.update(FAILED, 120000));
+  }
+
+  @Test
+  public void restartsGetTheGracePeriodAgain() {
+    assertEquals(Boolean.TRUE, health.update(PASSED, 60000));
+    health.restarted(100000);
+    for (long now = 101000; now < 160000; now += 10000) {
+      assertNull(health.update(FAILED, now));
+    }
+    // only the failures after the grace period count
+    assertEquals(Boolean.TRUE, health.update(FAILED, 160000));
+    assertNull(health.update(FAILED, 161000));
+    assertEquals(Boolean.FALSE, health.update(FAILED, 162000));
+  }
+}
@@ -0,0 +1,51 @@
+package org.apache.mesos.hbase.executor;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPeriodicTask {
+
+  private volatile String threadName;
+
+  @Test
+  public void aBlockedTaskDoesNotHoldUpTheOthers() throws InterruptedException {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch runs = new CountDownLatch(3);
+    PeriodicTask warmUp = new PeriodicTask("WarmUp", 10, false) {
+      @Override
+      protected void runOnce() {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    PeriodicTask probe = new PeriodicTask("HealthProbe", 10, false) {
+      @Override
+      protected void runOnce() {
+        threadName = Thread.currentThread().getName();
+        runs.countDown();
+      }
+    };
+
+    warmUp.start();
+    try {
+      assertTrue(blocked.await(5, TimeUnit.SECONDS));
+      probe.start();
+      assertTrue(runs.await(5, TimeUnit.SECONDS));
+      assertEquals("HealthProbe", threadName);
+    } finally {
+      probe.stop();
+      warmUp.stop();
+      release.countDown();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package org.apache.mesos.hbase.executor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestProcessSupervisor {
+
+  private static final long TIMEOUT_MS = 10000;
+
+  private final Starts starts = new Starts();
+  private ProcessSupervisor supervisor;
+
+  @Test
+  public void doublesTheBackoffOfQuickExits() throws Exception {
+    supervisor = create("exit 1", 50, 10000, 100, 60000, 60000);
+    supervisor.start();
+    awaitStarts(4);
+
+    for (int i = 1; i < 4; i++) {
+      assertTrue("restart " + i, starts.gapMs(i) >= 50L << (i - 1));
+      assertEquals(1, (int) starts.exitCodes.get(i));
+    }
+  }
+
+  @Test
+  public void resetsTheBackoffAfterAStableUptime() throws Exception {
+    supervisor = create("sleep 0.2; exit 1", 100, 10000, 100, 60000, 100);
+    supervisor.start();
+    awaitStarts(5);
+
+    // doubling would have waited 800 ms before the last start
+    assertTrue(starts.gapMs(4) < 800);
+  }
+
+  @Test
+  public void givesUpOnTooManyExitsWithinTheWindow() throws Exception {
+    supervisor = create("exit 1", 10, 10, 3, 60000, 60000);
+    supervisor.start();
+
+    assertTrue(starts.crashLoop.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertEquals(4, starts.times.size());
+    assertEquals(3, supervisor.getRestarts());
+  }
+
+  @Test
+  public void exitsSpreadBeyondTheWindowAreNoCrashLoop() throws Exception {
+    supervisor = create("exit 1", 100, 100, 2, 150, 60000);
+    supervisor.start();
+    awaitStarts(5);
+
+    assertEquals(1, starts.crashLoop.getCount());
+  }
+
+  @Test
+  public void stopCancelsAPendingRestart() throws Exception {
+    supervisor = create("exit 0", 300, 300, 100, 60000, 60000);
+    supervisor.start();
+    Thread.sleep(100);
+    supervisor.stop();
+    Thread.sleep(600);
+
+    assertEquals(1, starts.times.size());
+    assertEquals(0, supervisor.getRestarts());
+  }
+
+  @Test
+  public void listenersMayCallBackIntoTheSupervisor() throws Exception {
+    starts.callBack = true;
+    supervisor = create("exit 1", 10, 10, 100, 60000, 60000);
+    supervisor.start();
+    awaitStarts(2);
+
+    assertFalse(starts.blocked);
+  }
+
+  @After
+  public void destroy() {
+    if (supervisor != null) {
+      supervisor.destroy();
+    }
+  }
+
+  private ProcessSupervisor create(String command, long backoffMs, long maxBackoffMs,
+      int crashLoopRestarts, long crashLoopWindowMs, long stableUptimeMs) {
+    return new ProcessSupervisor(Arrays.asList("sh", "-c", command), backoffMs, maxBackoffMs,
+        crashLoopRestarts, crashLoopWindowMs, stableUptimeMs, starts);
+  }
+
+  private void awaitStarts(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (starts.times.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(starts.times.size() >= count);
+  }
+
+  /**
+   * Records the starts, optionally calling the supervisor from another thread meanwhile.
+   */
+  private class Starts implements ProcessSupervisor.Listener {
+    final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+    final List<Integer> exitCodes = Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch crashLoop = new CountDownLatch(1);
+    volatile boolean callBack;
+    volatile boolean blocked;
+
+    @Override
+    public void started(Process process, int restarts, int lastExitCode) {
+      times.add(System.nanoTime());
+      exitCodes.add(lastExitCode);
+      if (callBack) {
+        Thread caller = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            supervisor.getRestarts();
+          }
+        });
+        caller.start();
+        try {
+          caller.join(TIMEOUT_MS / 2);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        blocked |= caller.isAlive();
+      }
+    }
+
+    @Override
+    public void crashLoop(String reason) {
+      crashLoop.countDown();
+    }
+
+    long gapMs(int start) {
+      return TimeUnit.NANOSECONDS.toMillis(times.get(start) - times.get(start - 1));
+    }
+  }
+}
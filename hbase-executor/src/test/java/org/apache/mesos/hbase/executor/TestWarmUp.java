@@ -0,0 +1,122 @@
+package org.apache.mesos.hbase.executor;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestWarmUp {
+
+  private static final long TIMEOUT_MS = 600000;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private String warmMessage;
+  private JsonNode server;
+
+  @Test
+  public void waitsForRegions() throws Exception {
+    WarmUp warmUp = create(90, 0);
+    warmUp.check(1000);
+    assertEquals("waiting for regions", warmUp.getProgress());
+
+    server = bean("{\"regionCount\": 0}");
+    warmUp.check(2000);
+    assertFalse(warmUp.isWarm());
+    assertNull(warmMessage);
+  }
+
+  @Test
+  public void isWarmOnceRegionsOpenWithoutThresholds() throws Exception {
+    WarmUp warmUp = create(0, 0);
+    server = bean("{\"regionCount\": 12}");
+    warmUp.check(1000);
+
+    assertTrue(warmUp.isWarm());
+    assertEquals("regions open", warmMessage);
+  }
+
+  @Test
+  public void isWarmAtTheHitPercentage() throws Exception {
+    WarmUp warmUp = create(90, 0);
+    server = bean("{\"regionCount\": 12, \"blockCacheCountHitPercent\": 89.9}");
+    warmUp.check(1000);
+    assertFalse(warmUp.isWarm());
+
+    server = bean("{\"regionCount\": 12, \"blockCacheCountHitPercent\": 90.0}");
+    warmUp.check(2000);
+    assertTrue(warmUp.isWarm());
+    assertEquals("block cache hit percentage 90.0", warmMessage);
+  }
+
+  @Test
+  public void isWarmAtTheGetLatencyOnceThereWereGets() throws Exception {
+    WarmUp warmUp = create(0, 20);
+    server = bean("{\"regionCount\": 12, \"Get_num_ops\": 0, \"Get_99th_percentile\": 0}");
+    warmUp.check(1000);
+    assertFalse(warmUp.isWarm());
+
+    server = bean("{\"regionCount\": 12, \"Get_num_ops\": 500, \"Get_99th_percentile\": 35}");
+    warmUp.check(2000);
+    assertFalse(warmUp.isWarm());
+    assertEquals("block cache hit percentage 0.0, Get p99 latency 35 ms of 500",
+        warmUp.getProgress());
+
+    server = bean("{\"regionCount\": 12, \"Get_num_ops\": 900, \"Get_99th_percentile\": 18}");
+    warmUp.check(3000);
+    assertTrue(warmUp.isWarm());
+    assertEquals("Get p99 latency 18 ms", warmMessage);
+  }
+
+  @Test
+  public void isTakenAsWarmAtTheTimeout() throws Exception {
+    WarmUp warmUp = create(90, 20);
+    server = bean("{\"regionCount\": 12, \"blockCacheCountHitPercent\": 40.0}");
+    warmUp.check(TIMEOUT_MS - 1);
+    assertFalse(warmUp.isWarm());
+
+    warmUp.check(TIMEOUT_MS);
+    assertTrue(warmUp.isWarm());
+    assertTrue(warmMessage, warmMessage.startsWith("not warm after 600 s, block cache hit"));
+  }
+
+  @Test
+  public void restartsGetTheWholeTimeoutAgain() throws Exception {
+    WarmUp warmUp = create(90, 0);
+    warmUp.check(TIMEOUT_MS);
+    assertTrue(warmUp.isWarm());
+
+    warmUp.restarted(TIMEOUT_MS + 1000);
+    assertFalse(warmUp.isWarm());
+    warmUp.check(2 * TIMEOUT_MS);
+    assertFalse(warmUp.isWarm());
+    assertEquals("waiting for regions", warmUp.getProgress());
+  }
+
+  private WarmUp create(double hitPercent, int getLatencyMs) {
+    WarmUp warmUp = new WarmUp("rs1", new File("hbase-site.xml"), 1000, TIMEOUT_MS, hitPercent,
+        getLatencyMs, "", new WarmUp.Listener() {
+          @Override
+          public void warm(String message) {
+            warmMessage = message;
+          }
+        }) {
+      @Override
+      JsonNode readServerBean() {
+        return server;
+      }
+    };
+    warmUp.restarted(0);
+    return warmUp;
+  }
+
+  private JsonNode bean(String json) throws IOException {
+    return mapper.readTree(json);
+  }
+}
@@ -0,0 +1,67 @@
+package org.apache.mesos.hbase.config;
+
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versions the cluster configuration served by the ConfigServer. The scheduler bumps the version
+ * whenever the rendered configuration may have changed, which wakes every executor long-polling
+ * with an older version.
+ */
+@Singleton
+public class ConfigChangeNotifier {
+  private final Log log = LogFactory.getLog(ConfigChangeNotifier.class);
+
+  private long version;
+  private List<Listener> listeners = new ArrayList<>();
+
+  /**
+   * Callback for a single change; listeners are dropped once they have been called.
+   */
+  public interface Listener {
+    void configChanged(long version);
+  }
+
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  public void configChanged() {
+    List<Listener> waiting;
+    long current;
+    synchronized (this) {
+      current = ++version;
+      waiting = listeners;
+      listeners = new ArrayList<>();
+    }
+    log.info(String.format("Configuration version %d, notifying %d waiting executors", current,
+        waiting.size()));
+    for (Listener listener : waiting) {
+      listener.configChanged(current);
+    }
+  }
+
+  /**
+   * Calls the listener once the version differs from the known one, immediately if it already
+   * does.
+   */
+  public void awaitChange(long knownVersion, Listener listener) {
+    long current;
+    synchronized (this) {
+      current = version;
+      if (current == knownVersion) {
+        listeners.add(listener);
+        return;
+      }
+    }
+    listener.configChanged(current);
+  }
+
+  public synchronized void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+}
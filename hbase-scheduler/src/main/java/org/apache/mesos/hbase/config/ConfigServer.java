@@ -4,27 +4,55 @@ import com.floreysoft.jmte.Engine;
 import com.google.inject.Inject;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.scheduler.SchedulerException;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
 import org.apache.mesos.hbase.state.IPersistentStateStore;
+import org.apache.mesos.hbase.state.NodeSize;
+import org.apache.mesos.hbase.state.RollingRestartState;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.ConnectorStatistics;
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LowResourceMonitor;
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.mesos.hbase.util.HBaseConstants;
 
 /**
@@ -34,24 +62,53 @@ public class ConfigServer {
 
   private final Log log = LogFactory.getLog(ConfigServer.class);
 
+  // Artifacts above this size are streamed asynchronously instead of blocking a worker thread
+  private static final int MIN_ASYNC_CONTENT_LENGTH = 16 * 1024;
+  private static final int LOW_RESOURCES_IDLE_TIMEOUT_MS = 5000;
+
   private Server server;
+  private ServerConnector connector;
+  private ConnectorStatistics connectorStatistics;
+  private StatisticsHandler statisticsHandler;
   private Engine engine;
   private HBaseFrameworkConfig hbaseFrameworkConfig;
   private IPersistentStateStore persistenceStore;
+  private ConfigChangeNotifier configChangeNotifier;
+  private RollingRestartCoordinator rollingRestart;
+  private ClusterTelemetry clusterTelemetry;
+  private MetricsRegistry metrics;
+  private DataNodeLocator dataNodes;
+  private ObjectMapper mapper = new ObjectMapper();
+  // what rendering read about the nodes from the state store, until they are written again
+  private long cachedNodesGeneration = -1;
+  private final Map<String, Map<String, String>> cachedHostProperties = new HashMap<>();
+  private Set<String> cachedPrimaryNodes;
 
   @Inject
   public ConfigServer(HBaseFrameworkConfig hbaseFrameworkConfig,
-      IPersistentStateStore persistenceStore) {
+      IPersistentStateStore persistenceStore, ConfigChangeNotifier configChangeNotifier,
+      RollingRestartCoordinator rollingRestart, ClusterTelemetry clusterTelemetry,
+      MetricsRegistry metrics, DataNodeLocator dataNodes) {
     this.hbaseFrameworkConfig = hbaseFrameworkConfig;
     this.persistenceStore = persistenceStore;
+    this.configChangeNotifier = configChangeNotifier;
+    this.rollingRestart = rollingRestart;
+    this.clusterTelemetry = clusterTelemetry;
+    this.metrics = metrics;
+    this.dataNodes = dataNodes;
     engine = new Engine();
-    server = new Server(hbaseFrameworkConfig.getConfigServerPort());
+    server = createServer();
     ResourceHandler resourceHandler = new ResourceHandler();
     resourceHandler.setResourceBase(hbaseFrameworkConfig.getExecutorPath());
+    resourceHandler.setMinAsyncContentLength(MIN_ASYNC_CONTENT_LENGTH);
     HandlerList handlers = new HandlerList();
     handlers.setHandlers(new Handler[]{
         resourceHandler, new ServeHbaseConfigHandler()});
-    server.setHandler(handlers);
+    RequestTimingHandler timingHandler = new RequestTimingHandler();
+    timingHandler.setHandler(handlers);
+    statisticsHandler = new StatisticsHandler();
+    statisticsHandler.setHandler(timingHandler);
+    server.setHandler(statisticsHandler);
 
     try {
       server.start();
@@ -63,6 +120,95 @@ public class ConfigServer {
     }
   }
 
+  /**
+   * Builds the jetty server with an explicitly sized thread pool and connector, so a cluster wide
+   * restart with every executor polling at once cannot exhaust the scheduler host.
+   */
+  private Server createServer() {
+    QueuedThreadPool threadPool = new QueuedThreadPool(
+        hbaseFrameworkConfig.getConfigServerMaxThreads(),
+        hbaseFrameworkConfig.getConfigServerMinThreads());
+    threadPool.setName("ConfigServer");
+    Server jetty = new Server(threadPool);
+
+    connector = new LimitedServerConnector(jetty, hbaseFrameworkConfig.getConfigServerAcceptors(),
+        hbaseFrameworkConfig.getConfigServerSelectors(),
+        hbaseFrameworkConfig.getConfigServerMaxConnections());
+    connector.setPort(hbaseFrameworkConfig.getConfigServerPort());
+    connector.setAcceptQueueSize(hbaseFrameworkConfig.getConfigServerAcceptQueueSize());
+    connector.setIdleTimeout(hbaseFrameworkConfig.getConfigServerIdleTimeout());
+    connectorStatistics = new ConnectorStatistics();
+    connector.addBean(connectorStatistics);
+    jetty.addConnector(connector);
+
+    // At the connection limit idle connections are closed aggressively to make room
+    LowResourceMonitor lowResourceMonitor = new LowResourceMonitor(jetty);
+    lowResourceMonitor.setMonitoredConnectors(Collections.<Connector>singletonList(connector));
+    lowResourceMonitor.setMonitorThreads(true);
+    lowResourceMonitor.setMaxConnections(hbaseFrameworkConfig.getConfigServerMaxConnections());
+    lowResourceMonitor.setLowResourcesIdleTimeout(LOW_RESOURCES_IDLE_TIMEOUT_MS);
+    jetty.addBean(lowResourceMonitor);
+    return jetty;
+  }
+
+  /**
+   * Stops accepting connections at the limit, further clients wait in the accept queue of the
+   * socket until a connection closes. An acceptor takes its slot before it blocks in accept, the
+   * selector registers the connection only later.
+   */
+  private static class LimitedServerConnector extends ServerConnector {
+    private final int maxConnections;
+    // accepted or being accepted, guarded by this
+    private int connections;
+
+    LimitedServerConnector(Server server, int acceptors, int selectors, int maxConnections) {
+      super(server, acceptors, selectors);
+      this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void accept(int acceptorID) throws IOException {
+      synchronized (this) {
+        while (maxConnections > 0 && connections >= maxConnections) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // the connector stops
+            throw new InterruptedIOException("Interrupted at the connection limit");
+          }
+        }
+        connections++;
+      }
+      boolean accepted = false;
+      try {
+        super.accept(acceptorID);
+        accepted = true;
+      } finally {
+        if (!accepted) {
+          release();
+        }
+      }
+    }
+
+    @Override
+    protected void onEndPointClosed(EndPoint endpoint) {
+      super.onEndPointClosed(endpoint);
+      release();
+    }
+
+    private synchronized void release() {
+      connections--;
+      notifyAll();
+    }
+  }
+
+  /**
+   * The port the server actually listens on, which differs from the configured one when that is 0.
+   */
+  public int getPort() {
+    return connector.getLocalPort();
+  }
+
   public void stop() throws ConfigServerException {
     try {
       server.stop();
@@ -73,69 +219,680 @@ public class ConfigServer {
     }
   }
 
+  /**
+   * Renders the hbase-site.xml template for the given host, which reads HDFS blocks through the
+   * DataNode's domain socket when it runs a DataNode. Only a region server gets the block cache
+   * settings, sized to its offer if it was; a Thrift gateway gets the worker threads of its
+   * offer.
+   */
+  public String renderHbaseSite(String hostname) throws IOException {
+    Map<String, String> properties = new LinkedHashMap<>(getHostProperties(hostname));
+    if (hbaseFrameworkConfig.usingShortCircuitReads() && dataNodes.isDataNodeHost(hostname)) {
+      properties.put("dfs.client.read.shortcircuit", "true");
+      properties.put("dfs.domain.socket.path", hbaseFrameworkConfig.getDfsDomainSocketPath());
+    }
+    return renderHbaseSite(properties);
+  }
+
+  /**
+   * The properties of the nodes running on the host, read from the state store once per write
+   * of the nodes.
+   */
+  private Map<String, String> getHostProperties(String hostname) {
+    long generation = persistenceStore.getNodesGeneration();
+    synchronized (this) {
+      dropStaleNodes(generation);
+      Map<String, String> cached = cachedHostProperties.get(hostname);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    Map<String, String> properties = readHostProperties(hostname);
+    synchronized (this) {
+      if (generation == cachedNodesGeneration) {
+        cachedHostProperties.put(hostname, properties);
+      }
+    }
+    return properties;
+  }
+
+  private Map<String, String> readHostProperties(String hostname) {
+    Map<String, String> hostProperties = new LinkedHashMap<>();
+    if (persistenceStore.slaveNodeRunningOnSlave(hostname)) {
+      hostProperties.putAll(getBucketCacheProperties());
+      NodeSize size = persistenceStore.getNodeSizes().get(hostname);
+      if (size != null) {
+        hostProperties.putAll(size.getProperties());
+      }
+    }
+    Integer thriftWorkers = persistenceStore.getThriftWorkers().get(hostname);
+    if (thriftWorkers != null && persistenceStore.getThriftNodes().containsKey(hostname)) {
+      // the threaded selector server reads the first, the hsha server of later HBase releases
+      // the second
+      hostProperties.put("hbase.thrift.worker.threads", String.valueOf(thriftWorkers));
+      hostProperties.put("hbase.thrift.maxWorkerThreads", String.valueOf(thriftWorkers));
+    }
+    return Collections.unmodifiableMap(hostProperties);
+  }
+
+  /**
+   * The hostnames of the masters, read from the state store once per write of the nodes.
+   */
+  private Set<String> getPrimaryNodes() {
+    long generation = persistenceStore.getNodesGeneration();
+    synchronized (this) {
+      dropStaleNodes(generation);
+      if (cachedPrimaryNodes != null) {
+        return cachedPrimaryNodes;
+      }
+    }
+    Set<String> hostnames = Collections.unmodifiableSet(
+        new TreeSet<>(persistenceStore.getPrimaryNodes().keySet()));
+    synchronized (this) {
+      if (generation == cachedNodesGeneration) {
+        cachedPrimaryNodes = hostnames;
+      }
+    }
+    return hostnames;
+  }
+
+  /**
+   * Forgets what was read about the nodes once the store has written them again.
+   */
+  private synchronized void dropStaleNodes(long generation) {
+    if (generation != cachedNodesGeneration) {
+      cachedHostProperties.clear();
+      cachedPrimaryNodes = null;
+      cachedNodesGeneration = generation;
+    }
+  }
+
+  /**
+   * Adds properties the configuration does not set itself.
+   */
+  static String addProperties(String configuration, Map<String, String> properties) {
+    int end = configuration.lastIndexOf("</configuration>");
+    if (end < 0) {
+      return configuration;
+    }
+    StringBuilder added = new StringBuilder();
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      if (!configuration.contains("<name>" + property.getKey() + "</name>")) {
+        added.append("  <property>\n    <name>").append(property.getKey())
+            .append("</name>\n    <value>").append(property.getValue())
+            .append("</value>\n  </property>\n");
+      }
+    }
+    return configuration.substring(0, end) + added + configuration.substring(end);
+  }
+
+  /**
+   * @return the value the configuration sets the property to, null if it does not set it
+   */
+  static String getProperty(String configuration, String name) {
+    int start = configuration.indexOf("<name>" + name + "</name>");
+    if (start < 0) {
+      return null;
+    }
+    start = configuration.indexOf("<value>", start);
+    int end = start < 0 ? -1 : configuration.indexOf("</value>", start);
+    if (end < 0) {
+      return null;
+    }
+    return configuration.substring(start + "<value>".length(), end).trim();
+  }
+
+  /**
+   * Renders the hbase-site.xml template with the current primary nodes.
+   */
+  public String renderHbaseSite() throws IOException {
+    return renderHbaseSite(Collections.<String, String>emptyMap());
+  }
+
+  /**
+   * @param hostProperties added before the properties of all hosts, the template wins over both
+   */
+  private String renderHbaseSite(Map<String, String> hostProperties) throws IOException {
+    File confFile = new File(hbaseFrameworkConfig.getConfigPath());
+
+    if (!confFile.exists()) {
+      throw new FileNotFoundException("Couldn't file config file: " + confFile.getPath()
+        + ". Please make sure it exists.");
+    }
+
+    String view = new String(Files.readAllBytes(Paths.get(confFile.getPath())), Charset.defaultCharset());
+
+    Map<String, Object> model = new HashMap<>();
+    Iterator<String> iter = getPrimaryNodes().iterator();
+
+    if (iter.hasNext()) {
+      model.put("primary1Hostname", iter.next());
+    }
+
+    if (iter.hasNext()) {
+      model.put("primary2Hostname", iter.next());
+    }
+
+    model.put("hbaseRootDir", getHbaseRootDir());
+
+    model.put("frameworkName", hbaseFrameworkConfig.getFrameworkName());
+    model.put("dataDir", hbaseFrameworkConfig.getDataDir());
+    model.put("haZookeeperQuorum", hbaseFrameworkConfig.getHaZookeeperQuorum());
+    model.put("bucketCacheDir", hbaseFrameworkConfig.getBucketCacheDir());
+
+    String site = addProperties(engine.transform(view, model), hostProperties);
+    return addProperties(addProperties(site, getStorageProperties(site)), getGatewayProperties());
+  }
+
+  /**
+   * Ports the gateways listen on, the endpoints published to clients. Thrift clients have to use
+   * the framed transport and the compact protocol.
+   */
+  private Map<String, String> getGatewayProperties() {
+    Map<String, String> properties = new LinkedHashMap<>();
+    properties.put("hbase.rest.port", String.valueOf(hbaseFrameworkConfig.getRestPort()));
+    properties.put("hbase.regionserver.thrift.port",
+        String.valueOf(hbaseFrameworkConfig.getThriftPort()));
+    properties.put("hbase.regionserver.thrift.framed", "true");
+    properties.put("hbase.regionserver.thrift.compact", "true");
+    return properties;
+  }
+
+  /**
+   * Places the WALs on the configured devices. The WALs are HDFS files, their storage policy puts
+   * the replicas on the SSD volumes of the DataNodes and several WAL groups spread the fsyncs
+   * over several of them, unless the template sets another WAL provider.
+   */
+  private Map<String, String> getStorageProperties(String configuration) {
+    Map<String, String> properties = new LinkedHashMap<>();
+    if (!hbaseFrameworkConfig.getWalStoragePolicy().isEmpty()) {
+      properties.put("hbase.wal.storage.policy", hbaseFrameworkConfig.getWalStoragePolicy());
+    }
+    int walGroups = hbaseFrameworkConfig.getWalGroups();
+    String walProvider = getProperty(configuration, "hbase.wal.provider");
+    if (walGroups > 1 && (walProvider == null || "multiwal".equals(walProvider))) {
+      properties.put("hbase.wal.provider", "multiwal");
+      properties.put("hbase.wal.regiongrouping.strategy", "bounded");
+      properties.put("hbase.wal.regiongrouping.numgroups", String.valueOf(walGroups));
+    }
+    return properties;
+  }
+
+  /**
+   * Places the bucket cache of a region server on the configured device. A cache file on the
+   * persistent volume keeps its index there too, so a relaunched region server starts with a
+   * warm cache. Region servers which warm up prefetch the blocks of the regions they open into
+   * the cache.
+   */
+  private Map<String, String> getBucketCacheProperties() {
+    Map<String, String> properties = new LinkedHashMap<>();
+    String bucketCacheMode = hbaseFrameworkConfig.getBucketCacheMode();
+    String bucketCacheSize = String.valueOf(hbaseFrameworkConfig.getBucketCacheSize());
+    if (HBaseConstants.BUCKETCACHE_FILE.equals(bucketCacheMode)) {
+      File cacheFile = new File(hbaseFrameworkConfig.getBucketCacheFile());
+      properties.put("hbase.bucketcache.ioengine", "file:" + cacheFile.getPath());
+      properties.put("hbase.bucketcache.size", bucketCacheSize);
+      if (hbaseFrameworkConfig.usingPersistentVolumes()
+          && hbaseFrameworkConfig.getBucketCacheDir().isEmpty()) {
+        properties.put("hbase.bucketcache.persistent.path",
+            new File(cacheFile.getParentFile(), "bucketcache.map").getPath());
+      }
+    } else if (HBaseConstants.BUCKETCACHE_OFFHEAP.equals(bucketCacheMode)) {
+      properties.put("hbase.bucketcache.ioengine", "offheap");
+      properties.put("hbase.bucketcache.size", bucketCacheSize);
+    }
+    if (hbaseFrameworkConfig.usingWarmUp()) {
+      properties.put("hbase.rs.prefetchblocksonopen", "true");
+    }
+    return properties;
+  }
+
+  private String getHbaseRootDir()
+  {
+    if (hbaseFrameworkConfig.usingMesosHdfs())
+    {
+      return "hdfs://" + hbaseFrameworkConfig.getDfsNameServices() + "/hbase";
+    } else {
+      return hbaseFrameworkConfig.getHbaseRootDir();
+    }
+  }
+
+  /**
+   * Records the latency of every request by path. Long polls are left out, their time is mostly
+   * spent waiting for a change; artifacts streamed asynchronously are recorded on completion.
+   */
+  private class RequestTimingHandler extends HandlerWrapper {
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException, ServletException {
+      final long start = System.nanoTime();
+      final String path = getPathLabel(target);
+      final Response baseResponse = baseRequest.getResponse();
+      try {
+        super.handle(target, baseRequest, request, response);
+      } finally {
+        if (!baseRequest.isAsyncStarted()) {
+          recordRequest(path, baseResponse.getStatus(), start);
+        } else if (!path.equalsIgnoreCase(HBaseConstants.CONFIG_WATCH_PATH)) {
+          baseRequest.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+              recordRequest(path, baseResponse.getStatus(), start);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+          });
+        }
+      }
+    }
+
+    private String getPathLabel(String target) {
+      // per host configurations share a label
+      String nodePrefix = "/" + HBaseConstants.NODE_CONFIG_PATH + "/";
+      if (target.startsWith(nodePrefix)) {
+        return HBaseConstants.NODE_CONFIG_PATH + "/"
+            + target.substring(target.lastIndexOf('/') + 1);
+      }
+      return target.replace("/", "");
+    }
+
+    private void recordRequest(String path, int status, long start) {
+      // unknown paths share one label so scanners cannot grow the registry
+      String label = status == HttpServletResponse.SC_NOT_FOUND ? "not_found" : path;
+      metrics.histogram("config_server_request_seconds", "path", label).recordSince(start);
+    }
+  }
+
   private class ServeHbaseConfigHandler extends AbstractHandler {
 
-    public synchronized void handle(String target, Request baseRequest, HttpServletRequest request,
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
         HttpServletResponse response) throws IOException {
 
-      String pathRequested = request.getPathInfo().replace("/", "");
+      String pathInfo = request.getPathInfo();
+      if (pathInfo.startsWith("/" + HBaseConstants.NODE_CONFIG_PATH + "/")) {
+        handleNodeConfig(baseRequest, request, response, pathInfo.split("/"));
+        return;
+      }
+      String pathRequested = pathInfo.replace("/", "");
       if (pathRequested.equalsIgnoreCase(HBaseConstants.HBASE_CONFIG_FILE_NAME))
       {
-        handleHbaseSite(baseRequest, request, response);
+        handleHbaseSite(baseRequest, request, response, null);
       } else if (pathRequested.equalsIgnoreCase(HBaseConstants.REGION_SERVERS_FILENAME)) {
         handleRegionServers(baseRequest, request, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.CONFIG_WATCH_PATH)) {
+        handleConfigWatch(baseRequest, request, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.SERVER_STATS_PATH)) {
+        handleServerStats(baseRequest, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.ROLLING_RESTART_PATH)) {
+        handleRollingRestart(baseRequest, request, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.TELEMETRY_PATH)) {
+        handleTelemetry(baseRequest, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.METRICS_PATH)) {
+        handleMetrics(baseRequest, request, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.ENDPOINTS_PATH)) {
+        handleEndpoints(baseRequest, response);
+      } else if (pathRequested.equalsIgnoreCase(HBaseConstants.SCALE_PATH)) {
+        handleScale(baseRequest, request, response);
       } else {
         response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         baseRequest.setHandled(true);
       }
     }
 
-    private String getHbaseRootDir()
+    /**
+     * Long-poll for configuration changes. Answers right away when the caller's version is stale,
+     * otherwise holds the request until the version changes or the poll times out (304).
+     */
+    private void handleConfigWatch(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException
     {
-      if (hbaseFrameworkConfig.usingMesosHdfs())
-      {
-        return "hdfs://" + hbaseFrameworkConfig.getDfsNameServices() + "/hbase";
-      } else {
-        return hbaseFrameworkConfig.getHbaseRootDir();
+      long knownVersion = -1;
+      String versionParam = request.getParameter(HBaseConstants.CONFIG_VERSION_PARAM);
+      if (versionParam != null) {
+        try {
+          knownVersion = Long.parseLong(versionParam);
+        } catch (NumberFormatException e) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          baseRequest.setHandled(true);
+          return;
+        }
+      }
+      baseRequest.setHandled(true);
+
+      long currentVersion = configChangeNotifier.getVersion();
+      if (currentVersion != knownVersion) {
+        writeConfigVersion(response, currentVersion);
+        return;
+      }
+
+      final AsyncContext async = request.startAsync();
+      async.setTimeout(hbaseFrameworkConfig.getConfigLongPollTimeout());
+      final AtomicBoolean answered = new AtomicBoolean();
+      final ConfigChangeNotifier.Listener listener = new ConfigChangeNotifier.Listener() {
+        @Override
+        public void configChanged(long version) {
+          if (answered.compareAndSet(false, true)) {
+            try {
+              writeConfigVersion((HttpServletResponse) async.getResponse(), version);
+            } catch (IOException e) {
+              log.warn("Unable to answer config watch", e);
+            } finally {
+              async.complete();
+            }
+          }
+        }
+      };
+      async.addListener(new AsyncListener() {
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+          configChangeNotifier.removeListener(listener);
+          if (answered.compareAndSet(false, true)) {
+            ((HttpServletResponse) async.getResponse())
+                .setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            async.complete();
+          }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+          configChangeNotifier.removeListener(listener);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+          configChangeNotifier.removeListener(listener);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+      });
+      configChangeNotifier.awaitChange(knownVersion, listener);
+    }
+
+    /**
+     * GET shows the current rolling restart, POST with action=start|pause|resume|abort controls
+     * it. Starting takes an optional batchSize.
+     */
+    private void handleRollingRestart(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException
+    {
+      baseRequest.setHandled(true);
+      String action = request.getParameter("action");
+      if (action != null && !"POST".equals(request.getMethod())) {
+        response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        return;
+      }
+      if (action != null && !isAdmin(request, response)) {
+        return;
+      }
+      try {
+        if ("start".equals(action)) {
+          String batchSize = request.getParameter("batchSize");
+          rollingRestart.start(batchSize == null ? 0 : Integer.parseInt(batchSize));
+        } else if ("pause".equals(action)) {
+          rollingRestart.pause("Paused by request");
+        } else if ("resume".equals(action)) {
+          rollingRestart.resume();
+        } else if ("abort".equals(action)) {
+          rollingRestart.abort();
+        } else if (action != null) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+      } catch (NumberFormatException e) {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        return;
+      } catch (SchedulerException e) {
+        response.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+        return;
+      }
+
+      response.setContentType("application/json;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      // a copy, the coordinator keeps changing the state under its own lock
+      RollingRestartState state = rollingRestart.snapshot();
+      response.getWriter().println(mapper.writeValueAsString(state));
+    }
+
+    /**
+     * Requests changing the cluster carry the configured admin secret as a bearer token. Without
+     * a secret they are all refused.
+     *
+     * @return false after answering 403
+     */
+    private boolean isAdmin(HttpServletRequest request, HttpServletResponse response) {
+      String secret = hbaseFrameworkConfig.getAdminSecret();
+      String authorization = request.getHeader("Authorization");
+      if (!secret.isEmpty() && authorization != null
+          && MessageDigest.isEqual(("Bearer " + secret).getBytes(Charset.forName("UTF-8")),
+              authorization.getBytes(Charset.forName("UTF-8")))) {
+        return true;
       }
+      log.warn(String.format("Refused %s %s from %s", request.getMethod(),
+          request.getPathInfo(), request.getRemoteAddr()));
+      response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+      return false;
+    }
+
+    /**
+     * The resource usage per role and of every node as last reported by the executors.
+     */
+    private void handleTelemetry(Request baseRequest, HttpServletResponse response)
+        throws IOException
+    {
+      Map<String, Object> content = new LinkedHashMap<>();
+      content.put("roles", clusterTelemetry.getSummary());
+      content.put("nodes", clusterTelemetry.getNodes());
+
+      response.setContentType("application/json;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      baseRequest.setHandled(true);
+      response.getWriter().println(mapper.writeValueAsString(content));
+    }
+
+    /**
+     * The host:port endpoints of the launched gateways by type, for clients to balance over.
+     */
+    private void handleEndpoints(Request baseRequest, HttpServletResponse response)
+        throws IOException
+    {
+      Map<String, Object> content = new LinkedHashMap<>();
+      content.put(HBaseConstants.REST_NODE_ID,
+          getEndpoints(persistenceStore.getRestNodes(), hbaseFrameworkConfig.getRestPort()));
+      content.put(HBaseConstants.THRIFT_NODE_ID,
+          getEndpoints(persistenceStore.getThriftNodes(), hbaseFrameworkConfig.getThriftPort()));
+
+      response.setContentType("application/json;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      baseRequest.setHandled(true);
+      response.getWriter().println(mapper.writeValueAsString(content));
     }
 
-    private void handleHbaseSite(Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException     
+    /**
+     * GET shows the count and the launched nodes of the region servers and gateways, POST with
+     * type and count sets the count of a type. The scheduler launches missing nodes on the next
+     * offers and kills surplus ones. A negative region server count runs one on every host.
+     */
+    private void handleScale(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException
     {
-      File confFile = new File(hbaseFrameworkConfig.getConfigPath());
+      baseRequest.setHandled(true);
+      String type = request.getParameter(HBaseConstants.SCALE_TYPE_PARAM);
+      String count = request.getParameter(HBaseConstants.SCALE_COUNT_PARAM);
+      Map<String, Map<String, String>> scaledNodes = getScaledNodes();
+      if (type != null || count != null) {
+        if (!"POST".equals(request.getMethod())) {
+          response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+          return;
+        }
+        if (!isAdmin(request, response)) {
+          return;
+        }
+        if (!scaledNodes.containsKey(type) || count == null) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+        int nodeCount;
+        try {
+          nodeCount = Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+        if (nodeCount < 0 && !HBaseConstants.SLAVE_NODE_ID.equals(type)) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+        log.info(String.format("Scaling %s to %d", type, nodeCount));
+        persistenceStore.setNodeCount(type, nodeCount);
+      }
 
-      if (!confFile.exists()) {
-        throw new FileNotFoundException("Couldn't file config file: " + confFile.getPath()
-          + ". Please make sure it exists.");
+      Map<String, Integer> nodeCounts = persistenceStore.getNodeCounts();
+      Map<String, Object> content = new LinkedHashMap<>();
+      for (Map.Entry<String, Map<String, String>> nodes : scaledNodes.entrySet()) {
+        Integer nodeCount = nodeCounts.get(nodes.getKey());
+        int launched = 0;
+        for (String taskId : nodes.getValue().values()) {
+          if (taskId != null) {
+            launched++;
+          }
+        }
+        Map<String, Object> scale = new LinkedHashMap<>();
+        scale.put("count", nodeCount == null
+            ? hbaseFrameworkConfig.getNodeCount(nodes.getKey()) : nodeCount);
+        scale.put("nodes", launched);
+        content.put(nodes.getKey(), scale);
       }
 
-      String view = new String(Files.readAllBytes(Paths.get(confFile.getPath())), Charset.defaultCharset());
+      response.setContentType("application/json;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.getWriter().println(mapper.writeValueAsString(content));
+    }
+
+    private Map<String, Map<String, String>> getScaledNodes() {
+      Map<String, Map<String, String>> nodes = new LinkedHashMap<>();
+      nodes.put(HBaseConstants.SLAVE_NODE_ID, persistenceStore.getRegionNodes());
+      nodes.put(HBaseConstants.REST_NODE_ID, persistenceStore.getRestNodes());
+      nodes.put(HBaseConstants.THRIFT_NODE_ID, persistenceStore.getThriftNodes());
+      return nodes;
+    }
 
-      Set<String> primaryNodes = new TreeSet<>();
-      primaryNodes.addAll(persistenceStore.getPrimaryNodes().keySet());
-      
-      Map<String, Object> model = new HashMap<>();
-      Iterator<String> iter = primaryNodes.iterator();
-      
-      if (iter.hasNext()) {
-        model.put("primary1Hostname", iter.next());
+    private List<String> getEndpoints(Map<String, String> nodes, int port) {
+      List<String> endpoints = new ArrayList<>();
+      for (String host : new TreeSet<>(nodes.keySet())) {
+        if (nodes.get(host) != null) {
+          endpoints.add(host + ":" + port);
+        }
+      }
+      return endpoints;
+    }
+
+    /**
+     * Scheduler metrics, JSON unless format=prometheus is requested.
+     */
+    private void handleMetrics(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException
+    {
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      baseRequest.setHandled(true);
+      if ("prometheus".equalsIgnoreCase(request.getParameter(HBaseConstants.METRICS_FORMAT_PARAM))) {
+        response.setContentType("text/plain;version=0.0.4;charset=utf-8");
+        response.getWriter().print(metrics.toPrometheus());
+      } else {
+        response.setContentType("application/json;charset=utf-8");
+        response.getWriter().println(mapper.writeValueAsString(metrics.toJson()));
       }
-      
-      if (iter.hasNext()) {
-        model.put("primary2Hostname", iter.next());
+    }
+
+    private void handleServerStats(Request baseRequest, HttpServletResponse response)
+        throws IOException
+    {
+      QueuedThreadPool threadPool = (QueuedThreadPool) server.getThreadPool();
+      StringBuilder content = new StringBuilder();
+      appendStat(content, "requests", statisticsHandler.getRequests());
+      appendStat(content, "requestsActive", statisticsHandler.getRequestsActive());
+      appendStat(content, "requestsActiveMax", statisticsHandler.getRequestsActiveMax());
+      appendStat(content, "requestTimeMeanMs", statisticsHandler.getRequestTimeMean());
+      appendStat(content, "requestTimeStdDevMs", statisticsHandler.getRequestTimeStdDev());
+      appendStat(content, "requestTimeMaxMs", statisticsHandler.getRequestTimeMax());
+      appendStat(content, "dispatchedTimeMeanMs", statisticsHandler.getDispatchedTimeMean());
+      appendStat(content, "dispatchedTimeMaxMs", statisticsHandler.getDispatchedTimeMax());
+      appendStat(content, "asyncRequestsWaiting", statisticsHandler.getAsyncRequestsWaiting());
+      appendStat(content, "asyncRequestsWaitingMax",
+          statisticsHandler.getAsyncRequestsWaitingMax());
+      appendStat(content, "responses2xx", statisticsHandler.getResponses2xx());
+      appendStat(content, "responses3xx", statisticsHandler.getResponses3xx());
+      appendStat(content, "responses4xx", statisticsHandler.getResponses4xx());
+      appendStat(content, "responses5xx", statisticsHandler.getResponses5xx());
+      appendStat(content, "responsesBytesTotal", statisticsHandler.getResponsesBytesTotal());
+      appendStat(content, "connectionsOpen", connectorStatistics.getConnectionsOpen());
+      appendStat(content, "connectionsOpenMax", connectorStatistics.getConnectionsOpenMax());
+      appendStat(content, "connectionDurationMeanMs",
+          connectorStatistics.getConnectionDurationMean());
+      appendStat(content, "threads", threadPool.getThreads());
+      appendStat(content, "threadsIdle", threadPool.getIdleThreads());
+      appendStat(content, "threadsQueued", threadPool.getQueueSize());
+      appendStat(content, "lowOnThreads", threadPool.isLowOnThreads());
+
+      response.setContentType("text/plain;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      baseRequest.setHandled(true);
+      response.getWriter().print(content);
+    }
+
+    private void appendStat(StringBuilder content, String name, Object value) {
+      content.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void writeConfigVersion(HttpServletResponse response, long version)
+        throws IOException
+    {
+      response.setContentType("text/plain;charset=utf-8");
+      response.setHeader("Cache-Control", "no-cache");
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.getWriter().println(version);
+    }
+
+    /**
+     * The configuration of one host, /node/hostname/file.
+     */
+    private void handleNodeConfig(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response, String[] path) throws IOException {
+      if (path.length == 4 && path[3].equalsIgnoreCase(HBaseConstants.HBASE_CONFIG_FILE_NAME)) {
+        handleHbaseSite(baseRequest, request, response, path[2]);
+      } else {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        baseRequest.setHandled(true);
       }
-      
-      model.put("hbaseRootDir", getHbaseRootDir());      
-      
-      model.put("frameworkName", hbaseFrameworkConfig.getFrameworkName());
-      model.put("dataDir", hbaseFrameworkConfig.getDataDir());
-      model.put("haZookeeperQuorum", hbaseFrameworkConfig.getHaZookeeperQuorum());
+    }
 
-      String content = engine.transform(view, model);
+    private void handleHbaseSite(Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response,
+        String hostname) throws IOException
+    {
+      String content = hostname == null ? renderHbaseSite() : renderHbaseSite(hostname);
 
       response.setContentType("application/octet-stream;charset=utf-8");
       response.setHeader("Content-Disposition", "attachment; filename=\"" +
-        HBaseConstants.HBASE_CONFIG_FILE_NAME + "\" ");
+          HBaseConstants.HBASE_CONFIG_FILE_NAME + "\" ");
       response.setHeader("Content-Transfer-Encoding", "binary");
       response.setHeader("Content-Length", Integer.toString(content.length()));
 
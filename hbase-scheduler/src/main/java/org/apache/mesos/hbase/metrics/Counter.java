@@ -0,0 +1,23 @@
+package org.apache.mesos.hbase.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing count.
+ */
+public class Counter {
+
+  private final AtomicLong value = new AtomicLong();
+
+  public void inc() {
+    value.incrementAndGet();
+  }
+
+  public void add(long delta) {
+    value.addAndGet(delta);
+  }
+
+  public long getValue() {
+    return value.get();
+  }
+}
@@ -0,0 +1,9 @@
+package org.apache.mesos.hbase.metrics;
+
+/**
+ * A value read whenever the metrics are exported.
+ */
+public interface Gauge {
+
+  long getValue();
+}
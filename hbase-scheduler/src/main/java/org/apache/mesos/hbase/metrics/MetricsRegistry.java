@@ -0,0 +1,175 @@
+package org.apache.mesos.hbase.metrics;
+
+import com.google.inject.Singleton;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counters, gauges and latency histograms of the scheduler, served as JSON or in the Prometheus
+ * text format by the ConfigServer. A metric is identified by its name and label values, e.g.
+ * offers_declined_total{reason="insufficient_resources"}; the key is created on first use and
+ * callers may keep the returned metric to avoid the lookup.
+ */
+@Singleton
+public class MetricsRegistry {
+
+  private static final String PROMETHEUS_PREFIX = "hbase_mesos_";
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  /**
+   * @param labels alternating label names and values
+   */
+  public Counter counter(String name, String... labels) {
+    String key = key(name, labels);
+    Counter counter = counters.get(key);
+    if (counter == null) {
+      Counter created = new Counter();
+      counter = counters.putIfAbsent(key, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  public Histogram histogram(String name, String... labels) {
+    String key = key(name, labels);
+    Histogram histogram = histograms.get(key);
+    if (histogram == null) {
+      Histogram created = new Histogram();
+      histogram = histograms.putIfAbsent(key, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Registers a gauge, replacing one registered under the same name and labels.
+   */
+  public void gauge(Gauge gauge, String name, String... labels) {
+    gauges.put(key(name, labels), gauge);
+  }
+
+  /**
+   * @return counters, gauges and histograms by key, histogram values in milliseconds
+   */
+  public Map<String, Object> toJson() {
+    Map<String, Object> json = new LinkedHashMap<>();
+    Map<String, Long> counterValues = new TreeMap<>();
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      counterValues.put(entry.getKey(), entry.getValue().getValue());
+    }
+    json.put("counters", counterValues);
+    Map<String, Long> gaugeValues = new TreeMap<>();
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      gaugeValues.put(entry.getKey(), entry.getValue().getValue());
+    }
+    json.put("gauges", gaugeValues);
+    Map<String, Object> histogramValues = new TreeMap<>();
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      Histogram histogram = entry.getValue();
+      Map<String, Object> values = new LinkedHashMap<>();
+      long count = histogram.getCount();
+      values.put("count", count);
+      values.put("meanMs", count == 0 ? 0 : millis(histogram.getSum() / count));
+      for (int i = 0; i < QUANTILES.length; i++) {
+        values.put(QUANTILE_NAMES[i] + "Ms", millis(histogram.getPercentile(QUANTILES[i])));
+      }
+      values.put("maxMs", millis(histogram.getMax()));
+      histogramValues.put(entry.getKey(), values);
+    }
+    json.put("histograms", histogramValues);
+    return json;
+  }
+
+  /**
+   * The Prometheus text exposition format, histograms as summaries in seconds.
+   */
+  public String toPrometheus() {
+    StringBuilder text = new StringBuilder();
+    String lastName = null;
+    for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+      lastName = typeLine(text, entry.getKey(), "counter", lastName);
+      text.append(PROMETHEUS_PREFIX).append(entry.getKey()).append(' ')
+          .append(entry.getValue().getValue()).append('\n');
+    }
+    for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+      lastName = typeLine(text, entry.getKey(), "gauge", lastName);
+      text.append(PROMETHEUS_PREFIX).append(entry.getKey()).append(' ')
+          .append(entry.getValue().getValue()).append('\n');
+    }
+    for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+      lastName = typeLine(text, entry.getKey(), "summary", lastName);
+      String name = name(entry.getKey());
+      String labels = labels(entry.getKey());
+      Histogram histogram = entry.getValue();
+      for (double quantile : QUANTILES) {
+        text.append(PROMETHEUS_PREFIX).append(name).append('{').append(labels)
+            .append(labels.isEmpty() ? "" : ",").append("quantile=\"").append(quantile)
+            .append("\"} ").append(seconds(histogram.getPercentile(quantile))).append('\n');
+      }
+      String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+      text.append(PROMETHEUS_PREFIX).append(name).append("_sum").append(suffix)
+          .append(seconds(histogram.getSum())).append('\n');
+      text.append(PROMETHEUS_PREFIX).append(name).append("_count").append(suffix)
+          .append(histogram.getCount()).append('\n');
+    }
+    return text.toString();
+  }
+
+  static String key(String name, String... labels) {
+    if (labels.length == 0) {
+      return name;
+    }
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels of " + name + " are not name value pairs");
+    }
+    StringBuilder key = new StringBuilder(name).append('{');
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        key.append(',');
+      }
+      key.append(labels[i]).append("=\"")
+          .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+    return key.append('}').toString();
+  }
+
+  private static String typeLine(StringBuilder text, String key, String type, String lastName) {
+    String name = name(key);
+    if (!name.equals(lastName)) {
+      text.append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(type)
+          .append('\n');
+    }
+    return name;
+  }
+
+  private static String name(String key) {
+    int brace = key.indexOf('{');
+    return brace < 0 ? key : key.substring(0, brace);
+  }
+
+  private static String labels(String key) {
+    int brace = key.indexOf('{');
+    return brace < 0 ? "" : key.substring(brace + 1, key.length() - 1);
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  private static double seconds(long micros) {
+    return micros / 1000000.0;
+  }
+}
@@ -0,0 +1,234 @@
+package org.apache.mesos.hbase.scheduler;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.ExecutorID;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.MasterInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.Clock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Opt-in log of the Mesos callbacks the scheduler receives, for replaying a production bring-up
+ * offline with {@link CallbackReplay}. The log starts with a magic number, a version and the start
+ * time; every record is a type byte, the milliseconds since the previous record as a varint and
+ * the callback arguments as length prefixed protobuf messages. The DataNode hosts the scheduler
+ * knows are recorded before the offers whenever they changed, so a replay places region servers
+ * without looking them up. Each record is flushed on its own, so a crashed scheduler leaves a
+ * usable log, and recording stops on the first write error rather than affecting the scheduler.
+ */
+public class CallbackRecorder {
+
+  private final Log log = LogFactory.getLog(CallbackRecorder.class);
+
+  static final int MAGIC = 0x48424342;
+  // 2 added the DataNode hosts
+  static final int VERSION = 2;
+
+  static final byte REGISTERED = 1;
+  static final byte REREGISTERED = 2;
+  static final byte DISCONNECTED = 3;
+  static final byte RESOURCE_OFFERS = 4;
+  static final byte OFFER_RESCINDED = 5;
+  static final byte STATUS_UPDATE = 6;
+  static final byte FRAMEWORK_MESSAGE = 7;
+  static final byte SLAVE_LOST = 8;
+  static final byte DATANODE_HOSTS = 9;
+
+  private final Clock clock;
+  private OutputStream file;
+  private CodedOutputStream output;
+  private long lastTime;
+  private Set<String> lastDataNodeHosts;
+
+  /**
+   * Records into a new file in the configured directory, unless none is configured.
+   */
+  public CallbackRecorder(HBaseFrameworkConfig hbaseFrameworkConfig, Clock clock) {
+    this.clock = clock;
+    String dir = hbaseFrameworkConfig.getCallbackLogDir();
+    if (dir.isEmpty()) {
+      return;
+    }
+    lastTime = clock.currentTimeMillis();
+    File logFile = new File(dir, "callbacks-" + lastTime + ".log");
+    try {
+      if (!logFile.getParentFile().isDirectory() && !logFile.getParentFile().mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      if (!logFile.createNewFile()) {
+        throw new IOException(logFile + " already exists");
+      }
+      file = new FileOutputStream(logFile);
+      output = CodedOutputStream.newInstance(file);
+      output.writeRawLittleEndian32(MAGIC);
+      output.writeRawVarint32(VERSION);
+      output.writeRawVarint64(lastTime);
+      output.flush();
+      log.info("Recording scheduler callbacks to " + logFile);
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  public boolean isRecording() {
+    return output != null;
+  }
+
+  public synchronized void registered(FrameworkID frameworkId, MasterInfo masterInfo) {
+    if (start(REGISTERED)) {
+      try {
+        output.writeMessageNoTag(frameworkId);
+        output.writeMessageNoTag(masterInfo);
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void reregistered(MasterInfo masterInfo) {
+    if (start(REREGISTERED)) {
+      try {
+        output.writeMessageNoTag(masterInfo);
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void disconnected() {
+    if (start(DISCONNECTED)) {
+      try {
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void dataNodeHosts(Set<String> hosts) {
+    if (output == null || hosts.equals(lastDataNodeHosts)) {
+      return;
+    }
+    if (start(DATANODE_HOSTS)) {
+      try {
+        output.writeRawVarint32(hosts.size());
+        for (String host : hosts) {
+          output.writeStringNoTag(host);
+        }
+        end();
+        lastDataNodeHosts = hosts;
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void resourceOffers(List<Offer> offers) {
+    if (start(RESOURCE_OFFERS)) {
+      try {
+        output.writeRawVarint32(offers.size());
+        for (Offer offer : offers) {
+          output.writeMessageNoTag(offer);
+        }
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void offerRescinded(OfferID offerId) {
+    if (start(OFFER_RESCINDED)) {
+      try {
+        output.writeMessageNoTag(offerId);
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void statusUpdate(TaskStatus status) {
+    if (start(STATUS_UPDATE)) {
+      try {
+        output.writeMessageNoTag(status);
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void frameworkMessage(ExecutorID executorId, SlaveID slaveId,
+      byte[] data) {
+    if (start(FRAMEWORK_MESSAGE)) {
+      try {
+        output.writeMessageNoTag(executorId);
+        output.writeMessageNoTag(slaveId);
+        output.writeBytesNoTag(ByteString.copyFrom(data));
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  public synchronized void slaveLost(SlaveID slaveId) {
+    if (start(SLAVE_LOST)) {
+      try {
+        output.writeMessageNoTag(slaveId);
+        end();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  private boolean start(byte type) {
+    if (output == null) {
+      return false;
+    }
+    long now = clock.currentTimeMillis();
+    try {
+      output.writeRawByte(type);
+      output.writeRawVarint64(Math.max(0, now - lastTime));
+    } catch (IOException e) {
+      fail(e);
+      return false;
+    }
+    lastTime = Math.max(lastTime, now);
+    return true;
+  }
+
+  private void end() throws IOException {
+    output.flush();
+  }
+
+  private void fail(IOException e) {
+    log.warn("Stopped recording scheduler callbacks: " + e.getMessage());
+    output = null;
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException closeFailure) {
+        log.debug("Failed to close the callback log", closeFailure);
+      }
+    }
+  }
+}
@@ -0,0 +1,437 @@
+package org.apache.mesos.hbase.scheduler;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.ExecutorID;
+import org.apache.mesos.Protos.FrameworkID;
+import org.apache.mesos.Protos.MasterInfo;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.SlaveID;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.Histogram;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.apache.mesos.hbase.util.VirtualClock;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Feeds a log written by {@link CallbackRecorder} into a fresh scheduler with an in-memory state
+ * store and a driver that only records the decisions. Time is virtual and follows the recorded
+ * timestamps, so reconciliation and dead node timeouts expire as they did in production. Prints
+ * the latency of every callback type, the decisions and, with --placements, every launch, to
+ * compare placement changes and performance fixes against a real trace.
+ *
+ * Status updates refer to the tasks launched in production; the replayed scheduler launches its
+ * own, so a replay shows what the scheduler decides on the same offers and events. A replay runs
+ * offline: it records no callbacks of its own and takes the DataNode hosts from the log instead of
+ * the Mesos master.
+ *
+ * Usage: CallbackReplay callbacks-log [--placements], configured like the scheduler through
+ * the mesos.conf.path system property.
+ */
+public class CallbackReplay {
+
+  private final Log log = LogFactory.getLog(CallbackReplay.class);
+
+  private static final String[] CALLBACK_NAMES = {"", "registered", "reregistered",
+    "disconnected", "resourceOffers", "offerRescinded", "statusUpdate", "frameworkMessage",
+    "slaveLost"};
+
+  /**
+   * What the replayed scheduler did.
+   */
+  public static class Result {
+    private final Map<String, Histogram> callbacks = new TreeMap<>();
+    private final List<String> placements = new ArrayList<>();
+    private final Map<String, Long> declines = new TreeMap<>();
+    private long tasksLaunched;
+    private long offersDeclined;
+    private long tasksKilled;
+    private long frameworkMessages;
+    private long reconciliations;
+    private long durationMs;
+    private boolean truncated;
+
+    public long getCallbacks(String callback) {
+      Histogram latency = callbacks.get(callback);
+      return latency == null ? 0 : latency.getCount();
+    }
+
+    /**
+     * @return "elapsed-ms slave-id task-id" of every launch
+     */
+    public List<String> getPlacements() {
+      return placements;
+    }
+
+    public long getTasksLaunched() {
+      return tasksLaunched;
+    }
+
+    public long getOffersDeclined() {
+      return offersDeclined;
+    }
+
+    public long getTasksKilled() {
+      return tasksKilled;
+    }
+
+    public boolean isTruncated() {
+      return truncated;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append(String.format("replayed %.1f s of callbacks%s%n", durationMs / 1000.0,
+          truncated ? ", the log ends with a truncated record" : ""));
+      for (Map.Entry<String, Histogram> entry : callbacks.entrySet()) {
+        Histogram latency = entry.getValue();
+        text.append(String.format("%-16s %8d calls  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n",
+            entry.getKey(), latency.getCount(), latency.getPercentile(0.5) / 1000.0,
+            latency.getPercentile(0.99) / 1000.0, latency.getMax() / 1000.0));
+      }
+      text.append(String.format("tasks launched: %d, offers declined: %d, tasks killed: %d%n",
+          tasksLaunched, offersDeclined, tasksKilled));
+      text.append(String.format("framework messages: %d, reconciliations: %d%n",
+          frameworkMessages, reconciliations));
+      for (Map.Entry<String, Long> entry : declines.entrySet()) {
+        text.append(String.format("  %s: %d%n", entry.getKey(), entry.getValue()));
+      }
+      return text.toString();
+    }
+  }
+
+  /**
+   * Takes the scheduler's calls without a Mesos master.
+   */
+  private static class ReplayDriver implements SchedulerDriver {
+
+    private final VirtualClock clock;
+    private final Result result;
+
+    ReplayDriver(VirtualClock clock, Result result) {
+      this.clock = clock;
+      this.result = result;
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> tasks,
+        Protos.Filters filters) {
+      for (TaskInfo task : tasks) {
+        result.tasksLaunched++;
+        result.placements.add(clock.elapsed() + " " + task.getSlaveId().getValue() + " "
+            + task.getTaskId().getValue());
+      }
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> tasks) {
+      return launchTasks(offerIds, tasks, null);
+    }
+
+    @Override
+    public Protos.Status launchTasks(OfferID offerId, Collection<TaskInfo> tasks,
+        Protos.Filters filters) {
+      return launchTasks(Collections.singletonList(offerId), tasks, filters);
+    }
+
+    @Override
+    public Protos.Status launchTasks(OfferID offerId, Collection<TaskInfo> tasks) {
+      return launchTasks(Collections.singletonList(offerId), tasks, null);
+    }
+
+    @Override
+    public Protos.Status acceptOffers(Collection<OfferID> offerIds,
+        Collection<Offer.Operation> operations, Protos.Filters filters) {
+      List<TaskInfo> tasks = new ArrayList<>();
+      for (Offer.Operation operation : operations) {
+        if (operation.getType() == Offer.Operation.Type.LAUNCH) {
+          tasks.addAll(operation.getLaunch().getTaskInfosList());
+        }
+      }
+      return launchTasks(offerIds, tasks, filters);
+    }
+
+    @Override
+    public Protos.Status declineOffer(OfferID offerId, Protos.Filters filters) {
+      result.offersDeclined++;
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status declineOffer(OfferID offerId) {
+      return declineOffer(offerId, null);
+    }
+
+    @Override
+    public Protos.Status killTask(TaskID taskId) {
+      result.tasksKilled++;
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status sendFrameworkMessage(ExecutorID executorId, SlaveID slaveId,
+        byte[] data) {
+      result.frameworkMessages++;
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status reconcileTasks(Collection<TaskStatus> statuses) {
+      result.reconciliations++;
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status reviveOffers() {
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status acknowledgeStatusUpdate(TaskStatus status) {
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status requestResources(Collection<Protos.Request> requests) {
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status start() {
+      return Protos.Status.DRIVER_RUNNING;
+    }
+
+    @Override
+    public Protos.Status stop(boolean failover) {
+      return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status stop() {
+      return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status abort() {
+      return Protos.Status.DRIVER_ABORTED;
+    }
+
+    @Override
+    public Protos.Status join() {
+      return Protos.Status.DRIVER_STOPPED;
+    }
+
+    @Override
+    public Protos.Status run() {
+      return Protos.Status.DRIVER_STOPPED;
+    }
+  }
+
+  /**
+   * Knows the DataNode hosts recorded last, or the configured ones until then.
+   */
+  private static class ReplayDataNodes extends DataNodeLocator {
+    private Set<String> hosts;
+
+    ReplayDataNodes(HBaseFrameworkConfig hbaseFrameworkConfig, VirtualClock clock) {
+      super(hbaseFrameworkConfig, clock);
+      hosts = super.getDataNodeHosts();
+    }
+
+    @Override
+    public Set<String> getDataNodeHosts() {
+      return hosts;
+    }
+
+    @Override
+    public boolean isDataNodeHost(String hostname) {
+      return hosts.contains(hostname);
+    }
+  }
+
+  private final HBaseFrameworkConfig hbaseFrameworkConfig;
+
+  public CallbackReplay(HBaseFrameworkConfig hbaseFrameworkConfig) {
+    Map<String, String> offline = new HashMap<>();
+    offline.put("mesos.hbase.callback.log.dir", "");
+    offline.put("mesos.hbase.mesoshdfs", "false");
+    this.hbaseFrameworkConfig = hbaseFrameworkConfig.withProperties(offline);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: CallbackReplay callbacks-log [--placements]");
+      System.exit(1);
+    }
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    Result result = new CallbackReplay(new HBaseFrameworkConfig()).replay(new File(args[0]));
+    System.out.print(result);
+    if (args.length > 1 && args[1].equals("--placements")) {
+      for (String placement : result.getPlacements()) {
+        System.out.println(placement);
+      }
+    }
+  }
+
+  public Result replay(File logFile) throws IOException {
+    InputStream file = new BufferedInputStream(new FileInputStream(logFile));
+    try {
+      return replay(file);
+    } finally {
+      file.close();
+    }
+  }
+
+  public Result replay(InputStream stream) throws IOException {
+    CodedInputStream input = CodedInputStream.newInstance(stream);
+    if (input.readRawLittleEndian32() != CallbackRecorder.MAGIC) {
+      throw new IOException("Not a callback log");
+    }
+    int version = input.readRawVarint32();
+    if (version < 1 || version > CallbackRecorder.VERSION) {
+      throw new IOException("Unsupported callback log version " + version);
+    }
+    long start = input.readRawVarint64();
+
+    VirtualClock clock = new VirtualClock(start);
+    Result result = new Result();
+    ReplayDriver driver = new ReplayDriver(clock, result);
+    MetricsRegistry metrics = new MetricsRegistry();
+    LiveState liveState = new LiveState(clock);
+    ReplayDataNodes dataNodes = new ReplayDataNodes(hbaseFrameworkConfig, clock);
+    PersistentStateStore persistenceStore = new PersistentStateStore(hbaseFrameworkConfig,
+        new HBaseDevelopmentStore(), new DeadNodeTracker(hbaseFrameworkConfig, clock));
+    HBaseScheduler scheduler = new HBaseScheduler(hbaseFrameworkConfig, liveState,
+        persistenceStore, new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(hbaseFrameworkConfig, persistenceStore, liveState, clock),
+        new ClusterTelemetry(hbaseFrameworkConfig, clock), metrics,
+        dataNodes, clock);
+
+    long elapsed = 0;
+    try {
+      while (!input.isAtEnd()) {
+        input.resetSizeCounter();
+        byte type = input.readRawByte();
+        elapsed += input.readRawVarint64();
+        // timers of the scheduler due before the callback run first
+        while (clock.runNext(elapsed)) {
+          // run them all
+        }
+        if (type == CallbackRecorder.DATANODE_HOSTS) {
+          Set<String> hosts = new HashSet<>();
+          for (int count = input.readRawVarint32(); count > 0; count--) {
+            hosts.add(input.readString());
+          }
+          dataNodes.hosts = Collections.unmodifiableSet(hosts);
+          continue;
+        }
+        if (type <= 0 || type >= CALLBACK_NAMES.length) {
+          throw new IOException("Unknown callback record type " + type);
+        }
+        Histogram latency = result.callbacks.get(CALLBACK_NAMES[type]);
+        if (latency == null) {
+          latency = new Histogram();
+          result.callbacks.put(CALLBACK_NAMES[type], latency);
+        }
+        long callStart = System.nanoTime();
+        dispatch(type, input, scheduler, driver);
+        latency.recordSince(callStart);
+      }
+    } catch (InvalidProtocolBufferException e) {
+      // the recording scheduler stopped in the middle of a record
+      log.warn("Callback log ends with a truncated record: " + e.getMessage());
+      result.truncated = true;
+    }
+    result.durationMs = elapsed;
+
+    @SuppressWarnings("unchecked")
+    Map<String, Long> counters = (Map<String, Long>) metrics.toJson().get("counters");
+    for (Map.Entry<String, Long> counter : counters.entrySet()) {
+      if (counter.getKey().startsWith("offers_declined_total")) {
+        result.declines.put(counter.getKey(), counter.getValue());
+      }
+    }
+    return result;
+  }
+
+  private void dispatch(byte type, CodedInputStream input, HBaseScheduler scheduler,
+      SchedulerDriver driver) throws IOException {
+    switch (type) {
+      case CallbackRecorder.REGISTERED:
+        FrameworkID frameworkId = read(input, FrameworkID.newBuilder()).build();
+        scheduler.registered(driver, frameworkId, read(input, MasterInfo.newBuilder()).build());
+        break;
+      case CallbackRecorder.REREGISTERED:
+        scheduler.reregistered(driver, read(input, MasterInfo.newBuilder()).build());
+        break;
+      case CallbackRecorder.DISCONNECTED:
+        scheduler.disconnected(driver);
+        break;
+      case CallbackRecorder.RESOURCE_OFFERS:
+        int count = input.readRawVarint32();
+        List<Offer> offers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          offers.add(read(input, Offer.newBuilder()).build());
+        }
+        scheduler.resourceOffers(driver, offers);
+        break;
+      case CallbackRecorder.OFFER_RESCINDED:
+        scheduler.offerRescinded(driver, read(input, OfferID.newBuilder()).build());
+        break;
+      case CallbackRecorder.STATUS_UPDATE:
+        scheduler.statusUpdate(driver, read(input, TaskStatus.newBuilder()).build());
+        break;
+      case CallbackRecorder.FRAMEWORK_MESSAGE:
+        ExecutorID executorId = read(input, ExecutorID.newBuilder()).build();
+        SlaveID slaveId = read(input, SlaveID.newBuilder()).build();
+        scheduler.frameworkMessage(driver, executorId, slaveId,
+            input.readBytes().toByteArray());
+        break;
+      case CallbackRecorder.SLAVE_LOST:
+        scheduler.slaveLost(driver, read(input, SlaveID.newBuilder()).build());
+        break;
+      default:
+        throw new IOException("Unknown callback record type " + type);
+    }
+  }
+
+  private static <B extends Message.Builder> B read(CodedInputStream input, B builder)
+      throws IOException {
+    input.readMessage(builder, ExtensionRegistryLite.getEmptyRegistry());
+    return builder;
+  }
+}
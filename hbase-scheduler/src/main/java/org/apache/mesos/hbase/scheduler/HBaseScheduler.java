@@ -12,8 +12,11 @@ import org.apache.mesos.Protos.Credential;
 import org.apache.mesos.Protos.Environment;
 import org.apache.mesos.Protos.ExecutorID;
 import org.apache.mesos.Protos.ExecutorInfo;
+import org.apache.mesos.Protos.Filters;
 import org.apache.mesos.Protos.FrameworkID;
 import org.apache.mesos.Protos.FrameworkInfo;
+import org.apache.mesos.Protos.Label;
+import org.apache.mesos.Protos.Labels;
 import org.apache.mesos.Protos.MasterInfo;
 import org.apache.mesos.Protos.Offer;
 import org.apache.mesos.Protos.OfferID;
@@ -25,12 +28,24 @@ import org.apache.mesos.Protos.TaskState;
 import org.apache.mesos.Protos.TaskStatus;
 import org.apache.mesos.Protos.Value;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.metrics.Counter;
+import org.apache.mesos.hbase.metrics.Gauge;
+import org.apache.mesos.hbase.metrics.Histogram;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
 import org.apache.mesos.hbase.state.AcquisitionPhase;
+import org.apache.mesos.hbase.state.ArtifactPeerTree;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
 import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.NodeSize;
 import org.apache.mesos.hbase.state.PersistenceException;
 import org.apache.mesos.hbase.state.IPersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
 import org.apache.mesos.hbase.util.DnsResolver;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.nio.charset.Charset;
@@ -38,18 +53,24 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.ConfigurationException;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 import org.apache.mesos.hbase.util.HBaseConstants;
 import org.apache.mesos.hbase.util.HdfsConfFileUrlJsonFinder;
+import org.apache.mesos.hbase.util.TelemetryCodec;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 
 /**
  * HBase Mesos Framework Scheduler class implementation.
- * TODO: add start of https://wiki.apache.org/hadoop/Hbase/Stargate
  */
 public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   // TODO (elingg) remove as much logic as possible from Scheduler to clean up code
@@ -61,22 +82,93 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   private final LiveState liveState;
   private final IPersistentStateStore persistenceStore;
   private final DnsResolver dnsResolver;
+  private final ArtifactPeerTree artifactPeers;
+  private final ConfigChangeNotifier configChangeNotifier;
+  private final RollingRestartCoordinator rollingRestart;
+  private final ClusterTelemetry clusterTelemetry;
+  private final MetricsRegistry metrics;
+  private final DataNodeLocator dataNodes;
+  private final Clock clock;
+  private final CallbackRecorder recorder;
+  private final PlacementConstraints masterConstraints;
+  private final PlacementConstraints slaveConstraints;
+  private final PlacementConstraints restConstraints;
+  private final PlacementConstraints thriftConstraints;
+  private final PersistentVolumes volumes;
+  private final Histogram resourceOffersTime;
+  private final Histogram statusUpdateTime;
+  private final Histogram launchToRunningTime;
+  private final Counter offersAccepted;
 
   private MasterInfo masterInfo;
   private ObjectMapper mapper = new ObjectMapper();
+  private Map<String, String> artifactChecksums;
+  // System.nanoTime() of every launch not yet reported running
+  private final Map<String, Long> launchedAt = new ConcurrentHashMap<>();
+  // tasks killed to scale their type down, until they are gone
+  private final Set<String> scaledDown =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  // why the last offer was not used, offers are handled one at a time
+  private String declineReason;
+  // since when offers of hosts without a DataNode are declined, 0 when not waiting
+  private long localityWaitStart;
 
   @Inject
   public HBaseScheduler(HBaseFrameworkConfig hbaseFrameworkConfig,
-      LiveState liveState, IPersistentStateStore persistenceStore) {
+      LiveState liveState, IPersistentStateStore persistenceStore,
+      ConfigChangeNotifier configChangeNotifier, RollingRestartCoordinator rollingRestart,
+      ClusterTelemetry clusterTelemetry, MetricsRegistry metrics, DataNodeLocator dataNodes,
+      Clock clock) {
 
     this.hbaseFrameworkConfig = hbaseFrameworkConfig;
     this.liveState = liveState;
     this.persistenceStore = persistenceStore;
+    this.configChangeNotifier = configChangeNotifier;
+    this.rollingRestart = rollingRestart;
+    this.clusterTelemetry = clusterTelemetry;
+    this.metrics = metrics;
+    this.dataNodes = dataNodes;
+    this.clock = clock;
+    this.recorder = new CallbackRecorder(hbaseFrameworkConfig, clock);
+    this.masterConstraints = PlacementConstraints.parse(
+        hbaseFrameworkConfig.getMasterNodeConstraints());
+    this.slaveConstraints = PlacementConstraints.parse(
+        hbaseFrameworkConfig.getSlaveNodeConstraints());
+    this.restConstraints = PlacementConstraints.parse(
+        hbaseFrameworkConfig.getRestNodeConstraints());
+    this.thriftConstraints = PlacementConstraints.parse(
+        hbaseFrameworkConfig.getThriftNodeConstraints());
+    String thriftServerType = hbaseFrameworkConfig.getThriftServerType();
+    if (!Arrays.asList(HBaseConstants.THRIFT_THREADED_SELECTOR, HBaseConstants.THRIFT_HSHA)
+        .contains(thriftServerType)) {
+      throw new ConfigurationException("Unknown Thrift server type " + thriftServerType
+          + ", expected threadedselector or hsha");
+    }
+    this.volumes = new PersistentVolumes(hbaseFrameworkConfig);
+    NodeSize.checkConfig(hbaseFrameworkConfig);
+    this.resourceOffersTime = metrics.histogram("resource_offers_seconds");
+    this.statusUpdateTime = metrics.histogram("status_update_seconds");
+    this.launchToRunningTime = metrics.histogram("launch_to_running_seconds");
+    this.offersAccepted = metrics.counter("offers_accepted_total");
+    metrics.gauge(new Gauge() {
+      @Override
+      public long getValue() {
+        return HBaseScheduler.this.liveState.getRunningTasks().size();
+      }
+    }, "tasks_running");
+    metrics.gauge(new Gauge() {
+      @Override
+      public long getValue() {
+        return HBaseScheduler.this.liveState.getStagingTasksSize();
+      }
+    }, "tasks_staging");
     this.dnsResolver = new DnsResolver(this, hbaseFrameworkConfig);
+    this.artifactPeers = new ArtifactPeerTree(hbaseFrameworkConfig.getPeerFanout());
   }
 
   @Override
   public void disconnected(SchedulerDriver driver) {
+    recorder.disconnected();
     log.info("Scheduler driver disconnected");
   }
 
@@ -119,18 +211,35 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   @Override
   public void frameworkMessage(SchedulerDriver driver, ExecutorID executorID, SlaveID slaveID,
       byte[] data) {
+    recorder.frameworkMessage(executorID, slaveID, data);
+    if (TelemetryCodec.isTelemetry(data)) {
+      try {
+        clusterTelemetry.update(TelemetryCodec.decode(data));
+      } catch (IOException e) {
+        log.warn("Invalid telemetry from executor " + executorID.getValue() + ": "
+            + e.getMessage());
+      }
+      return;
+    }
+    String message = new String(data, Charset.defaultCharset());
+    if (message.startsWith(HBaseConstants.ARTIFACT_PEER_READY)) {
+      artifactPeers.addPeer(executorID.getValue(),
+          message.substring(HBaseConstants.ARTIFACT_PEER_READY.length()).trim());
+      return;
+    }
     log.info("Framework message: executorId=" + executorID.getValue() + " slaveId="
         + slaveID.getValue() + " data='" + Arrays.toString(data) + "'");
   }
 
   @Override
   public void offerRescinded(SchedulerDriver driver, OfferID offerId) {
+    recorder.offerRescinded(offerId);
     log.info("Offer rescinded: offerId=" + offerId.getValue());
   }
 
   @Override
   public void registered(SchedulerDriver driver, FrameworkID frameworkId, MasterInfo masterInfo) {
-
+    recorder.registered(frameworkId, masterInfo);
     try {
       persistenceStore.setFrameworkId(frameworkId);
     } catch (PersistenceException e) {
@@ -140,6 +249,7 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
       throw new SchedulerException(msg, e);
     }
     this.masterInfo = masterInfo;
+    dataNodes.setMaster(masterInfo);
     log.info("Registered framework frameworkId=" + frameworkId.getValue());
     // reconcile tasks upon registration
     reconcileTasks(driver);
@@ -147,7 +257,9 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
 
   @Override
   public void reregistered(SchedulerDriver driver, MasterInfo masterInfo) {
+    recorder.reregistered(masterInfo);
     this.masterInfo = masterInfo;
+    dataNodes.setMaster(masterInfo);
     log.info("Reregistered framework: starting task reconciliation");
     // reconcile tasks upon reregistration
     reconcileTasks(driver);
@@ -155,6 +267,29 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
 
   @Override
   public void statusUpdate(SchedulerDriver driver, TaskStatus status) {
+    recorder.statusUpdate(status);
+    long start = System.nanoTime();
+    try {
+      metrics.counter("status_updates_total", "state", status.getState().name()).inc();
+      recordLaunchLatency(status);
+      handleStatusUpdate(driver, status);
+    } finally {
+      statusUpdateTime.recordSince(start);
+    }
+  }
+
+  private void recordLaunchLatency(TaskStatus status) {
+    if (isRunningState(status)) {
+      Long launched = launchedAt.remove(status.getTaskId().getValue());
+      if (launched != null) {
+        launchToRunningTime.recordSince(launched);
+      }
+    } else if (isTerminalState(status)) {
+      launchedAt.remove(status.getTaskId().getValue());
+    }
+  }
+
+  private void handleStatusUpdate(SchedulerDriver driver, TaskStatus status) {
     log.info(String.format(
         "Received status update for taskId=%s state=%s message='%s' stagingTasks.size=%d",
         status.getTaskId().getValue(),
@@ -167,14 +302,62 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     }
 
     if (isTerminalState(status)) {
+      scaledDown.remove(status.getTaskId().getValue());
+      rollingRestart.taskTerminated(status);
       liveState.removeRunningTask(status.getTaskId());
       persistenceStore.removeTaskId(status.getTaskId().getValue());
+      String executorId = getExecutorIdForTask(status.getTaskId()).getValue();
+      if (status.getState() == TaskState.TASK_FINISHED
+          || status.getState() == TaskState.TASK_KILLED) {
+        artifactPeers.removePeer(executorId);
+      } else {
+        artifactPeers.launchFailed(executorId);
+      }
       // Correct the phase when a task dies after the reconcile period is over
       if (!liveState.getCurrentAcquisitionPhase().equals(AcquisitionPhase.RECONCILING_TASKS)) {
         correctCurrentPhase();
       }
     } else if (isRunningState(status)) {
       liveState.updateTaskForStatus(status);
+      artifactPeers.downloaded(getExecutorIdForTask(status.getTaskId()).getValue());
+
+      // Not a new task, its executor could not apply a configuration change online
+      if (status.getMessage().startsWith(HBaseConstants.RESTART_REQUIRED)) {
+        // restarting is left to the operator, e.g. through a rolling restart
+        log.warn(String.format("Task %s needs a restart to apply %s",
+            status.getTaskId().getValue(),
+            status.getMessage().substring(HBaseConstants.RESTART_REQUIRED.length())));
+        rollingRestart.advance(driver);
+        return;
+      }
+
+      // Health reports of running tasks
+      if (status.getMessage().startsWith(HBaseConstants.HEALTH_CHECK)) {
+        if (!status.getHealthy()) {
+          log.warn(String.format("Task %s is unhealthy: %s", status.getTaskId().getValue(),
+              status.getMessage().substring(HBaseConstants.HEALTH_CHECK.length())));
+        }
+        killUnhealthyTasks(driver);
+        rollingRestart.advance(driver);
+        return;
+      }
+
+      // A region server which is up but still warming up has no health yet
+      if (status.getMessage().startsWith(HBaseConstants.WARMING_UP)) {
+        log.info(String.format("Task %s is warming up: %s", status.getTaskId().getValue(),
+            status.getMessage().substring(HBaseConstants.WARMING_UP.length())));
+        liveState.resetHealth(status.getTaskId().getValue());
+        return;
+      }
+
+      // Not a new task either, its executor restarted the HBase process
+      if (status.getMessage().startsWith(HBaseConstants.PROCESS_RESTARTED)) {
+        log.warn(String.format("Task %s had its HBase process restarted %s",
+            status.getTaskId().getValue(),
+            status.getMessage().substring(HBaseConstants.PROCESS_RESTARTED.length())));
+        rollingRestart.advance(driver);
+        return;
+      }
 
       log.info(String.format("Current Acquisition Phase: %s", liveState
           .getCurrentAcquisitionPhase().toString()));
@@ -190,7 +373,6 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
             correctCurrentPhase();
           }
           break;
-        // TODO (elingg) add a configurable number of data nodes
         case SLAVE_NODES:
           reloadConfigsOnAllRunningTasks(driver); // all nodes need fetch
                                                   // HBaseConstants.REGION_SERVERS_FILENAME
@@ -200,35 +382,61 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
       log.warn(String.format("Don't know how to handle state=%s for taskId=%s",
           status.getState(), status.getTaskId().getValue()));
     }
+    rollingRestart.advance(driver);
   }
 
   @Override
   public void resourceOffers(SchedulerDriver driver, List<Offer> offers) {
+    recorder.dataNodeHosts(dataNodes.getDataNodeHosts());
+    recorder.resourceOffers(offers);
+    long start = System.nanoTime();
+    try {
+      metrics.counter("offers_received_total").add(offers.size());
+      handleResourceOffers(driver, offers);
+    } finally {
+      resourceOffersTime.recordSince(start);
+    }
+  }
+
+  private void handleResourceOffers(SchedulerDriver driver, List<Offer> offers) {
     log.info(String.format("Received %d offers", offers.size()));
+    killUnhealthyTasks(driver);
+    Map<String, Integer> nodeCounts = getNodeCounts();
+    killSurplusNodes(driver, nodeCounts);
+    rollingRestart.advance(driver);
 
     // TODO (elingg) within each phase, accept offers based on the number of nodes you need
     boolean acceptedOffer = false;
     for (Offer offer : offers) {
       if (acceptedOffer) {
-        driver.declineOffer(offer.getId());
+        declineOffer(driver, offer, "already_launched");
       } else {
+        declineReason = "no_launch_needed";
         switch (liveState.getCurrentAcquisitionPhase()) {
           case RECONCILING_TASKS:
             log.info("Declining offers while reconciling tasks");
-            driver.declineOffer(offer.getId());
+            declineOffer(driver, offer, "reconciling");
             break;
           case START_MASTER_NODES:
             if (tryToLaunchMasterNode(driver, offer)) {
               acceptedOffer = true;
+              offersAccepted.inc();
             } else {
-              driver.declineOffer(offer.getId());
+              declineOffer(driver, offer, declineReason);
             }
             break;
           case SLAVE_NODES:
-            if (tryToLaunchSlaveNode(driver, offer)) {
+            if (tryToLaunchSlaveNode(driver, offer, nodeCounts)
+                || tryToLaunchGatewayNode(driver, offer, HBaseConstants.REST_NODE_ID,
+                    nodeCounts, restConstraints,
+                    hbaseFrameworkConfig.usingRestNodesOnRegionServerHosts())
+                || tryToLaunchGatewayNode(driver, offer, HBaseConstants.THRIFT_NODE_ID,
+                    nodeCounts, thriftConstraints,
+                    hbaseFrameworkConfig.usingThriftNodesOnRegionServerHosts())) {
               acceptedOffer = true;
+              offersAccepted.inc();
             } else {
-              driver.declineOffer(offer.getId());
+              declineOffer(driver, offer, declineReason);
             }
             break;
         }
@@ -236,8 +444,95 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     }
   }
 
+  private void declineOffer(SchedulerDriver driver, Offer offer, String reason) {
+    metrics.counter("offers_declined_total", "reason", reason).inc();
+    driver.declineOffer(offer.getId());
+  }
+
+  /**
+   * Kills tasks which stayed unhealthy, like lost tasks they are then relaunched.
+   */
+  private void killUnhealthyTasks(SchedulerDriver driver) {
+    long timeout = hbaseFrameworkConfig.getUnhealthyKillTimeout() * 1000L;
+    for (String taskId : liveState.getTasksUnhealthyFor(timeout)) {
+      log.warn(String.format("Task %s stayed unhealthy for %d s, killing it", taskId,
+          timeout / SECONDS_FROM_MILLIS));
+      liveState.resetUnhealthy(taskId);
+      driver.killTask(TaskID.newBuilder().setValue(taskId).build());
+    }
+  }
+
+  /**
+   * Kills the nodes of each type beyond its count, the latest launched first. Region servers
+   * unload their regions before they stop and stay dead nodes of their hosts, scaling out again
+   * relaunches them there. The nodes of a type are only looked up when it may have surplus ones.
+   */
+  private void killSurplusNodes(SchedulerDriver driver, Map<String, Integer> nodeCounts) {
+    for (Map.Entry<String, Integer> nodeCount : nodeCounts.entrySet()) {
+      String taskType = nodeCount.getKey();
+      int count = nodeCount.getValue();
+      if (count < 0 || count == 0 && liveState.getRunningTaskCount(taskType) == 0) {
+        continue;
+      }
+      killSurplusNodes(driver, taskType, count, getNodes(taskType));
+    }
+  }
+
+  private void killSurplusNodes(SchedulerDriver driver, String taskType, int count,
+      Map<String, String> nodes) {
+    List<String> taskIds = getLiveTaskIds(nodes);
+    if (taskIds.size() <= count) {
+      return;
+    }
+    // the launch time ends the task id
+    Collections.sort(taskIds);
+    for (String taskId : taskIds.subList(count, taskIds.size())) {
+      if (scaledDown.add(taskId)) {
+        log.info(String.format("Scaling %s down to %d, killing %s", taskType, count, taskId));
+        metrics.counter("tasks_scaled_down_total", "type", taskType).inc();
+        driver.killTask(TaskID.newBuilder().setValue(taskId).build());
+      }
+    }
+  }
+
+  /**
+   * @return the count of each scalable node type, set through the scale API else configured
+   */
+  private Map<String, Integer> getNodeCounts() {
+    Map<String, Integer> scaled = persistenceStore.getNodeCounts();
+    Map<String, Integer> nodeCounts = new LinkedHashMap<>();
+    for (String taskType : Arrays.asList(HBaseConstants.SLAVE_NODE_ID,
+        HBaseConstants.REST_NODE_ID, HBaseConstants.THRIFT_NODE_ID)) {
+      Integer count = scaled.get(taskType);
+      nodeCounts.put(taskType, count == null ? hbaseFrameworkConfig.getNodeCount(taskType) : count);
+    }
+    return nodeCounts;
+  }
+
+  private Map<String, String> getNodes(String taskType) {
+    switch (taskType) {
+      case HBaseConstants.SLAVE_NODE_ID:
+        return persistenceStore.getRegionNodes();
+      case HBaseConstants.REST_NODE_ID:
+        return persistenceStore.getRestNodes();
+      default:
+        return persistenceStore.getThriftNodes();
+    }
+  }
+
+  private static List<String> getLiveTaskIds(Map<String, String> nodes) {
+    List<String> taskIds = new ArrayList<>();
+    for (String taskId : nodes.values()) {
+      if (taskId != null) {
+        taskIds.add(taskId);
+      }
+    }
+    return taskIds;
+  }
+
   @Override
   public void slaveLost(SchedulerDriver driver, SlaveID slaveId) {
+    recorder.slaveLost(slaveId);
     log.info("Slave lost slaveId=" + slaveId.getValue());
   }
 
@@ -301,12 +596,29 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     // taskName is a name chosen to identify the task in mesos and mesos-dns (if used)
     log.info(String.format("Launching node of type %s with task %s", nodeName, taskType));
     String taskIdName = String.format("%s.%s.%d", nodeName, executorName,
-        System.currentTimeMillis());
-    List<Resource> resources = getExecutorResources();
+        clock.currentTimeMillis());
+    boolean onVolume = HBaseConstants.SLAVE_NODE_ID.equals(taskType) && volumes.isEnabled();
+    // reservations keep their size, only region servers without volumes are sized to the offer
+    NodeSize size = HBaseConstants.SLAVE_NODE_ID.equals(taskType) && !onVolume
+        ? NodeSize.forOffer(hbaseFrameworkConfig, offer) : null;
+    List<Resource> resources = onVolume ? volumes.getExecutorResources() : getExecutorResources();
+    String artifactPeer = getArtifactPeer();
     ExecutorInfo executorInfo = createExecutor(taskIdName, taskType, nodeName, executorName,
-        resources);
-
-    List<Resource> taskResources = getTaskResources(taskType);
+        offer.getHostname(), resources, size, artifactPeer);
+
+    List<Resource> taskResources;
+    if (onVolume) {
+      taskResources = volumes.getTaskResources();
+    } else if (size != null) {
+      log.info(String.format("Sized slave node on %s to %s", offer.getHostname(), size));
+      persistenceStore.setNodeSize(offer.getHostname(), size);
+      taskResources = getTaskResources(size.getCpus(), size.getMemMb());
+    } else {
+      taskResources = getTaskResources(taskType);
+    }
+    if (HBaseConstants.THRIFT_NODE_ID.equals(taskType)) {
+      persistenceStore.setThriftWorkers(offer.getHostname(), getThriftWorkers(offer));
+    }
     String taskName = getNextTaskName(taskType);
     TaskID taskId = TaskID.newBuilder()
         .setValue(String.format("task.%s.%s", taskType, taskIdName))
@@ -319,12 +631,41 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
         .addAllResources(taskResources)
         .setData(ByteString.copyFromUtf8(
             getCommand(taskType)))
+        .setLabels(Labels.newBuilder()
+            .addLabels(Label.newBuilder()
+                .setKey(HBaseConstants.GC_PROFILE_LABEL)
+                .setValue(getGcProfile(taskType, getHeapSize(taskType, size)))))
         .build();
 
     liveState.addStagingTask(task.getTaskId());
     persistenceStore.addHBaseNode(taskId, offer.getHostname(), taskType, taskName);
-
-    driver.launchTasks(Arrays.asList(offer.getId()), Arrays.asList(task));
+    if (!masterConstraints.isEmpty() || !slaveConstraints.isEmpty()
+        || !restConstraints.isEmpty() || !thriftConstraints.isEmpty()) {
+      persistenceStore.setHostAttributes(offer.getHostname(),
+          PlacementConstraints.getAttributes(offer));
+    }
+    launchedAt.put(taskId.getValue(), System.nanoTime());
+    metrics.counter("tasks_launched_total", "type", taskType).inc();
+
+    if (onVolume) {
+      List<Offer.Operation> operations = new ArrayList<>();
+      if (!volumes.hasVolume(offer)) {
+        log.info("Reserving resources and creating the data volume on " + offer.getHostname());
+        operations.addAll(volumes.getReservation());
+        metrics.counter("volumes_created_total").inc();
+      }
+      operations.add(Offer.Operation.newBuilder()
+          .setType(Offer.Operation.Type.LAUNCH)
+          .setLaunch(Offer.Operation.Launch.newBuilder().addTaskInfos(task))
+          .build());
+      driver.acceptOffers(Arrays.asList(offer.getId()), operations,
+          Filters.newBuilder().build());
+    } else {
+      driver.launchTasks(Arrays.asList(offer.getId()), Arrays.asList(task));
+    }
+    if (artifactPeer != null) {
+      artifactPeers.assignParent(executorInfo.getExecutorId().getValue(), artifactPeer);
+    }
     return true;
   }
 
@@ -350,9 +691,11 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   }
 
   private ExecutorInfo createExecutor(String taskIdName, String taskType, String nodeName,
-      String executorName,
-      List<Resource> resources) {
+      String executorName, String hostname,
+      List<Resource> resources, NodeSize size, String artifactPeer) {
     int confServerPort = hbaseFrameworkConfig.getConfigServerPort();
+    String executorId = "executor." + taskIdName;
+    String artifactSource = artifactPeer == null ? null : artifactPeers.getPeerUrl(artifactPeer);
 
     String cmd = "export JAVA_HOME=$MESOS_DIRECTORY/" + hbaseFrameworkConfig.getJreVersion()
         + " && env ; cd hbase-mesos-* && "
@@ -365,17 +708,18 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     return ExecutorInfo
         .newBuilder()
         .setName(nodeName + " executor")
-        .setExecutorId(ExecutorID.newBuilder().setValue("executor." + taskIdName).build())
+        .setExecutorId(ExecutorID.newBuilder().setValue(executorId).build())
         .addAllResources(resources)
         .setCommand(CommandInfo
             .newBuilder()
             .addAllUris(Arrays.asList(
                 CommandInfo.URI
                     .newBuilder()
-                    .setValue(String.format("http://%s:%d/%s",
-                        hbaseFrameworkConfig.getFrameworkHostAddress(),
-                        confServerPort,
-                        HBaseConstants.HBASE_BINARY_FILE_NAME))
+                    .setValue(getArtifactUrl(artifactSource, HBaseConstants.HBASE_BINARY_FILE_NAME,
+                        String.format("http://%s:%d/%s",
+                            hbaseFrameworkConfig.getFrameworkHostAddress(),
+                            confServerPort,
+                            HBaseConstants.HBASE_BINARY_FILE_NAME)))
                     .build(),
                 CommandInfo.URI
                     .newBuilder()
@@ -386,9 +730,11 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
                     .build(),
                 CommandInfo.URI
                     .newBuilder()
-                    .setValue(String.format("http://%s:%d/%s",
+                    .setValue(String.format("http://%s:%d/%s/%s/%s",
                         hbaseFrameworkConfig.getFrameworkHostAddress(),
                         confServerPort,
+                        HBaseConstants.NODE_CONFIG_PATH,
+                        hostname,
                         HBaseConstants.HBASE_CONFIG_FILE_NAME))
                     .build(),
                 CommandInfo.URI
@@ -397,7 +743,8 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
                     .build(),
                 CommandInfo.URI
                     .newBuilder()
-                    .setValue(hbaseFrameworkConfig.getJreUrl())
+                    .setValue(getArtifactUrl(artifactSource, getJreFileName(),
+                        hbaseFrameworkConfig.getJreUrl()))
                     .build()))
             .setEnvironment(Environment
                 .newBuilder()
@@ -406,28 +753,185 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
                     .setValue(hbaseFrameworkConfig.getLdLibraryPath()).build(),
                     Environment.Variable.newBuilder()
                         .setName("HBASE_OPTS")
-                        .setValue(getJvmOpts(taskType)).build(),
+                        .setValue(getJvmOpts(taskType, getHeapSize(taskType, size))).build(),
                     Environment.Variable
                         .newBuilder()
                         .setName("HBASE_HEAPSIZE")
-                        .setValue(getHeapSizeConfig(taskType))
-                        .build())))
+                        .setValue(getHeapSize(taskType, size) + "m")
+                        .build(),
+                    Environment.Variable
+                        .newBuilder()
+                        .setName("SERVER_GC_OPTS")
+                        .setValue(getGcLogOpts())
+                        .build(),
+                    Environment.Variable
+                        .newBuilder()
+                        .setName("EXECUTOR_OPTS")
+                        .setValue("-Dmesos.conf.path=conf/mesos-site.xml")
+                        .build(),
+                    Environment.Variable
+                        .newBuilder()
+                        .setName(HBaseConstants.ARTIFACT_CHECKSUMS_ENV)
+                        .setValue(getArtifactChecksumsEnv())
+                        .build()))
+                .addAllVariables(getNodeVariables(taskType, size)))
             .setValue(cmd).build())
         .build();
   }
 
-  private String getJvmOpts(String taskType)
+  private List<Environment.Variable> getNodeVariables(String taskType, NodeSize size) {
+    List<Environment.Variable> variables = new ArrayList<>();
+    if (HBaseConstants.SLAVE_NODE_ID.equals(taskType) && volumes.isEnabled()) {
+      variables.add(Environment.Variable.newBuilder()
+          .setName(HBaseConstants.DATA_VOLUME_ENV)
+          .setValue(hbaseFrameworkConfig.getPersistentVolumePath())
+          .build());
+    }
+    if (HBaseConstants.THRIFT_NODE_ID.equals(taskType)) {
+      variables.add(Environment.Variable.newBuilder()
+          .setName(HBaseConstants.THRIFT_SERVER_TYPE_ENV)
+          .setValue(hbaseFrameworkConfig.getThriftServerType())
+          .build());
+    }
+    int offHeapMb = 0;
+    if (size != null) {
+      offHeapMb = size.getOffHeapMb();
+    } else if (HBaseConstants.SLAVE_NODE_ID.equals(taskType)) {
+      offHeapMb = hbaseFrameworkConfig.getSlaveNodeDirectMemory();
+    }
+    if (offHeapMb > 0) {
+      // bin/hbase turns it into -XX:MaxDirectMemorySize
+      variables.add(Environment.Variable.newBuilder()
+          .setName("HBASE_OFFHEAPSIZE")
+          .setValue(offHeapMb + "m")
+          .build());
+    }
+    return variables;
+  }
+
+  /**
+   * @return the peer a new executor downloads its artifacts from, null for the ConfigServer
+   */
+  private String getArtifactPeer() {
+    if (!hbaseFrameworkConfig.usingPeerArtifactDistribution()) {
+      return null;
+    }
+    return artifactPeers.choosePeer();
+  }
+
+  private String getArtifactUrl(String artifactSource, String artifactName, String defaultUrl) {
+    if (artifactSource == null || !getArtifactChecksums().containsKey(artifactName)) {
+      return defaultUrl;
+    }
+    return artifactSource + artifactName;
+  }
+
+  private String getJreFileName() {
+    String jreUrl = hbaseFrameworkConfig.getJreUrl();
+    return jreUrl.substring(jreUrl.lastIndexOf('/') + 1);
+  }
+
+  private String getArtifactChecksumsEnv() {
+    StringBuilder checksums = new StringBuilder();
+    for (Map.Entry<String, String> checksum : getArtifactChecksums().entrySet()) {
+      if (checksums.length() > 0) {
+        checksums.append(',');
+      }
+      checksums.append(checksum.getKey()).append('=').append(checksum.getValue());
+    }
+    return checksums.toString();
+  }
+
+  /**
+   * Checksums of the artifacts executors are allowed to serve to their peers. Empty unless peer
+   * distribution is enabled.
+   */
+  private synchronized Map<String, String> getArtifactChecksums() {
+    if (artifactChecksums != null) {
+      return artifactChecksums;
+    }
+    artifactChecksums = new LinkedHashMap<>();
+    if (!hbaseFrameworkConfig.usingPeerArtifactDistribution()) {
+      return artifactChecksums;
+    }
+    File binary = new File(hbaseFrameworkConfig.getExecutorPath(),
+        HBaseConstants.HBASE_BINARY_FILE_NAME);
+    InputStream in = null;
+    try {
+      in = new FileInputStream(binary);
+      artifactChecksums.put(HBaseConstants.HBASE_BINARY_FILE_NAME, DigestUtils.md5Hex(in));
+    } catch (IOException e) {
+      log.warn("Unable to checksum " + binary + ", executors will not serve it to peers", e);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    if (!hbaseFrameworkConfig.getJreChecksum().isEmpty()) {
+      artifactChecksums.put(getJreFileName(), hbaseFrameworkConfig.getJreChecksum());
+    }
+    return artifactChecksums;
+  }
+
+  /**
+   * Masters get a lean profile, region servers G1 with a pause target once their heap is large
+   * enough for CMS to risk long full collections.
+   */
+  private String getGcProfile(String taskType, int heapSize)
   {
     if (HBaseConstants.MASTER_NODE_ID.equals(taskType))
-      return hbaseFrameworkConfig.getJvmOpts();
-    else if (HBaseConstants.SLAVE_NODE_ID.equals(taskType))
-      return hbaseFrameworkConfig.getJvmOpts();
+      return HBaseConstants.GC_PROFILE_MASTER;
+    else if (HBaseConstants.SLAVE_NODE_ID.equals(taskType)
+        && heapSize >= hbaseFrameworkConfig.getSlaveG1MinHeapSize())
+      return HBaseConstants.GC_PROFILE_G1;
     else
-      return hbaseFrameworkConfig.getJvmOpts();
+      return HBaseConstants.GC_PROFILE_CMS;
+  }
+
+  private String getJvmOpts(String taskType, int heapSize)
+  {
+    String opts = hbaseFrameworkConfig.getJvmOpts() + " ";
+    switch (getGcProfile(taskType, heapSize)) {
+      case HBaseConstants.GC_PROFILE_MASTER:
+        return opts + hbaseFrameworkConfig.getMasterGcOpts();
+      case HBaseConstants.GC_PROFILE_G1:
+        return opts + hbaseFrameworkConfig.getSlaveG1GcOpts()
+            + " -XX:MaxGCPauseMillis=" + hbaseFrameworkConfig.getSlaveG1PauseMillis()
+            + " -XX:G1HeapRegionSize=" + getG1RegionSize(heapSize) + "m";
+      default:
+        return opts + hbaseFrameworkConfig.getSlaveCmsGcOpts();
+    }
+  }
+
+  /**
+   * @return the configured region size, or about 2048 regions of 8 to 32 MB, large regions keep
+   * the big RPC and block buffers of a region server from becoming humongous objects
+   */
+  private int getG1RegionSize(int heapSize) {
+    int regionSize = hbaseFrameworkConfig.getSlaveG1RegionSize();
+    if (regionSize > 0) {
+      return regionSize;
+    }
+    regionSize = 8;
+    while (regionSize < 32 && regionSize * 2048 < heapSize) {
+      regionSize *= 2;
+    }
+    return regionSize;
+  }
+
+  /**
+   * GC logging with rotation, hbase-daemon.sh puts the log next to the one of the process.
+   */
+  private String getGcLogOpts() {
+    return "-verbose:gc -XX:+PrintGCDetails -XX:+PrintGCDateStamps "
+        + "-XX:+PrintGCApplicationStoppedTime -Xloggc:<FILE-PATH> "
+        + "-XX:+UseGCLogFileRotation "
+        + "-XX:NumberOfGCLogFiles=" + hbaseFrameworkConfig.getGcLogFiles() + " "
+        + "-XX:GCLogFileSize=" + hbaseFrameworkConfig.getGcLogFileSize() + "M";
   }
 
-  private String getHeapSizeConfig(String taskType)
+  private int getHeapSize(String taskType, NodeSize size)
   {
+    if (size != null)
+      return size.getHeapMb();
     int heapSize = hbaseFrameworkConfig.getHadoopHeapSize();
     if (null != taskType)
       switch (taskType) {
@@ -437,9 +941,15 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
         case HBaseConstants.SLAVE_NODE_ID:
           heapSize = hbaseFrameworkConfig.getSlaveNodeHeapSize();
           break;
+        case HBaseConstants.REST_NODE_ID:
+          heapSize = hbaseFrameworkConfig.getRestNodeHeapSize();
+          break;
+        case HBaseConstants.THRIFT_NODE_ID:
+          heapSize = hbaseFrameworkConfig.getThriftNodeHeapSize();
+          break;
       }
 
-    return String.format("%dm", heapSize);
+    return heapSize;
   }
 
   private List<Resource> getExecutorResources() {
@@ -463,38 +973,59 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   }
 
   private List<Resource> getTaskResources(String taskName) {
+    double mem = hbaseFrameworkConfig.getTaskHeapSize(taskName)
+        * hbaseFrameworkConfig.getJvmOverhead();
+    if (HBaseConstants.SLAVE_NODE_ID.equals(taskName)) {
+      // the off-heap BucketCache is outside of the heap Mesos would otherwise account for
+      mem += hbaseFrameworkConfig.getSlaveNodeDirectMemory();
+    }
+    return getTaskResources(hbaseFrameworkConfig.getTaskCpus(taskName), mem);
+  }
+
+  private List<Resource> getTaskResources(double cpus, double mem) {
     return Arrays.asList(Resource.newBuilder()
         .setName("cpus")
         .setType(Value.Type.SCALAR)
         .setScalar(Value.Scalar.newBuilder()
-            .setValue(hbaseFrameworkConfig.getTaskCpus(taskName)).build())
+            .setValue(cpus).build())
         .setRole(hbaseFrameworkConfig.getHbaseRole())
         .build(),
         Resource.newBuilder()
             .setName("mem")
             .setType(Value.Type.SCALAR)
             .setScalar(Value.Scalar.newBuilder()
-                .setValue(hbaseFrameworkConfig.getTaskHeapSize(taskName) *
-                    hbaseFrameworkConfig.getJvmOverhead()).build())
+                .setValue(mem).build())
             .setRole(hbaseFrameworkConfig.getHbaseRole())
             .build());
   }
 
-  private boolean acceptOffer(Offer offer, String nodeType, double cpu, int memory)
+  private boolean acceptOffer(Offer offer, String nodeType, double cpu, int memory,
+      int directMemory)
+  {
+    return acceptOffer(offer, nodeType, cpu,
+        memory * hbaseFrameworkConfig.getJvmOverhead() + directMemory);
+  }
+
+  /**
+   * @param taskMem mem resource of the task, the executor comes on top
+   */
+  private boolean acceptOffer(Offer offer, String nodeType, double cpu, double taskMem)
   {
     if (offerNotEnoughCpu(offer, cpu))
     {
       log.info(nodeType + " node offer does not have enough cpu.\n Required " + cpu
           + ". (ConfNodeCpus)");
+      declineReason = "insufficient_cpu";
       return false;
     }
-    else if (offerNotEnoughMemory(offer, memory))
+    else if (offerNotEnoughMemory(offer, taskMem))
     {
-      double requiredMem = (memory * hbaseFrameworkConfig.getJvmOverhead())
+      double requiredMem = taskMem
           + (hbaseFrameworkConfig.getExecutorHeap() * hbaseFrameworkConfig.getJvmOverhead());
       String memLog = "Required " + requiredMem + " mem (" + nodeType
-          + "NodeHeapSize * jvmOverhead) + (executorHeap * jvmOverhead)";
+          + " task mem) + (executorHeap * jvmOverhead)";
       log.info(nodeType + " node offer does not have enough memory.\n" + memLog);
+      declineReason = "insufficient_mem";
       return false;
     } else {
       return true;
@@ -504,7 +1035,7 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
   private boolean tryToLaunchMasterNode(SchedulerDriver driver, Offer offer)
   {
     if (!acceptOffer(offer, "master", hbaseFrameworkConfig.getMasterNodeCpus(),
-        hbaseFrameworkConfig.getMasterNodeHeapSize()))
+        hbaseFrameworkConfig.getMasterNodeHeapSize(), 0))
       return false;
 
     boolean launch = false;
@@ -513,15 +1044,23 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     if (deadMasterNodes.isEmpty()) {
       if (persistenceStore.getPrimaryNodes().size() == HBaseConstants.TOTAL_MASTER_NODES) {
         log.info(String.format("Already running %s masters", HBaseConstants.TOTAL_MASTER_NODES));
+        declineReason = "masters_complete";
       } else if (persistenceStore.masterNodeRunningOnSlave(offer.getHostname())) {
         log.info(String.format("Already running masternode on %s", offer.getHostname()));
+        declineReason = "host_in_use";
       } else if (persistenceStore.slaveNodeRunningOnSlave(offer.getHostname())) {
         log.info(String.format("Cannot colocate masternode and slavenode on %s", offer.getHostname()));
+        declineReason = "colocation";
+      } else if (violatesConstraints(offer, masterConstraints,
+          persistenceStore.getPrimaryNodes().keySet())) {
+        declineReason = "constraint";
       } else {
         launch = true;
       }
     } else if (deadMasterNodes.contains(offer.getHostname())) {
       launch = true;
+    } else {
+      declineReason = "awaiting_dead_node_host";
     }
     if (launch) {
       return launchNode(driver,
@@ -533,10 +1072,32 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     return false;
   }
 
-  private boolean tryToLaunchSlaveNode(SchedulerDriver driver, Offer offer) {
-    if (!acceptOffer(offer, "slave", hbaseFrameworkConfig.getMasterNodeCpus(),
-        hbaseFrameworkConfig.getMasterNodeHeapSize()))
+  private boolean tryToLaunchSlaveNode(SchedulerDriver driver, Offer offer,
+      Map<String, Integer> nodeCounts) {
+    int count = nodeCounts.get(HBaseConstants.SLAVE_NODE_ID);
+    Map<String, String> regionNodes = persistenceStore.getRegionNodes();
+    if (count >= 0 && getLiveTaskIds(regionNodes).size() >= count) {
+      declineReason = "slaves_complete";
       return false;
+    }
+    if (volumes.isEnabled()) {
+      if (volumes.hasVolume(offer)) {
+        return tryToRelaunchOnVolume(driver, offer);
+      } else if (!volumes.canReserve(offer)) {
+        log.info(String.format("Offer of %s cannot be reserved for a slave node",
+            offer.getHostname()));
+        declineReason = "insufficient_unreserved";
+        return false;
+      }
+    } else {
+      // a node sized to the offer may still be larger than the offer, at its fixed minimums
+      NodeSize size = NodeSize.forOffer(hbaseFrameworkConfig, offer);
+      if (size != null ? !acceptOffer(offer, "slave", size.getCpus(), size.getMemMb())
+          : !acceptOffer(offer, "slave", hbaseFrameworkConfig.getSlaveNodeCpus(),
+              hbaseFrameworkConfig.getSlaveNodeHeapSize(),
+              hbaseFrameworkConfig.getSlaveNodeDirectMemory()))
+        return false;
+    }
 
     boolean launch = false;
     List<String> deadDataNodes = persistenceStore.getDeadDataNodes();
@@ -544,15 +1105,27 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     // What number of DN's should we try to recover or should we remove this constraint
     // entirely?
     if (deadDataNodes.isEmpty()) {
-      if (persistenceStore.slaveNodeRunningOnSlave(offer.getHostname()) || persistenceStore.masterNodeRunningOnSlave(offer.getHostname())){
+      if (regionNodes.containsKey(offer.getHostname()) || persistenceStore.masterNodeRunningOnSlave(offer.getHostname())){
         log.info(String.format("Already running hbase task on %s", offer.getHostname()));
+        declineReason = "host_in_use";
+      } else if (violatesConstraints(offer, slaveConstraints, regionNodes.keySet())) {
+        declineReason = "constraint";
+      } else if (waitForDataNodeHost(offer.getHostname())) {
+        log.info(String.format("Waiting for offers of free DataNode hosts, declining %s",
+            offer.getHostname()));
+        declineReason = "not_datanode_host";
       } else {
         launch = true;
       }
     } else if (deadDataNodes.contains(offer.getHostname())) {
       launch = true;
+    } else {
+      declineReason = "awaiting_dead_node_host";
     }
     if (launch) {
+      if (dataNodes.isDataNodeHost(offer.getHostname())) {
+        localityWaitStart = 0;
+      }
       return launchNode(driver,
           offer,
           HBaseConstants.SLAVE_NODE_ID,
@@ -562,19 +1135,157 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     return false;
   }
 
+  /**
+   * Launches gateways of a type up to their count, one per host and by default only on hosts of
+   * region servers. The reason the offer did not fit a slave node stands when no gateway is
+   * missing.
+   */
+  private boolean tryToLaunchGatewayNode(SchedulerDriver driver, Offer offer, String taskType,
+      Map<String, Integer> nodeCounts, PlacementConstraints constraints, boolean colocate) {
+    int count = nodeCounts.get(taskType);
+    if (count <= 0) {
+      return false;
+    }
+    Map<String, String> gatewayNodes = getNodes(taskType);
+    if (gatewayNodes.size() >= count) {
+      return false;
+    }
+    if (gatewayNodes.containsKey(offer.getHostname())) {
+      log.info(String.format("Already running a %s on %s", taskType, offer.getHostname()));
+      declineReason = "host_in_use";
+      return false;
+    }
+    if (colocate && persistenceStore.getRegionNodes().get(offer.getHostname()) == null) {
+      declineReason = "not_region_server_host";
+      return false;
+    }
+    if (violatesConstraints(offer, constraints, gatewayNodes.keySet())) {
+      declineReason = "constraint";
+      return false;
+    }
+    if (!acceptOffer(offer, taskType, hbaseFrameworkConfig.getTaskCpus(taskType),
+        hbaseFrameworkConfig.getTaskHeapSize(taskType), 0)) {
+      return false;
+    }
+    return launchNode(driver,
+        offer,
+        taskType,
+        taskType,
+        HBaseConstants.NODE_EXECUTOR_ID);
+  }
+
+  /**
+   * Worker threads of a Thrift gateway, several per cpu offered on its host as they mostly wait
+   * on the region servers.
+   */
+  private int getThriftWorkers(Offer offer) {
+    double cpus = 0;
+    for (Resource resource : offer.getResourcesList()) {
+      if (resource.getName().equals("cpus")) {
+        cpus += resource.getScalar().getValue();
+      }
+    }
+    return Math.max(1, Math.min(hbaseFrameworkConfig.getThriftMaxWorkers(),
+        (int) Math.round(cpus * hbaseFrameworkConfig.getThriftWorkersPerCpu())));
+  }
+
+  /**
+   * The reservation of a slave node which ran on the host is offered again, so the node is gone
+   * and is relaunched onto its volume regardless of the other placement rules.
+   */
+  private boolean tryToRelaunchOnVolume(SchedulerDriver driver, Offer offer) {
+    String taskId = persistenceStore.getRegionNodes().get(offer.getHostname());
+    if (taskId != null && liveState.getRunningTasks().containsKey(taskId)) {
+      log.info(String.format("Slave node %s on %s still running", taskId, offer.getHostname()));
+      declineReason = "host_in_use";
+      return false;
+    }
+    if (!volumes.hasReservedResources(offer)) {
+      log.warn(String.format("Reservation on %s is smaller than a slave node, resize it",
+          offer.getHostname()));
+      declineReason = "insufficient_reservation";
+      return false;
+    }
+    log.info("Relaunching slave node onto its volume on " + offer.getHostname());
+    return launchNode(driver,
+        offer,
+        HBaseConstants.SLAVE_NODE_ID,
+        HBaseConstants.SLAVE_NODE_ID,
+        HBaseConstants.NODE_EXECUTOR_ID);
+  }
+
+  /**
+   * Checks the offering agent against the placement constraints of a node type, given the hosts
+   * of the nodes of that type. Hosts without recorded attributes only have their hostname.
+   */
+  private boolean violatesConstraints(Offer offer, PlacementConstraints constraints,
+      Set<String> nodeHosts) {
+    if (constraints.isEmpty()) {
+      return false;
+    }
+    Map<String, String> attributes = PlacementConstraints.getAttributes(offer);
+    constraints.observe(attributes);
+    Map<String, Map<String, String>> hostAttributes = persistenceStore.getHostAttributes();
+    List<Map<String, String>> placed = new ArrayList<>();
+    for (String host : nodeHosts) {
+      Map<String, String> placedAttributes = hostAttributes.get(host);
+      placed.add(placedAttributes != null ? placedAttributes
+          : Collections.singletonMap(PlacementConstraints.HOSTNAME, host));
+    }
+    String violation = constraints.findViolation(attributes, placed);
+    if (violation != null) {
+      log.info(String.format("Offer of %s violates placement constraint %s",
+          offer.getHostname(), violation));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Delay scheduling for HDFS locality: while a DataNode host has no HBase node yet, offers of
+   * other hosts are declined, for at most the locality wait since the first of them. Once the
+   * wait expired other hosts are used until a node is launched on a DataNode host again.
+   */
+  private boolean waitForDataNodeHost(String hostname) {
+    if (!hbaseFrameworkConfig.usingHdfsLocality() || dataNodes.isDataNodeHost(hostname)) {
+      return false;
+    }
+    boolean freeDataNodeHost = false;
+    Map<String, String> regionNodes = persistenceStore.getRegionNodes();
+    Map<String, String> primaryNodes = persistenceStore.getPrimaryNodes();
+    for (String dataNodeHost : dataNodes.getDataNodeHosts()) {
+      if (!regionNodes.containsKey(dataNodeHost) && !primaryNodes.containsKey(dataNodeHost)) {
+        freeDataNodeHost = true;
+        break;
+      }
+    }
+    if (!freeDataNodeHost) {
+      return false;
+    }
+    long now = clock.currentTimeMillis();
+    if (localityWaitStart == 0) {
+      localityWaitStart = now;
+    }
+    return now - localityWaitStart < hbaseFrameworkConfig.getHdfsLocalityWait() * 1000L;
+  }
+
   public void sendMessageTo(SchedulerDriver driver, TaskID taskId,
       SlaveID slaveID, String message) {
     log.info(String.format("Sending message '%s' to taskId=%s, slaveId=%s", message,
         taskId.getValue(), slaveID.getValue()));
-    String postfix = taskId.getValue();
-    postfix = postfix.substring(postfix.indexOf('.') + 1, postfix.length());
-    postfix = postfix.substring(postfix.indexOf('.') + 1, postfix.length());
     driver.sendFrameworkMessage(
-        ExecutorID.newBuilder().setValue("executor." + postfix).build(),
+        getExecutorIdForTask(taskId),
         slaveID,
         message.getBytes(Charset.defaultCharset()));
   }
 
+  private ExecutorID getExecutorIdForTask(TaskID taskId) {
+    String postfix = taskId.getValue();
+    postfix = postfix.substring(postfix.indexOf('.') + 1, postfix.length());
+    postfix = postfix.substring(postfix.indexOf('.') + 1, postfix.length());
+    return ExecutorID.newBuilder().setValue("executor." + postfix).build();
+  }
+
   private boolean isTerminalState(TaskStatus taskStatus) {
     return taskStatus.getState().equals(TaskState.TASK_FAILED)
         || taskStatus.getState().equals(TaskState.TASK_FINISHED)
@@ -595,6 +1306,11 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     if (hbaseFrameworkConfig.usingNativeHadoopBinaries()) {
       return;
     }
+    configChangeNotifier.configChanged();
+    if (hbaseFrameworkConfig.usingConfigLongPoll()) {
+      // executors long-poll the ConfigServer instead of waiting for a framework message
+      return;
+    }
     for (Protos.TaskStatus taskStatus : liveState.getRunningTasks().values()) {
       sendMessageTo(driver, taskStatus.getTaskId(), taskStatus.getSlaveId(),
           HBaseConstants.RELOAD_CONFIG);
@@ -619,10 +1335,10 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     return false;
   }
 
-  private boolean offerNotEnoughMemory(Offer offer, int mem) {
+  private boolean offerNotEnoughMemory(Offer offer, double taskMem) {
     for (Resource offerResource : offer.getResourcesList()) {
       if (offerResource.getName().equals("mem") &&
-          (mem * hbaseFrameworkConfig.getJvmOverhead())
+          taskMem
               + (hbaseFrameworkConfig.getExecutorHeap() * hbaseFrameworkConfig.getJvmOverhead())
               > offerResource.getScalar().getValue()) {
         return true;
@@ -636,8 +1352,7 @@ public class HBaseScheduler implements org.apache.mesos.Scheduler, Runnable {
     // time for
     // different slaves to reregister upon master failover.
     driver.reconcileTasks(Collections.<Protos.TaskStatus>emptyList());
-    Timer timer = new Timer();
-    timer.schedule(new ReconcileStateTask(), hbaseFrameworkConfig.getReconciliationTimeout()
+    clock.schedule(new ReconcileStateTask(), hbaseFrameworkConfig.getReconciliationTimeout()
         * SECONDS_FROM_MILLIS);
   }
 
@@ -0,0 +1,171 @@
+package org.apache.mesos.hbase.scheduler;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Offer.Operation;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.Protos.Resource.DiskInfo;
+import org.apache.mesos.Protos.Resource.ReservationInfo;
+import org.apache.mesos.Protos.Value;
+import org.apache.mesos.Protos.Volume;
+import org.apache.mesos.hbase.config.ConfigurationException;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dynamic reservations and persistent volumes of the region servers. The first launch on a host
+ * reserves the resources of the executor and the node for the framework role and creates a
+ * volume from reserved disk. Mesos offers the reservation only to this role once the node is
+ * gone, together with the volume, and the node is relaunched onto it with its local state.
+ */
+public class PersistentVolumes {
+
+  private static final String UNRESERVED_ROLE = "*";
+
+  private final HBaseFrameworkConfig hbaseFrameworkConfig;
+  private final boolean enabled;
+  private final String role;
+  private final String volumeId;
+
+  /**
+   * @throws ConfigurationException if volumes are enabled without a role or principal
+   */
+  public PersistentVolumes(HBaseFrameworkConfig hbaseFrameworkConfig) {
+    this.hbaseFrameworkConfig = hbaseFrameworkConfig;
+    this.enabled = hbaseFrameworkConfig.usingPersistentVolumes();
+    this.role = hbaseFrameworkConfig.getHbaseRole();
+    this.volumeId = hbaseFrameworkConfig.getFrameworkName() + "-" + HBaseConstants.SLAVE_NODE_ID;
+    if (enabled && (UNRESERVED_ROLE.equals(role)
+        || hbaseFrameworkConfig.getPrincipal().isEmpty())) {
+      throw new ConfigurationException("Persistent volumes need mesos.hbase.role and "
+          + "mesos.hbase.principal to be set");
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return whether the offer holds the volume of a region server that ran on the host
+   */
+  public boolean hasVolume(Offer offer) {
+    for (Resource resource : offer.getResourcesList()) {
+      if ("disk".equals(resource.getName()) && role.equals(resource.getRole())
+          && resource.hasDisk() && resource.getDisk().hasPersistence()
+          && volumeId.equals(resource.getDisk().getPersistence().getId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether the reserved resources offered with the volume still fit the node
+   */
+  public boolean hasReservedResources(Offer offer) {
+    return sum(offer, "cpus", true) >= getCpus() && sum(offer, "mem", true) >= getMem();
+  }
+
+  /**
+   * @return whether the unreserved resources of the offer can be reserved for a node
+   */
+  public boolean canReserve(Offer offer) {
+    return sum(offer, "cpus", false) >= getCpus() && sum(offer, "mem", false) >= getMem()
+        && sum(offer, "disk", false) >= getVolumeSize();
+  }
+
+  /**
+   * @return the operations reserving the resources of a node and creating its volume, to precede
+   * the launch in the same accept
+   */
+  public List<Operation> getReservation() {
+    return Arrays.asList(
+        Operation.newBuilder()
+            .setType(Operation.Type.RESERVE)
+            .setReserve(Operation.Reserve.newBuilder().addAllResources(Arrays.asList(
+                reserved("cpus", getCpus()),
+                reserved("mem", getMem()),
+                reserved("disk", getVolumeSize()))))
+            .build(),
+        Operation.newBuilder()
+            .setType(Operation.Type.CREATE)
+            .setCreate(Operation.Create.newBuilder().addVolumes(getVolume()))
+            .build());
+  }
+
+  public List<Resource> getExecutorResources() {
+    return Arrays.asList(
+        reserved("cpus", hbaseFrameworkConfig.getExecutorCpus()),
+        reserved("mem", hbaseFrameworkConfig.getExecutorHeap()
+            * hbaseFrameworkConfig.getJvmOverhead()));
+  }
+
+  public List<Resource> getTaskResources() {
+    List<Resource> resources = new ArrayList<>(Arrays.asList(
+        reserved("cpus", hbaseFrameworkConfig.getTaskCpus(HBaseConstants.SLAVE_NODE_ID)),
+        reserved("mem", hbaseFrameworkConfig.getSlaveNodeHeapSize()
+            * hbaseFrameworkConfig.getJvmOverhead()
+            + hbaseFrameworkConfig.getSlaveNodeDirectMemory())));
+    resources.add(getVolume());
+    return resources;
+  }
+
+  private Resource getVolume() {
+    return reserved("disk", getVolumeSize()).toBuilder()
+        .setDisk(DiskInfo.newBuilder()
+            .setPersistence(DiskInfo.Persistence.newBuilder().setId(volumeId))
+            .setVolume(Volume.newBuilder()
+                .setContainerPath(hbaseFrameworkConfig.getPersistentVolumePath())
+                .setMode(Volume.Mode.RW)))
+        .build();
+  }
+
+  private Resource reserved(String name, double value) {
+    return Resource.newBuilder()
+        .setName(name)
+        .setType(Value.Type.SCALAR)
+        .setScalar(Value.Scalar.newBuilder().setValue(value))
+        .setRole(role)
+        .setReservation(ReservationInfo.newBuilder()
+            .setPrincipal(hbaseFrameworkConfig.getPrincipal()))
+        .build();
+  }
+
+  private double getCpus() {
+    return hbaseFrameworkConfig.getTaskCpus(HBaseConstants.SLAVE_NODE_ID)
+        + hbaseFrameworkConfig.getExecutorCpus();
+  }
+
+  private double getMem() {
+    return (hbaseFrameworkConfig.getSlaveNodeHeapSize() + hbaseFrameworkConfig.getExecutorHeap())
+        * hbaseFrameworkConfig.getJvmOverhead() + hbaseFrameworkConfig.getSlaveNodeDirectMemory();
+  }
+
+  /**
+   * @return the volume size, with room for a cache file kept on the data dir
+   */
+  private int getVolumeSize() {
+    int size = hbaseFrameworkConfig.getPersistentVolumeSize();
+    if (HBaseConstants.BUCKETCACHE_FILE.equals(hbaseFrameworkConfig.getBucketCacheMode())
+        && hbaseFrameworkConfig.getBucketCacheDir().isEmpty()) {
+      size += hbaseFrameworkConfig.getBucketCacheSize();
+    }
+    return size;
+  }
+
+  private double sum(Offer offer, String name, boolean reservedForRole) {
+    double sum = 0;
+    for (Resource resource : offer.getResourcesList()) {
+      if (name.equals(resource.getName()) && !resource.hasDisk()
+          && (reservedForRole ? role.equals(resource.getRole()) && resource.hasReservation()
+              : UNRESERVED_ROLE.equals(resource.getRole()))) {
+        sum += resource.getScalar().getValue();
+      }
+    }
+    return sum;
+  }
+}
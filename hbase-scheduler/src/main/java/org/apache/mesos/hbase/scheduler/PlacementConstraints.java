@@ -0,0 +1,244 @@
+package org.apache.mesos.hbase.scheduler;
+
+import org.apache.mesos.Protos.Attribute;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.hbase.config.ConfigurationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Placement constraints of one node type on the attributes of the offering agent, in the notation
+ * of Marathon: semicolon separated rules <code>field:OPERATOR[:value]</code>, where the field is
+ * an agent attribute or <code>hostname</code>. The operators are
+ * <ul>
+ * <li>UNIQUE - no other node of the type on an agent with the same value</li>
+ * <li>CLUSTER:value - only agents with this value</li>
+ * <li>LIKE:regex, UNLIKE:regex - only agents whose value matches, does not match the regex</li>
+ * <li>GROUP_BY[:count] - spread evenly over the values offered so far, or over at least count
+ * values</li>
+ * <li>MAX_PER:count - at most count nodes of the type per value</li>
+ * </ul>
+ * Agents without the attribute never satisfy a rule on it.
+ */
+public class PlacementConstraints {
+
+  static final String HOSTNAME = "hostname";
+
+  private enum Operator {
+    UNIQUE, CLUSTER, LIKE, UNLIKE, GROUP_BY, MAX_PER
+  }
+
+  private static class Rule {
+    final String text;
+    final String field;
+    final Operator operator;
+    final String value;
+    final Pattern pattern;
+    final int count;
+
+    Rule(String text, String field, Operator operator, String value, Pattern pattern, int count) {
+      this.text = text;
+      this.field = field;
+      this.operator = operator;
+      this.value = value;
+      this.pattern = pattern;
+      this.count = count;
+    }
+  }
+
+  private final List<Rule> rules;
+  // field -> values seen in offers, for the GROUP_BY rules
+  private final Map<String, Set<String>> offeredValues = new HashMap<>();
+
+  private PlacementConstraints(List<Rule> rules) {
+    this.rules = rules;
+    for (Rule rule : rules) {
+      if (rule.operator == Operator.GROUP_BY) {
+        offeredValues.put(rule.field, new HashSet<String>());
+      }
+    }
+  }
+
+  /**
+   * @throws ConfigurationException if a rule cannot be parsed
+   */
+  public static PlacementConstraints parse(String spec) {
+    List<Rule> rules = new ArrayList<>();
+    for (String text : spec.split(";")) {
+      text = text.trim();
+      if (!text.isEmpty()) {
+        rules.add(parseRule(text));
+      }
+    }
+    return new PlacementConstraints(rules);
+  }
+
+  private static Rule parseRule(String text) {
+    String[] parts = text.split(":", 3);
+    if (parts.length < 2 || parts[0].trim().isEmpty()) {
+      throw new ConfigurationException("Invalid placement constraint " + text
+          + ", expected field:OPERATOR[:value]");
+    }
+    String field = parts[0].trim();
+    String value = parts.length == 3 ? parts[2].trim() : null;
+    Operator operator;
+    try {
+      operator = Operator.valueOf(parts[1].trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ConfigurationException("Unknown operator in placement constraint " + text);
+    }
+    Pattern pattern = null;
+    int count = 0;
+    switch (operator) {
+      case UNIQUE:
+        if (value != null) {
+          throw new ConfigurationException("UNIQUE takes no value in " + text);
+        }
+        break;
+      case CLUSTER:
+        requireValue(text, value);
+        break;
+      case LIKE:
+      case UNLIKE:
+        requireValue(text, value);
+        try {
+          pattern = Pattern.compile(value);
+        } catch (PatternSyntaxException e) {
+          throw new ConfigurationException("Invalid regex in placement constraint " + text, e);
+        }
+        break;
+      case GROUP_BY:
+        count = value == null ? 0 : parseCount(text, value);
+        break;
+      case MAX_PER:
+        requireValue(text, value);
+        count = parseCount(text, value);
+        break;
+    }
+    return new Rule(text, field, operator, value, pattern, count);
+  }
+
+  private static void requireValue(String text, String value) {
+    if (value == null || value.isEmpty()) {
+      throw new ConfigurationException("Missing value in placement constraint " + text);
+    }
+  }
+
+  private static int parseCount(String text, String value) {
+    try {
+      int count = Integer.parseInt(value);
+      if (count > 0) {
+        return count;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new ConfigurationException("Expected a positive count in placement constraint " + text);
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Remembers the values the GROUP_BY rules spread over, call it for every offer.
+   */
+  public synchronized void observe(Map<String, String> attributes) {
+    for (Map.Entry<String, Set<String>> field : offeredValues.entrySet()) {
+      String value = attributes.get(field.getKey());
+      if (value != null) {
+        field.getValue().add(value);
+      }
+    }
+  }
+
+  /**
+   * @param attributes attributes of the offering agent
+   * @param placed attributes of the agents already running a node of the type
+   * @return the first rule the agent violates, null if it may run another node
+   */
+  public synchronized String findViolation(Map<String, String> attributes,
+      Collection<Map<String, String>> placed) {
+    for (Rule rule : rules) {
+      if (!satisfies(rule, attributes.get(rule.field), placed)) {
+        return rule.text;
+      }
+    }
+    return null;
+  }
+
+  private boolean satisfies(Rule rule, String value, Collection<Map<String, String>> placed) {
+    if (value == null) {
+      return false;
+    }
+    switch (rule.operator) {
+      case UNIQUE:
+        return countPlaced(rule.field, value, placed) == 0;
+      case CLUSTER:
+        return rule.value.equals(value);
+      case LIKE:
+        return rule.pattern.matcher(value).matches();
+      case UNLIKE:
+        return !rule.pattern.matcher(value).matches();
+      case MAX_PER:
+        return countPlaced(rule.field, value, placed) < rule.count;
+      case GROUP_BY:
+        Set<String> values = new HashSet<>(offeredValues.get(rule.field));
+        values.add(value);
+        if (values.size() < rule.count) {
+          // values not offered yet have no nodes
+          return countPlaced(rule.field, value, placed) == 0;
+        }
+        int count = countPlaced(rule.field, value, placed);
+        for (String other : values) {
+          if (countPlaced(rule.field, other, placed) < count) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int countPlaced(String field, String value,
+      Collection<Map<String, String>> placed) {
+    int count = 0;
+    for (Map<String, String> attributes : placed) {
+      if (value.equals(attributes.get(field))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the text and scalar attributes of the offering agent and its hostname
+   */
+  public static Map<String, String> getAttributes(Offer offer) {
+    if (offer.getAttributesCount() == 0) {
+      return Collections.singletonMap(HOSTNAME, offer.getHostname());
+    }
+    Map<String, String> attributes = new HashMap<>();
+    for (Attribute attribute : offer.getAttributesList()) {
+      if (attribute.hasText()) {
+        attributes.put(attribute.getName(), attribute.getText().getValue());
+      } else if (attribute.hasScalar()) {
+        double scalar = attribute.getScalar().getValue();
+        attributes.put(attribute.getName(), scalar == Math.rint(scalar)
+            ? String.valueOf((long) scalar) : String.valueOf(scalar));
+      }
+    }
+    attributes.put(HOSTNAME, offer.getHostname());
+    return attributes;
+  }
+}
@@ -0,0 +1,345 @@
+package org.apache.mesos.hbase.scheduler;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.state.IPersistentStateStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.RollingRestartState;
+import org.apache.mesos.hbase.state.RollingRestartState.Status;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.JmxReader;
+import org.codehaus.jackson.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.TreeSet;
+
+/**
+ * Restarts the region servers in batches. Killed tasks are relaunched on the same hosts through
+ * the dead node handling of the scheduler; the next batch starts once every task of the current
+ * one runs healthy again and no region has been in transition for the settle time. Failed tasks
+ * and batches exceeding their timeout pause the restart until it is resumed or aborted.
+ *
+ * The coordinator advances whenever the scheduler hands it a driver on an offer or status update.
+ * The regions in transition are polled from the masters on a timer of the clock while a batch
+ * settles, so advancing never waits on a master.
+ */
+@Singleton
+public class RollingRestartCoordinator {
+  private final Log log = LogFactory.getLog(RollingRestartCoordinator.class);
+
+  private static final int JMX_TIMEOUT_MS = 5000;
+  private static final String ASSIGNMENT_MANAGER_BEAN =
+      "Hadoop:service=HBase,name=Master,sub=AssignmentManger";
+
+  private final HBaseFrameworkConfig hbaseFrameworkConfig;
+  private final IPersistentStateStore persistenceStore;
+  private final LiveState liveState;
+  private final Clock clock;
+  private final JmxReader jmx = new JmxReader(JMX_TIMEOUT_MS);
+  private RollingRestartState state;
+  private boolean loaded;
+  private boolean polling;
+  private volatile boolean settling;
+  // last count polled from the masters, -1 while unknown
+  private volatile int regionsInTransition = -1;
+
+  @Inject
+  public RollingRestartCoordinator(HBaseFrameworkConfig hbaseFrameworkConfig,
+      IPersistentStateStore persistenceStore, LiveState liveState, Clock clock) {
+    this.hbaseFrameworkConfig = hbaseFrameworkConfig;
+    this.persistenceStore = persistenceStore;
+    this.liveState = liveState;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts restarting every region server known at this point.
+   *
+   * @param batchSize region servers restarted at once, the configured size if not positive
+   */
+  public synchronized RollingRestartState start(int batchSize) {
+    RollingRestartState current = getState();
+    if (current != null && current.isActive()) {
+      throw new SchedulerException("A rolling restart is already " + current.getStatus());
+    }
+    List<String> hosts = new ArrayList<>(new TreeSet<>(
+        persistenceStore.getRegionNodes().keySet()));
+    int size = batchSize > 0 ? batchSize : hbaseFrameworkConfig.getRollingRestartBatchSize();
+    state = new RollingRestartState(hosts, size, clock.currentTimeMillis());
+    log.info(String.format("Starting rolling restart of %d region servers in batches of %d",
+        hosts.size(), size));
+    save();
+    return state;
+  }
+
+  public synchronized RollingRestartState pause(String reason) {
+    RollingRestartState current = getActiveState();
+    if (current.getStatus() == Status.RUNNING) {
+      log.warn("Pausing rolling restart: " + reason);
+      current.setStatus(Status.PAUSED);
+      current.setPauseReason(reason);
+      save();
+    }
+    return current;
+  }
+
+  /**
+   * Continues a paused restart, the current batch gets a fresh timeout.
+   */
+  public synchronized RollingRestartState resume() {
+    RollingRestartState current = getActiveState();
+    if (current.getStatus() == Status.PAUSED) {
+      log.info("Resuming rolling restart");
+      current.setStatus(Status.RUNNING);
+      current.setPauseReason(null);
+      current.setFailures(0);
+      current.setBatchStartedAt(clock.currentTimeMillis());
+      save();
+    }
+    return current;
+  }
+
+  /**
+   * Stops restarting further batches, tasks already killed are still relaunched.
+   */
+  public synchronized RollingRestartState abort() {
+    RollingRestartState current = getActiveState();
+    log.info("Aborting rolling restart");
+    current.setStatus(Status.ABORTED);
+    save();
+    return current;
+  }
+
+  /**
+   * @return the current or last rolling restart or null if there never was one
+   */
+  public synchronized RollingRestartState getState() {
+    if (!loaded) {
+      state = persistenceStore.getRollingRestartState();
+      loaded = true;
+    }
+    return state;
+  }
+
+  /**
+   * @return a copy of the current or last rolling restart, null if there never was one
+   */
+  public synchronized RollingRestartState snapshot() {
+    RollingRestartState current = getState();
+    return current == null ? null : new RollingRestartState(current);
+  }
+
+  /**
+   * Counts failed tasks of the current batch, the restarted tasks themselves are expected to end
+   * as killed.
+   */
+  public synchronized void taskTerminated(TaskStatus status) {
+    RollingRestartState current = getState();
+    if (current == null || current.getStatus() != Status.RUNNING
+        || status.getState() == TaskState.TASK_KILLED || !inBatch(current, status.getTaskId())) {
+      return;
+    }
+    current.setFailures(current.getFailures() + 1);
+    log.warn(String.format("Task %s of the rolling restart batch ended as %s",
+        status.getTaskId().getValue(), status.getState()));
+    if (current.getFailures() > hbaseFrameworkConfig.getRollingRestartMaxFailures()) {
+      pause(String.format("%d task failures, last %s %s", current.getFailures(),
+          status.getTaskId().getValue(), status.getState()));
+    } else {
+      save();
+    }
+  }
+
+  /**
+   * Advances the rolling restart as far as the cluster state allows.
+   */
+  public synchronized void advance(SchedulerDriver driver) {
+    RollingRestartState current = getState();
+    if (current == null || current.getStatus() != Status.RUNNING
+        || current.getSettleStartedAt() == 0) {
+      settling = false;
+    }
+    if (current == null || current.getStatus() != Status.RUNNING) {
+      return;
+    }
+    long now = clock.currentTimeMillis();
+    if (current.getBatch().isEmpty()) {
+      startNextBatch(driver, current, now);
+      return;
+    }
+    long batchTimeoutMs = hbaseFrameworkConfig.getRollingRestartBatchTimeout() * 1000L;
+    if (now - current.getBatchStartedAt() > batchTimeoutMs) {
+      pause("Batch " + current.getBatch().keySet() + " did not settle in time");
+      return;
+    }
+    if (current.getSettleStartedAt() == 0) {
+      if (batchRestarted(current)) {
+        log.info("Batch " + current.getBatch().keySet() + " is back, waiting for it to settle");
+        current.setSettleStartedAt(now);
+        save();
+        startSettling();
+      }
+      return;
+    }
+    if (!settling) {
+      // settling since before a failover of the scheduler
+      startSettling();
+    }
+    long settleTimeMs = hbaseFrameworkConfig.getRollingRestartSettleTime() * 1000L;
+    if (regionsInTransition > 0) {
+      // the settle time starts over once nothing is in transition anymore
+      current.setSettleStartedAt(now);
+      save();
+    } else if (now - current.getSettleStartedAt() >= settleTimeMs) {
+      log.info("Batch " + current.getBatch().keySet() + " restarted");
+      current.getCompletedHosts().addAll(current.getBatch().keySet());
+      current.getBatch().clear();
+      current.setSettleStartedAt(0);
+      save();
+    }
+  }
+
+  private void startNextBatch(SchedulerDriver driver, RollingRestartState current, long now) {
+    if (current.getPendingHosts().isEmpty()) {
+      log.info(String.format("Rolling restart of %d region servers finished in %d s",
+          current.getCompletedHosts().size(), (now - current.getStartedAt()) / 1000));
+      current.setStatus(Status.DONE);
+      save();
+      return;
+    }
+    Map<String, String> regionNodes = persistenceStore.getRegionNodes();
+    Iterator<String> pending = current.getPendingHosts().iterator();
+    while (pending.hasNext() && current.getBatch().size() < current.getBatchSize()) {
+      String host = pending.next();
+      pending.remove();
+      if (!regionNodes.containsKey(host)) {
+        log.info("Skipping " + host + ", it no longer runs a region server");
+        continue;
+      }
+      String taskId = regionNodes.get(host);
+      current.getBatch().put(host, taskId);
+      if (taskId != null) {
+        log.info(String.format("Rolling restart of %s, killing %s", host, taskId));
+        driver.killTask(TaskID.newBuilder().setValue(taskId).build());
+      }
+    }
+    current.setBatchStartedAt(now);
+    current.setSettleStartedAt(0);
+    save();
+  }
+
+  /**
+   * Every host of the batch runs a new, healthy task.
+   */
+  private boolean batchRestarted(RollingRestartState current) {
+    Map<String, String> regionNodes = persistenceStore.getRegionNodes();
+    for (Map.Entry<String, String> restarted : current.getBatch().entrySet()) {
+      String taskId = regionNodes.get(restarted.getKey());
+      if (taskId == null || taskId.equals(restarted.getValue()) || !isHealthy(taskId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * With health checks a task has to report healthy, otherwise running is good enough.
+   */
+  private boolean isHealthy(String taskId) {
+    TaskStatus status = liveState.getRunningTasks().get(taskId);
+    if (status == null || status.getState() != TaskState.TASK_RUNNING) {
+      return false;
+    }
+    Boolean healthy = liveState.getTaskHealth(taskId);
+    return healthy == null ? !hbaseFrameworkConfig.usingHealthChecks() : healthy;
+  }
+
+  private boolean inBatch(RollingRestartState current, TaskID taskId) {
+    if (current.getBatch().containsValue(taskId.getValue())) {
+      return true;
+    }
+    Map<String, String> regionNodes = persistenceStore.getRegionNodes();
+    for (String host : current.getBatch().keySet()) {
+      if (taskId.getValue().equals(regionNodes.get(host))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Forgets the count of the last batch and polls the masters while this one settles.
+   */
+  private void startSettling() {
+    regionsInTransition = -1;
+    settling = true;
+    if (polling) {
+      return;
+    }
+    polling = true;
+    clock.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        if (!settling) {
+          return;
+        }
+        try {
+          regionsInTransition = getRegionsInTransition();
+        } catch (RuntimeException e) {
+          // an exception would cancel the timer
+          log.warn("Unable to poll regions in transition", e);
+        }
+      }
+    }, 0, hbaseFrameworkConfig.getRollingRestartRitPollInterval() * 1000L);
+  }
+
+  /**
+   * Asks the masters for the number of regions in transition.
+   *
+   * @return the count reported by the active master or -1 if no master answered
+   */
+  protected int getRegionsInTransition() {
+    int regionsInTransition = -1;
+    for (String master : persistenceStore.getPrimaryNodes().keySet()) {
+      try {
+        for (JsonNode bean : jmx.readBeans(master, hbaseFrameworkConfig.getMasterInfoPort(),
+            ASSIGNMENT_MANAGER_BEAN)) {
+          if (bean.has("ritCount")) {
+            regionsInTransition = Math.max(regionsInTransition, bean.get("ritCount").asInt());
+          }
+        }
+      } catch (IOException e) {
+        log.debug("Unable to read regions in transition from " + master + ": "
+            + e.getMessage());
+      }
+    }
+    if (regionsInTransition < 0) {
+      log.warn("No master reported regions in transition, relying on the settle time only");
+    }
+    return regionsInTransition;
+  }
+
+  private RollingRestartState getActiveState() {
+    RollingRestartState current = getState();
+    if (current == null || !current.isActive()) {
+      throw new SchedulerException("No rolling restart in progress");
+    }
+    return current;
+  }
+
+  private void save() {
+    persistenceStore.setRollingRestartState(state);
+  }
+}
@@ -0,0 +1,110 @@
+package org.apache.mesos.hbase.state;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks executors which hold verified artifacts and hands them out as download sources for newly
+ * launched executors. Peers are filled in the order they became ready and each serves at most
+ * fanout children at a time, so the distribution forms a tree whose depth grows logarithmically
+ * with the cluster size. A child holds its slot from its launch until it runs.
+ */
+public class ArtifactPeerTree {
+  private final Log log = LogFactory.getLog(ArtifactPeerTree.class);
+
+  private final int fanout;
+  // executorId -> base url, in the order the peers became ready
+  private final Map<String, String> peers = new LinkedHashMap<>();
+  // parent executorId -> child executorIds currently downloading from it
+  private final Map<String, List<String>> children = new HashMap<>();
+  // child executorId -> parent executorId
+  private final Map<String, String> parents = new HashMap<>();
+
+  public ArtifactPeerTree(int fanout) {
+    this.fanout = fanout;
+  }
+
+  public synchronized void addPeer(String executorId, String baseUrl) {
+    log.info(String.format("Executor %s serves artifacts from %s", executorId, baseUrl));
+    peers.put(executorId, baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+    if (!children.containsKey(executorId)) {
+      children.put(executorId, new ArrayList<String>());
+    }
+  }
+
+  /**
+   * Forgets an executor both as a peer and as a child, freeing the slot it occupied at its parent.
+   */
+  public synchronized void removePeer(String executorId) {
+    peers.remove(executorId);
+    children.remove(executorId);
+    downloaded(executorId);
+  }
+
+  /**
+   * Picks the peer a new executor should download its artifacts from, without taking one of its
+   * slots yet.
+   *
+   * @return the executor id of the peer or null if every peer is saturated
+   */
+  public synchronized String choosePeer() {
+    for (String peer : peers.keySet()) {
+      if (children.get(peer).size() < fanout) {
+        return peer;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the base url of the peer or null if it is no longer a peer
+   */
+  public synchronized String getPeerUrl(String peer) {
+    return peers.get(peer);
+  }
+
+  /**
+   * Takes a slot of the peer for the launched executor until it finished downloading.
+   */
+  public synchronized void assignParent(String executorId, String peer) {
+    if (!peers.containsKey(peer)) {
+      return;
+    }
+    children.get(peer).add(executorId);
+    parents.put(executorId, peer);
+  }
+
+  /**
+   * The executor has its artifacts, the slot it occupied at its parent is free again.
+   */
+  public synchronized void downloaded(String executorId) {
+    String parent = parents.remove(executorId);
+    if (parent != null && children.containsKey(parent)) {
+      children.get(parent).remove(executorId);
+    }
+  }
+
+  /**
+   * The executor failed before it ran, possibly because its parent did not serve the artifacts.
+   * The parent is no longer handed out, so later executors download from another peer or the
+   * ConfigServer.
+   */
+  public synchronized void launchFailed(String executorId) {
+    String parent = parents.get(executorId);
+    if (parent != null && peers.remove(parent) != null) {
+      log.warn(String.format("Executor %s failed before it ran, no longer serving from its parent"
+          + " %s", executorId, parent));
+    }
+    removePeer(executorId);
+  }
+
+  public synchronized int getPeerCount() {
+    return peers.size();
+  }
+}
@@ -0,0 +1,146 @@
+package org.apache.mesos.hbase.state;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.apache.mesos.hbase.util.NodeTelemetry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latest resource usage summary of every HBase process, as sent by the executors. Summaries
+ * missing for three report intervals are dropped.
+ */
+@Singleton
+public class ClusterTelemetry {
+
+  private static final int STALE_REPORT_INTERVALS = 3;
+  private static final long MB = 1024 * 1024;
+
+  private final HBaseFrameworkConfig hbaseFrameworkConfig;
+  private final Clock clock;
+  private final Map<String, NodeTelemetry> nodes = new ConcurrentHashMap<>();
+
+  @Inject
+  public ClusterTelemetry(HBaseFrameworkConfig hbaseFrameworkConfig, Clock clock) {
+    this.hbaseFrameworkConfig = hbaseFrameworkConfig;
+    this.clock = clock;
+  }
+
+  public void update(NodeTelemetry telemetry) {
+    nodes.put(telemetry.getHostname() + "/" + telemetry.getRole(), telemetry);
+  }
+
+  public List<NodeTelemetry> getNodes() {
+    long staleBefore = clock.currentTimeMillis()
+        - STALE_REPORT_INTERVALS * hbaseFrameworkConfig.getTelemetryReportInterval() * 1000L;
+    Iterator<NodeTelemetry> iterator = nodes.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getWindowEnd() < staleBefore) {
+        iterator.remove();
+      }
+    }
+    return new ArrayList<>(new TreeMap<>(nodes).values());
+  }
+
+  /**
+   * Totals of the nodes of one role.
+   */
+  public static class RoleSummary {
+    private int nodes;
+    private double cpuAvg;
+    private double cpuMax;
+    private long rssMaxMb;
+    private long heapMb;
+    private long readBytesPerSec;
+    private long writeBytesPerSec;
+    private long gcTimeMs;
+    private long diskFreeMinMb = Long.MAX_VALUE;
+
+    void add(NodeTelemetry node) {
+      double seconds = Math.max(1, node.getWindowEnd() - node.getWindowStart()) / 1000.0;
+      nodes++;
+      cpuAvg += node.getCpuAvg();
+      cpuMax = Math.max(cpuMax, node.getCpuMax());
+      rssMaxMb = Math.max(rssMaxMb, node.getRssMax() / MB);
+      heapMb = Math.max(heapMb, node.getHeapMb());
+      readBytesPerSec += (long) (node.getReadBytes() / seconds);
+      writeBytesPerSec += (long) (node.getWriteBytes() / seconds);
+      gcTimeMs += node.getGcTimeMs();
+      diskFreeMinMb = Math.min(diskFreeMinMb, node.getDiskFreeBytes() / MB);
+    }
+
+    public int getNodes() {
+      return nodes;
+    }
+
+    // cores busy on average, summed over the nodes
+    public double getCpuAvg() {
+      return cpuAvg;
+    }
+
+    public double getCpuMax() {
+      return cpuMax;
+    }
+
+    public long getRssMaxMb() {
+      return rssMaxMb;
+    }
+
+    // the largest heap of the role, to compare with the largest RSS when sizing it
+    public long getHeapMb() {
+      return heapMb;
+    }
+
+    public long getReadBytesPerSec() {
+      return readBytesPerSec;
+    }
+
+    public long getWriteBytesPerSec() {
+      return writeBytesPerSec;
+    }
+
+    public long getGcTimeMs() {
+      return gcTimeMs;
+    }
+
+    public long getDiskFreeMinMb() {
+      return diskFreeMinMb;
+    }
+  }
+
+  public Map<String, RoleSummary> getSummary() {
+    Map<String, RoleSummary> summary = new TreeMap<>();
+    for (NodeTelemetry node : getNodes()) {
+      RoleSummary role = summary.get(node.getRole());
+      if (role == null) {
+        role = new RoleSummary();
+        // executors sending no heap run with the configured one
+        role.heapMb = hbaseFrameworkConfig.getTaskHeapSize(getTaskType(node.getRole()));
+        summary.put(node.getRole(), role);
+      }
+      role.add(node);
+    }
+    return summary;
+  }
+
+  private static String getTaskType(String role) {
+    switch (role) {
+      case "master":
+        return HBaseConstants.MASTER_NODE_ID;
+      case "rest":
+        return HBaseConstants.REST_NODE_ID;
+      case "thrift":
+        return HBaseConstants.THRIFT_NODE_ID;
+      default:
+        return HBaseConstants.SLAVE_NODE_ID;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package org.apache.mesos.hbase.state;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.mesos.Protos.MasterInfo;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.Clock;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimerTask;
+
+/**
+ * Knows which hosts run an HDFS DataNode: the configured hosts of an HDFS cluster outside of
+ * Mesos, plus the hosts of the running DataNode tasks of the mesos-hdfs framework, looked up in
+ * the master's state.json every refresh interval on a timer of the clock. Callers only read the
+ * last known hosts, which are kept when the master cannot be reached.
+ */
+@Singleton
+public class DataNodeLocator {
+
+  private final Log log = LogFactory.getLog(DataNodeLocator.class);
+
+  private static final int STATE_TIMEOUT_MS = 5000;
+  private static final String DATANODE_TASK_PREFIX = "datanode";
+
+  private final HBaseFrameworkConfig hbaseFrameworkConfig;
+  private final Clock clock;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private volatile Set<String> hosts;
+  private volatile String masterStateUrl;
+  private boolean refreshing;
+
+  @Inject
+  public DataNodeLocator(HBaseFrameworkConfig hbaseFrameworkConfig, Clock clock) {
+    this.hbaseFrameworkConfig = hbaseFrameworkConfig;
+    this.clock = clock;
+    this.hosts = Collections.unmodifiableSet(hbaseFrameworkConfig.getHdfsDataNodeHosts());
+  }
+
+  /**
+   * Looks the DataNodes up at this master from now on, if HDFS runs on Mesos.
+   */
+  public synchronized void setMaster(MasterInfo masterInfo) {
+    if (!hbaseFrameworkConfig.usingMesosHdfs()) {
+      return;
+    }
+    masterStateUrl = String.format("http://%s:%d/master/state.json",
+        masterInfo.getHostname(), masterInfo.getPort());
+    if (!refreshing) {
+      refreshing = true;
+      clock.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          refresh();
+        }
+      }, 0, hbaseFrameworkConfig.getHdfsLocalityRefreshInterval() * 1000L);
+    }
+  }
+
+  public Set<String> getDataNodeHosts() {
+    return hosts;
+  }
+
+  public boolean isDataNodeHost(String hostname) {
+    return hosts.contains(hostname);
+  }
+
+  private void refresh() {
+    String masterStateUrl = this.masterStateUrl;
+    try {
+      URLConnection connection = new URL(masterStateUrl).openConnection();
+      connection.setConnectTimeout(STATE_TIMEOUT_MS);
+      connection.setReadTimeout(STATE_TIMEOUT_MS);
+      InputStream state = connection.getInputStream();
+      try {
+        Set<String> found = findDataNodeHosts(mapper.readTree(state),
+            hbaseFrameworkConfig.getHdfsFrameworkName());
+        found.addAll(hbaseFrameworkConfig.getHdfsDataNodeHosts());
+        if (!found.equals(hosts)) {
+          log.info("HDFS DataNode hosts: " + found);
+        }
+        hosts = Collections.unmodifiableSet(found);
+      } finally {
+        state.close();
+      }
+    } catch (IOException e) {
+      log.warn("Could not look up the HDFS DataNodes at " + masterStateUrl + ": "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * @return hostnames of the agents running a DataNode task of the framework
+   */
+  public static Set<String> findDataNodeHosts(JsonNode masterState, String frameworkName) {
+    Map<String, String> agentHostnames = new HashMap<>();
+    for (JsonNode agent : masterState.path("slaves")) {
+      agentHostnames.put(agent.path("id").getTextValue(), agent.path("hostname").getTextValue());
+    }
+    Set<String> dataNodeHosts = new HashSet<>();
+    for (JsonNode framework : masterState.path("frameworks")) {
+      if (!frameworkName.equals(framework.path("name").getTextValue())) {
+        continue;
+      }
+      for (JsonNode task : framework.path("tasks")) {
+        String name = task.path("name").getTextValue();
+        String hostname = agentHostnames.get(task.path("slave_id").getTextValue());
+        if (name != null && name.startsWith(DATANODE_TASK_PREFIX) && hostname != null
+            && "TASK_RUNNING".equals(task.path("state").getTextValue())) {
+          dataNodeHosts.add(hostname);
+        }
+      }
+    }
+    return dataNodeHosts;
+  }
+}
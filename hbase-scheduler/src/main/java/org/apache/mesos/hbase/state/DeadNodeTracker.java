@@ -8,6 +8,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.Clock;
 
 import static org.apache.mesos.hbase.util.NodeTypes.*;
 
@@ -22,11 +23,13 @@ public class DeadNodeTracker
       MASTERNODES_KEY, SLAVENODES_KEY};
 
   private HBaseFrameworkConfig hbaseFrameworkConfig;
+  private Clock clock;
 
   @Inject
-  public DeadNodeTracker(HBaseFrameworkConfig hbaseFrameworkConfig)
+  public DeadNodeTracker(HBaseFrameworkConfig hbaseFrameworkConfig, Clock clock)
   {
     this.hbaseFrameworkConfig = hbaseFrameworkConfig;
+    this.clock = clock;
     initializeTimestampMap();
   }
 
@@ -40,7 +43,8 @@ public class DeadNodeTracker
 
   private void resetNodeTimeStamp(String nodeType)
   {
-    Date date = DateUtils.addSeconds(new Date(), hbaseFrameworkConfig.getDeadNodeTimeout());
+    Date date = DateUtils.addSeconds(new Date(clock.currentTimeMillis()),
+        hbaseFrameworkConfig.getDeadNodeTimeout());
     timestampMap.put(nodeType, new Timestamp(date.getTime()));
   }
 
@@ -78,7 +82,7 @@ public class DeadNodeTracker
   private boolean nodeTimerExpired(String nodeType)
   {
     Timestamp timestamp = timestampMap.get(nodeType);
-    return timestamp != null && timestamp.before(new Date());
+    return timestamp != null && timestamp.before(new Date(clock.currentTimeMillis()));
   }
 
 }
@@ -2,6 +2,9 @@ package org.apache.mesos.hbase.state;
 
 import com.google.inject.Inject;
 import org.apache.commons.io.IOUtils;
+import org.apache.mesos.hbase.metrics.Counter;
+import org.apache.mesos.hbase.metrics.Histogram;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
 import org.apache.mesos.state.State;
 import org.apache.mesos.state.Variable;
 import org.apache.mesos.state.ZooKeeperState;
@@ -23,26 +26,32 @@ import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 public class HBaseZkStore implements IHBaseStore {
 
   private State state;
+  private final Histogram readTime;
+  private final Histogram writeTime;
+  private final Counter errors;
 
   @Inject
-  public HBaseZkStore(HBaseFrameworkConfig hbaseFrameworkConfig) {
+  public HBaseZkStore(HBaseFrameworkConfig hbaseFrameworkConfig, MetricsRegistry metrics) {
 
     this.state = new ZooKeeperState(hbaseFrameworkConfig.getStateZkServers(),
         hbaseFrameworkConfig.getStateZkTimeout(),
         TimeUnit.MILLISECONDS,
         "/hbase-mesos/" + hbaseFrameworkConfig.getFrameworkName());
+    this.readTime = metrics.histogram("zk_read_seconds");
+    this.writeTime = metrics.histogram("zk_write_seconds");
+    this.errors = metrics.counter("zk_errors_total");
   }
 
   public byte[] getRawValueForId(String id) throws ExecutionException, InterruptedException {
-    byte[] value = state.fetch(id).get().value();
+    byte[] value = fetch(id).value();
     return value;
   }
 
   public void setRawValueForId(String id, byte[] frameworkId) throws ExecutionException,
       InterruptedException {
-    Variable value = state.fetch(id).get();
+    Variable value = fetch(id);
     value = value.mutate(frameworkId);
-    state.store(value).get();
+    store(value);
   }
 
   /**
@@ -54,27 +63,10 @@ public class HBaseZkStore implements IHBaseStore {
    * @throws java.io.IOException
    * @throws ClassNotFoundException
    */
-  @SuppressWarnings("unchecked")
   public <T extends Object> T get(String key) throws InterruptedException, ExecutionException,
       IOException, ClassNotFoundException {
 
-    byte[] existingNodes = state.fetch(key).get().value();
-    if (existingNodes.length > 0) {
-      ByteArrayInputStream bis = new ByteArrayInputStream(existingNodes);
-      ObjectInputStream in = null;
-      try {
-        in = new ObjectInputStream(bis);
-        // generic in java lose their runtime information, there is no way to get this casted
-        // without
-        // the need for the SuppressWarnings on the method.
-        return (T) in.readObject();
-      } finally {
-        IOUtils.closeQuietly(bis);
-        IOUtils.closeQuietly(in);
-      }
-    } else {
-      return null;
-    }
+    return deserialize(fetch(key).value());
   }
 
   /**
@@ -87,17 +79,70 @@ public class HBaseZkStore implements IHBaseStore {
   public <T extends Object> void set(String key, T object) throws InterruptedException,
       ExecutionException, IOException {
 
-    Variable value = state.fetch(key).get();
+    Variable value = fetch(key);
+    store(value.mutate(serialize(object)));
+  }
+
+  /**
+   * Java serialization of the values kept in ZooKeeper.
+   */
+  public static byte[] serialize(Object object) throws IOException {
     ByteArrayOutputStream bos = new ByteArrayOutputStream();
     ObjectOutputStream out = null;
     try {
       out = new ObjectOutputStream(bos);
       out.writeObject(object);
-      value = value.mutate(bos.toByteArray());
-      state.store(value).get();
+      out.flush();
+      return bos.toByteArray();
     } finally {
       IOUtils.closeQuietly(bos);
       IOUtils.closeQuietly(out);
     }
   }
+
+  /**
+   * @return the deserialized object or null if the value is empty
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T deserialize(byte[] value) throws IOException, ClassNotFoundException {
+    if (value.length == 0) {
+      return null;
+    }
+    ByteArrayInputStream bis = new ByteArrayInputStream(value);
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream(bis);
+      // generic in java lose their runtime information, there is no way to get this casted
+      // without
+      // the need for the SuppressWarnings on the method.
+      return (T) in.readObject();
+    } finally {
+      IOUtils.closeQuietly(bis);
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private Variable fetch(String key) throws ExecutionException, InterruptedException {
+    long start = System.nanoTime();
+    try {
+      return state.fetch(key).get();
+    } catch (ExecutionException | InterruptedException e) {
+      errors.inc();
+      throw e;
+    } finally {
+      readTime.recordSince(start);
+    }
+  }
+
+  private void store(Variable value) throws ExecutionException, InterruptedException {
+    long start = System.nanoTime();
+    try {
+      state.store(value).get();
+    } catch (ExecutionException | InterruptedException e) {
+      errors.inc();
+      throw e;
+    } finally {
+      writeTime.recordSince(start);
+    }
+  }
 }
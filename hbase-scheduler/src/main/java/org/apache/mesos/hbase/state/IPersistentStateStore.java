@@ -31,8 +31,56 @@ public interface IPersistentStateStore {
 
   Map<String, String> getRegionNodes();
 
+  /**
+   * @return hostname -> task id of the REST gateways
+   */
+  Map<String, String> getRestNodes();
+
+  /**
+   * @return hostname -> task id of the Thrift gateways
+   */
+  Map<String, String> getThriftNodes();
+
   boolean slaveNodeRunningOnSlave(String hostname);
 
   boolean masterNodeRunningOnSlave(String hostname);
 
+  /**
+   * @return hostname -> attributes of the agents nodes were launched on
+   */
+  Map<String, Map<String, String>> getHostAttributes();
+
+  void setHostAttributes(String hostname, Map<String, String> attributes);
+
+  /**
+   * @return hostname -> size of the region server launched on it, for sized region servers
+   */
+  Map<String, NodeSize> getNodeSizes();
+
+  void setNodeSize(String hostname, NodeSize size);
+
+  /**
+   * @return hostname -> worker threads of the Thrift gateway launched on it
+   */
+  Map<String, Integer> getThriftWorkers();
+
+  void setThriftWorkers(String hostname, int workers);
+
+  /**
+   * @return task type -> node count set through the scale API, overriding the configured count
+   */
+  Map<String, Integer> getNodeCounts();
+
+  void setNodeCount(String taskType, int count);
+
+  /**
+   * @return a number that changes after every write of the nodes, their sizes or counts, so
+   * what was read about them can be cached until then
+   */
+  long getNodesGeneration();
+
+  RollingRestartState getRollingRestartState();
+
+  void setRollingRestartState(RollingRestartState state);
+
 }
@@ -2,16 +2,20 @@ package org.apache.mesos.hbase.state;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Sets;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.mesos.Protos;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.apache.mesos.hbase.util.Clock;
 import org.apache.mesos.hbase.util.HBaseConstants;
 
 /**
@@ -21,12 +25,22 @@ import org.apache.mesos.hbase.util.HBaseConstants;
 public class LiveState {
   private final Log log = LogFactory.getLog(LiveState.class);
 
+  private final Clock clock;
+
   private Set<Protos.TaskID> stagingTasks = new HashSet<>();
   private AcquisitionPhase currentAcquisitionPhase = AcquisitionPhase.RECONCILING_TASKS;
   // TODO (nicgrayson) Might need to split this out to jns, nns, and dns if dns too big
   //TODO (elingg) we need to also track ZKFC's state
   private Map<String, Protos.TaskStatus> runningTasks = new LinkedHashMap<>();
-  
+  // last health reported by the executor's probe and since when a task is unhealthy
+  private Map<String, Boolean> taskHealth = new HashMap<>();
+  private Map<String, Long> unhealthySince = new HashMap<>();
+
+  @Inject
+  public LiveState(Clock clock) {
+    this.clock = clock;
+  }
+
   public void addStagingTask(Protos.TaskID taskId) {
     stagingTasks.add(taskId);
   }
@@ -45,11 +59,58 @@ public class LiveState {
 
   public void removeRunningTask(Protos.TaskID taskId) {
     runningTasks.remove(taskId.getValue());
+    taskHealth.remove(taskId.getValue());
+    unhealthySince.remove(taskId.getValue());
   }
 
   @SuppressWarnings("PMD")
   public void updateTaskForStatus(Protos.TaskStatus status) {
-    runningTasks.put(status.getTaskId().getValue(), status);
+    String taskId = status.getTaskId().getValue();
+    runningTasks.put(taskId, status);
+    if (status.hasHealthy()) {
+      taskHealth.put(taskId, status.getHealthy());
+      if (status.getHealthy()) {
+        unhealthySince.remove(taskId);
+      } else if (!unhealthySince.containsKey(taskId)) {
+        unhealthySince.put(taskId, clock.currentTimeMillis());
+      }
+    }
+  }
+
+  /**
+   * @return the last health reported for the task or null if there was no report yet
+   */
+  public Boolean getTaskHealth(String taskId) {
+    return taskHealth.get(taskId);
+  }
+
+  /**
+   * @return the tasks reported unhealthy for at least the given time
+   */
+  public List<String> getTasksUnhealthyFor(long millis) {
+    List<String> unhealthy = new ArrayList<>();
+    long now = clock.currentTimeMillis();
+    for (Map.Entry<String, Long> since : unhealthySince.entrySet()) {
+      if (now - since.getValue() >= millis) {
+        unhealthy.add(since.getKey());
+      }
+    }
+    return unhealthy;
+  }
+
+  /**
+   * Starts the unhealthy time of a task over, e.g. after it was killed.
+   */
+  public void resetUnhealthy(String taskId) {
+    unhealthySince.remove(taskId);
+  }
+
+  /**
+   * Forgets the health of a task, it is neither healthy nor unhealthy, e.g. while warming up.
+   */
+  public void resetHealth(String taskId) {
+    taskHealth.remove(taskId);
+    unhealthySince.remove(taskId);
   }
 
   public AcquisitionPhase getCurrentAcquisitionPhase() {
@@ -64,6 +125,13 @@ public class LiveState {
     return countOfRunningTasksWith(HBaseConstants.MASTER_NODE_TASKID);
   }
 
+  /**
+   * @param taskType e.g. restnode
+   */
+  public int getRunningTaskCount(String taskType) {
+    return countOfRunningTasksWith("." + taskType + ".");
+  }
+
   private int countOfRunningTasksWith(final String nodeId) {      
     return Sets.filter(runningTasks.keySet(), new Predicate<String>() {
       @Override
@@ -0,0 +1,156 @@
+package org.apache.mesos.hbase.state;
+
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.Resource;
+import org.apache.mesos.hbase.config.ConfigurationException;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size of a region server derived from the offer it was launched with, persisted per host so the
+ * config server renders the matching hbase-site.xml. The node takes the configured share of the
+ * offered cpus and memory. Of the memory left after the JVM overhead the heap gets its share, at
+ * most the largest heap with compressed oops, and the rest is direct memory for the off-heap
+ * BucketCache and the HDFS and RPC buffers. Without an off-heap cache the heap takes all but the
+ * buffers.
+ */
+public class NodeSize implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final double MAX_HEAP_CACHE_FRACTION = 0.8;
+
+  private final double cpus;
+  // mem resource of the task
+  private final int memMb;
+  private final int heapMb;
+  private final int offHeapMb;
+  private final boolean offHeapCache;
+  private final int bucketCacheMb;
+  private final int handlers;
+  private final double blockCacheFraction;
+  private final double memstoreFraction;
+
+  private NodeSize(double cpus, int memMb, int heapMb, int offHeapMb, boolean offHeapCache,
+      int bucketCacheMb, int handlers, double blockCacheFraction, double memstoreFraction) {
+    this.cpus = cpus;
+    this.memMb = memMb;
+    this.heapMb = heapMb;
+    this.offHeapMb = offHeapMb;
+    this.offHeapCache = offHeapCache;
+    this.bucketCacheMb = bucketCacheMb;
+    this.handlers = handlers;
+    this.blockCacheFraction = blockCacheFraction;
+    this.memstoreFraction = memstoreFraction;
+  }
+
+  /**
+   * @throws ConfigurationException if the BucketCache mode is unknown or the block cache and
+   * memstore take more of the heap than HBase allows
+   */
+  public static void checkConfig(HBaseFrameworkConfig config) {
+    String mode = config.getBucketCacheMode();
+    if (!Arrays.asList(HBaseConstants.BUCKETCACHE_NONE, HBaseConstants.BUCKETCACHE_OFFHEAP,
+        HBaseConstants.BUCKETCACHE_FILE).contains(mode)) {
+      throw new ConfigurationException("Unknown BucketCache mode " + mode
+          + ", expected none, offheap or file");
+    }
+    double blockCacheFraction = config.getSlaveBlockCacheFraction();
+    double memstoreFraction = config.getSlaveMemstoreFraction();
+    if (config.getSlaveResourceFraction() > 0
+        && blockCacheFraction + memstoreFraction > MAX_HEAP_CACHE_FRACTION) {
+      throw new ConfigurationException(String.format("Block cache and memstore fractions "
+          + "%.2f + %.2f exceed %.1f of the heap", blockCacheFraction, memstoreFraction,
+          MAX_HEAP_CACHE_FRACTION));
+    }
+  }
+
+  /**
+   * @return the size of a region server on the offering host, null when the fixed slave sizes
+   * are used
+   */
+  public static NodeSize forOffer(HBaseFrameworkConfig config, Offer offer) {
+    double fraction = config.getSlaveResourceFraction();
+    if (fraction <= 0) {
+      return null;
+    }
+    double overhead = config.getJvmOverhead();
+    double offeredCpus = sum(offer, "cpus") - config.getExecutorCpus();
+    double offeredMem = sum(offer, "mem") - config.getExecutorHeap() * overhead;
+
+    double cpus = Math.max(config.getSlaveNodeCpus(),
+        Math.floor(offeredCpus * fraction * 10) / 10);
+    int processMb = (int) (offeredMem * fraction / overhead);
+    boolean offHeapCache = HBaseConstants.BUCKETCACHE_OFFHEAP.equals(config.getBucketCacheMode());
+    int heapMb;
+    if (offHeapCache) {
+      heapMb = Math.min(config.getSlaveMaxHeapSize(),
+          (int) (processMb * config.getSlaveHeapFraction()));
+    } else {
+      // no off-heap cache, the memory beyond the largest heap is not taken from the offer
+      heapMb = Math.min(config.getSlaveMaxHeapSize(),
+          processMb - config.getDirectMemoryReserve());
+    }
+    // the heap never goes below the fixed size, the direct memory gets what is left
+    heapMb = Math.max(config.getSlaveNodeHeapSize(), heapMb);
+    int reserveMb = Math.max(0, Math.min(config.getDirectMemoryReserve(), processMb - heapMb));
+    int bucketCacheMb = offHeapCache ? Math.max(0, processMb - heapMb - reserveMb) : 0;
+    int offHeapMb = bucketCacheMb + reserveMb;
+    int memMb = (int) Math.ceil((heapMb + offHeapMb) * overhead);
+    int handlers = Math.max(1, (int) Math.round(cpus * config.getSlaveHandlersPerCpu()));
+    return new NodeSize(cpus, memMb, heapMb, offHeapMb, offHeapCache, bucketCacheMb, handlers,
+        config.getSlaveBlockCacheFraction(), config.getSlaveMemstoreFraction());
+  }
+
+  private static double sum(Offer offer, String name) {
+    double sum = 0;
+    for (Resource resource : offer.getResourcesList()) {
+      if (name.equals(resource.getName())) {
+        sum += resource.getScalar().getValue();
+      }
+    }
+    return sum;
+  }
+
+  public double getCpus() {
+    return cpus;
+  }
+
+  public int getMemMb() {
+    return memMb;
+  }
+
+  public int getHeapMb() {
+    return heapMb;
+  }
+
+  public int getOffHeapMb() {
+    return offHeapMb;
+  }
+
+  /**
+   * @return hbase-site.xml properties of a region server of this size
+   */
+  public Map<String, String> getProperties() {
+    Map<String, String> properties = new LinkedHashMap<>();
+    properties.put("hbase.regionserver.handler.count", String.valueOf(handlers));
+    properties.put("hfile.block.cache.size", String.valueOf(blockCacheFraction));
+    properties.put("hbase.regionserver.global.memstore.size", String.valueOf(memstoreFraction));
+    if (offHeapCache) {
+      // 0 turns the cache off on a host too small for it
+      properties.put("hbase.bucketcache.ioengine", "offheap");
+      properties.put("hbase.bucketcache.size", String.valueOf(bucketCacheMb));
+    }
+    return properties;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%.1f cpus, %d MB heap, %d MB off-heap, %d handlers", cpus, heapMb,
+        offHeapMb, handlers);
+  }
+}
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 import org.apache.mesos.hbase.util.HBaseConstants;
 
@@ -36,8 +37,15 @@ public class PersistentStateStore implements IPersistentStateStore
 
   private DeadNodeTracker deadNodeTracker;
 
+  private final AtomicLong nodesGeneration = new AtomicLong();
+
   private static final String FRAMEWORK_ID_KEY = "frameworkId";
   private static final String MASTERNODE_TASKNAMES_KEY = "masterNodeTaskNames";
+  private static final String ROLLING_RESTART_KEY = "rollingRestart";
+  private static final String HOST_ATTRIBUTES_KEY = "hostAttributes";
+  private static final String NODE_SIZES_KEY = "nodeSizes";
+  private static final String THRIFT_WORKERS_KEY = "thriftWorkers";
+  private static final String NODE_COUNTS_KEY = "nodeCounts";
 
   // TODO (elingg) we need to also track ZKFC's state
   // TODO (nicgrayson) add tests with in-memory state implementation for zookeeper
@@ -100,7 +108,9 @@ public class PersistentStateStore implements IPersistentStateStore
     // Possibly call removeTask(slaveId, taskId) to avoid iterating through all maps
 
     if (removeTaskIdFromMasterNodes(taskId)
-        || removeTaskIdFromDataNodes(taskId)) {
+        || removeTaskIdFromDataNodes(taskId)
+        || removeTaskIdFromGatewayNodes(RESTNODES_KEY, taskId)
+        || removeTaskIdFromGatewayNodes(THRIFTNODES_KEY, taskId)) {
       logger.debug("task id: " + taskId + " removed");
     } else {
       logger.warn("task id: " + taskId + " request to be removed doesn't exist");
@@ -117,6 +127,12 @@ public class PersistentStateStore implements IPersistentStateStore
       case HBaseConstants.SLAVE_NODE_ID:
         addDataNode(taskId, hostname);
         break;
+      case HBaseConstants.REST_NODE_ID:
+        addGatewayNode(RESTNODES_KEY, taskId, hostname);
+        break;
+      case HBaseConstants.THRIFT_NODE_ID:
+        addGatewayNode(THRIFTNODES_KEY, taskId, hostname);
+        break;
       default:
         logger.error("Task name unknown");
     }
@@ -129,6 +145,13 @@ public class PersistentStateStore implements IPersistentStateStore
     setDataNodes(dataNodes);
   }
 
+  private void addGatewayNode(String key, Protos.TaskID taskId, String hostname)
+  {
+    Map<String, String> gatewayNodes = getNodesMap(key);
+    gatewayNodes.put(hostname, taskId.getValue());
+    setGatewayNodes(key, gatewayNodes);
+  }
+
   private void addPrimaryNode(Protos.TaskID taskId, String hostname, String taskName)
   {
     Map<String, String> primaryNodes = getPrimaryNodes();
@@ -219,6 +242,18 @@ public class PersistentStateStore implements IPersistentStateStore
     return getNodesMap(SLAVENODES_KEY);
   }
 
+  @Override
+  public Map<String, String> getRestNodes()
+  {
+    return getNodesMap(RESTNODES_KEY);
+  }
+
+  @Override
+  public Map<String, String> getThriftNodes()
+  {
+    return getNodesMap(THRIFTNODES_KEY);
+  }
+
   @Override
   public boolean slaveNodeRunningOnSlave(String hostname)
   {
@@ -231,6 +266,116 @@ public class PersistentStateStore implements IPersistentStateStore
     return getPrimaryNodes().containsKey(hostname);
   }
 
+  @Override
+  public Map<String, Map<String, String>> getHostAttributes()
+  {
+    try {
+      HashMap<String, Map<String, String>> hostAttributes = hbaseStore.get(HOST_ATTRIBUTES_KEY);
+      if (hostAttributes == null) {
+        return new HashMap<>();
+      }
+      return hostAttributes;
+    } catch (Exception e) {
+      logger.error("Error while getting host attributes in persistent state", e);
+      return new HashMap<>();
+    }
+  }
+
+  @Override
+  public void setHostAttributes(String hostname, Map<String, String> attributes)
+  {
+    Map<String, Map<String, String>> hostAttributes = getHostAttributes();
+    if (attributes.equals(hostAttributes.get(hostname))) {
+      return;
+    }
+    hostAttributes.put(hostname, new HashMap<>(attributes));
+    try {
+      hbaseStore.set(HOST_ATTRIBUTES_KEY, hostAttributes);
+    } catch (Exception e) {
+      logger.error("Error while setting host attributes in persistent state", e);
+    }
+  }
+
+  @Override
+  public Map<String, NodeSize> getNodeSizes()
+  {
+    try {
+      HashMap<String, NodeSize> nodeSizes = hbaseStore.get(NODE_SIZES_KEY);
+      if (nodeSizes == null) {
+        return new HashMap<>();
+      }
+      return nodeSizes;
+    } catch (Exception e) {
+      logger.error("Error while getting node sizes in persistent state", e);
+      return new HashMap<>();
+    }
+  }
+
+  @Override
+  public void setNodeSize(String hostname, NodeSize size)
+  {
+    Map<String, NodeSize> nodeSizes = getNodeSizes();
+    nodeSizes.put(hostname, size);
+    try {
+      hbaseStore.set(NODE_SIZES_KEY, nodeSizes);
+    } catch (Exception e) {
+      logger.error("Error while setting node sizes in persistent state", e);
+    }
+    nodesGeneration.incrementAndGet();
+  }
+
+  @Override
+  public Map<String, Integer> getThriftWorkers()
+  {
+    return getCountsMap(THRIFT_WORKERS_KEY);
+  }
+
+  @Override
+  public void setThriftWorkers(String hostname, int workers)
+  {
+    Map<String, Integer> thriftWorkers = getThriftWorkers();
+    thriftWorkers.put(hostname, workers);
+    setCountsMap(THRIFT_WORKERS_KEY, thriftWorkers);
+  }
+
+  @Override
+  public Map<String, Integer> getNodeCounts()
+  {
+    return getCountsMap(NODE_COUNTS_KEY);
+  }
+
+  @Override
+  public void setNodeCount(String taskType, int count)
+  {
+    Map<String, Integer> nodeCounts = getNodeCounts();
+    nodeCounts.put(taskType, count);
+    setCountsMap(NODE_COUNTS_KEY, nodeCounts);
+  }
+
+  private Map<String, Integer> getCountsMap(String key)
+  {
+    try {
+      HashMap<String, Integer> counts = hbaseStore.get(key);
+      if (counts == null) {
+        return new HashMap<>();
+      }
+      return counts;
+    } catch (Exception e) {
+      logger.error(String.format("Error while getting %s in persistent state", key), e);
+      return new HashMap<>();
+    }
+  }
+
+  private void setCountsMap(String key, Map<String, Integer> counts)
+  {
+    try {
+      hbaseStore.set(key, counts);
+    } catch (Exception e) {
+      logger.error(String.format("Error while setting %s in persistent state", key), e);
+    }
+    nodesGeneration.incrementAndGet();
+  }
+
   @Override
   public Set<String> getAllTaskIds()
   {
@@ -239,10 +384,40 @@ public class PersistentStateStore implements IPersistentStateStore
     Collection<String> dataNodes = getRegionNodes().values();
     allTaskIds.addAll(masterNodes);
     allTaskIds.addAll(dataNodes);
+    allTaskIds.addAll(getRestNodes().values());
+    allTaskIds.addAll(getThriftNodes().values());
     return allTaskIds;
 
   }
 
+  @Override
+  public long getNodesGeneration()
+  {
+    return nodesGeneration.get();
+  }
+
+  @Override
+  public RollingRestartState getRollingRestartState()
+  {
+    try {
+      return hbaseStore.get(ROLLING_RESTART_KEY);
+    } catch (Exception e) {
+      logger.error("Error while getting the rolling restart in persistent state", e);
+      throw new PersistenceException(e);
+    }
+  }
+
+  @Override
+  public void setRollingRestartState(RollingRestartState state)
+  {
+    try {
+      hbaseStore.set(ROLLING_RESTART_KEY, state);
+    } catch (Exception e) {
+      logger.error("Error while setting the rolling restart in persistent state", e);
+      throw new PersistenceException(e);
+    }
+  }
+
   private Map<String, String> getNodesMap(String key)
     {
         try {
@@ -298,6 +473,19 @@ public class PersistentStateStore implements IPersistentStateStore
     return nodesModified;
   }
 
+  /**
+   * Gateways keep no state on their host, a lost one is replaced on any host.
+   */
+  private boolean removeTaskIdFromGatewayNodes(String key, String taskId)
+  {
+    Map<String, String> gatewayNodes = getNodesMap(key);
+    if (!gatewayNodes.values().remove(taskId)) {
+      return false;
+    }
+    setGatewayNodes(key, gatewayNodes);
+    return true;
+  }
+
   private void setPrimaryNodes(Map<String, String> primaryNodes)
   {
     try {
@@ -305,6 +493,7 @@ public class PersistentStateStore implements IPersistentStateStore
     } catch (Exception e) {
       logger.error("Error while setting primary nodes in persistent state", e);
     }
+    nodesGeneration.incrementAndGet();
   }
 
   private void setPrimaryNodeTaskNames(Map<String, String> primaryNodeTaskNames)
@@ -316,6 +505,16 @@ public class PersistentStateStore implements IPersistentStateStore
     }
   }
 
+  private void setGatewayNodes(String key, Map<String, String> gatewayNodes)
+  {
+    try {
+      hbaseStore.set(key, gatewayNodes);
+    } catch (Exception e) {
+      logger.error(String.format("Error while setting %s in persistent state", key), e);
+    }
+    nodesGeneration.incrementAndGet();
+  }
+
   private void setDataNodes(Map<String, String> dataNodes)
   {
     try {
@@ -323,6 +522,7 @@ public class PersistentStateStore implements IPersistentStateStore
     } catch (Exception e) {
       logger.error("Error while setting data nodes in persistent state", e);
     }
+    nodesGeneration.incrementAndGet();
   }
 
 }
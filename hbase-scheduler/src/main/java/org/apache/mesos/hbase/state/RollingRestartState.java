@@ -0,0 +1,119 @@
+package org.apache.mesos.hbase.state;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a rolling restart, persisted after every step so a new scheduler can pick it up
+ * after a failover.
+ */
+public class RollingRestartState implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Lifecycle of a rolling restart.
+   */
+  public enum Status {
+    RUNNING, PAUSED, ABORTED, DONE
+  }
+
+  private Status status = Status.RUNNING;
+  private int batchSize;
+  private long startedAt;
+  private String pauseReason;
+  private int failures;
+  private List<String> pendingHosts = new ArrayList<>();
+  // host -> id of the task killed on it, the restart of the host is done once another task runs
+  private Map<String, String> batch = new LinkedHashMap<>();
+  private long batchStartedAt;
+  // 0 until every task of the batch is back
+  private long settleStartedAt;
+  private List<String> completedHosts = new ArrayList<>();
+
+  public RollingRestartState(List<String> hosts, int batchSize, long startedAt) {
+    this.pendingHosts.addAll(hosts);
+    this.batchSize = batchSize;
+    this.startedAt = startedAt;
+  }
+
+  /**
+   * A copy of the state, e.g. to serialize it while the restart moves on.
+   */
+  public RollingRestartState(RollingRestartState other) {
+    this(other.pendingHosts, other.batchSize, other.startedAt);
+    this.status = other.status;
+    this.pauseReason = other.pauseReason;
+    this.failures = other.failures;
+    this.batch.putAll(other.batch);
+    this.batchStartedAt = other.batchStartedAt;
+    this.settleStartedAt = other.settleStartedAt;
+    this.completedHosts.addAll(other.completedHosts);
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getStartedAt() {
+    return startedAt;
+  }
+
+  public String getPauseReason() {
+    return pauseReason;
+  }
+
+  public void setPauseReason(String pauseReason) {
+    this.pauseReason = pauseReason;
+  }
+
+  public int getFailures() {
+    return failures;
+  }
+
+  public void setFailures(int failures) {
+    this.failures = failures;
+  }
+
+  public List<String> getPendingHosts() {
+    return pendingHosts;
+  }
+
+  public Map<String, String> getBatch() {
+    return batch;
+  }
+
+  public long getBatchStartedAt() {
+    return batchStartedAt;
+  }
+
+  public void setBatchStartedAt(long batchStartedAt) {
+    this.batchStartedAt = batchStartedAt;
+  }
+
+  public long getSettleStartedAt() {
+    return settleStartedAt;
+  }
+
+  public void setSettleStartedAt(long settleStartedAt) {
+    this.settleStartedAt = settleStartedAt;
+  }
+
+  public List<String> getCompletedHosts() {
+    return completedHosts;
+  }
+
+  public boolean isActive() {
+    return status == Status.RUNNING || status == Status.PAUSED;
+  }
+}
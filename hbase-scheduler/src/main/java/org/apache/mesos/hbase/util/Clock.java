@@ -0,0 +1,34 @@
+package org.apache.mesos.hbase.util;
+
+import com.google.inject.Singleton;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Wall clock time and timers of the scheduler. Simulations replace it with a virtual clock to run
+ * timeouts deterministically.
+ */
+@Singleton
+public class Clock {
+
+  public long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Runs the task once after the delay.
+   */
+  public void schedule(TimerTask task, long delayMs) {
+    Timer timer = new Timer();
+    timer.schedule(task, delayMs);
+  }
+
+  /**
+   * Runs the task repeatedly, the first time after the delay, on a daemon thread of its own.
+   */
+  public void schedule(TimerTask task, long delayMs, long periodMs) {
+    Timer timer = new Timer(true);
+    timer.schedule(task, delayMs, periodMs);
+  }
+}
@@ -7,6 +7,8 @@ public final class NodeTypes {
 
   public static final String MASTERNODES_KEY = "masterNodes";
   public static final String SLAVENODES_KEY = "slaveNodes";
+  public static final String RESTNODES_KEY = "restNodes";
+  public static final String THRIFTNODES_KEY = "thriftNodes";
 
   public NodeTypes() {
   }
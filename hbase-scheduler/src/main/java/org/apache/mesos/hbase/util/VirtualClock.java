@@ -0,0 +1,98 @@
+package org.apache.mesos.hbase.util;
+
+import java.util.PriorityQueue;
+import java.util.TimerTask;
+
+/**
+ * Simulated time: nothing happens between events, which run in time order and, at the same time,
+ * in the order they were scheduled. Timers of the scheduler become events as well. Used by the
+ * cluster simulator and by the callback replay, which starts the clock at the recorded time.
+ */
+public class VirtualClock extends Clock {
+
+  // an arbitrary fixed start, so runs with the same seed produce the same task ids
+  public static final long EPOCH = 1440000000000L;
+
+  private static class Event implements Comparable<Event> {
+    final long time;
+    final long sequence;
+    final Runnable action;
+
+    Event(long time, long sequence, Runnable action) {
+      this.time = time;
+      this.sequence = sequence;
+      this.action = action;
+    }
+
+    @Override
+    public int compareTo(Event other) {
+      if (time != other.time) {
+        return time < other.time ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  private final PriorityQueue<Event> events = new PriorityQueue<>();
+  private final long start;
+  private long now;
+  private long sequence;
+
+  public VirtualClock() {
+    this(EPOCH);
+  }
+
+  public VirtualClock(long start) {
+    this.start = start;
+    this.now = start;
+  }
+
+  @Override
+  public long currentTimeMillis() {
+    return now;
+  }
+
+  @Override
+  public void schedule(TimerTask task, long delayMs) {
+    schedule(delayMs, task);
+  }
+
+  @Override
+  public void schedule(final TimerTask task, long delayMs, final long periodMs) {
+    schedule(delayMs, new Runnable() {
+      @Override
+      public void run() {
+        task.run();
+        schedule(periodMs, this);
+      }
+    });
+  }
+
+  public void schedule(long delayMs, Runnable action) {
+    events.add(new Event(now + Math.max(0, delayMs), sequence++, action));
+  }
+
+  /**
+   * Milliseconds since the start of the simulation.
+   */
+  public long elapsed() {
+    return now - start;
+  }
+
+  /**
+   * Runs the next event unless there is none before the end.
+   *
+   * @return false if no event was run
+   */
+  public boolean runNext(long endElapsed) {
+    Event next = events.peek();
+    if (next == null || next.time - start > endElapsed) {
+      now = Math.max(now, start + endElapsed);
+      return false;
+    }
+    events.poll();
+    now = next.time;
+    next.action.run();
+    return true;
+  }
+}
@@ -0,0 +1,264 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.HBaseScheduler;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.HBaseZkStore;
+import org.apache.mesos.hbase.state.IHBaseStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.apache.mesos.hbase.util.VirtualClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Deterministic scale test of the scheduler: the real HBaseScheduler, LiveState and
+ * PersistentStateStore run against a {@link SimulatedMesosMaster} with a fleet of agents on a
+ * virtual clock, with task loss, agent loss and master failover injected at given times. The
+ * same seed always yields the same run, only the wall clock figures vary.
+ *
+ * Usage: ClusterSimulator [agents] [seed]
+ *
+ * Set -Dlogback.configurationFile to a configuration logging at WARN for large fleets.
+ */
+public class ClusterSimulator {
+
+  private static final int DEFAULT_AGENTS = 200;
+  private static final long DEFAULT_SEED = 42;
+  private static final double AGENT_CPUS = 16;
+  private static final double AGENT_MEM = 65536;
+  private static final long ALLOCATION_INTERVAL_MS = 1000;
+  private static final long MIN_TASK_START_MS = 2000;
+  private static final long MAX_TASK_START_MS = 10000;
+
+  /**
+   * The outcome of a run, times in virtual milliseconds since the start.
+   */
+  static class Report {
+    int agents;
+    int aliveAgents;
+    int occupiedAgents;
+    long timeToFullCluster = -1;
+    final List<String> recoveries = new ArrayList<>();
+    final List<Long> recoveryTimes = new ArrayList<>();
+    long offers;
+    long offersDeclined;
+    long offerCallbacks;
+    long offerCallbackNanos;
+    long tasksLaunched;
+    long statusUpdates;
+    long frameworkMessages;
+    long zkReads;
+    long zkWrites;
+    long zkBytesWritten;
+
+    double getOffersPerSecond() {
+      return offerCallbackNanos == 0 ? 0 : offers * 1e9 / offerCallbackNanos;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append(String.format("agents: %d (%d alive, %d running a task)%n", agents,
+          aliveAgents, occupiedAgents));
+      text.append(String.format("time to full cluster: %s%n", seconds(timeToFullCluster)));
+      for (int i = 0; i < recoveries.size(); i++) {
+        text.append(String.format("recovery after %s: %s%n", recoveries.get(i),
+            seconds(recoveryTimes.get(i))));
+      }
+      text.append(String.format("offers: %d in %d callbacks, %d declined, %.0f offers/s%n",
+          offers, offerCallbacks, offersDeclined, getOffersPerSecond()));
+      text.append(String.format("tasks launched: %d, status updates: %d, framework messages: %d%n",
+          tasksLaunched, statusUpdates, frameworkMessages));
+      text.append(String.format("zk reads: %d, zk writes: %d, zk bytes written: %d%n", zkReads,
+          zkWrites, zkBytesWritten));
+      return text.toString();
+    }
+
+    private static String seconds(long millis) {
+      return millis < 0 ? "never" : String.format("%.1f s", millis / 1000.0);
+    }
+  }
+
+  /**
+   * Counts ZooKeeper operations the way HBaseZkStore performs them, a set reads the node before
+   * writing it, and keeps values serialized like ZooKeeper would.
+   */
+  private static class CountingStore implements IHBaseStore {
+
+    private final Map<String, byte[]> values = new HashMap<>();
+    long reads;
+    long writes;
+    long bytesWritten;
+
+    @Override
+    public byte[] getRawValueForId(String id) {
+      reads++;
+      byte[] value = values.get(id);
+      return value == null ? new byte[]{} : value;
+    }
+
+    @Override
+    public void setRawValueForId(String id, byte[] value) {
+      reads++;
+      writes++;
+      bytesWritten += value.length;
+      values.put(id, value);
+    }
+
+    @Override
+    public <T> T get(String key) throws IOException, ClassNotFoundException {
+      reads++;
+      byte[] value = values.get(key);
+      return value == null ? null : HBaseZkStore.<T>deserialize(value);
+    }
+
+    @Override
+    public <T> void set(String key, T object) throws ExecutionException, InterruptedException,
+        IOException {
+      setRawValueForId(key, HBaseZkStore.serialize(object));
+    }
+  }
+
+  private final VirtualClock clock = new VirtualClock();
+  private final SimulatedMesosMaster master;
+  private final CountingStore store = new CountingStore();
+  private final HBaseScheduler scheduler;
+  private final Report report = new Report();
+  private String pendingRecovery;
+  private long pendingRecoveryStart;
+  private boolean wasFull;
+
+  ClusterSimulator(int agents, long seed) throws IOException {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    HBaseFrameworkConfig config = createConfig();
+    master = new SimulatedMesosMaster(clock, new Random(seed), ALLOCATION_INTERVAL_MS,
+        MIN_TASK_START_MS, MAX_TASK_START_MS);
+    for (int i = 0; i < agents; i++) {
+      master.addAgent(AGENT_CPUS, AGENT_MEM);
+    }
+    LiveState liveState = new LiveState(clock);
+    PersistentStateStore persistenceStore = new PersistentStateStore(config, store,
+        new DeadNodeTracker(config, clock));
+    scheduler = new HBaseScheduler(config, liveState, persistenceStore,
+        new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(config, persistenceStore, liveState, clock),
+        new ClusterTelemetry(config, clock), new MetricsRegistry(),
+        new DataNodeLocator(config, clock), clock);
+    report.agents = agents;
+  }
+
+  private static HBaseFrameworkConfig createConfig() throws IOException {
+    File workDir = Files.createTempDirectory("cluster-simulator").toFile();
+    workDir.deleteOnExit();
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.executor.path", workDir.getAbsolutePath());
+    conf.set("mesos.hbase.config.path",
+        new File(workDir, HBaseConstants.HBASE_CONFIG_FILE_NAME).getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    return new HBaseFrameworkConfig(conf);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int agents = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_AGENTS;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SEED;
+    ClusterSimulator simulator = new ClusterSimulator(agents, seed);
+    // the scheduler launches one task per offer round, allow for that before injecting failures
+    long settled = agents * 6000L + 60000;
+    simulator.loseTasksAt(settled, Math.max(1, agents / 100));
+    simulator.loseAgentsAt(2 * settled, Math.max(1, agents / 100), 60000);
+    simulator.failoverAt(3 * settled, 10000);
+    System.out.print(simulator.run(4 * settled));
+  }
+
+  void loseTasksAt(long elapsedMs, final int count) {
+    at(elapsedMs, "losing " + count + " tasks", new Runnable() {
+      @Override
+      public void run() {
+        master.loseTasks(count);
+      }
+    });
+  }
+
+  void loseAgentsAt(long elapsedMs, final int count, final long downtimeMs) {
+    at(elapsedMs, "losing " + count + " agents", new Runnable() {
+      @Override
+      public void run() {
+        master.loseAgents(count, downtimeMs);
+      }
+    });
+  }
+
+  void failoverAt(long elapsedMs, final long downtimeMs) {
+    at(elapsedMs, "master failover", new Runnable() {
+      @Override
+      public void run() {
+        master.failover(downtimeMs);
+      }
+    });
+  }
+
+  private void at(long elapsedMs, final String failure, final Runnable action) {
+    clock.schedule(elapsedMs - clock.elapsed(), new Runnable() {
+      @Override
+      public void run() {
+        pendingRecovery = failure;
+        pendingRecoveryStart = clock.elapsed();
+        wasFull = false;
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * Runs the simulation for the given virtual time.
+   */
+  Report run(long durationMs) {
+    master.start(scheduler);
+    while (clock.runNext(durationMs)) {
+      checkFullCluster();
+    }
+    report.aliveAgents = master.getAliveAgents();
+    report.occupiedAgents = master.getOccupiedAgents();
+    report.offers = master.getOffersSent();
+    report.offersDeclined = master.getOffersDeclined();
+    report.offerCallbacks = master.getOfferCallbacks();
+    report.offerCallbackNanos = master.getOfferCallbackNanos();
+    report.tasksLaunched = master.getTasksLaunched();
+    report.statusUpdates = master.getStatusUpdates();
+    report.frameworkMessages = master.getFrameworkMessages();
+    report.zkReads = store.reads;
+    report.zkWrites = store.writes;
+    report.zkBytesWritten = store.bytesWritten;
+    return report;
+  }
+
+  private void checkFullCluster() {
+    boolean full = master.getOccupiedAgents() == report.agents;
+    if (full && !wasFull) {
+      if (report.timeToFullCluster < 0) {
+        report.timeToFullCluster = clock.elapsed();
+      } else if (pendingRecovery != null) {
+        report.recoveries.add(pendingRecovery);
+        report.recoveryTimes.add(clock.elapsed() - pendingRecoveryStart);
+        pendingRecovery = null;
+      }
+    }
+    wasFull = full;
+  }
+}
@@ -0,0 +1,241 @@
+package org.apache.mesos.hbase;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.ConfigServer;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repeatable load test for the ConfigServer, simulating a cluster wide restart: every simulated
+ * executor downloads the tarball once, then keeps fetching the rendered configuration and
+ * long-polling for changes while the configuration is republished periodically.
+ *
+ * Usage: ConfigServerLoadHarness [executors] [seconds] [tarballMb] [changeIntervalSeconds]
+ *
+ * The test classpath also carries the servlet 2.5 api pulled in by hbase-rest, put
+ * javax.servlet-api 3.1 first on the classpath when running this outside of maven.
+ */
+public class ConfigServerLoadHarness {
+
+  private static final int DEFAULT_EXECUTORS = 1000;
+  private static final int DEFAULT_SECONDS = 60;
+  private static final int DEFAULT_TARBALL_MB = 16;
+  private static final int DEFAULT_CHANGE_INTERVAL_SECONDS = 5;
+  private static final int LONG_POLL_TIMEOUT_MS = 10000;
+
+  private final String baseUrl;
+  private final long deadline;
+  private final LatencyRecorder tarballLatency = new LatencyRecorder("tarball");
+  private final LatencyRecorder hbaseSiteLatency = new LatencyRecorder("hbase-site.xml");
+  private final LatencyRecorder regionServersLatency = new LatencyRecorder("regionservers");
+  private final LatencyRecorder watchLatency = new LatencyRecorder("config-watch");
+  private final AtomicLong errors = new AtomicLong();
+
+  public ConfigServerLoadHarness(String baseUrl, long deadline) {
+    this.baseUrl = baseUrl;
+    this.deadline = deadline;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int executors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EXECUTORS;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+    int tarballMb = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TARBALL_MB;
+    int changeInterval = args.length > 3 ? Integer.parseInt(args[3])
+        : DEFAULT_CHANGE_INTERVAL_SECONDS;
+
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    System.setProperty("mesos.hbase.config.server.port", "0");
+    File workDir = Files.createTempDirectory("config-server-load").toFile();
+    HBaseFrameworkConfig config = createConfig(workDir, tarballMb);
+    PersistentStateStore store = new PersistentStateStore(config, new HBaseDevelopmentStore(),
+        new DeadNodeTracker(config, new Clock()));
+    for (int i = 0; i < executors; i++) {
+      store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.slavenode." + i).build(),
+          "host" + i, HBaseConstants.SLAVE_NODE_ID, HBaseConstants.SLAVE_NODE_ID);
+    }
+    ConfigChangeNotifier notifier = new ConfigChangeNotifier();
+    ConfigServer server = new ConfigServer(config, store, notifier,
+        new RollingRestartCoordinator(config, store, new LiveState(new Clock()), new Clock()),
+        new ClusterTelemetry(config, new Clock()), new MetricsRegistry(),
+        new DataNodeLocator(config, new Clock()));
+    try {
+      String baseUrl = "http://localhost:" + server.getPort() + "/";
+      new ConfigServerLoadHarness(baseUrl, System.currentTimeMillis() + seconds * 1000L)
+          .run(executors, notifier, changeInterval);
+      System.out.println(fetch(baseUrl + HBaseConstants.SERVER_STATS_PATH));
+      System.out.println(fetch(baseUrl + HBaseConstants.METRICS_PATH + "?"
+          + HBaseConstants.METRICS_FORMAT_PARAM + "=prometheus"));
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static HBaseFrameworkConfig createConfig(File workDir, int tarballMb)
+      throws IOException {
+    File template = new File(workDir, HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    Files.write(template.toPath(), ("<configuration><property><name>hbase.master</name>"
+        + "<value>${primary1Hostname}:60000</value></property></configuration>")
+        .getBytes(Charset.defaultCharset()));
+
+    byte[] block = new byte[1024 * 1024];
+    new Random(0).nextBytes(block);
+    OutputStream tarball = new FileOutputStream(new File(workDir,
+        HBaseConstants.HBASE_BINARY_FILE_NAME));
+    try {
+      for (int i = 0; i < tarballMb; i++) {
+        tarball.write(block);
+      }
+    } finally {
+      tarball.close();
+    }
+
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.executor.path", workDir.getAbsolutePath());
+    conf.set("mesos.hbase.config.path", template.getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    conf.setInt("mesos.hbase.config.longpoll.timeout.ms", LONG_POLL_TIMEOUT_MS);
+    return new HBaseFrameworkConfig(conf);
+  }
+
+  void run(int executors, final ConfigChangeNotifier notifier, final int changeInterval)
+      throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(executors);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < executors; i++) {
+      Thread executor = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            simulateExecutor();
+          } finally {
+            done.countDown();
+          }
+        }
+      }, "executor-" + i);
+      executor.setDaemon(true);
+      executor.start();
+    }
+    while (!done.await(changeInterval, TimeUnit.SECONDS)) {
+      if (System.currentTimeMillis() < deadline) {
+        notifier.configChanged();
+      }
+    }
+    double elapsed = (System.currentTimeMillis() - start) / 1000.0;
+
+    System.out.println(String.format("%d executors, %.1f s, %d errors", executors, elapsed,
+        errors.get()));
+    for (LatencyRecorder recorder : Arrays.asList(tarballLatency, hbaseSiteLatency,
+        regionServersLatency, watchLatency)) {
+      System.out.println(recorder.summary(elapsed));
+    }
+  }
+
+  private void simulateExecutor() {
+    timedFetch(tarballLatency, HBaseConstants.HBASE_BINARY_FILE_NAME);
+    long version = -1;
+    while (System.currentTimeMillis() < deadline) {
+      timedFetch(hbaseSiteLatency, HBaseConstants.HBASE_CONFIG_FILE_NAME);
+      timedFetch(regionServersLatency, HBaseConstants.REGION_SERVERS_FILENAME);
+      String answer = timedFetch(watchLatency, HBaseConstants.CONFIG_WATCH_PATH + "?"
+          + HBaseConstants.CONFIG_VERSION_PARAM + "=" + version);
+      if (answer != null && !answer.isEmpty()) {
+        version = Long.parseLong(answer.trim());
+      }
+    }
+  }
+
+  private String timedFetch(LatencyRecorder recorder, String path) {
+    long start = System.nanoTime();
+    try {
+      String content = fetch(baseUrl + path);
+      recorder.record(System.nanoTime() - start);
+      return content;
+    } catch (IOException e) {
+      errors.incrementAndGet();
+      return null;
+    }
+  }
+
+  private static String fetch(String url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setReadTimeout(LONG_POLL_TIMEOUT_MS * 3);
+    int status = connection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      return "";
+    }
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new IOException("status " + status + " for " + url);
+    }
+    InputStream in = connection.getInputStream();
+    try {
+      if (url.endsWith(HBaseConstants.HBASE_BINARY_FILE_NAME)) {
+        IOUtils.copyLarge(in, new NullOutputStream());
+        return "";
+      }
+      return IOUtils.toString(in, "UTF-8");
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  private static class LatencyRecorder {
+    private final String name;
+    private final List<Long> latencies = new ArrayList<>();
+
+    LatencyRecorder(String name) {
+      this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+      latencies.add(nanos);
+    }
+
+    synchronized String summary(double elapsedSeconds) {
+      if (latencies.isEmpty()) {
+        return name + ": no requests";
+      }
+      List<Long> sorted = new ArrayList<>(latencies);
+      Collections.sort(sorted);
+      return String.format("%-16s %8d req %9.1f req/s  p50 %8.2f ms  p95 %8.2f ms  "
+          + "p99 %8.2f ms  max %8.2f ms", name, sorted.size(), sorted.size() / elapsedSeconds,
+          percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+          sorted.get(sorted.size() - 1) / 1e6);
+    }
+
+    private double percentile(List<Long> sorted, double quantile) {
+      int index = (int) Math.min(sorted.size() - 1, Math.round(quantile * (sorted.size() - 1)));
+      return sorted.get(index) / 1e6;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.util.LogPump;
+import org.apache.mesos.hbase.util.RotatingLogFile;
+import org.apache.mesos.hbase.util.StreamRedirect;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the throughput of StreamRedirect and LogPump copying the output of chatty child
+ * processes into files. Every child writes log-like lines to stdout and stderr.
+ *
+ * Usage: LogPumpBenchmark [processes] [mbPerStream] [rounds]
+ */
+@SuppressWarnings("deprecation")
+public class LogPumpBenchmark {
+
+  private static final String LINE = "2015-09-01 12:00:00,000 INFO  "
+      + "[RpcServer.handler=12,port=16020] regionserver.HRegion: Flushing 1/1 column families, "
+      + "memstore=128.00 MB";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int BUFFERS = 32;
+  private static final long MAX_FILE_SIZE = 64L * 1024 * 1024;
+
+  public static void main(String[] args) throws Exception {
+    int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int mbPerStream = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    File workDir = Files.createTempDirectory("log-pump-benchmark").toFile();
+    long bytes = 2L * processes * mbPerStream * 1024 * 1024;
+
+    for (int round = 1; round <= rounds; round++) {
+      report("StreamRedirect", round, bytes, runStreamRedirect(workDir, processes, mbPerStream));
+      report("LogPump", round, bytes, runLogPump(workDir, processes, mbPerStream));
+    }
+  }
+
+  private static Process startChatty(int mbPerStream) throws IOException {
+    String cmd = String.format("yes '%s' | head -c %d & yes '%s' | head -c %d >&2; wait", LINE,
+        mbPerStream * 1024L * 1024, LINE, mbPerStream * 1024L * 1024);
+    return new ProcessBuilder("sh", "-c", cmd).start();
+  }
+
+  private static Result runStreamRedirect(File workDir, int processes, int mbPerStream)
+      throws Exception {
+    Result result = new Result();
+    PrintStream stdout = new PrintStream(new FileOutputStream(new File(workDir, "redirect.out")));
+    PrintStream stderr = new PrintStream(new FileOutputStream(new File(workDir, "redirect.err")));
+    List<Thread> threads = new ArrayList<>();
+    result.start();
+    for (int i = 0; i < processes; i++) {
+      Process process = startChatty(mbPerStream);
+      StreamRedirect out = new StreamRedirect(process.getInputStream(), stdout);
+      StreamRedirect err = new StreamRedirect(process.getErrorStream(), stderr);
+      out.start();
+      err.start();
+      threads.add(out);
+      threads.add(err);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    stdout.close();
+    stderr.close();
+    result.stop();
+    return result;
+  }
+
+  private static Result runLogPump(File workDir, int processes, int mbPerStream)
+      throws Exception {
+    Result result = new Result();
+    LogPump pump = new LogPump(BUFFER_SIZE, BUFFERS);
+    RotatingLogFile stdout = new RotatingLogFile(new File(workDir, "pump.out"), MAX_FILE_SIZE, 2);
+    RotatingLogFile stderr = new RotatingLogFile(new File(workDir, "pump.err"), MAX_FILE_SIZE, 2);
+    List<Future<?>> streams = new ArrayList<>();
+    result.start();
+    for (int i = 0; i < processes; i++) {
+      Process process = startChatty(mbPerStream);
+      streams.add(pump.pump(process.getInputStream(), stdout));
+      streams.add(pump.pump(process.getErrorStream(), stderr));
+    }
+    for (Future<?> stream : streams) {
+      stream.get();
+    }
+    pump.close();
+    result.stop();
+    result.dropped = pump.getDroppedBytes();
+    return result;
+  }
+
+  private static void report(String name, int round, long bytes, Result result) {
+    double seconds = result.nanos / 1e9;
+    System.out.println(String.format("%-14s round %d: %7.1f MB/s  %6.2f s  %4d GCs  %d bytes "
+        + "dropped", name, round, bytes / seconds / (1024 * 1024), seconds, result.gcs,
+        result.dropped));
+  }
+
+  private static class Result {
+    long nanos;
+    long gcs;
+    long dropped;
+
+    void start() {
+      nanos = System.nanoTime();
+      gcs = gcCount();
+    }
+
+    void stop() {
+      nanos = System.nanoTime() - nanos;
+      gcs = gcCount() - gcs;
+    }
+
+    private static long gcCount() {
+      long count = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(0, gc.getCollectionCount());
+      }
+      return count;
+    }
+  }
+}
@@ -0,0 +1,548 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.Protos.Offer;
+import org.apache.mesos.Protos.OfferID;
+import org.apache.mesos.Protos.TaskID;
+import org.apache.mesos.Protos.TaskInfo;
+import org.apache.mesos.Protos.TaskState;
+import org.apache.mesos.Protos.TaskStatus;
+import org.apache.mesos.Scheduler;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.util.VirtualClock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * An in-process Mesos master and its agents, acting as the scheduler's driver. Every allocation
+ * interval the free resources of all agents not filtered by a decline are offered in one
+ * callback; launched tasks report TASK_RUNNING after a random start time. Status updates created
+ * while the master fails over are delivered once the scheduler re-registered, as agents retry
+ * them. Everything runs on the virtual clock, so a seed determines the whole run.
+ */
+class SimulatedMesosMaster implements SchedulerDriver {
+
+  // Mesos' default refuse_seconds for declined offers
+  private static final long DEFAULT_REFUSE_MS = 5000;
+  private static final long STATUS_DELAY_MS = 50;
+
+  static class Agent {
+    final String id;
+    final String hostname;
+    final double cpus;
+    final double mem;
+    double usedCpus;
+    double usedMem;
+    boolean alive = true;
+    boolean offered;
+    long filteredUntil;
+
+    Agent(String id, String hostname, double cpus, double mem) {
+      this.id = id;
+      this.hostname = hostname;
+      this.cpus = cpus;
+      this.mem = mem;
+    }
+  }
+
+  private static class SimulatedTask {
+    final TaskInfo info;
+    final Agent agent;
+    final double cpus;
+    final double mem;
+    TaskState state = TaskState.TASK_STAGING;
+
+    SimulatedTask(TaskInfo info, Agent agent) {
+      this.info = info;
+      this.agent = agent;
+      this.cpus = sum(info, "cpus");
+      this.mem = sum(info, "mem");
+    }
+  }
+
+  private final VirtualClock clock;
+  private final Random random;
+  private final long allocationIntervalMs;
+  private final long minTaskStartMs;
+  private final long maxTaskStartMs;
+  private final Protos.MasterInfo masterInfo = Protos.MasterInfo.newBuilder()
+      .setId("master").setIp(0x7f000001).setPort(5050).setHostname("master.example.com").build();
+  private final Map<String, Agent> agents = new LinkedHashMap<>();
+  private final Map<String, SimulatedTask> tasks = new LinkedHashMap<>();
+  private final Map<String, Agent> outstandingOffers = new LinkedHashMap<>();
+  private final List<TaskStatus> undeliveredStatuses = new ArrayList<>();
+  private Scheduler scheduler;
+  private boolean masterUp = true;
+  private long nextOfferId;
+
+  private long offersSent;
+  private long offersDeclined;
+  private long offerCallbacks;
+  private long offerCallbackNanos;
+  private long tasksLaunched;
+  private long statusUpdates;
+  private long frameworkMessages;
+
+  SimulatedMesosMaster(VirtualClock clock, Random random, long allocationIntervalMs,
+      long minTaskStartMs, long maxTaskStartMs) {
+    this.clock = clock;
+    this.random = random;
+    this.allocationIntervalMs = allocationIntervalMs;
+    this.minTaskStartMs = minTaskStartMs;
+    this.maxTaskStartMs = maxTaskStartMs;
+  }
+
+  void addAgent(double cpus, double mem) {
+    int number = agents.size();
+    Agent agent = new Agent("agent-" + number, "agent" + number + ".example.com", cpus, mem);
+    agents.put(agent.id, agent);
+  }
+
+  /**
+   * Registers the framework and starts allocating.
+   */
+  void start(Scheduler scheduler) {
+    this.scheduler = scheduler;
+    scheduler.registered(this, Protos.FrameworkID.newBuilder().setValue("simulated").build(),
+        masterInfo);
+    clock.schedule(allocationIntervalMs, new Runnable() {
+      @Override
+      public void run() {
+        allocate();
+        clock.schedule(allocationIntervalMs, this);
+      }
+    });
+  }
+
+  private void allocate() {
+    if (!masterUp) {
+      return;
+    }
+    List<Agent> candidates = new ArrayList<>();
+    for (Agent agent : agents.values()) {
+      if (agent.alive && !agent.offered && agent.filteredUntil <= clock.currentTimeMillis()
+          && agent.cpus - agent.usedCpus > 0 && agent.mem - agent.usedMem > 0) {
+        candidates.add(agent);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return;
+    }
+    // like the DRF allocator, which picks agents in random order
+    Collections.shuffle(candidates, random);
+    List<Offer> offers = new ArrayList<>(candidates.size());
+    for (Agent agent : candidates) {
+      String offerId = "offer-" + nextOfferId++;
+      agent.offered = true;
+      outstandingOffers.put(offerId, agent);
+      offers.add(Offer.newBuilder()
+          .setId(OfferID.newBuilder().setValue(offerId))
+          .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("simulated"))
+          .setSlaveId(Protos.SlaveID.newBuilder().setValue(agent.id))
+          .setHostname(agent.hostname)
+          .addResources(scalar("cpus", agent.cpus - agent.usedCpus))
+          .addResources(scalar("mem", agent.mem - agent.usedMem))
+          .build());
+    }
+    offersSent += offers.size();
+    offerCallbacks++;
+    long start = System.nanoTime();
+    scheduler.resourceOffers(this, offers);
+    offerCallbackNanos += System.nanoTime() - start;
+    // offers neither used nor declined stay outstanding, as with a real master
+  }
+
+  /**
+   * Fails running tasks, e.g. because their process died.
+   */
+  void loseTasks(int count) {
+    List<SimulatedTask> running = new ArrayList<>();
+    for (SimulatedTask task : tasks.values()) {
+      if (task.state == TaskState.TASK_RUNNING) {
+        running.add(task);
+      }
+    }
+    for (int i = 0; i < count && !running.isEmpty(); i++) {
+      SimulatedTask task = running.remove(random.nextInt(running.size()));
+      finish(task, TaskState.TASK_LOST, "Simulated task loss");
+    }
+  }
+
+  /**
+   * Takes agents away with their tasks, bringing them back after the downtime unless it is 0.
+   */
+  void loseAgents(int count, long downtimeMs) {
+    List<Agent> alive = new ArrayList<>();
+    for (Agent agent : agents.values()) {
+      if (agent.alive) {
+        alive.add(agent);
+      }
+    }
+    for (int i = 0; i < count && !alive.isEmpty(); i++) {
+      final Agent agent = alive.remove(random.nextInt(alive.size()));
+      agent.alive = false;
+      rescindOffers(agent);
+      for (SimulatedTask task : new ArrayList<>(tasks.values())) {
+        if (task.agent == agent && !isTerminal(task.state)) {
+          finish(task, TaskState.TASK_LOST, "Simulated agent loss");
+        }
+      }
+      if (masterUp) {
+        scheduler.slaveLost(this, Protos.SlaveID.newBuilder().setValue(agent.id).build());
+      }
+      if (downtimeMs > 0) {
+        clock.schedule(downtimeMs, new Runnable() {
+          @Override
+          public void run() {
+            agent.alive = true;
+            agent.filteredUntil = 0;
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * The leading master goes away, a new one is elected after the downtime and the scheduler
+   * re-registers with it.
+   */
+  void failover(long downtimeMs) {
+    masterUp = false;
+    // offers die with the master, the scheduler learns that by re-registering
+    for (Agent agent : outstandingOffers.values()) {
+      agent.offered = false;
+    }
+    outstandingOffers.clear();
+    scheduler.disconnected(this);
+    clock.schedule(downtimeMs, new Runnable() {
+      @Override
+      public void run() {
+        masterUp = true;
+        scheduler.reregistered(SimulatedMesosMaster.this, masterInfo);
+        List<TaskStatus> pending = new ArrayList<>(undeliveredStatuses);
+        undeliveredStatuses.clear();
+        for (TaskStatus status : pending) {
+          deliver(status);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return alive agents running a task, the scheduler places one task per host
+   */
+  int getOccupiedAgents() {
+    Set<Agent> occupied = new HashSet<>();
+    for (SimulatedTask task : tasks.values()) {
+      if (task.state == TaskState.TASK_RUNNING && task.agent.alive) {
+        occupied.add(task.agent);
+      }
+    }
+    return occupied.size();
+  }
+
+  int getAliveAgents() {
+    int alive = 0;
+    for (Agent agent : agents.values()) {
+      if (agent.alive) {
+        alive++;
+      }
+    }
+    return alive;
+  }
+
+  long getOffersSent() {
+    return offersSent;
+  }
+
+  long getOffersDeclined() {
+    return offersDeclined;
+  }
+
+  long getOfferCallbacks() {
+    return offerCallbacks;
+  }
+
+  long getOfferCallbackNanos() {
+    return offerCallbackNanos;
+  }
+
+  long getTasksLaunched() {
+    return tasksLaunched;
+  }
+
+  long getStatusUpdates() {
+    return statusUpdates;
+  }
+
+  long getFrameworkMessages() {
+    return frameworkMessages;
+  }
+
+  private void rescindOffers(Agent agent) {
+    for (Map.Entry<String, Agent> offer : new ArrayList<>(outstandingOffers.entrySet())) {
+      if (offer.getValue() == agent) {
+        outstandingOffers.remove(offer.getKey());
+        if (masterUp) {
+          scheduler.offerRescinded(this, OfferID.newBuilder().setValue(offer.getKey()).build());
+        }
+      }
+    }
+    agent.offered = false;
+  }
+
+  private void finish(SimulatedTask task, TaskState state, String message) {
+    task.state = state;
+    task.agent.usedCpus -= task.cpus;
+    task.agent.usedMem -= task.mem;
+    sendStatus(task, state, message, 0);
+  }
+
+  private void sendStatus(SimulatedTask task, TaskState state, String message, long delayMs) {
+    final TaskStatus status = TaskStatus.newBuilder()
+        .setTaskId(task.info.getTaskId())
+        .setSlaveId(task.info.getSlaveId())
+        .setExecutorId(task.info.getExecutor().getExecutorId())
+        .setState(state)
+        .setMessage(message)
+        .setTimestamp(clock.currentTimeMillis() / 1000.0)
+        .build();
+    clock.schedule(delayMs, new Runnable() {
+      @Override
+      public void run() {
+        deliver(status);
+      }
+    });
+  }
+
+  private void deliver(TaskStatus status) {
+    if (!masterUp) {
+      undeliveredStatuses.add(status);
+      return;
+    }
+    statusUpdates++;
+    scheduler.statusUpdate(this, status);
+  }
+
+  private static boolean isTerminal(TaskState state) {
+    return state == TaskState.TASK_FINISHED || state == TaskState.TASK_FAILED
+        || state == TaskState.TASK_KILLED || state == TaskState.TASK_LOST
+        || state == TaskState.TASK_ERROR;
+  }
+
+  private static double sum(TaskInfo task, String name) {
+    double total = 0;
+    List<Protos.Resource> resources = new ArrayList<>(task.getResourcesList());
+    resources.addAll(task.getExecutor().getResourcesList());
+    for (Protos.Resource resource : resources) {
+      if (resource.getName().equals(name)) {
+        total += resource.getScalar().getValue();
+      }
+    }
+    return total;
+  }
+
+  private static Protos.Resource scalar(String name, double value) {
+    return Protos.Resource.newBuilder()
+        .setName(name)
+        .setType(Protos.Value.Type.SCALAR)
+        .setScalar(Protos.Value.Scalar.newBuilder().setValue(value))
+        .build();
+  }
+
+  private Agent useOffer(OfferID offerId, Protos.Filters filters) {
+    Agent agent = outstandingOffers.remove(offerId.getValue());
+    if (agent != null) {
+      agent.offered = false;
+      agent.filteredUntil = clock.currentTimeMillis() + (filters != null
+          ? (long) (filters.getRefuseSeconds() * 1000) : DEFAULT_REFUSE_MS);
+    }
+    return agent;
+  }
+
+  @Override
+  public Protos.Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> taskInfos,
+      Protos.Filters filters) {
+    Map<String, Agent> offered = new LinkedHashMap<>();
+    for (OfferID offerId : offerIds) {
+      Agent agent = useOffer(offerId, filters);
+      if (agent != null) {
+        offered.put(agent.id, agent);
+      }
+    }
+    for (TaskInfo info : taskInfos) {
+      Agent agent = offered.get(info.getSlaveId().getValue());
+      final SimulatedTask task = new SimulatedTask(info, agent != null ? agent
+          : new Agent(info.getSlaveId().getValue(), "unknown", 0, 0));
+      tasks.put(info.getTaskId().getValue(), task);
+      tasksLaunched++;
+      if (agent == null || !agent.alive || agent.cpus - agent.usedCpus < task.cpus
+          || agent.mem - agent.usedMem < task.mem) {
+        task.state = TaskState.TASK_LOST;
+        sendStatus(task, TaskState.TASK_LOST, "Task uses invalid or insufficient offers",
+            STATUS_DELAY_MS);
+        continue;
+      }
+      agent.usedCpus += task.cpus;
+      agent.usedMem += task.mem;
+      long startMs = minTaskStartMs
+          + (long) (random.nextDouble() * (maxTaskStartMs - minTaskStartMs));
+      clock.schedule(startMs, new Runnable() {
+        @Override
+        public void run() {
+          if (task.state == TaskState.TASK_STAGING && task.agent.alive) {
+            task.state = TaskState.TASK_RUNNING;
+            sendStatus(task, TaskState.TASK_RUNNING, "", 0);
+          }
+        }
+      });
+    }
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status launchTasks(Collection<OfferID> offerIds,
+      Collection<TaskInfo> taskInfos) {
+    return launchTasks(offerIds, taskInfos, null);
+  }
+
+  @Override
+  public Protos.Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos,
+      Protos.Filters filters) {
+    return launchTasks(Collections.singletonList(offerId), taskInfos, filters);
+  }
+
+  @Override
+  public Protos.Status launchTasks(OfferID offerId, Collection<TaskInfo> taskInfos) {
+    return launchTasks(Collections.singletonList(offerId), taskInfos, null);
+  }
+
+  @Override
+  public Protos.Status acceptOffers(Collection<OfferID> offerIds,
+      Collection<Offer.Operation> operations, Protos.Filters filters) {
+    List<TaskInfo> launches = new ArrayList<>();
+    for (Offer.Operation operation : operations) {
+      if (operation.getType() == Offer.Operation.Type.LAUNCH) {
+        launches.addAll(operation.getLaunch().getTaskInfosList());
+      }
+    }
+    return launchTasks(offerIds, launches, filters);
+  }
+
+  @Override
+  public Protos.Status declineOffer(OfferID offerId, Protos.Filters filters) {
+    if (useOffer(offerId, filters) != null) {
+      offersDeclined++;
+    }
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status declineOffer(OfferID offerId) {
+    return declineOffer(offerId, null);
+  }
+
+  @Override
+  public Protos.Status killTask(TaskID taskId) {
+    final SimulatedTask task = tasks.get(taskId.getValue());
+    if (task == null) {
+      return Protos.Status.DRIVER_RUNNING;
+    }
+    clock.schedule(STATUS_DELAY_MS, new Runnable() {
+      @Override
+      public void run() {
+        if (!isTerminal(task.state)) {
+          finish(task, TaskState.TASK_KILLED, "Killed by the scheduler");
+        }
+      }
+    });
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status reconcileTasks(Collection<TaskStatus> statuses) {
+    List<SimulatedTask> reconciled = new ArrayList<>();
+    if (statuses.isEmpty()) {
+      // implicit reconciliation: the latest state of every task the master knows about
+      for (SimulatedTask task : tasks.values()) {
+        if (!isTerminal(task.state)) {
+          reconciled.add(task);
+        }
+      }
+    } else {
+      for (TaskStatus status : statuses) {
+        SimulatedTask task = tasks.get(status.getTaskId().getValue());
+        if (task != null) {
+          reconciled.add(task);
+        }
+      }
+    }
+    for (SimulatedTask task : reconciled) {
+      sendStatus(task, task.state, "Reconciliation", STATUS_DELAY_MS);
+    }
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status sendFrameworkMessage(Protos.ExecutorID executorId,
+      Protos.SlaveID slaveId, byte[] data) {
+    frameworkMessages++;
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status reviveOffers() {
+    for (Agent agent : agents.values()) {
+      agent.filteredUntil = 0;
+    }
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status acknowledgeStatusUpdate(TaskStatus status) {
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status requestResources(Collection<Protos.Request> requests) {
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status start() {
+    return Protos.Status.DRIVER_RUNNING;
+  }
+
+  @Override
+  public Protos.Status stop(boolean failover) {
+    return Protos.Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Protos.Status stop() {
+    return Protos.Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Protos.Status abort() {
+    return Protos.Status.DRIVER_ABORTED;
+  }
+
+  @Override
+  public Protos.Status join() {
+    return Protos.Status.DRIVER_STOPPED;
+  }
+
+  @Override
+  public Protos.Status run() {
+    return Protos.Status.DRIVER_STOPPED;
+  }
+}
@@ -0,0 +1,182 @@
+package org.apache.mesos.hbase;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.ConfigServer;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.executor.ArtifactPeerServer;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.ArtifactPeerTree;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Executors on localhost download the executor tarball from the ConfigServer or from each other,
+ * the way the Mesos fetcher does with the URIs the scheduler hands out.
+ */
+public class TestArtifactPeerDistribution {
+
+  private static final String ARTIFACT = HBaseConstants.HBASE_BINARY_FILE_NAME;
+
+  private final ArtifactPeerTree peerTree = new ArtifactPeerTree(1);
+  private final List<ArtifactPeerServer> peerServers = new ArrayList<>();
+  private File workDir;
+  private byte[] artifact;
+  private Map<String, String> checksums;
+  private ConfigServer origin;
+
+  @Before
+  public void setup() throws IOException {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    System.setProperty("mesos.hbase.config.server.port", "0");
+    workDir = Files.createTempDirectory("artifact-peers").toFile();
+    File executorDir = new File(workDir, "executor");
+    artifact = new byte[1 << 20];
+    new Random(42).nextBytes(artifact);
+    FileUtils.writeByteArrayToFile(new File(executorDir, ARTIFACT), artifact);
+    checksums = Collections.singletonMap(ARTIFACT, DigestUtils.md5Hex(artifact));
+
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.executor.path", executorDir.getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    HBaseFrameworkConfig config = new HBaseFrameworkConfig(conf);
+    PersistentStateStore store = new PersistentStateStore(config, new HBaseDevelopmentStore(),
+        new DeadNodeTracker(config, new Clock()));
+    origin = new ConfigServer(config, store, new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(config, store, new LiveState(new Clock()), new Clock()),
+        new ClusterTelemetry(config, new Clock()), new MetricsRegistry(),
+        new DataNodeLocator(config, new Clock()));
+  }
+
+  @After
+  public void stop() throws IOException {
+    for (ArtifactPeerServer peerServer : peerServers) {
+      peerServer.stop();
+    }
+    origin.stop();
+    System.clearProperty("mesos.hbase.config.server.port");
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Test
+  public void downloadsThroughTheChainOfPeers() throws IOException {
+    assertNull(launch("executor.1"));
+    running("executor.1");
+    String peer1 = launch("executor.2");
+    running("executor.2");
+
+    // executor.3 downloads from executor.1, which leaves executor.4 to the second level
+    String peer1Again = launch("executor.3");
+    String peer2 = launch("executor.4");
+
+    assertEquals(peer1, peer1Again);
+    assertEquals(peer2, peerTree.getPeerUrl("executor.2"));
+    assertArrayEquals(artifact, read("executor.4"));
+  }
+
+  @Test
+  public void fallsBackToTheConfigServerWhenThePeerIsDown() throws IOException {
+    launch("executor.1");
+    running("executor.1");
+    peerServers.get(0).stop();
+
+    try {
+      launch("executor.2");
+      fail("the stopped peer served the artifact");
+    } catch (IOException e) {
+      peerTree.launchFailed("executor.2");
+    }
+
+    assertNull(launch("executor.3"));
+    assertArrayEquals(artifact, read("executor.3"));
+  }
+
+  @Test
+  public void servesOnlyVerifiedArtifacts() throws IOException {
+    File sandbox = new File(workDir, "executor.1");
+    FileUtils.writeByteArrayToFile(new File(sandbox, ARTIFACT), new byte[]{1, 2, 3});
+    ArtifactPeerServer peerServer = new ArtifactPeerServer(sandbox, checksums);
+    peerServers.add(peerServer);
+
+    assertEquals(-1, peerServer.start(0));
+  }
+
+  /**
+   * Downloads the artifact from the source the scheduler picks into the executor's sandbox.
+   *
+   * @return the base url of the peer it was downloaded from, null for the ConfigServer
+   */
+  private String launch(String executorId) throws IOException {
+    String peer = peerTree.choosePeer();
+    String source = peer == null ? null : peerTree.getPeerUrl(peer);
+    if (peer != null) {
+      peerTree.assignParent(executorId, peer);
+    }
+    String url = source != null ? source + ARTIFACT
+        : String.format("http://localhost:%d/%s", origin.getPort(), ARTIFACT);
+    File sandbox = new File(workDir, executorId);
+    sandbox.mkdirs();
+    fetch(url, new File(sandbox, ARTIFACT));
+    return source;
+  }
+
+  /**
+   * The executor started and serves its artifacts to later executors.
+   */
+  private void running(String executorId) throws IOException {
+    peerTree.downloaded(executorId);
+    ArtifactPeerServer peerServer = new ArtifactPeerServer(new File(workDir, executorId),
+        checksums);
+    peerServers.add(peerServer);
+    peerTree.addPeer(executorId, "http://localhost:" + peerServer.start(0));
+  }
+
+  private byte[] read(String executorId) throws IOException {
+    return FileUtils.readFileToByteArray(new File(new File(workDir, executorId), ARTIFACT));
+  }
+
+  private static void fetch(String url, File target) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(5000);
+    connection.setReadTimeout(5000);
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException("HTTP " + connection.getResponseCode() + " for " + url);
+    }
+    try (InputStream in = connection.getInputStream();
+        OutputStream out = new FileOutputStream(target)) {
+      IOUtils.copyLarge(in, out);
+    }
+  }
+}
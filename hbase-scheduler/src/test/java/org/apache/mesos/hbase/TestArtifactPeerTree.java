@@ -0,0 +1,117 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.state.ArtifactPeerTree;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestArtifactPeerTree {
+
+  private ArtifactPeerTree peerTree;
+
+  @Before
+  public void setup() {
+    peerTree = new ArtifactPeerTree(2);
+  }
+
+  @Test
+  public void fallsBackToConfigServerWithoutPeers() {
+    assertNull(assign("executor.1"));
+  }
+
+  @Test
+  public void fillsPeersInReadyOrderUpToFanout() {
+    peerTree.addPeer("executor.1", "http://localhost:31001");
+    peerTree.addPeer("executor.2", "http://localhost:31002/");
+
+    assertEquals("http://localhost:31001/", assign("executor.3"));
+    assertEquals("http://localhost:31001/", assign("executor.4"));
+    assertEquals("http://localhost:31002/", assign("executor.5"));
+    assertEquals("http://localhost:31002/", assign("executor.6"));
+    assertNull(assign("executor.7"));
+  }
+
+  @Test
+  public void removedChildFreesSlotAtParent() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+    assign("executor.2");
+    assign("executor.3");
+
+    peerTree.removePeer("executor.2");
+
+    assertEquals("http://localhost:31001/", assign("executor.4"));
+  }
+
+  @Test
+  public void childFreesItsSlotOnceDownloaded() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+    assign("executor.2");
+    assign("executor.3");
+    assertNull(peerTree.choosePeer());
+
+    peerTree.downloaded("executor.2");
+
+    assertEquals("http://localhost:31001/", assign("executor.4"));
+  }
+
+  @Test
+  public void choosingAPeerTakesNoSlot() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+
+    // launches which never happened
+    peerTree.choosePeer();
+    peerTree.choosePeer();
+
+    assertEquals("executor.1", peerTree.choosePeer());
+  }
+
+  @Test
+  public void failedLaunchDropsItsParent() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+    peerTree.addPeer("executor.2", "http://localhost:31002/");
+    assign("executor.3");
+
+    peerTree.launchFailed("executor.3");
+
+    assertEquals(1, peerTree.getPeerCount());
+    assertEquals("http://localhost:31002/", assign("executor.4"));
+  }
+
+  @Test
+  public void failureAfterTheDownloadKeepsTheParent() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+    assign("executor.2");
+    peerTree.downloaded("executor.2");
+
+    peerTree.launchFailed("executor.2");
+
+    assertEquals(1, peerTree.getPeerCount());
+  }
+
+  @Test
+  public void removedPeerIsNoLongerHandedOut() {
+    peerTree.addPeer("executor.1", "http://localhost:31001/");
+    peerTree.addPeer("executor.2", "http://localhost:31002/");
+
+    peerTree.removePeer("executor.1");
+
+    assertEquals(1, peerTree.getPeerCount());
+    assertEquals("http://localhost:31002/", assign("executor.3"));
+  }
+
+  /**
+   * Launches the executor the way the scheduler does.
+   *
+   * @return the base url it downloads from, null for the ConfigServer
+   */
+  private String assign(String executorId) {
+    String peer = peerTree.choosePeer();
+    if (peer == null) {
+      return null;
+    }
+    peerTree.assignParent(executorId, peer);
+    return peerTree.getPeerUrl(peer);
+  }
+}
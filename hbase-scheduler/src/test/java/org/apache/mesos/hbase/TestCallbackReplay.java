@@ -0,0 +1,99 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.scheduler.CallbackRecorder;
+import org.apache.mesos.hbase.scheduler.CallbackReplay;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.apache.mesos.hbase.util.VirtualClock;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCallbackReplay {
+
+  @Test
+  public void replaysRecordedCallbacksOnRecordedTime() throws IOException {
+    File dir = Files.createTempDirectory("callbacks").toFile();
+    HBaseFrameworkConfig config = createConfig(dir, true);
+    VirtualClock clock = new VirtualClock();
+    CallbackRecorder recorder = new CallbackRecorder(config, clock);
+    assertTrue(recorder.isRecording());
+
+    recorder.registered(Protos.FrameworkID.newBuilder().setValue("framework1").build(),
+        Protos.MasterInfo.newBuilder().setId("master").setIp(1).setPort(5050).build());
+    recorder.dataNodeHosts(Collections.singleton("host1"));
+    recorder.resourceOffers(Collections.singletonList(createOffer(0)));
+    // after the reconciliation timeout the scheduler starts launching masters
+    clock.runNext(31000);
+    recorder.resourceOffers(Arrays.asList(createOffer(1), createOffer(2)));
+    recorder.statusUpdate(Protos.TaskStatus.newBuilder()
+        .setTaskId(Protos.TaskID.newBuilder().setValue("task.masternode.1"))
+        .setState(Protos.TaskState.TASK_LOST)
+        .build());
+
+    File[] logs = dir.listFiles();
+    assertEquals(1, logs.length);
+    File log = new File(Files.createTempDirectory("replay").toFile(), logs[0].getName());
+    Files.move(logs[0].toPath(), log.toPath());
+    // configured like the recording scheduler, the replay records nothing itself
+    CallbackReplay.Result result = new CallbackReplay(createConfig(dir, true)).replay(log);
+    assertEquals(0, dir.listFiles().length);
+
+    assertFalse(result.isTruncated());
+    assertEquals(1, result.getCallbacks("registered"));
+    assertEquals(2, result.getCallbacks("resourceOffers"));
+    assertEquals(1, result.getCallbacks("statusUpdate"));
+    assertEquals(1, result.getTasksLaunched());
+    assertEquals(2, result.getOffersDeclined());
+    assertTrue(result.getPlacements().get(0).startsWith("31000 slave1 task.masternode."));
+
+    // a scheduler killed in the middle of a record
+    RandomAccessFile truncated = new RandomAccessFile(log, "rw");
+    truncated.setLength(truncated.length() - 3);
+    truncated.close();
+    result = new CallbackReplay(createConfig(dir, false)).replay(log);
+
+    assertTrue(result.isTruncated());
+    assertEquals(0, result.getCallbacks("statusUpdate"));
+    assertEquals(1, result.getTasksLaunched());
+  }
+
+  private HBaseFrameworkConfig createConfig(File dir, boolean recording) {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    Configuration conf = new Configuration(false);
+    if (recording) {
+      conf.set("mesos.hbase.callback.log.dir", dir.getAbsolutePath());
+    }
+    conf.set("mesos.hbase.executor.path", dir.getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    return new HBaseFrameworkConfig(conf);
+  }
+
+  private Protos.Offer createOffer(int instanceNumber) {
+    return Protos.Offer.newBuilder()
+        .setId(Protos.OfferID.newBuilder().setValue("offer" + instanceNumber))
+        .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework1"))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave" + instanceNumber))
+        .setHostname("host" + instanceNumber)
+        .addResources(Protos.Resource.newBuilder()
+            .setName("cpus")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(16)))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("mem")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(65536)))
+        .build();
+  }
+}
@@ -0,0 +1,47 @@
+package org.apache.mesos.hbase;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestClusterSimulator {
+
+  private static final int AGENTS = 20;
+  private static final long SETTLED_MS = 300000;
+
+  @Test
+  public void launchesTheClusterAndRecoversFromFailures() throws IOException {
+    ClusterSimulator.Report report = simulate(7);
+
+    assertTrue(report.timeToFullCluster > 0);
+    assertEquals(AGENTS, report.occupiedAgents);
+    assertEquals(Arrays.asList("losing 2 tasks", "losing 1 agents", "master failover"),
+        report.recoveries);
+    assertTrue(report.zkWrites > AGENTS);
+    assertTrue(report.offers >= report.offersDeclined + report.tasksLaunched);
+  }
+
+  @Test
+  public void isDeterministicForASeed() throws IOException {
+    ClusterSimulator.Report first = simulate(11);
+    ClusterSimulator.Report second = simulate(11);
+
+    assertEquals(first.timeToFullCluster, second.timeToFullCluster);
+    assertEquals(first.recoveryTimes, second.recoveryTimes);
+    assertEquals(first.offers, second.offers);
+    assertEquals(first.statusUpdates, second.statusUpdates);
+    assertEquals(first.zkWrites, second.zkWrites);
+  }
+
+  private ClusterSimulator.Report simulate(long seed) throws IOException {
+    ClusterSimulator simulator = new ClusterSimulator(AGENTS, seed);
+    simulator.loseTasksAt(SETTLED_MS, 2);
+    simulator.loseAgentsAt(2 * SETTLED_MS, 1, 120000);
+    simulator.failoverAt(3 * SETTLED_MS, 10000);
+    return simulator.run(4 * SETTLED_MS);
+  }
+}
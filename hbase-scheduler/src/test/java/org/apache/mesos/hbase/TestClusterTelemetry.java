@@ -0,0 +1,44 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.util.NodeTelemetry;
+import org.apache.mesos.hbase.util.VirtualClock;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestClusterTelemetry {
+
+  private final VirtualClock clock = new VirtualClock();
+
+  @Test
+  public void summarizesTheHeapOfEachRole() {
+    Configuration conf = new Configuration(false);
+    conf.setInt("mesos.hbase.slave.heap.size", 1024);
+    conf.setInt("mesos.hbase.thrift.heap.size", 768);
+    ClusterTelemetry telemetry = new ClusterTelemetry(new HBaseFrameworkConfig(conf), clock);
+    telemetry.update(node("rs1", "regionserver", 21274));
+    telemetry.update(node("rs2", "regionserver", 0));
+    telemetry.update(node("tg1", "thrift", 0));
+
+    Map<String, ClusterTelemetry.RoleSummary> summary = telemetry.getSummary();
+
+    // the sized region server, not the configured heap
+    assertEquals(21274, summary.get("regionserver").getHeapMb());
+    assertEquals(768, summary.get("thrift").getHeapMb());
+  }
+
+  private NodeTelemetry node(String hostname, String role, int heapMb) {
+    NodeTelemetry node = new NodeTelemetry();
+    node.setHostname(hostname);
+    node.setRole(role);
+    node.setWindowStart(clock.currentTimeMillis() - 60000);
+    node.setWindowEnd(clock.currentTimeMillis());
+    node.setHeapMb(heapMb);
+    return node;
+  }
+}
@@ -0,0 +1,60 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigChangeNotifier {
+
+  private ConfigChangeNotifier notifier;
+  private List<Long> notifiedVersions;
+  private ConfigChangeNotifier.Listener listener;
+
+  @Before
+  public void setup() {
+    notifier = new ConfigChangeNotifier();
+    notifiedVersions = new ArrayList<>();
+    listener = new ConfigChangeNotifier.Listener() {
+      @Override
+      public void configChanged(long version) {
+        notifiedVersions.add(version);
+      }
+    };
+  }
+
+  @Test
+  public void staleVersionIsAnsweredImmediately() {
+    notifier.awaitChange(-1, listener);
+
+    assertEquals(1, notifiedVersions.size());
+    assertEquals(0L, (long) notifiedVersions.get(0));
+  }
+
+  @Test
+  public void currentVersionWaitsForNextChange() {
+    notifier.awaitChange(0, listener);
+    assertTrue(notifiedVersions.isEmpty());
+
+    notifier.configChanged();
+    notifier.configChanged();
+
+    assertEquals(1, notifiedVersions.size());
+    assertEquals(1L, (long) notifiedVersions.get(0));
+  }
+
+  @Test
+  public void removedListenerIsNotCalled() {
+    notifier.awaitChange(0, listener);
+    notifier.removeListener(listener);
+
+    notifier.configChanged();
+
+    assertTrue(notifiedVersions.isEmpty());
+  }
+}
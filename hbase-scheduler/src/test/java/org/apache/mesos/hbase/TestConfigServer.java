@@ -0,0 +1,286 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
+import org.apache.mesos.hbase.config.ConfigServer;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.state.DeadNodeTracker;
+import org.apache.mesos.hbase.state.HBaseDevelopmentStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.NodeSize;
+import org.apache.mesos.hbase.state.PersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
+import org.apache.mesos.hbase.util.HBaseConstants;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TestConfigServer {
+
+  private static final String ADMIN_SECRET = "s3cret";
+
+  private Configuration conf;
+  private ConfigServer server;
+  private PersistentStateStore store;
+  private File template;
+
+  @Before
+  public void setup() throws IOException {
+    System.setProperty(HBaseConstants.DEVELOPMENT_MODE_PROPERTY, Boolean.TRUE.toString());
+    System.setProperty("mesos.hbase.config.server.port", "0");
+    File workDir = Files.createTempDirectory("config-server").toFile();
+    template = new File(workDir, HBaseConstants.HBASE_CONFIG_FILE_NAME);
+    Files.write(template.toPath(), ("<configuration>\n  <property>\n"
+        + "    <name>hbase.wal.provider</name>\n    <value>defaultProvider</value>\n"
+        + "  </property>\n</configuration>\n").getBytes(Charset.defaultCharset()));
+
+    conf = new Configuration(false);
+    conf.set("mesos.hbase.executor.path", workDir.getAbsolutePath());
+    conf.set("mesos.hbase.config.path", template.getAbsolutePath());
+    conf.set("mesos.hbase.mesoshdfs", "false");
+    conf.set("mesos.hbase.hdfs.datanode.hosts", "dn1");
+    conf.set("mesos.hbase.wal.storage.policy", "ONE_SSD");
+    conf.set("mesos.hbase.wal.groups", "3");
+    conf.set("mesos.hbase.bucketcache.dir", "/mnt/ssd1/hbase");
+    conf.set("mesos.hbase.admin.secret", ADMIN_SECRET);
+    HBaseFrameworkConfig config = new HBaseFrameworkConfig(conf);
+    store = new PersistentStateStore(config, new HBaseDevelopmentStore(),
+        new DeadNodeTracker(config, new Clock()));
+    server = createServer(config);
+  }
+
+  private ConfigServer createServer(HBaseFrameworkConfig config) {
+    return new ConfigServer(config, store, new ConfigChangeNotifier(),
+        new RollingRestartCoordinator(config, store, new LiveState(new Clock()), new Clock()),
+        new ClusterTelemetry(config, new Clock()), new MetricsRegistry(),
+        new DataNodeLocator(config, new Clock()));
+  }
+
+  @After
+  public void stop() {
+    server.stop();
+    System.clearProperty("mesos.hbase.config.server.port");
+  }
+
+  @Test
+  public void placesWalsAndBucketCacheOnTheirDevices() throws IOException {
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.slavenode.1").build(), "rs1",
+        HBaseConstants.SLAVE_NODE_ID, HBaseConstants.SLAVE_NODE_ID);
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.masternode.1").build(), "m1",
+        HBaseConstants.MASTER_NODE_ID, HBaseConstants.MASTER_NODE_ID + "1");
+    String site = server.renderHbaseSite("rs1");
+
+    assertTrue(site.contains("<name>hbase.wal.storage.policy</name>\n    <value>ONE_SSD</value>"));
+    assertTrue(site.contains("<value>file:/mnt/ssd1/hbase/bucketcache.data</value>"));
+    // the template wins over the framework settings, its provider doesn't group WALs
+    assertTrue(site.contains("<value>defaultProvider</value>"));
+    assertFalse(site.contains("<value>multiwal</value>"));
+    assertFalse(site.contains("hbase.wal.regiongrouping"));
+    assertFalse(site.contains("dfs.client.read.shortcircuit"));
+
+    assertTrue(server.renderHbaseSite("dn1").contains("dfs.client.read.shortcircuit"));
+    // only region servers cache blocks
+    String masterSite = server.renderHbaseSite("m1");
+    assertTrue(masterSite.contains("<name>hbase.wal.storage.policy</name>"));
+    assertFalse(masterSite.contains("hbase.bucketcache.ioengine"));
+    assertFalse(server.renderHbaseSite().contains("hbase.bucketcache.size"));
+  }
+
+  @Test
+  public void groupsWalsWhenTheTemplateLeavesTheProvider() throws IOException {
+    Files.write(template.toPath(),
+        "<configuration>\n</configuration>\n".getBytes(Charset.defaultCharset()));
+    String site = server.renderHbaseSite("rs1");
+
+    assertTrue(site.contains("<name>hbase.wal.provider</name>\n    <value>multiwal</value>"));
+    assertTrue(site.contains(
+        "<name>hbase.wal.regiongrouping.strategy</name>\n    <value>bounded</value>"));
+    assertTrue(site.contains(
+        "<name>hbase.wal.regiongrouping.numgroups</name>\n    <value>3</value>"));
+  }
+
+  @Test
+  public void sizesRegionServersToTheirHost() throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.slave.resource.fraction", "0.5");
+    conf.set("mesos.hbase.bucketcache.dir", "/mnt/ssd1/hbase");
+    NodeSize size = NodeSize.forOffer(new HBaseFrameworkConfig(conf), Protos.Offer.newBuilder()
+        .setId(Protos.OfferID.newBuilder().setValue("offer"))
+        .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+        .setHostname("rs1")
+        .addResources(Protos.Resource.newBuilder()
+            .setName("cpus")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(32.5)))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("mem")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(131072)))
+        .build());
+    store.setNodeSize("rs1", size);
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.slavenode.1").build(), "rs1",
+        HBaseConstants.SLAVE_NODE_ID, HBaseConstants.SLAVE_NODE_ID);
+
+    String site = server.renderHbaseSite("rs1");
+    assertTrue(site.contains(
+        "<name>hbase.regionserver.handler.count</name>\n    <value>160</value>"));
+    assertTrue(site.contains("<name>hbase.regionserver.global.memstore.size</name>"));
+    // the heap takes the memory of a host without an off-heap cache
+    assertFalse(site.contains("<value>offheap</value>"));
+    assertTrue(site.contains("<value>file:/mnt/ssd1/hbase/bucketcache.data</value>"));
+    assertTrue(site.contains("<name>hbase.bucketcache.size</name>\n    <value>4096</value>"));
+    assertFalse(server.renderHbaseSite("rs2").contains("hbase.regionserver.handler.count"));
+  }
+
+  @Test
+  public void readsTheNodesOncePerWrite() throws IOException {
+    store = spy(store);
+    server.stop();
+    server = createServer(new HBaseFrameworkConfig(conf));
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.slavenode.1").build(), "rs1",
+        HBaseConstants.SLAVE_NODE_ID, HBaseConstants.SLAVE_NODE_ID);
+
+    server.renderHbaseSite("rs1");
+    assertFalse(server.renderHbaseSite("rs1").contains("hbase.thrift.worker.threads"));
+    verify(store, times(1)).getThriftWorkers();
+    verify(store, times(1)).getPrimaryNodes();
+
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.thriftnode.1").build(), "rs1",
+        HBaseConstants.THRIFT_NODE_ID, HBaseConstants.THRIFT_NODE_ID);
+    store.setThriftWorkers("rs1", 16);
+    assertTrue(server.renderHbaseSite("rs1").contains("hbase.thrift.worker.threads"));
+  }
+
+  @Test
+  public void publishesTheGatewayEndpoints() throws IOException {
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.restnode.1").build(), "rs1",
+        HBaseConstants.REST_NODE_ID, HBaseConstants.REST_NODE_ID);
+
+    URL url = new URL(String.format("http://localhost:%d/%s", server.getPort(),
+        HBaseConstants.ENDPOINTS_PATH));
+    JsonNode endpoints = new ObjectMapper().readTree(url.openStream());
+
+    assertEquals("rs1:8080", endpoints.path(HBaseConstants.REST_NODE_ID).get(0).getTextValue());
+    assertTrue(server.renderHbaseSite("rs1").contains(
+        "<name>hbase.rest.port</name>\n    <value>8080</value>"));
+  }
+
+  @Test
+  public void queuesConnectionsPastTheLimit() throws IOException {
+    server.stop();
+    conf.setInt("mesos.hbase.config.server.max.connections", 1);
+    server = createServer(new HBaseFrameworkConfig(conf));
+    URL url = new URL(String.format("http://localhost:%d/%s", server.getPort(),
+        HBaseConstants.HBASE_CONFIG_FILE_NAME));
+
+    try (Socket held = new Socket("localhost", server.getPort())) {
+      held.getOutputStream().write(("GET /" + HBaseConstants.HBASE_CONFIG_FILE_NAME
+          + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(Charset.defaultCharset()));
+      BufferedReader response = new BufferedReader(new InputStreamReader(
+          held.getInputStream(), Charset.defaultCharset()));
+      assertEquals("HTTP/1.1 200 OK", response.readLine());
+
+      HttpURLConnection queued = (HttpURLConnection) url.openConnection();
+      queued.setReadTimeout(500);
+      try {
+        queued.getResponseCode();
+        fail("served past the connection limit");
+      } catch (SocketTimeoutException e) {
+        // waits in the accept queue
+      }
+    }
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setReadTimeout(5000);
+    assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+  }
+
+  @Test
+  public void controlsRollingRestartsOnlyWithTheAdminSecret() throws IOException {
+    HttpURLConnection connection = post(HBaseConstants.ROLLING_RESTART_PATH + "?action=start");
+    assertEquals(HttpURLConnection.HTTP_FORBIDDEN, connection.getResponseCode());
+
+    connection = post(HBaseConstants.ROLLING_RESTART_PATH + "?action=start");
+    connection.setRequestProperty("Authorization", "Bearer wrong");
+    assertEquals(HttpURLConnection.HTTP_FORBIDDEN, connection.getResponseCode());
+
+    connection = post(HBaseConstants.ROLLING_RESTART_PATH + "?action=start");
+    connection.setRequestProperty("Authorization", "Bearer " + ADMIN_SECRET);
+    JsonNode state = new ObjectMapper().readTree(connection.getInputStream());
+    assertEquals("RUNNING", state.path("status").getTextValue());
+  }
+
+  @Test
+  public void scalesTheGatewaysAndSizesThriftWorkers() throws IOException {
+    store.addHBaseNode(Protos.TaskID.newBuilder().setValue("task.thriftnode.1").build(), "rs2",
+        HBaseConstants.THRIFT_NODE_ID, HBaseConstants.THRIFT_NODE_ID);
+    store.setThriftWorkers("rs2", 32);
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(String.format(
+        "http://localhost:%d/%s?type=thriftnode&count=3", server.getPort(),
+        HBaseConstants.SCALE_PATH)).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Authorization", "Bearer " + ADMIN_SECRET);
+    JsonNode scale = new ObjectMapper().readTree(connection.getInputStream());
+
+    assertEquals(3, scale.path(HBaseConstants.THRIFT_NODE_ID).path("count").getIntValue());
+    assertEquals(1, scale.path(HBaseConstants.THRIFT_NODE_ID).path("nodes").getIntValue());
+    assertEquals(-1, scale.path(HBaseConstants.SLAVE_NODE_ID).path("count").getIntValue());
+    assertEquals(Integer.valueOf(3), store.getNodeCounts().get(HBaseConstants.THRIFT_NODE_ID));
+
+    connection = (HttpURLConnection) new URL(String.format(
+        "http://localhost:%d/%s?type=masternode&count=3", server.getPort(),
+        HBaseConstants.SCALE_PATH)).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Authorization", "Bearer " + ADMIN_SECRET);
+    assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, connection.getResponseCode());
+
+    String site = server.renderHbaseSite("rs2");
+    assertTrue(site.contains("<name>hbase.thrift.worker.threads</name>\n    <value>32</value>"));
+    assertTrue(site.contains(
+        "<name>hbase.regionserver.thrift.compact</name>\n    <value>true</value>"));
+    assertFalse(server.renderHbaseSite("rs1").contains("hbase.thrift.worker.threads"));
+  }
+
+  @Test
+  public void scalesOnlyWithTheAdminSecret() throws IOException {
+    HttpURLConnection connection = post(HBaseConstants.SCALE_PATH + "?type=thriftnode&count=3");
+    assertEquals(HttpURLConnection.HTTP_FORBIDDEN, connection.getResponseCode());
+    assertNull(store.getNodeCounts().get(HBaseConstants.THRIFT_NODE_ID));
+  }
+
+  private HttpURLConnection post(String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(String.format(
+        "http://localhost:%d/%s", server.getPort(), path)).openConnection();
+    connection.setRequestMethod("POST");
+    return connection;
+  }
+}
@@ -0,0 +1,40 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.state.DataNodeLocator;
+import org.apache.mesos.hbase.util.Clock;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDataNodeLocator {
+
+  @Test
+  public void findsHostsOfRunningDataNodeTasks() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+
+    assertEquals(new HashSet<>(Arrays.asList("192.168.1.170", "192.168.1.173", "192.168.1.174")),
+        DataNodeLocator.findDataNodeHosts(
+            mapper.readTree(TestDataNodeLocator.class.getResource("/state.json")), "hdfs"));
+    assertTrue(DataNodeLocator.findDataNodeHosts(
+        mapper.readTree(TestDataNodeLocator.class.getResource("/state.json")), "other").isEmpty());
+  }
+
+  @Test
+  public void knowsConfiguredDataNodeHosts() {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.hdfs.datanode.hosts", "dn1.example.com, dn2.example.com");
+    DataNodeLocator locator = new DataNodeLocator(new HBaseFrameworkConfig(conf), new Clock());
+
+    assertTrue(locator.isDataNodeHost("dn2.example.com"));
+    assertFalse(locator.isDataNodeHost("rs1.example.com"));
+  }
+}
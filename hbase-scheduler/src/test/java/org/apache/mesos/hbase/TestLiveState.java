@@ -3,6 +3,7 @@ package org.apache.mesos.hbase;
 import com.google.protobuf.ByteString;
 import org.apache.mesos.Protos;
 import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.util.Clock;
 import org.apache.mesos.hbase.util.HBaseConstants;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,9 +21,24 @@ public class TestLiveState {
     assertEquals(0, liveState.getStagingTasksSize());
   }
 
+  @Test
+  public void tracksUnhealthyTasksUntilTheyRecover() {
+    Protos.TaskStatus status = createTaskStatus("slavenode", 1, HBaseConstants.HEALTH_CHECK);
+    liveState.updateTaskForStatus(status.toBuilder().setHealthy(false).build());
+
+    assertEquals(Boolean.FALSE, liveState.getTaskHealth("slavenode.1"));
+    assertEquals(1, liveState.getTasksUnhealthyFor(0).size());
+    assertEquals(0, liveState.getTasksUnhealthyFor(60000).size());
+
+    liveState.updateTaskForStatus(status.toBuilder().setHealthy(true).build());
+
+    assertEquals(Boolean.TRUE, liveState.getTaskHealth("slavenode.1"));
+    assertEquals(0, liveState.getTasksUnhealthyFor(0).size());
+  }
+
   @Before
   public void setup() {
-    liveState = new LiveState();
+    liveState = new LiveState(new Clock());
   }
 
   private Protos.TaskStatus createTaskStatus(String taskId, Integer taskNumber, String message) {
@@ -0,0 +1,53 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.util.LogPump;
+import org.apache.mesos.hbase.util.RotatingLogFile;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLogPump {
+
+  @Test
+  public void pumpsEverythingIntoTheSink() throws Exception {
+    File dir = Files.createTempDirectory("log-pump").toFile();
+    byte[] content = new byte[100000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) ('a' + i % 26);
+    }
+    // enough buffers for the whole content, nothing may be dropped however slow the writer is
+    LogPump pump = new LogPump(1024, 128);
+    RotatingLogFile sink = new RotatingLogFile(new File(dir, "out"), 1024 * 1024, 1);
+
+    pump.pump(new ByteArrayInputStream(content), sink).get();
+    pump.close();
+
+    assertEquals(content.length, pump.getPumpedBytes());
+    assertEquals(0, pump.getDroppedBytes());
+    assertArrayEquals(content, Files.readAllBytes(sink.getFile().toPath()));
+  }
+
+  @Test
+  public void rotatesAndKeepsMaxBackups() throws Exception {
+    File dir = Files.createTempDirectory("log-pump").toFile();
+    RotatingLogFile sink = new RotatingLogFile(new File(dir, "out"), 10, 2);
+
+    for (int i = 0; i < 5; i++) {
+      sink.write(ByteBuffer.wrap("0123456789".getBytes("UTF-8")));
+    }
+    sink.close();
+
+    assertEquals(10, new File(dir, "out").length());
+    assertTrue(new File(dir, "out.1").isFile());
+    assertTrue(new File(dir, "out.2").isFile());
+    assertFalse(new File(dir, "out.3").exists());
+  }
+}
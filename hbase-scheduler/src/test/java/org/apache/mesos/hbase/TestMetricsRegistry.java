@@ -0,0 +1,51 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.metrics.Histogram;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestMetricsRegistry {
+
+  @Test
+  public void histogramPercentilesStayWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    for (int micros = 1; micros <= 100000; micros++) {
+      histogram.record(micros);
+    }
+
+    assertEquals(100000, histogram.getCount());
+    assertEquals(100000, histogram.getMax());
+    assertEquals(50000, histogram.getPercentile(0.5), 50000 / 16.0);
+    assertEquals(99000, histogram.getPercentile(0.99), 99000 / 16.0);
+    assertTrue(histogram.getPercentile(0.99) >= 99000);
+    assertEquals(100000, histogram.getPercentile(1.0));
+    assertEquals(0, new Histogram().getPercentile(0.5));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void exportsLabelledMetrics() {
+    MetricsRegistry metrics = new MetricsRegistry();
+    metrics.counter("offers_declined_total", "reason", "insufficient_cpu").inc();
+    metrics.counter("offers_declined_total", "reason", "insufficient_cpu").inc();
+    metrics.counter("offers_declined_total", "reason", "host_in_use").inc();
+    metrics.histogram("zk_read_seconds").record(1500);
+    assertSame(metrics.histogram("zk_read_seconds"), metrics.histogram("zk_read_seconds"));
+
+    Map<String, Long> counters = (Map<String, Long>) metrics.toJson().get("counters");
+    assertEquals(Long.valueOf(2),
+        counters.get("offers_declined_total{reason=\"insufficient_cpu\"}"));
+
+    String text = metrics.toPrometheus();
+    assertEquals(1, text.split("# TYPE hbase_mesos_offers_declined_total counter").length - 1);
+    assertTrue(text.contains("hbase_mesos_offers_declined_total{reason=\"host_in_use\"} 1\n"));
+    assertTrue(text.contains("hbase_mesos_zk_read_seconds{quantile=\"0.5\"} 0.0015"));
+    assertTrue(text.contains("hbase_mesos_zk_read_seconds_count 1\n"));
+  }
+}
@@ -0,0 +1,78 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.state.NodeSize;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestNodeSize {
+
+  @Test
+  public void smallOfferWithoutCacheFitsTheHeapFloor() {
+    NodeSize size = NodeSize.forOffer(createConfig("none", "0.25"), createOffer(4, 8192));
+
+    assertEquals(1024, size.getHeapMb());
+    // the reserve shrinks to what the share leaves next to the heap
+    assertEquals(692, size.getOffHeapMb());
+    assertFitsContainer(size);
+  }
+
+  @Test
+  public void smallOfferWithOffHeapCacheFitsTheHeapFloor() {
+    NodeSize size = NodeSize.forOffer(createConfig("offheap", "0.25"), createOffer(4, 8192));
+
+    assertEquals(1024, size.getHeapMb());
+    assertEquals(692, size.getOffHeapMb());
+    assertFitsContainer(size);
+  }
+
+  @Test
+  public void tinyOfferStillGetsTheWholeHeap() {
+    NodeSize size = NodeSize.forOffer(createConfig("offheap", "0.25"), createOffer(1, 2048));
+
+    assertEquals(1024, size.getHeapMb());
+    assertEquals(0, size.getOffHeapMb());
+    assertFitsContainer(size);
+  }
+
+  @Test
+  public void largeOfferGivesTheRestToTheCache() {
+    NodeSize size = NodeSize.forOffer(createConfig("offheap", "0.5"), createOffer(16, 65536));
+
+    assertEquals(14182, size.getHeapMb());
+    assertEquals(14183, size.getOffHeapMb());
+    assertFitsContainer(size);
+  }
+
+  private static void assertFitsContainer(NodeSize size) {
+    assertTrue(size.getMemMb() >= (size.getHeapMb() + size.getOffHeapMb()) * 1.15);
+  }
+
+  private static HBaseFrameworkConfig createConfig(String bucketCacheMode, String fraction) {
+    Configuration conf = new Configuration(false);
+    conf.set("mesos.hbase.bucketcache.mode", bucketCacheMode);
+    conf.set("mesos.hbase.slave.resource.fraction", fraction);
+    return new HBaseFrameworkConfig(conf);
+  }
+
+  private static Protos.Offer createOffer(double cpus, int mem) {
+    return Protos.Offer.newBuilder()
+        .setId(Protos.OfferID.newBuilder().setValue("offer"))
+        .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+        .setHostname("rs1")
+        .addResources(Protos.Resource.newBuilder()
+            .setName("cpus")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(cpus)))
+        .addResources(Protos.Resource.newBuilder()
+            .setName("mem")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(mem)))
+        .build();
+  }
+}
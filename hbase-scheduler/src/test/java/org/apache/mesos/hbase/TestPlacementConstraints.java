@@ -0,0 +1,94 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.Protos;
+import org.apache.mesos.hbase.config.ConfigurationException;
+import org.apache.mesos.hbase.scheduler.PlacementConstraints;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestPlacementConstraints {
+
+  @Test
+  public void spreadsOverRacks() {
+    PlacementConstraints constraints = PlacementConstraints
+        .parse("rack:UNIQUE; hwclass:LIKE:ssd.*");
+    List<Map<String, String>> placed = Collections.singletonList(host("a", "r1", "ssd-large"));
+
+    assertEquals("rack:UNIQUE", constraints.findViolation(host("b", "r1", "ssd-large"), placed));
+    assertEquals("hwclass:LIKE:ssd.*",
+        constraints.findViolation(host("b", "r2", "hdd-large"), placed));
+    assertNull(constraints.findViolation(host("b", "r2", "ssd-small"), placed));
+    // agents without the attribute do not satisfy a rule on it
+    assertEquals("rack:UNIQUE", constraints.findViolation(
+        Collections.singletonMap("hostname", "c"), placed));
+  }
+
+  @Test
+  public void groupsEvenlyOverOfferedValues() {
+    PlacementConstraints constraints = PlacementConstraints.parse("rack:GROUP_BY;rack:MAX_PER:2");
+    constraints.observe(host("a", "r1", "x"));
+    constraints.observe(host("b", "r2", "x"));
+    List<Map<String, String>> placed = Arrays.asList(host("a", "r1", "x"));
+
+    assertEquals("rack:GROUP_BY", constraints.findViolation(host("c", "r1", "x"), placed));
+    assertNull(constraints.findViolation(host("b", "r2", "x"), placed));
+
+    placed = Arrays.asList(host("a", "r1", "x"), host("b", "r2", "x"), host("c", "r1", "x"),
+        host("d", "r2", "x"));
+    assertEquals("rack:MAX_PER:2", constraints.findViolation(host("e", "r1", "x"), placed));
+  }
+
+  @Test
+  public void readsOfferAttributes() {
+    Protos.Offer offer = Protos.Offer.newBuilder()
+        .setId(Protos.OfferID.newBuilder().setValue("offer"))
+        .setFrameworkId(Protos.FrameworkID.newBuilder().setValue("framework"))
+        .setSlaveId(Protos.SlaveID.newBuilder().setValue("slave"))
+        .setHostname("host1")
+        .addAttributes(Protos.Attribute.newBuilder()
+            .setName("rack")
+            .setType(Protos.Value.Type.TEXT)
+            .setText(Protos.Value.Text.newBuilder().setValue("r1")))
+        .addAttributes(Protos.Attribute.newBuilder()
+            .setName("zone")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(3)))
+        .build();
+
+    Map<String, String> attributes = PlacementConstraints.getAttributes(offer);
+    assertEquals("r1", attributes.get("rack"));
+    assertEquals("3", attributes.get("zone"));
+    assertEquals("host1", attributes.get("hostname"));
+  }
+
+  @Test
+  public void rejectsInvalidRules() {
+    for (String spec : Arrays.asList("rack", "rack:SPREAD", "rack:CLUSTER", "rack:MAX_PER:0",
+        "rack:LIKE:[")) {
+      try {
+        PlacementConstraints.parse(spec);
+        throw new AssertionError("parsed " + spec);
+      } catch (ConfigurationException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains(spec));
+      }
+    }
+    assertTrue(PlacementConstraints.parse(" ").isEmpty());
+  }
+
+  private Map<String, String> host(String hostname, String rack, String hwclass) {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("hostname", hostname);
+    attributes.put("rack", rack);
+    attributes.put("hwclass", hwclass);
+    return attributes;
+  }
+}
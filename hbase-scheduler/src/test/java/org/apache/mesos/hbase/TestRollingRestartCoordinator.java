@@ -0,0 +1,183 @@
+package org.apache.mesos.hbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.mesos.Protos;
+import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
+import org.apache.mesos.hbase.state.IPersistentStateStore;
+import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.RollingRestartState;
+import org.apache.mesos.hbase.util.VirtualClock;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestRollingRestartCoordinator {
+
+  @Mock
+  SchedulerDriver driver;
+
+  @Mock
+  IPersistentStateStore persistenceStore;
+
+  private final Map<String, String> regionNodes = new HashMap<>();
+  private final VirtualClock clock = new VirtualClock();
+  private final LiveState liveState = new LiveState(clock);
+  private RollingRestartState stored;
+  private int regionsInTransition;
+  private RollingRestartCoordinator coordinator;
+
+  @Test
+  public void killsTheFirstBatch() {
+    coordinator.start(2);
+    coordinator.advance(driver);
+
+    verify(driver).killTask(taskId("task.a"));
+    verify(driver).killTask(taskId("task.b"));
+    verify(driver, never()).killTask(taskId("task.c"));
+    assertEquals(2, stored.getBatch().size());
+  }
+
+  @Test
+  public void startsTheNextBatchOnceTheLastOneRunsHealthy() {
+    coordinator.start(1);
+    coordinator.advance(driver);
+    verify(driver).killTask(taskId("task.a"));
+
+    // the old task is gone but no new one runs yet
+    regionNodes.put("a", null);
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    verify(driver, never()).killTask(taskId("task.b"));
+
+    regionNodes.put("a", "task.a2");
+    liveState.updateTaskForStatus(status("task.a2", Protos.TaskState.TASK_RUNNING, false));
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    verify(driver, never()).killTask(taskId("task.b"));
+
+    liveState.updateTaskForStatus(status("task.a2", Protos.TaskState.TASK_RUNNING, true));
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    verify(driver).killTask(taskId("task.b"));
+    assertEquals(1, stored.getCompletedHosts().size());
+  }
+
+  @Test
+  public void pausesWhenATaskOfTheBatchFails() {
+    coordinator.start(1);
+    coordinator.advance(driver);
+    regionNodes.put("a", "task.a2");
+
+    coordinator.taskTerminated(status("task.a2", Protos.TaskState.TASK_FAILED, false));
+
+    assertEquals(RollingRestartState.Status.PAUSED, stored.getStatus());
+    coordinator.advance(driver);
+    verify(driver, times(1)).killTask(any(Protos.TaskID.class));
+  }
+
+  @Test
+  public void finishesOnceEveryHostRestarted() {
+    regionNodes.remove("b");
+    regionNodes.remove("c");
+    coordinator.start(1);
+    coordinator.advance(driver);
+    regionNodes.put("a", "task.a2");
+    liveState.updateTaskForStatus(status("task.a2", Protos.TaskState.TASK_RUNNING, true));
+
+    for (int i = 0; i < 4; i++) {
+      coordinator.advance(driver);
+    }
+
+    assertEquals(RollingRestartState.Status.DONE, stored.getStatus());
+  }
+
+  @Test
+  public void waitsForTheRegionsInTransitionPolledFromTheMasters() {
+    coordinator.start(1);
+    coordinator.advance(driver);
+    regionNodes.put("a", "task.a2");
+    liveState.updateTaskForStatus(status("task.a2", Protos.TaskState.TASK_RUNNING, true));
+    coordinator.advance(driver);
+
+    regionsInTransition = 3;
+    clock.runNext(0);
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    verify(driver, never()).killTask(taskId("task.b"));
+
+    regionsInTransition = 0;
+    clock.runNext(5000);
+    coordinator.advance(driver);
+    coordinator.advance(driver);
+    verify(driver).killTask(taskId("task.b"));
+  }
+
+  @Test
+  public void snapshotsStayAsTheyWere() {
+    coordinator.start(1);
+    RollingRestartState snapshot = coordinator.snapshot();
+
+    coordinator.advance(driver);
+
+    assertEquals(3, snapshot.getPendingHosts().size());
+    assertEquals(0, snapshot.getBatch().size());
+    assertEquals(1, coordinator.snapshot().getBatch().size());
+  }
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    Configuration conf = new Configuration();
+    conf.setInt("mesos.hbase.rolling.settle.seconds", 0);
+    regionNodes.put("a", "task.a");
+    regionNodes.put("b", "task.b");
+    regionNodes.put("c", "task.c");
+    when(persistenceStore.getRegionNodes()).thenReturn(regionNodes);
+    when(persistenceStore.getRollingRestartState()).thenAnswer(new Answer<RollingRestartState>() {
+      @Override
+      public RollingRestartState answer(InvocationOnMock invocation) {
+        return stored;
+      }
+    });
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        stored = (RollingRestartState) invocation.getArguments()[0];
+        return null;
+      }
+    }).when(persistenceStore).setRollingRestartState(any(RollingRestartState.class));
+
+    coordinator = new RollingRestartCoordinator(new HBaseFrameworkConfig(conf),
+        persistenceStore, liveState, clock) {
+      @Override
+      protected int getRegionsInTransition() {
+        return regionsInTransition;
+      }
+    };
+  }
+
+  private Protos.TaskID taskId(String id) {
+    return Protos.TaskID.newBuilder().setValue(id).build();
+  }
+
+  private Protos.TaskStatus status(String id, Protos.TaskState state, boolean healthy) {
+    return Protos.TaskStatus.newBuilder()
+        .setTaskId(taskId(id))
+        .setState(state)
+        .setHealthy(healthy)
+        .build();
+  }
+}
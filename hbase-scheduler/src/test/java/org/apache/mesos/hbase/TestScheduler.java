@@ -4,15 +4,23 @@ import com.google.common.collect.Lists;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.mesos.Protos;
 import org.apache.mesos.SchedulerDriver;
+import org.apache.mesos.hbase.metrics.MetricsRegistry;
 import org.apache.mesos.hbase.scheduler.HBaseScheduler;
+import org.apache.mesos.hbase.scheduler.RollingRestartCoordinator;
 import org.apache.mesos.hbase.state.AcquisitionPhase;
+import org.apache.mesos.hbase.state.ClusterTelemetry;
+import org.apache.mesos.hbase.state.DataNodeLocator;
 import org.apache.mesos.hbase.state.LiveState;
+import org.apache.mesos.hbase.state.NodeSize;
 import org.apache.mesos.hbase.state.IPersistentStateStore;
+import org.apache.mesos.hbase.util.Clock;
 import org.apache.mesos.hbase.util.DnsResolver;
+import org.apache.mesos.hbase.util.VirtualClock;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -21,10 +29,15 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.Map;
+import org.apache.mesos.hbase.config.ConfigChangeNotifier;
 import org.apache.mesos.hbase.config.HBaseFrameworkConfig;
 import org.apache.mesos.hbase.util.HBaseConstants;
+import org.apache.mesos.hbase.util.NodeTelemetry;
+import org.apache.mesos.hbase.util.TelemetryCodec;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -33,9 +46,6 @@ import static org.mockito.Mockito.*;
 @SuppressWarnings("unchecked")
 public class TestScheduler {
 
-  private final HBaseFrameworkConfig hdfsFrameworkConfig = new HBaseFrameworkConfig(
-      new Configuration());
-
   @Mock
   SchedulerDriver driver;
 
@@ -48,11 +58,19 @@ public class TestScheduler {
   @Mock
   DnsResolver dnsResolver;
 
+  @Mock
+  RollingRestartCoordinator rollingRestart;
+
+  @Mock
+  ClusterTelemetry clusterTelemetry;
+
   @Captor
   ArgumentCaptor<Collection<Protos.TaskInfo>> taskInfosCapture;
 
   HBaseScheduler scheduler;
 
+  MetricsRegistry metrics;
+
   @Test
   public void statusUpdateWasStagingNowRunning() {
     when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.START_MASTER_NODES);
@@ -90,6 +108,60 @@ public class TestScheduler {
     verify(liveState, never()).transitionTo(any(AcquisitionPhase.class));
   }
 
+  @Test
+  public void statusUpdateRestartRequiredIsNotANewTask() {
+    Protos.TaskID taskId = createTaskId(HBaseConstants.MASTER_NODE_TASKID + "1");
+
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.START_MASTER_NODES);
+    when(liveState.getMasterNodeSize()).thenReturn(2);
+
+    scheduler.statusUpdate(driver, createTaskStatus(taskId, Protos.TaskState.TASK_RUNNING)
+        .toBuilder()
+        .setMessage(HBaseConstants.RESTART_REQUIRED + "[hbase.regionserver.handler.count]")
+        .build());
+
+    verify(liveState).updateTaskForStatus(any(Protos.TaskStatus.class));
+    verify(liveState, never()).transitionTo(any(AcquisitionPhase.class));
+  }
+
+  @Test
+  public void statusUpdateWarmingUpHasNoHealthYet() {
+    Protos.TaskID taskId = createTaskId("task.slavenode.1");
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    scheduler.statusUpdate(driver, createTaskStatus(taskId, Protos.TaskState.TASK_RUNNING)
+        .toBuilder()
+        .setMessage(HBaseConstants.WARMING_UP + "waiting for regions")
+        .build());
+
+    verify(liveState).resetHealth("task.slavenode.1");
+    verify(liveState, never()).transitionTo(any(AcquisitionPhase.class));
+    verify(rollingRestart, never()).advance(driver);
+  }
+
+  @Test
+  public void killsTasksUnhealthyTooLong() {
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.RECONCILING_TASKS);
+    when(liveState.getTasksUnhealthyFor(anyLong())).thenReturn(Lists.newArrayList("task.1"));
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOffer(0)));
+
+    verify(driver).killTask(createTaskId("task.1"));
+    verify(liveState).resetUnhealthy("task.1");
+  }
+
+  @Test
+  public void frameworkMessageWithTelemetryUpdatesClusterTelemetry() {
+    NodeTelemetry telemetry = new NodeTelemetry();
+    telemetry.setHostname("host1");
+    telemetry.setRole("regionserver");
+
+    scheduler.frameworkMessage(driver, Protos.ExecutorID.newBuilder().setValue("e1").build(),
+        Protos.SlaveID.newBuilder().setValue("s1").build(), TelemetryCodec.encode(telemetry));
+
+    verify(clusterTelemetry).update(any(NodeTelemetry.class));
+  }
+
   @Test
   public void launchesMasterNodeWhenInMasternode1Phase() {
     when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.START_MASTER_NODES);
@@ -160,10 +232,322 @@ public class TestScheduler {
     verify(driver, times(1)).declineOffer(offer.getId());
   }
 
+  @Test
+  public void measuresDeclinedOffers() {
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    Protos.Offer offer = createTestOfferWithResources(0, 0.1, 64);
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(offer));
+
+    assertEquals(1, metrics.counter("offers_declined_total", "reason", "insufficient_cpu")
+        .getValue());
+    assertEquals(1, metrics.histogram("resource_offers_seconds").getCount());
+  }
+
+  @Test
+  public void prefersDataNodeHostsForSlaveNodes() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.hdfs.datanode.hosts", "host1");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    Protos.Offer otherHost = createTestOfferWithResources(0, 8, 65536);
+    Protos.Offer dataNodeHost = createTestOfferWithResources(1, 8, 65536);
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(otherHost));
+    scheduler.resourceOffers(driver, Lists.newArrayList(dataNodeHost));
+
+    verify(driver).declineOffer(otherHost.getId());
+    verify(driver).launchTasks(eq(Arrays.asList(dataNodeHost.getId())),
+        taskInfosCapture.capture());
+    assertEquals(1, metrics.counter("offers_declined_total", "reason", "not_datanode_host")
+        .getValue());
+    assertTrue(taskInfosCapture.getValue().iterator().next().getExecutor().getCommand()
+        .getUrisList().toString().contains("/node/host1/hbase-site.xml"));
+  }
+
+  @Test
+  public void spreadsMastersOverRacks() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.master.constraints", "rack:UNIQUE");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.START_MASTER_NODES);
+    HashMap<String, String> masters = new HashMap<>();
+    masters.put("host0", "task.masternode.0");
+    when(persistenceStore.getPrimaryNodes()).thenReturn(masters);
+    HashMap<String, String> rack1 = new HashMap<>();
+    rack1.put("hostname", "host0");
+    rack1.put("rack", "rack1");
+    HashMap<String, Map<String, String>> hostAttributes = new HashMap<>();
+    hostAttributes.put("host0", rack1);
+    when(persistenceStore.getHostAttributes()).thenReturn(hostAttributes);
+    Protos.Offer sameRack = withRack(createTestOfferWithResources(1, 8, 65536), "rack1");
+    Protos.Offer otherRack = withRack(createTestOfferWithResources(2, 8, 65536), "rack2");
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(sameRack));
+    scheduler.resourceOffers(driver, Lists.newArrayList(otherRack));
+
+    verify(driver).declineOffer(sameRack.getId());
+    verify(driver).launchTasks(eq(Arrays.asList(otherRack.getId())), anyCollection());
+    assertEquals(1, metrics.counter("offers_declined_total", "reason", "constraint").getValue());
+  }
+
+  @Test
+  public void relaunchesSlaveNodesOntoTheirVolume() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.slave.persistent.volume", "true");
+    conf.set("mesos.hbase.role", "hbase");
+    conf.set("mesos.hbase.principal", "hbase");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    ArgumentCaptor<Collection<Protos.Offer.Operation>> operations =
+        ArgumentCaptor.forClass((Class) Collection.class);
+    Protos.Offer unreserved = createTestOfferWithResources(0, 8, 65536).toBuilder()
+        .addResources(Protos.Resource.newBuilder()
+            .setName("disk")
+            .setType(Protos.Value.Type.SCALAR)
+            .setScalar(Protos.Value.Scalar.newBuilder().setValue(100000))
+            .setRole("*"))
+        .build();
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(unreserved));
+
+    verify(driver).acceptOffers(eq(Arrays.asList(unreserved.getId())), operations.capture(),
+        any(Protos.Filters.class));
+    Iterator<Protos.Offer.Operation> created = operations.getValue().iterator();
+    assertEquals(Protos.Offer.Operation.Type.RESERVE, created.next().getType());
+    Protos.Offer.Operation create = created.next();
+    Protos.Offer.Operation launch = created.next();
+    assertEquals(Protos.Offer.Operation.Type.CREATE, create.getType());
+    assertEquals(Protos.Offer.Operation.Type.LAUNCH, launch.getType());
+    assertTrue(launch.getLaunch().getTaskInfos(0).getResourcesList()
+        .contains(create.getCreate().getVolumes(0)));
+
+    // the node is lost, its reservation and volume are offered again
+    Protos.Offer.Builder reserved = createTestOffer(1).toBuilder()
+        .addAllResources(launch.getLaunch().getTaskInfos(0).getResourcesList())
+        .addAllResources(launch.getLaunch().getTaskInfos(0).getExecutor().getResourcesList());
+    when(persistenceStore.getDeadDataNodes()).thenReturn(Arrays.asList("host9"));
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(reserved.build()));
+
+    verify(driver).acceptOffers(eq(Arrays.asList(reserved.getId())), operations.capture(),
+        any(Protos.Filters.class));
+    assertEquals(1, operations.getValue().size());
+    assertEquals(Protos.Offer.Operation.Type.LAUNCH,
+        operations.getValue().iterator().next().getType());
+    assertEquals(1, metrics.counter("volumes_created_total").getValue());
+  }
+
+  @Test
+  public void sizesSlaveNodesToTheOffer() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.slave.resource.fraction", "0.75");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 16, 65536)));
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 64, 262144)));
+
+    verify(driver, times(2)).launchTasks(anyCollection(), taskInfosCapture.capture());
+    Map<String, String> small = getEnvironment(taskInfosCapture.getAllValues().get(0));
+    Map<String, String> large = getEnvironment(taskInfosCapture.getAllValues().get(1));
+    assertEquals("21274m", small.get("HBASE_HEAPSIZE"));
+    assertEquals("21274m", small.get("HBASE_OFFHEAPSIZE"));
+    // the heap stays below the compressed oops limit, the rest goes off-heap
+    assertEquals("31744m", large.get("HBASE_HEAPSIZE"));
+    assertEquals("139027m", large.get("HBASE_OFFHEAPSIZE"));
+    verify(persistenceStore).setNodeSize(eq("host0"), any(NodeSize.class));
+    verify(persistenceStore).setNodeSize(eq("host1"), any(NodeSize.class));
+  }
+
+  @Test
+  public void reservesTheOffHeapBucketCache() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.bucketcache.mode", "offheap");
+    conf.set("mesos.hbase.bucketcache.size.mb", "2048");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    // fits the heap but not the cache
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 8, 4096)));
+    verify(driver).declineOffer(createTestOfferId(0));
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 8, 8192)));
+    verify(driver).launchTasks(anyCollection(), taskInfosCapture.capture());
+    Protos.TaskInfo task = taskInfosCapture.getValue().iterator().next();
+    double mem = 0;
+    for (Protos.Resource resource : task.getResourcesList()) {
+      if ("mem".equals(resource.getName())) {
+        mem += resource.getScalar().getValue();
+      }
+    }
+    // heap with the JVM overhead, the cache and the reserve for the HDFS and RPC buffers
+    assertEquals(1024 * 1.15 + 2048 + 1024, mem, 0.01);
+    assertEquals("3072m", getEnvironment(taskInfosCapture.getValue()).get("HBASE_OFFHEAPSIZE"));
+  }
+
+  @Test
+  public void picksTheGcProfileByHeapSize() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.slave.heap.size", "24576");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 8, 32768)));
+
+    verify(driver).launchTasks(anyCollection(), taskInfosCapture.capture());
+    Protos.TaskInfo task = taskInfosCapture.getValue().iterator().next();
+    assertEquals(HBaseConstants.GC_PROFILE_LABEL, task.getLabels().getLabels(0).getKey());
+    assertEquals(HBaseConstants.GC_PROFILE_G1, task.getLabels().getLabels(0).getValue());
+    Map<String, String> environment = getEnvironment(taskInfosCapture.getValue());
+    assertTrue(environment.get("HBASE_OPTS").contains("-XX:+UseG1GC"));
+    assertFalse(environment.get("HBASE_OPTS").contains("ConcMarkSweep"));
+    assertTrue(environment.get("HBASE_OPTS").contains("-XX:G1HeapRegionSize=16m"));
+    assertTrue(environment.get("SERVER_GC_OPTS").contains("-XX:+UseGCLogFileRotation"));
+  }
+
+  @Test
+  public void launchesRestNodesNextToRegionServers() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.rest.count", "1");
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    when(persistenceStore.slaveNodeRunningOnSlave("host0")).thenReturn(true);
+    when(persistenceStore.getRegionNodes())
+        .thenReturn(Collections.singletonMap("host0", "task.slavenode.1"));
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 4, 8192)));
+
+    verify(driver).launchTasks(anyCollection(), taskInfosCapture.capture());
+    Protos.TaskInfo task = taskInfosCapture.getValue().iterator().next();
+    assertTrue(task.getTaskId().getValue().startsWith("task." + HBaseConstants.REST_NODE_ID));
+    assertEquals("1024m", getEnvironment(taskInfosCapture.getValue()).get("HBASE_HEAPSIZE"));
+    verify(persistenceStore).addHBaseNode(any(Protos.TaskID.class), eq("host0"),
+        eq(HBaseConstants.REST_NODE_ID), eq(HBaseConstants.REST_NODE_ID));
+  }
+
+  @Test
+  public void launchesThriftNodesWithWorkersForTheOffer() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.thrift.count", "1");
+    conf.set("mesos.hbase.thrift.server.type", HBaseConstants.THRIFT_HSHA);
+    scheduler = createScheduler(conf);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    when(persistenceStore.slaveNodeRunningOnSlave("host0")).thenReturn(true);
+    when(persistenceStore.getRegionNodes())
+        .thenReturn(Collections.singletonMap("host0", "task.slavenode.1"));
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 4, 8192)));
+
+    verify(driver).launchTasks(anyCollection(), taskInfosCapture.capture());
+    Protos.TaskInfo task = taskInfosCapture.getValue().iterator().next();
+    assertTrue(task.getTaskId().getValue().startsWith("task." + HBaseConstants.THRIFT_NODE_ID));
+    assertEquals(HBaseConstants.THRIFT_HSHA, getEnvironment(taskInfosCapture.getValue())
+        .get(HBaseConstants.THRIFT_SERVER_TYPE_ENV));
+    // 8 workers for each of the 4 offered cpus
+    verify(persistenceStore).setThriftWorkers("host0", 32);
+  }
+
+  @Test
+  public void killsTheLatestNodesBeyondTheScaledCount() {
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    when(persistenceStore.getNodeCounts())
+        .thenReturn(Collections.singletonMap(HBaseConstants.SLAVE_NODE_ID, 1));
+    Map<String, String> regionNodes = new HashMap<>();
+    regionNodes.put("host0", "task.slavenode.slavenode.NodeExecutor.1000");
+    regionNodes.put("host1", "task.slavenode.slavenode.NodeExecutor.2000");
+    regionNodes.put("host2", null);
+    when(persistenceStore.getRegionNodes()).thenReturn(regionNodes);
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(2, 4, 8192)));
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(3, 4, 8192)));
+
+    verify(driver, times(1)).killTask(createTaskId("task.slavenode.slavenode.NodeExecutor.2000"));
+    verify(driver, never()).killTask(createTaskId("task.slavenode.slavenode.NodeExecutor.1000"));
+    verify(driver, never()).launchTasks(anyCollection(), anyCollection());
+  }
+
+  @Test
+  public void looksUpOnlyTheNodeTypesWhichMayNeedScaling() {
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    scheduler.resourceOffers(driver, Lists.newArrayList(createTestOfferWithResources(0, 1, 64),
+        createTestOfferWithResources(1, 1, 64)));
+
+    verify(persistenceStore, times(1)).getNodeCounts();
+    // no gateways are configured or running
+    verify(persistenceStore, never()).getRestNodes();
+    verify(persistenceStore, never()).getThriftNodes();
+  }
+
+  @Test
+  public void waitsForDataNodeHostsUntilTheLocalityWait() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.hdfs.datanode.hosts", "host0");
+    conf.set("mesos.hbase.hdfs.locality.wait.seconds", "60");
+    VirtualClock clock = new VirtualClock();
+    scheduler = createScheduler(conf, clock);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 4, 8192)));
+    clock.runNext(59000);
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 4, 8192)));
+    verify(driver, never()).launchTasks(anyCollection(), anyCollection());
+
+    clock.runNext(61000);
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 4, 8192)));
+    verify(driver).launchTasks(anyCollection(), anyCollection());
+  }
+
+  @Test
+  public void launchesOnDataNodeHostsWithoutWaiting() {
+    Configuration conf = new Configuration();
+    conf.set("mesos.hbase.hdfs.datanode.hosts", "host0");
+    VirtualClock clock = new VirtualClock();
+    scheduler = createScheduler(conf, clock);
+    when(liveState.getCurrentAcquisitionPhase()).thenReturn(AcquisitionPhase.SLAVE_NODES);
+    // the only DataNode host already runs a region server
+    when(persistenceStore.getRegionNodes())
+        .thenReturn(Collections.singletonMap("host2", "task.slavenode.1"));
+
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(0, 4, 8192)));
+    verify(driver).launchTasks(anyCollection(), anyCollection());
+
+    when(persistenceStore.getRegionNodes())
+        .thenReturn(Collections.singletonMap("host0", "task.slavenode.2"));
+    scheduler.resourceOffers(driver,
+        Lists.newArrayList(createTestOfferWithResources(1, 4, 8192)));
+    verify(driver, times(2)).launchTasks(anyCollection(), anyCollection());
+  }
+
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
-    this.scheduler = new HBaseScheduler(hdfsFrameworkConfig, liveState, persistenceStore);
+    this.metrics = new MetricsRegistry();
+    this.scheduler = createScheduler(new Configuration());
+  }
+
+  private HBaseScheduler createScheduler(Configuration conf) {
+    return createScheduler(conf, new Clock());
+  }
+
+  private HBaseScheduler createScheduler(Configuration conf, Clock clock) {
+    HBaseFrameworkConfig config = new HBaseFrameworkConfig(conf);
+    return new HBaseScheduler(config, liveState, persistenceStore, new ConfigChangeNotifier(),
+        rollingRestart, clusterTelemetry, metrics, new DataNodeLocator(config, clock), clock);
   }
 
   private Protos.TaskID createTaskId(String id) {
@@ -215,6 +599,24 @@ public class TestScheduler {
         .build();
   }
 
+  private Protos.Offer withRack(Protos.Offer offer, String rack) {
+    return offer.toBuilder()
+        .addAttributes(Protos.Attribute.newBuilder()
+            .setName("rack")
+            .setType(Protos.Value.Type.TEXT)
+            .setText(Protos.Value.Text.newBuilder().setValue(rack)))
+        .build();
+  }
+
+  private Map<String, String> getEnvironment(Collection<Protos.TaskInfo> tasks) {
+    Map<String, String> environment = new HashMap<>();
+    for (Protos.Environment.Variable variable : tasks.iterator().next().getExecutor()
+        .getCommand().getEnvironment().getVariablesList()) {
+      environment.put(variable.getName(), variable.getValue());
+    }
+    return environment;
+  }
+
   private Protos.TaskStatus createTaskStatus(Protos.TaskID taskID, Protos.TaskState state) {
     return Protos.TaskStatus.newBuilder()
         .setTaskId(taskID)
@@ -0,0 +1,76 @@
+package org.apache.mesos.hbase;
+
+import org.apache.mesos.hbase.util.NodeTelemetry;
+import org.apache.mesos.hbase.util.TelemetryCodec;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestTelemetryCodec {
+
+  @Test
+  public void roundTripsASummary() throws IOException {
+    NodeTelemetry telemetry = new NodeTelemetry();
+    telemetry.setHostname("host1.example.com");
+    telemetry.setRole("regionserver");
+    telemetry.setWindowStart(1441000000000L);
+    telemetry.setWindowEnd(1441000060000L);
+    telemetry.setSamples(12);
+    telemetry.setCpuAvg(1.5f);
+    telemetry.setCpuMax(3.25f);
+    telemetry.setRssAvg(3L << 30);
+    telemetry.setRssMax(4L << 30);
+    telemetry.setReadBytes(123456789L);
+    telemetry.setWriteBytes(987654321L);
+    telemetry.setGcCount(7);
+    telemetry.setGcTimeMs(420);
+    telemetry.setDiskUsedBytes(1L << 40);
+    telemetry.setDiskFreeBytes(2L << 40);
+    telemetry.setHeapMb(21274);
+
+    byte[] encoded = TelemetryCodec.encode(telemetry);
+    NodeTelemetry decoded = TelemetryCodec.decode(encoded);
+
+    assertTrue(encoded.length < 128);
+    assertEquals("host1.example.com", decoded.getHostname());
+    assertEquals("regionserver", decoded.getRole());
+    assertEquals(telemetry.getWindowEnd(), decoded.getWindowEnd());
+    assertEquals(12, decoded.getSamples());
+    assertEquals(3.25f, decoded.getCpuMax(), 0);
+    assertEquals(4L << 30, decoded.getRssMax());
+    assertEquals(987654321L, decoded.getWriteBytes());
+    assertEquals(420, decoded.getGcTimeMs());
+    assertEquals(2L << 40, decoded.getDiskFreeBytes());
+    assertEquals(21274, decoded.getHeapMb());
+  }
+
+  @Test
+  public void decodesSummariesWithoutTheHeap() throws IOException {
+    NodeTelemetry telemetry = new NodeTelemetry();
+    telemetry.setHostname("host1.example.com");
+    telemetry.setRole("rest");
+    telemetry.setDiskFreeBytes(2L << 40);
+    byte[] encoded = TelemetryCodec.encode(telemetry);
+    // a version 1 executor ends with the free disk space
+    byte[] version1 = Arrays.copyOf(encoded, encoded.length - 2);
+    version1[3] = 1;
+
+    NodeTelemetry decoded = TelemetryCodec.decode(version1);
+
+    assertEquals(2L << 40, decoded.getDiskFreeBytes());
+    assertEquals(0, decoded.getHeapMb());
+  }
+
+  @Test
+  public void doesNotTakeTextMessagesForTelemetry() {
+    assertFalse(TelemetryCodec.isTelemetry("artifact peer ready http://host:1/"
+        .getBytes(Charset.forName("UTF-8"))));
+    assertFalse(TelemetryCodec.isTelemetry(new byte[0]));
+  }
+}